@@ -0,0 +1,142 @@
+package analysis.benchmarks;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import com.google.re2j.Pattern;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import search.scraper.Constants;
+import search.scraper.FileExtensionRule;
+import search.scraper.UriMatchRule;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Compares how fast FileExtensionRule checks URIs against the single regex alternation
+ * of every blacklisted extension we used before, on batches of up to a million URIs.
+ */
+public class ExtensionBlacklistBenchmark {
+    public static final int NUM_TRIALS = 5;
+    public static final long MAX_INPUT_SIZE = 1000000;
+    public static final long STEP = 250000;
+
+    private static final String[] PLAIN_PATHS = new String[] {
+        "/wiki/", "/wiki/Talk:", "/w/index.php?title=", "/wiki/Category:", "/docs/v1.2/", "/news/2018/",
+    };
+    private static final String[] OTHER_EXTENSIONS = new String[] {".html", ".htm", ".php", ".aspx", ".shtml"};
+
+    // Keeps the JIT from optimizing away the checks we are timing.
+    private static long allowedCount = 0;
+
+    public static void main(String[] args) {
+        IList<Long> inputSizes = AnalysisUtils.makeList(STEP, MAX_INPUT_SIZE + 1, STEP);
+
+        System.out.println("Starting test");
+        IList<Long> regexResults = AnalysisUtils.runTrials(
+                inputSizes, ExtensionBlacklistBenchmark::testRegex, NUM_TRIALS);
+        IList<Long> extensionSetResults = AnalysisUtils.runTrials(
+                inputSizes, ExtensionBlacklistBenchmark::testExtensionSet, NUM_TRIALS);
+
+        IList<Long> regexThroughput = toThroughput(inputSizes, regexResults);
+        IList<Long> extensionSetThroughput = toThroughput(inputSizes, extensionSetResults);
+
+        System.out.println("URIs, regex thousand URIs/s, extension set thousand URIs/s");
+        Iterator<Long> regexIter = regexThroughput.iterator();
+        Iterator<Long> extensionSetIter = extensionSetThroughput.iterator();
+        for (long size : inputSizes) {
+            System.out.println(String.format("%d, %d, %d", size, regexIter.next(), extensionSetIter.next()));
+        }
+
+        System.out.println("Saving experiment results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("NumUris", inputSizes);
+        writer.addColumn("RegexMillis", regexResults);
+        writer.addColumn("ExtensionSetMillis", extensionSetResults);
+        writer.addColumn("RegexKUrisPerSec", regexThroughput);
+        writer.addColumn("ExtensionSetKUrisPerSec", extensionSetThroughput);
+        writer.writeToFile("experimentdata/extension-blacklist-benchmark.csv");
+
+        System.out.println("All done!");
+    }
+
+    public static long testRegex(long inputSize) {
+        return time(regexRule(), makeUris(inputSize));
+    }
+
+    public static long testExtensionSet(long inputSize) {
+        return time(Constants.fileExtensionBlacklist(), makeUris(inputSize));
+    }
+
+    private static long time(UriMatchRule rule, URI[] uris) {
+        long start = System.currentTimeMillis();
+        for (URI uri : uris) {
+            if (rule.matches(uri)) {
+                allowedCount++;
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * The blacklist we used before FileExtensionRule: one "/.*ext" alternative per
+     * extension, in both lower and upper case, matched from the start of the path and
+     * query.
+     */
+    private static UriMatchRule regexRule() {
+        StringBuilder out = new StringBuilder();
+        String sep = "";
+        for (String extension : Constants.fileExtensions()) {
+            out.append(sep);
+            sep = "|";
+
+            out.append("/.*" + extension);
+            out.append(sep);
+            out.append("/.*" + extension.toUpperCase());
+        }
+        Pattern disallowed = Pattern.compile("^(" + out + ")");
+        return uri -> {
+            String filepath = uri.getPath() + (uri.getQuery() != null ? "?" + uri.getQuery() : "");
+            return !disallowed.matcher(filepath).find();
+        };
+    }
+
+    /**
+     * Makes a mix of URIs like a crawl sees: mostly extension-less article links, some
+     * ordinary web pages, and about one in ten files we blacklist, in mixed case.
+     */
+    private static URI[] makeUris(long size) {
+        Random rand = new Random(size);
+        String[] blacklisted = Constants.fileExtensions();
+        URI[] out = new URI[(int) size];
+        for (int i = 0; i < size; i++) {
+            StringBuilder path = new StringBuilder();
+            path.append(PLAIN_PATHS[rand.nextInt(PLAIN_PATHS.length)]);
+            path.append("Page_").append(rand.nextInt(1000000));
+
+            int kind = rand.nextInt(10);
+            if (kind == 0) {
+                String extension = blacklisted[rand.nextInt(blacklisted.length)];
+                path.append(rand.nextBoolean() ? extension : extension.toUpperCase());
+            } else if (kind == 1) {
+                path.append(OTHER_EXTENSIONS[rand.nextInt(OTHER_EXTENSIONS.length)]);
+            }
+            out[i] = URI.create("https://en.wikipedia.org" + path);
+        }
+        return out;
+    }
+
+    /**
+     * Converts each (number of URIs, milliseconds) pair into thousands of URIs checked per second.
+     */
+    private static IList<Long> toThroughput(IList<Long> inputSizes, IList<Long> millis) {
+        IList<Long> out = new DoubleLinkedList<>();
+        Iterator<Long> millisIter = millis.iterator();
+        for (long size : inputSizes) {
+            long elapsed = Math.max(1L, millisIter.next());
+            out.add(Math.round(size / (double) elapsed));
+        }
+        return out;
+    }
+}
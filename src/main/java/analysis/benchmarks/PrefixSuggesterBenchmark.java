@@ -0,0 +1,129 @@
+package analysis.benchmarks;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+import search.analyzers.PrefixSuggester;
+
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Times PrefixSuggester lookups (as /suggest makes them) against a term dictionary of
+ * NUM_WORDS random words, on batches of up to a million prefixes.
+ */
+public class PrefixSuggesterBenchmark {
+    public static final int NUM_TRIALS = 5;
+    public static final long MAX_INPUT_SIZE = 1000000;
+    public static final long STEP = 250000;
+    public static final int NUM_WORDS = 200000;
+    public static final int NUM_SUGGESTIONS = 5;
+
+    private static final Random WORD_RAND = new Random(312);
+    private static final String[] WORDS = makeWords();
+    private static final PrefixSuggester SUGGESTER = makeSuggester();
+
+    // Keeps the JIT from optimizing away the lookups we are timing.
+    private static long suggestionCount = 0;
+
+    public static void main(String[] args) {
+        IList<Long> inputSizes = AnalysisUtils.makeList(STEP, MAX_INPUT_SIZE + 1, STEP);
+
+        System.out.println("Starting test");
+        IList<Long> results = AnalysisUtils.runTrials(
+                inputSizes, PrefixSuggesterBenchmark::testLookups, NUM_TRIALS);
+        IList<Long> nanosPerLookup = toNanosPerLookup(inputSizes, results);
+
+        System.out.println("Lookups, milliseconds, nanoseconds per lookup");
+        Iterator<Long> resultsIter = results.iterator();
+        Iterator<Long> nanosIter = nanosPerLookup.iterator();
+        for (long size : inputSizes) {
+            System.out.println(String.format("%d, %d, %d", size, resultsIter.next(), nanosIter.next()));
+        }
+
+        System.out.println("Saving experiment results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("NumLookups", inputSizes);
+        writer.addColumn("LookupMillis", results);
+        writer.addColumn("NanosPerLookup", nanosPerLookup);
+        writer.writeToFile("experimentdata/prefix-suggester-benchmark.csv");
+
+        System.out.println("All done!");
+    }
+
+    public static long testLookups(long inputSize) {
+        String[] prefixes = makePrefixes(inputSize);
+
+        long start = System.currentTimeMillis();
+        for (String prefix : prefixes) {
+            suggestionCount += SUGGESTER.suggest(prefix, NUM_SUGGESTIONS).size();
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Makes NUM_WORDS distinct lower-case words of 3 to 12 letters.
+     */
+    private static String[] makeWords() {
+        IDictionary<String, Boolean> seen = new ChainedHashDictionary<>();
+        String[] out = new String[NUM_WORDS];
+        int count = 0;
+        while (count < NUM_WORDS) {
+            int length = 3 + WORD_RAND.nextInt(10);
+            StringBuilder word = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                word.append((char) ('a' + WORD_RAND.nextInt(26)));
+            }
+            if (!seen.containsKey(word.toString())) {
+                seen.put(word.toString(), true);
+                out[count] = word.toString();
+                count++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Weights each word like the number of pages it appears in: most words are rare.
+     */
+    private static PrefixSuggester makeSuggester() {
+        IDictionary<String, Long> weights = new ChainedHashDictionary<>();
+        for (String word : WORDS) {
+            weights.put(word, 1L + (long) (Math.pow(WORD_RAND.nextDouble(), 4) * 100000));
+        }
+        return new PrefixSuggester(weights);
+    }
+
+    /**
+     * Makes prefixes like someone typing a word sees: the first 1 to 5 letters of a word
+     * in the dictionary, or, one time in ten, of a word spelled backwards (which mostly
+     * matches nothing past its first few letters).
+     */
+    private static String[] makePrefixes(long size) {
+        Random rand = new Random(size);
+        String[] out = new String[(int) size];
+        for (int i = 0; i < size; i++) {
+            String word = WORDS[rand.nextInt(WORDS.length)];
+            if (rand.nextInt(10) == 0) {
+                word = new StringBuilder(word).reverse().toString();
+            }
+            out[i] = word.substring(0, Math.min(word.length(), 1 + rand.nextInt(5)));
+        }
+        return out;
+    }
+
+    /**
+     * Converts each (number of lookups, milliseconds) pair into nanoseconds per lookup.
+     */
+    private static IList<Long> toNanosPerLookup(IList<Long> inputSizes, IList<Long> millis) {
+        IList<Long> out = new DoubleLinkedList<>();
+        Iterator<Long> millisIter = millis.iterator();
+        for (long size : inputSizes) {
+            out.add(Math.round(millisIter.next() * 1000000.0 / size));
+        }
+        return out;
+    }
+}
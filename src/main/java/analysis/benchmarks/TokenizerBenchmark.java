@@ -0,0 +1,144 @@
+package analysis.benchmarks;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import search.misc.WordTokenizer;
+
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Compares the throughput of the single-pass WordTokenizer against the original
+ * regex-based implementation on synthetic page text of increasing size. The single-pass
+ * tokenizer is timed both through 'extract', which builds a String per word, and through
+ * the 'tokenize' callback, which hands each word over in a reused buffer (as
+ * NearDuplicateDetector uses it).
+ */
+public class TokenizerBenchmark {
+    public static final int NUM_TRIALS = 5;
+    public static final long MAX_INPUT_SIZE = 1000000;
+    public static final long STEP = 250000;
+    public static final int REPETITIONS = 5;
+
+    // Keeps the JIT from optimizing away the callbacks we are timing.
+    private static long checksum = 0;
+
+    private static final String[] VOCABULARY = new String[] {
+        "Seattle", "the", "city's", "population", "(2010)", "grew", "--", "rapidly,", "and", "its",
+        "waterfront", "is", "home", "to", "Pike", "Place", "Market.", "In", "1851,", "settlers",
+        "arrived;", "see", "also:", "History_of_Seattle", "\"Emerald", "City\"", "U.S.", "e-mail", "#1", "!",
+    };
+
+    public static void main(String[] args) {
+        IList<Long> inputSizes = AnalysisUtils.makeList(STEP, MAX_INPUT_SIZE + 1, STEP);
+
+        System.out.println("Starting test");
+        IList<Long> regexResults = AnalysisUtils.runTrials(
+                inputSizes, TokenizerBenchmark::testRegex, NUM_TRIALS);
+        IList<Long> singlePassResults = AnalysisUtils.runTrials(
+                inputSizes, TokenizerBenchmark::testSinglePass, NUM_TRIALS);
+        IList<Long> callbackResults = AnalysisUtils.runTrials(
+                inputSizes, TokenizerBenchmark::testCallback, NUM_TRIALS);
+
+        IList<Long> regexThroughput = toThroughput(inputSizes, regexResults);
+        IList<Long> singlePassThroughput = toThroughput(inputSizes, singlePassResults);
+        IList<Long> callbackThroughput = toThroughput(inputSizes, callbackResults);
+
+        System.out.println("Input size (bytes), regex MB/s, single-pass MB/s, callback MB/s");
+        Iterator<Long> regexIter = regexThroughput.iterator();
+        Iterator<Long> singlePassIter = singlePassThroughput.iterator();
+        Iterator<Long> callbackIter = callbackThroughput.iterator();
+        for (long size : inputSizes) {
+            System.out.println(String.format(
+                    "%d, %d, %d, %d", size, regexIter.next(), singlePassIter.next(), callbackIter.next()));
+        }
+
+        System.out.println("Saving experiment results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("InputSize", inputSizes);
+        writer.addColumn("RegexMillis", regexResults);
+        writer.addColumn("SinglePassMillis", singlePassResults);
+        writer.addColumn("CallbackMillis", callbackResults);
+        writer.addColumn("RegexMBPerSec", regexThroughput);
+        writer.addColumn("SinglePassMBPerSec", singlePassThroughput);
+        writer.addColumn("CallbackMBPerSec", callbackThroughput);
+        writer.writeToFile("experimentdata/tokenizer-benchmark.csv");
+
+        System.out.println("All done!");
+    }
+
+    public static long testRegex(long inputSize) {
+        String input = makeText(inputSize);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < REPETITIONS; i++) {
+            regexExtract(input);
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    public static long testSinglePass(long inputSize) {
+        String input = makeText(inputSize);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < REPETITIONS; i++) {
+            WordTokenizer.extract(input);
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    public static long testCallback(long inputSize) {
+        String input = makeText(inputSize);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < REPETITIONS; i++) {
+            // Looks at every character of every word, as a hash of the word would.
+            WordTokenizer.tokenize(input, (buffer, length) -> {
+                for (int j = 0; j < length; j++) {
+                    checksum = checksum * 31 + buffer[j];
+                }
+            });
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * The tokenizer we used before WordTokenizer became a hand-written scanner.
+     */
+    private static IList<String> regexExtract(String input) {
+        IList<String> out = new DoubleLinkedList<>();
+        for (String word : input.toLowerCase().split("\\s+")) {
+            word = word.replaceAll("\\p{Punct}", "");
+            if (!word.isEmpty()) {
+                out.add(word);
+            }
+        }
+        return out;
+    }
+
+    private static String makeText(long size) {
+        Random rand = new Random(size);
+        StringBuilder out = new StringBuilder((int) size + 32);
+        while (out.length() < size) {
+            out.append(VOCABULARY[rand.nextInt(VOCABULARY.length)]);
+            out.append(rand.nextInt(10) == 0 ? '\n' : ' ');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Converts each (input size, milliseconds) pair into megabytes processed per second.
+     */
+    private static IList<Long> toThroughput(IList<Long> inputSizes, IList<Long> millis) {
+        IList<Long> out = new DoubleLinkedList<>();
+        Iterator<Long> millisIter = millis.iterator();
+        for (long size : inputSizes) {
+            long elapsed = Math.max(1L, millisIter.next());
+            double megabytes = (double) size * REPETITIONS / (1024 * 1024);
+            out.add(Math.round(megabytes / (elapsed / 1000.0)));
+        }
+        return out;
+    }
+}
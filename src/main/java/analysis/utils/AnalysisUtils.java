@@ -1,6 +1,6 @@
 package analysis.utils;
 
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.ArrayBackedList;
 import datastructures.concrete.dictionaries.ArrayDictionary;
 import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.IList;
@@ -19,7 +19,7 @@ public class AnalysisUtils {
      * Constructs a list of longs starting with 'size', going to 'end', in 'step' increments.
      */
     public static IList<Long> makeList(long start, long end, long step) {
-        IList<Long> out = new DoubleLinkedList<>();
+        IList<Long> out = new ArrayBackedList<>();
         for (long i = start; i < end; i += step) {
             out.add(i);
         }
@@ -59,7 +59,7 @@ public class AnalysisUtils {
      * for some code to run), you should try using the 'runTrials' helper method below.
      */
     public static IList<Long> runSingleTrial(IList<Long> inputs, Function<Long, Long> testerFunction) {
-        IList<Long> trial = new DoubleLinkedList<>();
+        IList<Long> trial = new ArrayBackedList<>(inputs.size());
         for (long input : inputs) {
             trial.add(testerFunction.apply(input));
         }
@@ -76,7 +76,7 @@ public class AnalysisUtils {
         System.out.println("    Running preliminary trial to warm up caches (will discard result)");
         runSingleTrial(inputs, testerFunction);
 
-        IList<IList<Long>> trials = new DoubleLinkedList<>();
+        IList<IList<Long>> trials = new ArrayBackedList<>(numTrials);
         for (int i = 0; i < numTrials; i++) {
             System.out.println("    Starting trial " + i);
             trials.add(runSingleTrial(inputs, testerFunction));
@@ -97,7 +97,7 @@ public class AnalysisUtils {
         }
         int numEntries = entries.size();
 
-        IList<Long> result = new DoubleLinkedList<>();
+        IList<Long> result = new ArrayBackedList<>();
         RowIterator<Long> rowIter = new RowIterator<>(entries);
         while (rowIter.hasNext()) {
             IList<Long> trial = rowIter.next();
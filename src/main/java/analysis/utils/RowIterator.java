@@ -1,6 +1,6 @@
 package analysis.utils;
 
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.ArrayBackedList;
 import datastructures.interfaces.IList;
 
 import java.util.Iterator;
@@ -14,7 +14,7 @@ public class RowIterator<T> implements Iterator<IList<T>> {
     public RowIterator(IList<IList<T>> columns) {
         this.columnLength = columns.get(0).size();
         this.counter = 0;
-        this.columnIterators = new DoubleLinkedList<>();
+        this.columnIterators = new ArrayBackedList<>(columns.size());
         for (IList<T> list : columns) {
             if (list.size() != columnLength) {
                 throw new IllegalArgumentException("Not all columns have the same length");
@@ -33,7 +33,7 @@ public class RowIterator<T> implements Iterator<IList<T>> {
         }
         this.counter += 1;
 
-        IList<T> row = new DoubleLinkedList<>();
+        IList<T> row = new ArrayBackedList<>(this.columnIterators.size());
         for (Iterator<T> columnIter : this.columnIterators) {
             row.add(columnIter.next());
         }
@@ -0,0 +1,260 @@
+package datastructures.concrete;
+
+import datastructures.interfaces.IList;
+import misc.exceptions.EmptyContainerException;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An IList backed by a growable array.
+ *
+ * Compared to DoubleLinkedList, this list supports O(1) indexed access and costs a
+ * single array slot per element instead of a 32-byte node, which makes it the better
+ * choice for long, append-only lists (e.g. the words of a webpage).
+ *
+ * Inserting or deleting anywhere except the end is O(n).
+ *
+ * See IList for more details on what each method is supposed to do.
+ */
+public class ArrayBackedList<T> implements IList<T> {
+    private static final int DEFAULT_CAPACITY = 10;
+    private static final Object[] EMPTY = new Object[0];
+
+    private Object[] elements;
+    private int size;
+
+    // Incremented on every structural change so iterators can detect misuse.
+    private int modCount;
+
+    /**
+     * Constructs an empty list.
+     */
+    public ArrayBackedList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty list with room for 'initialCapacity' elements before it
+     * needs to grow.
+     *
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public ArrayBackedList(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative: " + initialCapacity);
+        }
+        this.elements = initialCapacity == 0 ? EMPTY : new Object[initialCapacity];
+        this.size = 0;
+        this.modCount = 0;
+    }
+
+    /**
+     * Adds the given item to the *end* of this IList. Amortized O(1).
+     */
+    @Override
+    public void add(T item) {
+        this.ensureCapacity(this.size + 1);
+        this.elements[this.size] = item;
+        this.size++;
+        this.modCount++;
+    }
+
+    /**
+     * Adds every item in the given iterable to the end of this list, in order.
+     */
+    public void addAll(Iterable<? extends T> items) {
+        if (items instanceof IList) {
+            this.ensureCapacity(this.size + ((IList<? extends T>) items).size());
+        }
+        for (T item : items) {
+            this.add(item);
+        }
+    }
+
+    /**
+     * Removes and returns the item from the *end* of this IList.
+     *
+     * @throws EmptyContainerException if the container is empty and there is no element to remove.
+     */
+    @Override
+    public T remove() {
+        if (this.isEmpty()) {
+            throw new EmptyContainerException("ERROR: There is no element to remove!");
+        }
+        T item = this.elementAt(this.size - 1);
+        this.size--;
+        this.elements[this.size] = null;
+        this.modCount++;
+        return item;
+    }
+
+    /**
+     * Returns the item located at the given index. O(1).
+     *
+     * @throws IndexOutOfBoundsException if the index < 0 or index >= this.size()
+     */
+    @Override
+    public T get(int index) {
+        this.checkIndex(index, this.size);
+        return this.elementAt(index);
+    }
+
+    /**
+     * Overwrites the element located at the given index with the new item. O(1).
+     *
+     * @throws IndexOutOfBoundsException if the index < 0 or index >= this.size()
+     */
+    @Override
+    public void set(int index, T item) {
+        this.checkIndex(index, this.size);
+        this.elements[index] = item;
+    }
+
+    /**
+     * Inserts the given item at the given index, shifting over any subsequent elements.
+     *
+     * @throws IndexOutOfBoundsException if the index < 0 or index >= this.size() + 1
+     */
+    @Override
+    public void insert(int index, T item) {
+        this.checkIndex(index, this.size + 1);
+        this.ensureCapacity(this.size + 1);
+        System.arraycopy(this.elements, index, this.elements, index + 1, this.size - index);
+        this.elements[index] = item;
+        this.size++;
+        this.modCount++;
+    }
+
+    /**
+     * Deletes the item at the given index, shifting down any subsequent elements.
+     *
+     * @throws IndexOutOfBoundsException if the index < 0 or index >= this.size()
+     */
+    @Override
+    public T delete(int index) {
+        this.checkIndex(index, this.size);
+        T item = this.elementAt(index);
+        System.arraycopy(this.elements, index + 1, this.elements, index, this.size - index - 1);
+        this.size--;
+        this.elements[this.size] = null;
+        this.modCount++;
+        return item;
+    }
+
+    /**
+     * Returns the index corresponding to the first occurrence of the given item
+     * in the list, or -1 if it does not exist.
+     */
+    @Override
+    public int indexOf(T item) {
+        for (int i = 0; i < this.size; i++) {
+            Object current = this.elements[i];
+            if (item == null ? current == null : item.equals(current)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of elements in the container.
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns 'true' if this container contains the given element, and 'false' otherwise.
+     */
+    @Override
+    public boolean contains(T other) {
+        return this.indexOf(other) != -1;
+    }
+
+    /**
+     * Makes sure the list can hold at least 'minCapacity' elements without growing again.
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > this.elements.length) {
+            // Grow by 1.5x so a long run of appends costs amortized O(1) each.
+            int newCapacity = Math.max(minCapacity, this.elements.length + (this.elements.length >> 1));
+            newCapacity = Math.max(newCapacity, DEFAULT_CAPACITY);
+            Object[] newElements = new Object[newCapacity];
+            System.arraycopy(this.elements, 0, newElements, 0, this.size);
+            this.elements = newElements;
+        }
+    }
+
+    /**
+     * Shrinks the backing array to exactly fit the current elements. Useful once a
+     * list is done being built and will be kept around for a long time.
+     */
+    public void trimToSize() {
+        if (this.elements.length != this.size) {
+            Object[] newElements = this.size == 0 ? EMPTY : new Object[this.size];
+            System.arraycopy(this.elements, 0, newElements, 0, this.size);
+            this.elements = newElements;
+        }
+    }
+
+    /**
+     * Returns an iterator over the contents of this list.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new ArrayBackedListIterator();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T elementAt(int index) {
+        return (T) this.elements[index];
+    }
+
+    private void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("ERROR: Invalid Index!");
+        }
+    }
+
+    private class ArrayBackedListIterator implements Iterator<T> {
+        private int index;
+        private final int expectedModCount;
+
+        public ArrayBackedListIterator() {
+            this.index = 0;
+            this.expectedModCount = modCount;
+        }
+
+        /**
+         * Returns 'true' if the iterator still has elements to look at;
+         * returns 'false' otherwise.
+         */
+        @Override
+        public boolean hasNext() {
+            return this.index < size;
+        }
+
+        /**
+         * Returns the next item in the iteration and internally updates the
+         * iterator to advance one element forward.
+         *
+         * @throws NoSuchElementException if we have reached the end of the iteration and
+         *                                there are no more elements to look at.
+         */
+        @Override
+        public T next() {
+            if (modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!this.hasNext()) {
+                throw new NoSuchElementException("ERROR: There is no such element!");
+            }
+            T item = elementAt(this.index);
+            this.index++;
+            return item;
+        }
+    }
+}
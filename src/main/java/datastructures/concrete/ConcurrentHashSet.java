@@ -0,0 +1,101 @@
+package datastructures.concrete;
+
+import datastructures.concrete.dictionaries.ConcurrentHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.ISet;
+import misc.exceptions.NoSuchKeyException;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set that can safely be shared between threads, backed by a ConcurrentHashDictionary.
+ *
+ * Membership checks never lock, and iterators are weakly consistent (see
+ * ConcurrentHashDictionary for details).
+ *
+ * See ISet for more details on what each method is supposed to do.
+ */
+public class ConcurrentHashSet<T> implements ISet<T> {
+    private IDictionary<T, Boolean> map;
+
+    public ConcurrentHashSet() {
+        this.map = new ConcurrentHashDictionary<>();
+    }
+
+    /**
+     * @param concurrencyLevel  roughly how many threads will add to this set at once
+     */
+    public ConcurrentHashSet(int concurrencyLevel) {
+        this.map = new ConcurrentHashDictionary<>(concurrencyLevel);
+    }
+
+    /**
+     * Adds the given item to the set.
+     * <p>
+     * If the item already exists in the set, this method does nothing.
+     */
+    @Override
+    public void add(T item) {
+        this.addIfAbsent(item);
+    }
+
+    /**
+     * Atomically adds the given item to the set. Returns 'true' if this call added it,
+     * and 'false' if it was already present.
+     *
+     * If several threads add the same item at once, exactly one of them sees 'true'.
+     */
+    public boolean addIfAbsent(T item) {
+        return this.map.putIfAbsent(item, Boolean.TRUE) == null;
+    }
+
+    /**
+     * Removes the given item from the set.
+     *
+     * @throws NoSuchElementException if the set does not contain the given item
+     */
+    @Override
+    public void remove(T item) {
+        try {
+            this.map.remove(item);
+        } catch (NoSuchKeyException ex) {
+            throw new NoSuchElementException("ERROR: the item is not found. Can not remove.");
+        }
+    }
+
+    /**
+     * Returns 'true' if the set contains this item and false otherwise.
+     */
+    @Override
+    public boolean contains(T item) {
+        return this.map.containsKey(item);
+    }
+
+    /**
+     * Returns the number of items contained within this set.
+     */
+    @Override
+    public int size() {
+        return this.map.size();
+    }
+
+    /**
+     * Returns all items contained within this set.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        Iterator<KVPair<T, Boolean>> iter = this.map.iterator();
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return iter.next().getKey();
+            }
+        };
+    }
+}
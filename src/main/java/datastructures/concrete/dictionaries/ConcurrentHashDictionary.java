@@ -0,0 +1,436 @@
+package datastructures.concrete.dictionaries;
+
+import datastructures.concrete.KVPair;
+import datastructures.interfaces.IDictionary;
+import misc.exceptions.NoSuchKeyException;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A hash dictionary that can safely be shared between threads.
+ *
+ * The keys are split across a fixed number of independently locked segments
+ * ("lock striping"), each of which is its own chained hash table:
+ *
+ * - Reads (get, containsKey, getOrDefault, iteration) never lock. Each bucket's chain
+ *   is published through a volatile array slot, and the nodes in a chain are never
+ *   modified once published (except for their volatile value), so a reader always
+ *   sees a consistent chain.
+ * - Writes lock only the segment owning the key, so writers to different segments
+ *   proceed in parallel.
+ * - Each segment resizes on its own, under its own lock, by building a new table and
+ *   then publishing it. Readers still walking the old table see a valid (if slightly
+ *   stale) snapshot, and writers to other segments are never blocked by a resize.
+ *
+ * The compound operations 'putIfAbsent', 'computeIfAbsent' and 'merge' are atomic.
+ *
+ * Iterators are weakly consistent: they never throw ConcurrentModificationException,
+ * and reflect some (but not necessarily all) modifications made after they were created.
+ * Likewise, 'size' is only exact when no other thread is modifying the dictionary.
+ *
+ * Like our other dictionaries, this class permits null keys and values.
+ */
+public class ConcurrentHashDictionary<K, V> implements IDictionary<K, V> {
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    private static final int DEFAULT_SEGMENT_CAPACITY = 16;
+    private static final int MAX_SEGMENTS = 1 << 16;
+    private static final double LOAD_FACTOR = 0.75;
+
+    private final Segment<K, V>[] segments;
+    private final int segmentShift;
+
+    /**
+     * Constructs an empty dictionary tuned for roughly 16 concurrent writers.
+     */
+    public ConcurrentHashDictionary() {
+        this(DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Constructs an empty dictionary split into (at least) 'concurrencyLevel' segments.
+     * Roughly this many threads can write to the dictionary without contending.
+     */
+    public ConcurrentHashDictionary(int concurrencyLevel) {
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must be positive: " + concurrencyLevel);
+        }
+        int numSegments = 1;
+        int bits = 0;
+        while (numSegments < Math.min(concurrencyLevel, MAX_SEGMENTS)) {
+            numSegments <<= 1;
+            bits++;
+        }
+        this.segmentShift = 32 - bits;
+        this.segments = makeArrayOfSegments(numSegments);
+        for (int i = 0; i < numSegments; i++) {
+            this.segments[i] = new Segment<>(DEFAULT_SEGMENT_CAPACITY);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Segment<K, V>[] makeArrayOfSegments(int size) {
+        // See ArrayDictionary's makeArrayOfPairs(...) method for why we need this.
+        return (Segment<K, V>[]) new Segment[size];
+    }
+
+    /**
+     * Returns the value corresponding to the given key.
+     *
+     * @throws NoSuchKeyException if the dictionary does not contain the given key.
+     */
+    @Override
+    public V get(K key) {
+        int hash = hash(key);
+        Node<K, V> node = this.segmentFor(hash).find(key, hash);
+        if (node == null) {
+            throw new NoSuchKeyException("Key cannot be found: " + key);
+        }
+        return node.value;
+    }
+
+    @Override
+    public V getOrDefault(K key, V defaultValue) {
+        int hash = hash(key);
+        Node<K, V> node = this.segmentFor(hash).find(key, hash);
+        return node == null ? defaultValue : node.value;
+    }
+
+    /**
+     * Adds the key-value pair to the dictionary. If the key already exists in the dictionary,
+     * replace its value with the given one.
+     */
+    @Override
+    public void put(K key, V value) {
+        int hash = hash(key);
+        this.segmentFor(hash).put(key, hash, value, false);
+    }
+
+    /**
+     * Atomically associates the key with the given value, but only if the key is not
+     * already present. Returns the value that was already present (or null if there
+     * was none, in which case the new value was stored).
+     */
+    @Override
+    public V putIfAbsent(K key, V value) {
+        int hash = hash(key);
+        return this.segmentFor(hash).put(key, hash, value, true);
+    }
+
+    /**
+     * Remove the key-value pair corresponding to the given key from the dictionary.
+     *
+     * @throws NoSuchKeyException if the dictionary does not contain the given key.
+     */
+    @Override
+    public V remove(K key) {
+        int hash = hash(key);
+        return this.segmentFor(hash).remove(key, hash);
+    }
+
+    /**
+     * Returns 'true' if the dictionary contains the given key and 'false' otherwise.
+     */
+    @Override
+    public boolean containsKey(K key) {
+        int hash = hash(key);
+        return this.segmentFor(hash).find(key, hash) != null;
+    }
+
+    /**
+     * Atomically returns the value for the given key, computing and storing it first
+     * if the key is absent. The mapping function runs at most once per absent key,
+     * while holding that key's segment lock, so it should be short and must not
+     * modify this dictionary. If it returns null, nothing is stored.
+     */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mapping) {
+        int hash = hash(key);
+        Segment<K, V> segment = this.segmentFor(hash);
+        Node<K, V> node = segment.find(key, hash);
+        if (node != null) {
+            return node.value;
+        }
+        return segment.computeIfAbsent(key, hash, mapping);
+    }
+
+    /**
+     * Atomically stores 'value' if the key is absent, or otherwise replaces the current
+     * value with 'remapping(currentValue, value)'. If the remapping function returns
+     * null, the key is removed. Returns the new value (or null if it was removed).
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        int hash = hash(key);
+        return this.segmentFor(hash).merge(key, hash, value, remapping);
+    }
+
+    /**
+     * Returns the number of key-value pairs stored in this dictionary.
+     */
+    @Override
+    public int size() {
+        long total = 0;
+        for (Segment<K, V> segment : this.segments) {
+            total += segment.count;
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Iterator<KVPair<K, V>> iterator() {
+        return new ConcurrentIterator<>(this.segments);
+    }
+
+    /**
+     * Spreads the key's hash code so that both the high bits (used to pick a segment)
+     * and the low bits (used to pick a bucket) depend on the whole hash code.
+     */
+    private static int hash(Object key) {
+        int hash = key == null ? 0 : key.hashCode();
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private Segment<K, V> segmentFor(int hash) {
+        return this.segments.length == 1 ? this.segments[0] : this.segments[hash >>> this.segmentShift];
+    }
+
+    private static boolean keysEqual(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static class Node<K, V> {
+        public final int hash;
+        public final K key;
+        public final Node<K, V> next;
+        public volatile V value;
+
+        public Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    /**
+     * A single chained hash table guarded by its own lock.
+     *
+     * Invariants:
+     * - 'table' and every bucket in it are only ever replaced while holding the lock.
+     * - A node's 'next' pointer never changes after the node is published, so removing
+     *   a node copies every node in front of it in the chain instead.
+     */
+    private static class Segment<K, V> extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        public volatile AtomicReferenceArray<Node<K, V>> table;
+        public volatile int count;
+        private int threshold;
+
+        public Segment(int capacity) {
+            this.table = new AtomicReferenceArray<>(capacity);
+            this.threshold = (int) (capacity * LOAD_FACTOR);
+            this.count = 0;
+        }
+
+        /**
+         * Returns the node holding the given key, or null. Does not lock.
+         */
+        public Node<K, V> find(K key, int hash) {
+            AtomicReferenceArray<Node<K, V>> tab = this.table;
+            Node<K, V> node = tab.get(hash & (tab.length() - 1));
+            while (node != null) {
+                if (node.hash == hash && keysEqual(node.key, key)) {
+                    return node;
+                }
+                node = node.next;
+            }
+            return null;
+        }
+
+        public V put(K key, int hash, V value, boolean onlyIfAbsent) {
+            this.lock();
+            try {
+                Node<K, V> existing = this.find(key, hash);
+                if (existing != null) {
+                    V old = existing.value;
+                    if (!onlyIfAbsent) {
+                        existing.value = value;
+                    }
+                    return old;
+                }
+                this.insert(key, hash, value);
+                return null;
+            } finally {
+                this.unlock();
+            }
+        }
+
+        public V computeIfAbsent(K key, int hash, Function<? super K, ? extends V> mapping) {
+            this.lock();
+            try {
+                Node<K, V> existing = this.find(key, hash);
+                if (existing != null) {
+                    return existing.value;
+                }
+                V value = mapping.apply(key);
+                if (value != null) {
+                    this.insert(key, hash, value);
+                }
+                return value;
+            } finally {
+                this.unlock();
+            }
+        }
+
+        public V merge(K key, int hash, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+            this.lock();
+            try {
+                Node<K, V> existing = this.find(key, hash);
+                if (existing == null) {
+                    this.insert(key, hash, value);
+                    return value;
+                }
+                V newValue = remapping.apply(existing.value, value);
+                if (newValue == null) {
+                    this.unlink(existing);
+                } else {
+                    existing.value = newValue;
+                }
+                return newValue;
+            } finally {
+                this.unlock();
+            }
+        }
+
+        public V remove(K key, int hash) {
+            this.lock();
+            try {
+                Node<K, V> existing = this.find(key, hash);
+                if (existing == null) {
+                    throw new NoSuchKeyException("Key cannot be found: " + key);
+                }
+                this.unlink(existing);
+                return existing.value;
+            } finally {
+                this.unlock();
+            }
+        }
+
+        /**
+         * Precondition: must hold the lock, and the key must not already be present.
+         */
+        private void insert(K key, int hash, V value) {
+            if (this.count + 1 > this.threshold) {
+                this.resize();
+            }
+            AtomicReferenceArray<Node<K, V>> tab = this.table;
+            int index = hash & (tab.length() - 1);
+            tab.set(index, new Node<>(hash, key, value, tab.get(index)));
+            this.count = this.count + 1;
+        }
+
+        /**
+         * Precondition: must hold the lock, and 'target' must be in this segment.
+         */
+        private void unlink(Node<K, V> target) {
+            AtomicReferenceArray<Node<K, V>> tab = this.table;
+            int index = target.hash & (tab.length() - 1);
+
+            // Copy every node in front of the target onto the target's successor.
+            Node<K, V> newFirst = target.next;
+            for (Node<K, V> node = tab.get(index); node != target; node = node.next) {
+                newFirst = new Node<>(node.hash, node.key, node.value, newFirst);
+            }
+            tab.set(index, newFirst);
+            this.count = this.count - 1;
+        }
+
+        /**
+         * Doubles the size of this segment's table. The old table is left untouched so
+         * concurrent readers can keep using it until they pick up the new one.
+         *
+         * Precondition: must hold the lock.
+         */
+        private void resize() {
+            AtomicReferenceArray<Node<K, V>> oldTable = this.table;
+            int newCapacity = oldTable.length() * 2;
+            AtomicReferenceArray<Node<K, V>> newTable = new AtomicReferenceArray<>(newCapacity);
+            for (int i = 0; i < oldTable.length(); i++) {
+                for (Node<K, V> node = oldTable.get(i); node != null; node = node.next) {
+                    int index = node.hash & (newCapacity - 1);
+                    newTable.set(index, new Node<>(node.hash, node.key, node.value, newTable.get(index)));
+                }
+            }
+            this.threshold = (int) (newCapacity * LOAD_FACTOR);
+            this.table = newTable;
+        }
+    }
+
+    /**
+     * Walks every segment's current table in turn. Because tables and chains are never
+     * modified in place, this needs neither locks nor copies.
+     */
+    private static class ConcurrentIterator<K, V> implements Iterator<KVPair<K, V>> {
+        private final Segment<K, V>[] segments;
+        private int segmentIndex;
+        private AtomicReferenceArray<Node<K, V>> table;
+        private int bucketIndex;
+        private Node<K, V> next;
+
+        public ConcurrentIterator(Segment<K, V>[] segments) {
+            this.segments = segments;
+            this.segmentIndex = -1;
+            this.table = null;
+            this.bucketIndex = 0;
+            this.next = null;
+            this.advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public KVPair<K, V> next() {
+            if (this.next == null) {
+                throw new NoSuchElementException("There are no more pairs in this dictionary");
+            }
+            Node<K, V> current = this.next;
+            this.next = current.next;
+            if (this.next == null) {
+                this.advance();
+            }
+            return new KVPair<>(current.key, current.value);
+        }
+
+        /**
+         * Moves 'next' to the first node of the next non-empty bucket.
+         */
+        private void advance() {
+            while (true) {
+                while (this.table != null && this.bucketIndex < this.table.length()) {
+                    this.next = this.table.get(this.bucketIndex);
+                    this.bucketIndex++;
+                    if (this.next != null) {
+                        return;
+                    }
+                }
+                this.segmentIndex++;
+                if (this.segmentIndex >= this.segments.length) {
+                    this.next = null;
+                    return;
+                }
+                this.table = this.segments[this.segmentIndex].table;
+                this.bucketIndex = 0;
+            }
+        }
+    }
+}
@@ -4,6 +4,8 @@ import datastructures.concrete.KVPair;
 import misc.exceptions.NoSuchKeyException;
 
 import java.util.Iterator;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * Represents a data structure that contains a bunch of key-value mappings. Each key must be unique.
@@ -39,6 +41,65 @@ public interface IDictionary<K, V> extends Iterable<KVPair<K, V>> {
      */
     public void put(K key, V value);
 
+    /**
+     * Adds the key-value pair to the dictionary, but only if the key is not already present.
+     *
+     * Returns the value previously associated with the key, or null if there was none.
+     *
+     * Note: The default implementation is not atomic. Thread-safe dictionaries
+     *       (e.g. ConcurrentHashDictionary) override it with an atomic version.
+     */
+    public default V putIfAbsent(K key, V value) {
+        if (this.containsKey(key)) {
+            return this.get(key);
+        }
+        this.put(key, value);
+        return null;
+    }
+
+    /**
+     * Returns the value corresponding to the given key. If the key is absent, first
+     * computes its value using the given function and adds it to the dictionary
+     * (unless the function returns null).
+     *
+     * Note: The default implementation is not atomic. Thread-safe dictionaries
+     *       (e.g. ConcurrentHashDictionary) override it with an atomic version.
+     */
+    public default V computeIfAbsent(K key, Function<? super K, ? extends V> mapping) {
+        if (this.containsKey(key)) {
+            return this.get(key);
+        }
+        V value = mapping.apply(key);
+        if (value != null) {
+            this.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * If the key is absent, adds the given value. Otherwise, replaces the current value
+     * with the result of 'remapping(currentValue, value)', or removes the key if that
+     * result is null.
+     *
+     * Returns the new value associated with the key, or null if it was removed.
+     *
+     * Note: The default implementation is not atomic. Thread-safe dictionaries
+     *       (e.g. ConcurrentHashDictionary) override it with an atomic version.
+     */
+    public default V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remapping) {
+        if (!this.containsKey(key)) {
+            this.put(key, value);
+            return value;
+        }
+        V newValue = remapping.apply(this.get(key), value);
+        if (newValue == null) {
+            this.remove(key);
+        } else {
+            this.put(key, newValue);
+        }
+        return newValue;
+    }
+
     /**
      * Remove the key-value pair corresponding to the given key from the dictionary.
      *
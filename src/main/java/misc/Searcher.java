@@ -1,7 +1,7 @@
 package misc;
 
 import datastructures.concrete.ArrayHeap;
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.ArrayBackedList;
 import datastructures.interfaces.IList;
 import datastructures.interfaces.IPriorityQueue;
 
@@ -44,7 +44,7 @@ public class Searcher {
             k = input.size();
         }
         if (k == 0) {
-            return new DoubleLinkedList<>();
+            return new ArrayBackedList<>(0);
         }
         IPriorityQueue<T> heap = new ArrayHeap<>();
         int counter = 0;
@@ -59,9 +59,9 @@ public class Searcher {
                 }
             }
         }
-        IList<T> result = new DoubleLinkedList<>();
+        IList<T> result = new ArrayBackedList<>(k);
         for (int i = 0; i < k; i++) {
-            result.insert(i, heap.removeMin());
+            result.add(heap.removeMin());
         }
         return result;
     }
@@ -0,0 +1,124 @@
+package search;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.ChainedHashSet;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import search.misc.PageStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Packs a data folder saved the old way, one ".html" file per page, into a PageStore in
+ * the same folder.
+ *
+ * Usage: ConvertPages <name of a folder in 'data'> [--delete-originals]
+ *
+ * Pages already in the store are skipped, so it is safe to run this again after it was
+ * interrupted. The original files are only deleted (along with their ".cache" files) if
+ * asked, and only once every page has been safely written to the store. Files without a
+ * metadata header never make it into the store, so they are always kept.
+ */
+public class ConvertPages {
+    private static final String DELETE_FLAG = "--delete-originals";
+
+    // The metadata header is a handful of short lines, so it always fits in this many bytes.
+    private static final int HEADER_BYTES = 8192;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2 || (args.length == 2 && !args[1].equals(DELETE_FLAG))) {
+            System.out.println("Usage: ConvertPages <name of a folder in 'data'> [" + DELETE_FLAG + "]");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long converted = convert(Paths.get("data", args[0]), args.length == 2);
+        long end = System.currentTimeMillis() - start;
+        System.out.println("Converted " + converted + " pages (" + (end / 1000.0) + " sec)");
+    }
+
+    /**
+     * Appends every ".html" or ".htm" page under the given folder to the folder's page
+     * store, and returns how many pages were added.
+     */
+    public static long convert(Path root, boolean deleteOriginals) throws IOException {
+        ISet<URI> alreadyStored = new ChainedHashSet<>();
+        if (PageStore.exists(root)) {
+            PageStore.forEachUri(root, alreadyStored::add);
+        }
+
+        Iterable<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(path -> path.toString().endsWith(".htm") || path.toString().endsWith(".html"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        // The files whose pages are in the store, and so are safe to delete.
+        IList<Path> stored = new ArrayBackedList<>();
+        long converted = 0;
+        try (PageStore store = new PageStore(root)) {
+            for (Path file : files) {
+                byte[] contents = Files.readAllBytes(file);
+                URI uri = readUri(contents);
+                if (uri == null) {
+                    System.out.println("Skipping " + file + "; no metadata header");
+                    continue;
+                }
+                if (!alreadyStored.contains(uri)) {
+                    store.append(uri, contents);
+                    alreadyStored.add(uri);
+                    converted++;
+                }
+                stored.add(file);
+            }
+        }
+
+        if (deleteOriginals) {
+            for (Path file : stored) {
+                String name = file.getFileName().toString();
+                Files.deleteIfExists(file.resolveSibling(name.substring(0, name.lastIndexOf('.')) + ".cache"));
+                Files.delete(file);
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Returns the URI from the metadata header of the given file, or null if it does not
+     * have one. Only the start of the file is read.
+     */
+    static URI readUri(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return readUri(in.readNBytes(HEADER_BYTES));
+        }
+    }
+
+    /**
+     * Returns the URI from the page's metadata header, or null if it does not have one.
+     */
+    private static URI readUri(byte[] contents) {
+        // Only ever decodes the start of the page, where the header is.
+        String start = new String(contents, 0, Math.min(contents.length, HEADER_BYTES), StandardCharsets.UTF_8);
+        String[] lines = start.split("\r\n|\r|\n");
+        if (!lines[0].equals("<!-- METADATA")) {
+            return null;
+        }
+        for (String line : lines) {
+            if (line.equals("-->")) {
+                return null;
+            } else if (line.startsWith("uri: ")) {
+                return URI.create(line.substring("uri: ".length()));
+            }
+        }
+        return null;
+    }
+}
@@ -1,5 +1,9 @@
 package search;
 
+import search.metrics.SlowQueryLog;
+
+import java.nio.file.Paths;
+
 public class Main {
     // The dataset to index and search.
     // MUST be the name of one of the folders in the 'data' folder.
@@ -13,12 +17,36 @@ public class Main {
     // and know what ports are, feel free to change this if it's convenient.
     public static final int PORT = 8080;
 
+    // Set this to true while editing the templates in 'src/main/resources/webapp/templates'
+    // to see your changes without restarting. This recompiles them on every request, so
+    // leave it off otherwise.
+    public static final boolean RELOAD_TEMPLATES = false;
+
+    // Searches taking at least this many milliseconds are logged, along with where their
+    // time went, to SLOW_QUERY_LOG (which is rolled over as it grows; see SlowQueryLog).
+    // Set SLOW_QUERY_MILLIS to -1 to turn the log off.
+    public static final long SLOW_QUERY_MILLIS = 100;
+    public static final String SLOW_QUERY_LOG = "logs/slow-queries.log";
+
+    // To see where the time goes in more detail (alongside GC, locks, and so on), run with
+    // '-XX:StartFlightRecording=filename=search.jfr' and open the recording in JDK Mission
+    // Control: our own events (queries, indexing, page rank, and loading pages) are under
+    // "Search Engine".
+
     public static void main(String[] args) {
         System.out.println("Indexing web pages...");
         SearchEngine engine = new SearchEngine(DATA_FOLDER_NAME);
 
         System.out.println("Setting up web server...");
-        Webapp app = new Webapp(engine, SITE_TITLE, PORT);
+        SlowQueryLog slowQueries = SLOW_QUERY_MILLIS < 0
+                ? null
+                : new SlowQueryLog(Paths.get(SLOW_QUERY_LOG), SLOW_QUERY_MILLIS);
+        if (slowQueries != null) {
+            // The server only stops when the JVM does, so write out what the log still has
+            // queued on the way down.
+            Runtime.getRuntime().addShutdownHook(new Thread(slowQueries::close, "slow-query-log-close"));
+        }
+        Webapp app = new Webapp(engine, SITE_TITLE, PORT, RELOAD_TEMPLATES, slowQueries);
         System.out.println(String.format(
                 "Ready! Opening 'http://localhost:%d' in your web browser now.",
                 PORT));
@@ -1,5 +1,6 @@
 package search;
 
+import search.scraper.HttpRequester;
 import search.scraper.Scraper;
 
 import java.io.IOException;
@@ -17,12 +18,19 @@ public class Scrape {
                 "https://en.wikipedia.org/wiki/Seattle_Daily_Journal_of_Commerce",
         };
 
-        Scraper scraper = new Scraper(Paths.get("data/wikipedia-with-spam"));
-        scraper.addDomainToWhitelist("en.wikipedia.org");
-        for (String seed : seeds) {
-            scraper.addSeedUri(URI.create(seed));
-        }
+        try (HttpRequester requester = new HttpRequester()) {
+            Scraper scraper = new Scraper(Paths.get("data/wikipedia-with-spam"), requester);
+            scraper.addDomainToWhitelist("en.wikipedia.org");
+            for (String seed : seeds) {
+                scraper.addSeedUri(URI.create(seed));
+            }
 
-        scraper.run(60 * 5);
+            // With "--recrawl", check pages we already have for changes instead of fetching new ones.
+            if (args.length > 0 && args[0].equals("--recrawl")) {
+                scraper.recrawl(60 * 5);
+            } else {
+                scraper.run(60 * 5);
+            }
+        }
     }
 }
@@ -1,15 +1,32 @@
 package search;
 
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.ArrayHeap;
 import datastructures.concrete.ChainedHashSet;
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.IList;
+import datastructures.interfaces.IPriorityQueue;
 import datastructures.interfaces.ISet;
 import misc.Searcher;
 import search.analyzers.PageRankAnalyzer;
+import search.analyzers.PrefixSuggester;
 import search.analyzers.TfIdfAnalyzer;
-import search.misc.Bridge;
+import search.metrics.Metrics;
+import search.metrics.PageLoadedEvent;
+import search.metrics.QueryExecutedEvent;
+import search.metrics.QueryTrace;
+import search.misc.Deadline;
+import search.misc.NearDuplicateDetector;
+import search.misc.PageStore;
+import search.misc.WebUtils;
+import search.misc.WordTokenizer;
 import search.misc.exceptions.DataExtractionException;
 import search.models.Result;
+import search.models.ResultPage;
+import search.models.SearchCursor;
+import search.models.ScoringMode;
 import search.models.Webpage;
 import search.models.WebpageSummary;
 
@@ -18,38 +35,65 @@ import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.stream.Stream;
 
 public class SearchEngine {
     public static final double PAGE_RANK_DECAY = 0.85;
     public static final double PAGE_RANK_EPSILON = 0.0001;
     public static final int PAGE_RANK_ITERATION_LIMIT = 200;
 
-    private ISet<WebpageSummary> pages;
+    // The most results we return at once, and the deepest we page by offset: past that,
+    // clients must page with a SearchCursor, which costs the same however deep it goes.
+    public static final int MAX_RESULTS_PER_PAGE = 100;
+    public static final int MAX_OFFSET = 1000;
+
+    // How many candidates we score between checks of a query's deadline.
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    private IDictionary<URI, WebpageSummary> pages;
     private TfIdfAnalyzer tfIdfAnalyzer;
     private PageRankAnalyzer pageRankAnalyzer;
+    private PrefixSuggester termSuggester;
 
     public SearchEngine(String dataFolderName) {
-        long start = System.currentTimeMillis();
-        ISet<Webpage> webpages = this.collectWebpages(Paths.get("data", dataFolderName));
-        long end = System.currentTimeMillis() - start;
-        System.out.println("Done loading pages (" + (end / 1000.0) + " sec)");
+        this(loadWebpages(dataFolderName));
+    }
+
+    /**
+     * Indexes the given pages, which must include every page they link to.
+     */
+    public SearchEngine(ISet<Webpage> allWebpages) {
+        ISet<Webpage> webpages = this.removeNearDuplicates(allWebpages);
 
         this.pages = this.extractWebpageSummaries(webpages);
         System.out.println("Done extracting");
 
-        start = System.currentTimeMillis();
+        long start = System.currentTimeMillis();
         this.tfIdfAnalyzer = new TfIdfAnalyzer(webpages);
         this.pageRankAnalyzer = new PageRankAnalyzer(
                 webpages,
                 PAGE_RANK_DECAY,
                 PAGE_RANK_EPSILON,
                 PAGE_RANK_ITERATION_LIMIT);
-        end = System.currentTimeMillis() - start;
+        this.termSuggester = new PrefixSuggester(this.tfIdfAnalyzer.getDocumentFrequencies());
+        long end = System.currentTimeMillis() - start;
         System.out.println("Done indexing (" + (end / 1000.0) + " sec)");
     }
 
     public double computeScore(IList<String> query, URI uri) {
-        double tfIdf = this.tfIdfAnalyzer.computeRelevance(query, uri);
+        return this.combineScores(this.tfIdfAnalyzer.computeRelevance(query, uri), this.getPageRank(uri));
+    }
+
+    private static ISet<Webpage> loadWebpages(String dataFolderName) {
+        long start = System.currentTimeMillis();
+        ISet<Webpage> webpages = collectWebpages(Paths.get("data", dataFolderName));
+        Metrics.PAGES_LOADED.add(webpages.size());
+        long end = System.currentTimeMillis() - start;
+        System.out.println("Done loading pages (" + (end / 1000.0) + " sec)");
+        return webpages;
+    }
+
+    private double getPageRank(URI uri) {
         double pageRank = this.pageRankAnalyzer.computePageRank(uri);
 
         if (pageRank <= 0.0) {
@@ -57,7 +101,10 @@ public class SearchEngine {
                     "Page '%s' had a page rank of '%f'; all page ranks should be positive and non-zero.",
                     uri, pageRank));
         }
+        return pageRank;
+    }
 
+    private double combineScores(double tfIdf, double pageRank) {
         // We are combining these two scores in a fairly arbitrary way.
         // The correct thing to do is to apply machine learning and develop
         // a classifier that combines these two scores.
@@ -83,40 +130,381 @@ public class SearchEngine {
     }
 
     public IList<Result> getTopKResults(IList<String> query, int k) {
-        IList<Result> results = new DoubleLinkedList<>();
+        return this.getResults(query, 0, k, ScoringMode.COMBINED);
+    }
 
-        for (WebpageSummary summary: this.pages) {
-            double score = this.computeScore(query, summary.getUri());
-            results.add(new Result(summary, score));
+    /**
+     * Returns up to 'k' (and at most PrefixSuggester.MAX_SUGGESTIONS) ways to finish the
+     * given partly-typed query, best first: its last word is completed to the words in
+     * the most pages, and the words before it are kept (tokenized). If the query ends
+     * with a space, there is no word to complete, so nothing is suggested.
+     */
+    public IList<String> suggest(String partialQuery, int k) {
+        int split = partialQuery.length();
+        while (split > 0 && !WordTokenizer.isWhitespace(partialQuery.charAt(split - 1))) {
+            split--;
+        }
+        IList<String> lastWord = WordTokenizer.extract(partialQuery.substring(split));
+        if (lastWord.isEmpty()) {
+            return new ArrayBackedList<>(0);
         }
 
-        IList<Result> topK = Searcher.topKSort(k, results);
+        StringBuilder head = new StringBuilder();
+        for (String word : WordTokenizer.extract(partialQuery.substring(0, split))) {
+            head.append(word).append(' ');
+        }
+        IList<String> out = this.termSuggester.suggest(lastWord.get(0), k);
+        for (int i = 0; i < out.size(); i++) {
+            out.set(i, head + out.get(i));
+        }
+        return out;
+    }
+
+    /**
+     * Returns the results ranked 'offset' to 'offset + k - 1' (counting from zero) for the
+     * given query under the given scoring mode, best first. Each result also carries the
+     * TF-IDF and page rank scores its score was made from.
+     *
+     * At most MAX_RESULTS_PER_PAGE results are returned, however large 'k' is.
+     *
+     * @throws IllegalArgumentException  if 'offset' or 'k' is negative, or 'offset' is more
+     *                                   than MAX_OFFSET
+     */
+    public IList<Result> getResults(IList<String> query, int offset, int k, ScoringMode mode) {
+        return this.getResults(query, offset, k, mode, Deadline.NONE).getResults();
+    }
+
+    /**
+     * Like 'getResults(query, offset, k, mode)', but stops scoring once the given deadline
+     * passes, and returns the best results found by then (marked as partial).
+     */
+    public ResultPage getResults(IList<String> query, int offset, int k, ScoringMode mode, Deadline deadline) {
+        return this.getResults(query, offset, k, mode, deadline, new QueryTrace());
+    }
 
-        IList<Result> reversed = new DoubleLinkedList<>();
-        for (Result res : topK) {
-            reversed.insert(0, res);
+    /**
+     * Like 'getResults(query, offset, k, mode, deadline)', but also records how long each
+     * phase took, and how much work it did, in the given trace.
+     */
+    public ResultPage getResults(IList<String> query, int offset, int k, ScoringMode mode, Deadline deadline,
+                                 QueryTrace trace) {
+        if (offset < 0 || k < 0) {
+            throw new IllegalArgumentException("The offset and k must not be negative");
+        }
+        if (offset > MAX_OFFSET) {
+            throw new IllegalArgumentException("The offset must be at most " + MAX_OFFSET + "; page with a cursor");
         }
+        int count = Math.min(k, MAX_RESULTS_PER_PAGE);
+        IList<Result> topK = this.rank(query, null, offset + count, mode, deadline, trace);
+
+        IList<Result> out = new ArrayBackedList<>(count);
+        for (int i = offset; i < topK.size(); i++) {
+            out.add(topK.get(i));
+        }
+        return new ResultPage(out, deadline.wasHit());
+    }
 
-        return reversed;
+    /**
+     * Returns the (up to) 'k' results ranked just below the given cursor, best first; or
+     * the first 'k' results if the cursor is null. Pass 'SearchCursor.after' the last
+     * result of one page to get the next one.
+     *
+     * At most MAX_RESULTS_PER_PAGE results are returned, however large 'k' is.
+     */
+    public IList<Result> getResultsAfter(IList<String> query, SearchCursor after, int k, ScoringMode mode) {
+        return this.getResultsAfter(query, after, k, mode, Deadline.NONE).getResults();
     }
 
-    private ISet<Webpage> collectWebpages(Path root) {
+    /**
+     * Like 'getResultsAfter(query, after, k, mode)', but stops scoring once the given
+     * deadline passes, and returns the best results found by then (marked as partial).
+     */
+    public ResultPage getResultsAfter(IList<String> query, SearchCursor after, int k, ScoringMode mode,
+                                      Deadline deadline) {
+        return this.getResultsAfter(query, after, k, mode, deadline, new QueryTrace());
+    }
+
+    /**
+     * Like 'getResultsAfter(query, after, k, mode, deadline)', but also records how long
+     * each phase took, and how much work it did, in the given trace.
+     */
+    public ResultPage getResultsAfter(IList<String> query, SearchCursor after, int k, ScoringMode mode,
+                                      Deadline deadline, QueryTrace trace) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+        IList<Result> results = this.rank(query, after, Math.min(k, MAX_RESULTS_PER_PAGE), mode, deadline, trace);
+        return new ResultPage(results, deadline.wasHit());
+    }
+
+    /**
+     * Returns the best 'k' results ranked below the given cursor (if any), best first.
+     * Only those k results are kept while scoring, so this takes the same memory however
+     * many pages match.
+     *
+     * If the deadline passes while we're going through the postings, we still rank the
+     * candidates found so far; if it passes while ranking, we stop there.
+     */
+    private IList<Result> rank(IList<String> query, SearchCursor after, int k, ScoringMode mode,
+                               Deadline deadline, QueryTrace trace) {
+        if (k == 0) {
+            return new ArrayBackedList<>(0);
+        }
+        IPriorityQueue<Result> best = new ArrayHeap<>();
+        QueryExecutedEvent event = new QueryExecutedEvent();
+        event.begin();
+        long start = System.nanoTime();
+
+        // Only pages containing at least one query word can have a non-zero score,
+        // so we let the TF-IDF postings pick out the candidates for us.
+        IDictionary<URI, Double> candidates = this.tfIdfAnalyzer.computeRelevances(query, deadline, trace);
+        start = trace.endPhase(QueryTrace.Phase.CANDIDATE_GENERATION, start);
+        boolean checkDeadline = !deadline.wasHit();
+        int scored = 0;
+        for (KVPair<URI, Double> candidate : candidates) {
+            if (checkDeadline && scored % DEADLINE_CHECK_INTERVAL == DEADLINE_CHECK_INTERVAL - 1 && deadline.check()) {
+                break;
+            }
+            scored++;
+            URI uri = candidate.getKey();
+            double tfIdf = candidate.getValue();
+            double pageRank = this.getPageRank(uri);
+            double score;
+            if (mode == ScoringMode.TF_IDF) {
+                score = tfIdf;
+            } else if (mode == ScoringMode.PAGE_RANK) {
+                score = pageRank;
+            } else {
+                score = this.combineScores(tfIdf, pageRank);
+            }
+            Result result = new Result(this.pages.get(uri), score, tfIdf, pageRank);
+            if (after != null && !after.precedes(result)) {
+                continue;
+            }
+            if (best.size() < k) {
+                best.insert(result);
+            } else if (best.peekMin().compareTo(result) < 0) {
+                best.removeMin();
+                best.insert(result);
+            }
+        }
+        trace.setCandidates(candidates.size(), scored);
+        start = trace.endPhase(QueryTrace.Phase.SCORING, start);
+
+        Result[] ranked = new Result[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = best.removeMin();
+        }
+        IList<Result> out = new ArrayBackedList<>(ranked.length);
+        for (Result result : ranked) {
+            out.add(result);
+        }
+        trace.endPhase(QueryTrace.Phase.TOP_K, start);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.query = String.join(" ", query);
+            event.mode = mode.getName();
+            event.k = k;
+            event.candidates = candidates.size();
+            event.scored = scored;
+            event.partial = deadline.wasHit();
+            event.commit();
+        }
+        return out;
+    }
+
+    private static Webpage parseStoredPage(URI uri, byte[] contents) {
+        PageLoadedEvent event = new PageLoadedEvent();
+        event.begin();
+        Webpage page = Webpage.parse(contents);
+        event.end();
+        if (event.shouldCommit()) {
+            event.uri = uri.toString();
+            event.source = "store";
+            event.words = page.getWords().size();
+            event.commit();
+        }
+        return page;
+    }
+
+    /**
+     * Loads every page in the given folder: first everything in its PageStore, then any
+     * pages saved as individual ".html" files (by older crawls, or by hand) that are not
+     * also in the store.
+     */
+    static ISet<Webpage> collectWebpages(Path root) {
         try {
-            return Files.walk(root)
-                    .filter(Files::isRegularFile)
-                    .filter(path -> path.toString().endsWith(".htm") || path.toString().endsWith(".html"))
-                    .map(Path::toUri)
-                    .map(Webpage::load)
-                    .collect(Bridge.toISet());
+            ISet<Webpage> output = new ChainedHashSet<>();
+            if (PageStore.exists(root)) {
+                collectStoredWebpages(root, output);
+            }
+
+            // Only the metadata header of each file is read up front, so files whose pages
+            // are also in the store cost next to nothing.
+            ISet<URI> loaded = new ChainedHashSet<>();
+            for (Webpage page : output) {
+                loaded.add(page.getUri());
+            }
+            IList<Path> files = new ArrayBackedList<>();
+            try (Stream<Path> walk = Files.walk(root)) {
+                walk.filter(Files::isRegularFile)
+                        .filter(path -> path.toString().endsWith(".htm") || path.toString().endsWith(".html"))
+                        .forEach(files::add);
+            }
+            for (Path file : files) {
+                URI savedUri = readSavedUri(file);
+                if (savedUri == null || !loaded.contains(WebUtils.normalize(savedUri).orElse(savedUri))) {
+                    Webpage page = Webpage.load(file.toUri());
+                    if (!output.contains(page)) {
+                        output.add(page);
+                    }
+                }
+            }
+            return output;
         } catch (IOException ex) {
             throw new DataExtractionException("Could not find given root folder", ex);
         }
     }
 
-    private ISet<WebpageSummary> extractWebpageSummaries(ISet<Webpage> webpages) {
-        ISet<WebpageSummary> output = new ChainedHashSet<>();
+    /**
+     * Adds the newest version of every page in the PageStore in the given folder to
+     * 'output', unless that version says the page has since been removed.
+     *
+     * Pages parsed on an earlier start are read back from the StoredPageCache next to
+     * their segment; only the rest are decompressed and parsed, and then added to the
+     * cache for next time.
+     */
+    private static void collectStoredWebpages(Path root, ISet<Webpage> output) throws IOException {
+        // A page that changed when recrawled is stored once per version. Going through the
+        // index first tells us which version is the newest. Reading the index stops at a
+        // record torn by a crash, so the newest version that reads back is the one we keep.
+        IDictionary<URI, PageStore.Record> newest = new ChainedHashDictionary<>();
+        PageStore.forEachRecord(root, record -> newest.put(record.uri, record));
+
+        IDictionary<Integer, IDictionary<Long, PageStore.Record>> wanted = new ChainedHashDictionary<>();
+        for (KVPair<URI, PageStore.Record> pair : newest) {
+            PageStore.Record record = pair.getValue();
+            if (!record.isRemoved()) {
+                wanted.computeIfAbsent(record.segment, segment -> new ChainedHashDictionary<>())
+                        .put(record.offset, record);
+            }
+        }
+
+        IDictionary<Integer, IDictionary<Long, Webpage>> cached = new ChainedHashDictionary<>();
+        for (KVPair<Integer, IDictionary<Long, PageStore.Record>> pair : wanted) {
+            cached.put(pair.getKey(), StoredPageCache.load(root, pair.getKey(), pair.getValue()));
+        }
+
+        IDictionary<Integer, IList<KVPair<PageStore.Record, Webpage>>> parsed = new ChainedHashDictionary<>();
+        PageStore.forEach(
+                root,
+                record -> wanted.containsKey(record.segment)
+                        && wanted.get(record.segment).containsKey(record.offset)
+                        && !cached.get(record.segment).containsKey(record.offset),
+                (record, contents) -> parsed
+                        .computeIfAbsent(record.segment, segment -> new ArrayBackedList<>())
+                        .add(new KVPair<>(record, parseStoredPage(record.uri, contents))));
+
+        for (KVPair<Integer, IDictionary<Long, Webpage>> pair : cached) {
+            int segment = pair.getKey();
+            IList<KVPair<PageStore.Record, Webpage>> pages = new ArrayBackedList<>();
+            for (KVPair<Long, Webpage> hit : pair.getValue()) {
+                Metrics.PAGE_CACHE_HITS.increment();
+                pages.add(new KVPair<>(wanted.get(segment).get(hit.getKey()), hit.getValue()));
+            }
+            IList<KVPair<PageStore.Record, Webpage>> misses = parsed.getOrDefault(segment, null);
+            if (misses != null) {
+                for (KVPair<PageStore.Record, Webpage> miss : misses) {
+                    Metrics.PAGE_CACHE_MISSES.increment();
+                    pages.add(miss);
+                }
+                // Also drops the entries of versions since replaced by a newer one.
+                StoredPageCache.save(root, segment, pages);
+            }
+            for (KVPair<PageStore.Record, Webpage> page : pages) {
+                output.add(page.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the URI in the metadata header of the given page file, or null if it has no
+     * (readable) header.
+     */
+    private static URI readSavedUri(Path file) throws IOException {
+        try {
+            return ConvertPages.readUri(file);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Drops every page whose text is nearly the same as another page's (mirrors, printable
+     * versions, and so on), so each such page is indexed once. Of each group of copies we
+     * keep the one with the smallest URI, so the choice does not depend on load order.
+     *
+     * Links to a dropped copy are pointed at the copy we kept instead, so the kept page
+     * still gets the PageRank of every page linking to any of its copies.
+     */
+    private ISet<Webpage> removeNearDuplicates(ISet<Webpage> webpages) {
+        IDictionary<URI, Webpage> byUri = new ChainedHashDictionary<>();
+        IList<URI> uris = new ArrayBackedList<>(webpages.size());
+        for (Webpage page : webpages) {
+            byUri.put(page.getUri(), page);
+            uris.add(page.getUri());
+        }
+
+        NearDuplicateDetector<URI> detector = new NearDuplicateDetector<>();
+        IDictionary<URI, URI> keptCopies = new ChainedHashDictionary<>();
+        IList<Webpage> kept = new ArrayBackedList<>(uris.size());
+        for (URI uri : Searcher.topKSort(uris.size(), uris)) {
+            Webpage page = byUri.get(uri);
+            URI original = detector.addIfUnique(uri, NearDuplicateDetector.fingerprint(page.getWords()));
+            if (original == null) {
+                kept.add(page);
+            } else {
+                keptCopies.put(uri, original);
+            }
+        }
+        System.out.println("Skipped " + keptCopies.size() + " near-duplicate pages");
+
+        ISet<Webpage> output = new ChainedHashSet<>();
+        for (Webpage page : kept) {
+            output.add(redirectLinks(page, keptCopies));
+        }
+        return output;
+    }
+
+    /**
+     * Returns the given page with every link to a key of 'redirects' replaced by a link to
+     * its value, or the page itself if it has no such links.
+     */
+    private static Webpage redirectLinks(Webpage page, IDictionary<URI, URI> redirects) {
+        boolean hasRedirectedLink = false;
+        for (URI link : page.getLinks()) {
+            if (redirects.containsKey(link)) {
+                hasRedirectedLink = true;
+                break;
+            }
+        }
+        if (!hasRedirectedLink) {
+            return page;
+        }
+
+        IList<URI> links = new ArrayBackedList<>(page.getLinks().size());
+        for (URI link : page.getLinks()) {
+            links.add(redirects.getOrDefault(link, link));
+        }
+        WebpageSummary summary = page.getSummary();
+        return new Webpage(page.getUri(), links, page.getWords(), summary.getTitle(), summary.getBlurb());
+    }
+
+    private IDictionary<URI, WebpageSummary> extractWebpageSummaries(ISet<Webpage> webpages) {
+        IDictionary<URI, WebpageSummary> output = new ChainedHashDictionary<>();
         for (Webpage page : webpages) {
-            output.add(page.getSummary());
+            output.put(page.getUri(), page.getSummary());
         }
         return output;
     }
@@ -0,0 +1,147 @@
+package search;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+import search.misc.PageStore;
+import search.models.Webpage;
+import search.models.WebpageSummary;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.StringTokenizer;
+
+/**
+ * The pages parsed out of each PageStore segment, saved next to it ("pages-00000.parsed")
+ * so the next start does not have to decompress and parse them all over again. This is
+ * the PageStore counterpart of the ".cache" file Webpage keeps next to each ".html" file.
+ *
+ * Each entry is keyed by the offset of the record it was parsed from, which never changes
+ * once written. We also check the record's length and URI, so a cache left over from a
+ * store that was since deleted and crawled again is not mistaken for the new one.
+ *
+ * The file starts with Webpage.CACHE_VERSION, so it is thrown away whenever the way
+ * pages are parsed changes. Each entry after that is:
+ *
+ *     offset TAB length TAB record URI
+ *     page URI
+ *     title
+ *     blurb
+ *     words, separated by spaces
+ *     number of links
+ *     one link per line
+ */
+class StoredPageCache {
+    private static final String SUFFIX = ".parsed";
+
+    /**
+     * Returns the cached pages of the given segment's records, keyed by offset. Only
+     * records in 'records' (also keyed by offset) are looked for; the rest of the cache
+     * is skipped. Returns an empty dictionary if there is no usable cache.
+     */
+    static IDictionary<Long, Webpage> load(Path directory, int segment, IDictionary<Long, PageStore.Record> records)
+            throws IOException {
+        IDictionary<Long, Webpage> out = new ChainedHashDictionary<>();
+        Path file = PageStore.companionPath(directory, segment, SUFFIX);
+        if (!Files.exists(file)) {
+            return out;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!Webpage.CACHE_VERSION.equals(reader.readLine())) {
+                return out;
+            }
+            for (String key = reader.readLine(); key != null; key = reader.readLine()) {
+                String[] parts = key.split("\t", 3);
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Malformed record key: " + key);
+                }
+                URI pageUri = URI.create(nextLine(reader));
+                String title = nextLine(reader);
+                String blurb = nextLine(reader);
+                IList<String> words = readWords(nextLine(reader));
+                int numLinks = Integer.parseInt(nextLine(reader));
+                IList<URI> links = new ArrayBackedList<>(numLinks);
+                for (int i = 0; i < numLinks; i++) {
+                    links.add(URI.create(nextLine(reader)));
+                }
+
+                PageStore.Record record = records.getOrDefault(Long.parseLong(parts[0]), null);
+                if (record != null && record.length == Integer.parseInt(parts[1])
+                        && record.uri.toString().equals(parts[2])) {
+                    out.put(record.offset, new Webpage(pageUri, links, words, title, blurb));
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            // Not a cache we wrote (or one cut short): parse the pages again instead.
+            return new ChainedHashDictionary<>();
+        }
+        return out;
+    }
+
+    /**
+     * Replaces the given segment's cache with one holding the given pages, each paired
+     * with the record it was parsed from.
+     */
+    static void save(Path directory, int segment, IList<KVPair<PageStore.Record, Webpage>> pages)
+            throws IOException {
+        Path file = PageStore.companionPath(directory, segment, SUFFIX);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(Webpage.CACHE_VERSION + "\n");
+            for (KVPair<PageStore.Record, Webpage> pair : pages) {
+                PageStore.Record record = pair.getKey();
+                Webpage page = pair.getValue();
+                WebpageSummary summary = page.getSummary();
+                writer.write(record.offset + "\t" + record.length + "\t" + record.uri + "\n");
+                writer.write(page.getUri() + "\n");
+                writer.write(oneLine(summary.getTitle()) + "\n");
+                writer.write(oneLine(summary.getBlurb()) + "\n");
+                for (String word : page.getWords()) {
+                    writer.write(word);
+                    writer.write(' ');
+                }
+                writer.write('\n');
+                writer.write(page.getLinks().size() + "\n");
+                for (URI link : page.getLinks()) {
+                    writer.write(link + "\n");
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String nextLine(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            throw new IllegalArgumentException("Parsed page cache ends part of the way through a page");
+        }
+        return line;
+    }
+
+    private static IList<String> readWords(String line) {
+        ArrayBackedList<String> words = new ArrayBackedList<>();
+        StringTokenizer tokenizer = new StringTokenizer(line, " ");
+        while (tokenizer.hasMoreTokens()) {
+            words.add(tokenizer.nextToken());
+        }
+        words.trimToSize();
+        return words;
+    }
+
+    /**
+     * Returns the given text with any line breaks turned into spaces, so it fits on the
+     * one line we give it.
+     */
+    private static String oneLine(String text) {
+        return text.replace('\r', ' ').replace('\n', ' ');
+    }
+}
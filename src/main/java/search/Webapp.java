@@ -1,16 +1,34 @@
 package search;
 
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheFactory;
 import datastructures.interfaces.IList;
+import search.metrics.Metrics;
+import search.metrics.QueryTrace;
+import search.metrics.SlowQueryLog;
+import search.misc.ConcurrencyLimiter;
+import search.misc.Deadline;
+import search.misc.JsonWriter;
 import search.misc.WordTokenizer;
 import search.models.Result;
-import spark.ModelAndView;
+import search.models.ResultPage;
+import search.models.ScoringMode;
+import search.models.SearchCursor;
 import spark.Request;
 import spark.Response;
+import spark.Route;
 import spark.Service;
-import spark.template.mustache.MustacheTemplateEngine;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,11 +47,64 @@ public class Webapp {
      */
     private static final String TEMPLATE_FILES = "webapp/templates";
 
+    /**
+     * Where the template files are in the source tree, for reloading them as they are edited.
+     */
+    private static final String TEMPLATE_SOURCE_FILES = "src/main/resources/" + TEMPLATE_FILES;
+
+    /**
+     * The templates every request needs, which we compile before serving any.
+     */
+    private static final String[] PAGE_TEMPLATES = new String[] {"main.mustache", "search.mustache"};
+
+    /**
+     * How many results '/api/search' returns if the request doesn't say.
+     */
+    private static final String DEFAULT_API_RESULTS = "10";
+
+    /**
+     * How many completions '/suggest' returns if the request doesn't say.
+     */
+    private static final String DEFAULT_SUGGESTIONS = "5";
+
+    /**
+     * Bounds on how many searches we run at once (see ConcurrencyLimiter), and how long a
+     * search may wait to start before we give up on it and answer 503.
+     */
+    private static final int MIN_CONCURRENT_SEARCHES = 1;
+    private static final int MAX_CONCURRENT_SEARCHES = 8 * Runtime.getRuntime().availableProcessors();
+    private static final long SEARCH_QUEUE_TIMEOUT_MILLIS = 50;
+
+    /**
+     * How long a search may spend scoring pages once it starts. Searches that take longer
+     * answer with the best results found by then (see SearchEngine.getResults).
+     */
+    private static final long SEARCH_DEADLINE_MILLIS = 250;
+
+    /**
+     * How many seconds we ask clients to wait before retrying a search we turned away.
+     */
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    /**
+     * The request attribute 'limited' keeps a search's permit under (see 'releasePermit').
+     */
+    private static final String PERMIT_ATTRIBUTE = "searchPermit";
+
     private final String siteName;
     private final SearchEngine engine;
     private final Service http;
     private final int port;
 
+    // Compiles each template the first time it is asked for, then hands back the same
+    // compiled copy; null if we are reloading templates from disk.
+    private final MustacheFactory templates;
+
+    private final ConcurrencyLimiter searchLimiter;
+
+    // Where we log searches that took too long, or null to not log them.
+    private final SlowQueryLog slowQueries;
+
     /**
      * Creates a new instance of this class.
      *
@@ -42,16 +113,66 @@ public class Webapp {
      * @param port      The port to serve our website on.
      */
     public Webapp(SearchEngine engine, String siteName, int port) {
+        this(engine, siteName, port, false);
+    }
+
+    /**
+     * Creates a new instance of this class.
+     *
+     * @param engine           The SearchEngine we will be using to answer user queries
+     * @param siteName         The name of our website
+     * @param port             The port to serve our website on.
+     * @param reloadTemplates  If true, templates are recompiled from the source tree on every
+     *                         request, so edits show up without a restart (slow; for development only)
+     */
+    public Webapp(SearchEngine engine, String siteName, int port, boolean reloadTemplates) {
+        this(engine, siteName, port, reloadTemplates, null);
+    }
+
+    /**
+     * Creates a new instance of this class.
+     *
+     * @param engine           The SearchEngine we will be using to answer user queries
+     * @param siteName         The name of our website
+     * @param port             The port to serve our website on.
+     * @param reloadTemplates  If true, templates are recompiled from the source tree on every
+     *                         request, so edits show up without a restart (slow; for development only)
+     * @param slowQueries      Where to log slow searches, with where their time went; or null
+     *                         to not log them
+     */
+    public Webapp(SearchEngine engine, String siteName, int port, boolean reloadTemplates,
+                  SlowQueryLog slowQueries) {
         this.engine = engine;
+        this.slowQueries = slowQueries;
         this.siteName = siteName;
         this.port = port;
 
+        if (reloadTemplates) {
+            this.templates = null;
+        } else {
+            this.templates = new DefaultMustacheFactory(TEMPLATE_FILES);
+            for (String templateName : PAGE_TEMPLATES) {
+                this.templates.compile(templateName);
+            }
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.searchLimiter = new ConcurrencyLimiter(
+                Math.max(MIN_CONCURRENT_SEARCHES, processors),
+                MIN_CONCURRENT_SEARCHES,
+                MAX_CONCURRENT_SEARCHES,
+                SEARCH_QUEUE_TIMEOUT_MILLIS);
+        this.registerLimiterMetrics();
+
         this.http = Service.ignite()
                 .staticFileLocation(STATIC_FILES)
                 .port(port);
         this.http.initExceptionHandler(this::handleFatalError);
         this.http.get("/", this::handleMain);
-        this.http.get("/search", this::handleSearch);
+        this.http.get("/search", this.limited(this::handleSearch, this::handleOverloaded));
+        this.http.get("/api/search", this.limited(this::handleApiSearch, this::handleApiOverloaded));
+        this.http.get("/suggest", this::handleSuggest);
+        this.http.get("/metrics", this::handleMetrics);
         this.http.exception(Exception.class, this::handleError);
     }
 
@@ -65,32 +186,285 @@ public class Webapp {
     /**
      * Handles all incoming requests for our home page.
      */
-    private String handleMain(Request req, Response res) {
+    private String handleMain(Request req, Response res) throws IOException {
         Map<String, Object> model = new HashMap<>();
         model.put("siteTitle", this.siteName);
 
-        return this.render("main.mustache", model);
+        return this.render("main.mustache", model, res);
     }
 
     /**
-     * Handles all incoming user queries.
+     * Handles all incoming user queries. A malformed 'num_results' or 'after' gets a 400,
+     * as it does from the JSON API.
      */
-    private String handleSearch(Request req, Response res) {
+    private String handleSearch(Request req, Response res) throws IOException {
         // Get search query
         String query = req.queryParams("query");
-        int numResults = Integer.parseInt(req.queryParamOrDefault("num_results", "20"));
+        QueryTrace trace = new QueryTrace(query);
+        int numResults;
+        SearchCursor cursor;
+        try {
+            numResults = Integer.parseInt(req.queryParamOrDefault("num_results", "20"));
+            String after = req.queryParams("after");
+            cursor = after == null ? null : SearchCursor.decode(after);
+        } catch (IllegalArgumentException ex) {
+            // A hand-edited or truncated link; not worth an error page with a stack trace.
+            return this.badSearchRequest(res, ex.getMessage());
+        }
+        if (numResults < 0) {
+            return this.badSearchRequest(res, "'num_results' must not be negative");
+        }
+        numResults = Math.min(numResults, SearchEngine.MAX_RESULTS_PER_PAGE);
 
         // Perform core search
         IList<String> queryTerms = WordTokenizer.extract(query);
-        IList<Result> results = this.engine.getTopKResults(queryTerms, numResults);
+        trace.endPhase(QueryTrace.Phase.PARSE, trace.getStartNanos());
+        ResultPage page = this.engine.getResultsAfter(
+                queryTerms, cursor, numResults, ScoringMode.COMBINED, Deadline.after(SEARCH_DEADLINE_MILLIS), trace);
+        this.releasePermit(req);
+        IList<Result> results = page.getResults();
+        trace.setPartial(page.isPartial());
 
         // Render results
+        long rendering = System.nanoTime();
         Map<String, Object> model = new HashMap<>();
         model.put("siteTitle", this.siteName);
         model.put("results", results);
+        model.put("partial", page.isPartial());
         model.put("initialQuery", query);
 
-        return this.render("search.mustache", model);
+        // Pages after a partial one could skip results we never got to score, so we only
+        // link on from a complete page.
+        if (!page.isPartial() && numResults > 0 && results.size() == numResults) {
+            model.put("nextPageUri", String.format("/search?query=%s&num_results=%d&after=%s",
+                    URLEncoder.encode(query, "UTF-8"), numResults,
+                    SearchCursor.after(results.get(numResults - 1)).encode()));
+        }
+
+        String body = this.render("search.mustache", model, res);
+        trace.endPhase(QueryTrace.Phase.RENDERING, rendering);
+        this.finishSearch(trace);
+        return body;
+    }
+
+    /**
+     * Handles queries made through our JSON API. Takes these parameters:
+     *
+     * - query:   the search query (required)
+     * - k:       how many results to return (default 10, at most 100)
+     * - offset:  how many of the best results to skip first (default 0, at most 1000)
+     * - after:    the "next" cursor from the previous page, to get the page after it
+     *             (instead of using 'offset')
+     * - mode:    how to rank results: "combined" (default), "tfidf", or "pagerank"
+     * - explain: if "true", include the TF-IDF and page rank score behind each result
+     *
+     * and responds with an object like
+     *
+     *   {"query": "...", "mode": "combined", "offset": 0, "k": 10, "partial": false,
+     *    "results": [{"uri": "...", "title": "...", "blurb": "...", "score": 0.12}, ...],
+     *    "next": "..."}
+     *
+     * where "next" is the cursor for the following page, or null if this is the last, and
+     * "partial" is true if the search ran out of time, so the results are only the best
+     * of the pages it got to. A partial page has no "next": any page after it could skip
+     * results ranked above its last one that we never got to score, so clients should
+     * retry the search instead.
+     *
+     * or, if a parameter is missing or malformed, a 400 with {"error": "..."}.
+     */
+    private String handleApiSearch(Request req, Response res) throws IOException {
+        String query = req.queryParams("query");
+        QueryTrace trace = new QueryTrace(query);
+        if (query == null) {
+            return this.badApiRequest(res, "Missing required parameter 'query'");
+        }
+        int numResults;
+        int offset;
+        ScoringMode mode;
+        SearchCursor cursor;
+        try {
+            numResults = Integer.parseInt(req.queryParamOrDefault("k", DEFAULT_API_RESULTS));
+            offset = Integer.parseInt(req.queryParamOrDefault("offset", "0"));
+            mode = ScoringMode.fromName(req.queryParamOrDefault("mode", ScoringMode.COMBINED.getName()));
+            String after = req.queryParams("after");
+            cursor = after == null ? null : SearchCursor.decode(after);
+        } catch (IllegalArgumentException ex) {
+            // (NumberFormatException is an IllegalArgumentException too.)
+            return this.badApiRequest(res, ex.getMessage());
+        }
+        if (numResults < 0 || offset < 0) {
+            return this.badApiRequest(res, "'k' and 'offset' must not be negative");
+        }
+        if (offset > SearchEngine.MAX_OFFSET) {
+            return this.badApiRequest(res, "'offset' must be at most " + SearchEngine.MAX_OFFSET
+                    + "; page with the 'next' cursor instead");
+        }
+        if (cursor != null && offset != 0) {
+            return this.badApiRequest(res, "Use either 'offset' or 'after', not both");
+        }
+        numResults = Math.min(numResults, SearchEngine.MAX_RESULTS_PER_PAGE);
+        boolean explain = "true".equals(req.queryParams("explain"));
+
+        IList<String> queryTerms = WordTokenizer.extract(query);
+        trace.endPhase(QueryTrace.Phase.PARSE, trace.getStartNanos());
+        Deadline deadline = Deadline.after(SEARCH_DEADLINE_MILLIS);
+        ResultPage page = cursor == null
+                ? this.engine.getResults(queryTerms, offset, numResults, mode, deadline, trace)
+                : this.engine.getResultsAfter(queryTerms, cursor, numResults, mode, deadline, trace);
+        this.releasePermit(req);
+        IList<Result> results = page.getResults();
+        trace.setPartial(page.isPartial());
+
+        long rendering = System.nanoTime();
+        JsonWriter json = this.startJson(res);
+        json.beginObject();
+        json.name("query").value(query);
+        json.name("mode").value(mode.getName());
+        json.name("offset").value(offset);
+        json.name("k").value(numResults);
+        json.name("partial").value(page.isPartial());
+        json.name("results").beginArray();
+        for (Result result : results) {
+            json.beginObject();
+            json.name("uri").value(result.getUri().toString());
+            json.name("title").value(result.getTitle());
+            json.name("blurb").value(result.getBlurb());
+            json.name("score").value(result.getScore());
+            if (explain) {
+                json.name("tfidf").value(result.getTfIdf());
+                json.name("pagerank").value(result.getPageRank());
+            }
+            json.endObject();
+        }
+        json.endArray();
+        if (!page.isPartial() && numResults > 0 && results.size() == numResults) {
+            json.name("next").value(SearchCursor.after(results.get(numResults - 1)).encode());
+        } else {
+            json.name("next").value((String) null);
+        }
+        json.endObject();
+        json.flush();
+        trace.endPhase(QueryTrace.Phase.RENDERING, rendering);
+        this.finishSearch(trace);
+        return "";
+    }
+
+    /**
+     * Handles typeahead requests: suggests up to 'k' (default 5, at most 10) ways to finish
+     * the partly-typed query in 'prefix', responding with an object like
+     *
+     *   {"prefix": "new yo", "suggestions": ["new york", "new young", ...]}
+     *
+     * or, if 'k' is not a positive number, a 400 with {"error": "..."}.
+     *
+     * These come from a small prefix index built when we start, so they don't need to go
+     * through the search limiter.
+     */
+    private String handleSuggest(Request req, Response res) throws IOException {
+        String prefix = req.queryParamOrDefault("prefix", "");
+        int numSuggestions;
+        try {
+            numSuggestions = Integer.parseInt(req.queryParamOrDefault("k", DEFAULT_SUGGESTIONS));
+        } catch (NumberFormatException ex) {
+            return this.badApiRequest(res, ex.getMessage());
+        }
+        if (numSuggestions <= 0) {
+            return this.badApiRequest(res, "'k' must be positive");
+        }
+
+        JsonWriter json = this.startJson(res);
+        json.beginObject();
+        json.name("prefix").value(prefix);
+        json.name("suggestions").beginArray();
+        for (String suggestion : this.engine.suggest(prefix, numSuggestions)) {
+            json.value(suggestion);
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+        return "";
+    }
+
+    /**
+     * Returns a route which runs the given one only once the search limiter lets it
+     * start, and otherwise responds with the 'overloaded' route.
+     *
+     * The route should call 'releasePermit' as soon as the search itself is done, so the
+     * limiter sees how long searches take rather than how long clients take to download
+     * the results. Otherwise the permit is released once the route returns.
+     */
+    private Route limited(Route route, Route overloaded) {
+        return (req, res) -> {
+            ConcurrencyLimiter.Permit permit = this.searchLimiter.tryAcquire();
+            if (permit == null) {
+                res.status(503);
+                res.header("Retry-After", RETRY_AFTER_SECONDS);
+                return overloaded.handle(req, res);
+            }
+            req.attribute(PERMIT_ATTRIBUTE, permit);
+            try {
+                return route.handle(req, res);
+            } finally {
+                permit.release();
+            }
+        };
+    }
+
+    /**
+     * Lets the next search start, if the given request holds a permit from 'limited'.
+     */
+    private void releasePermit(Request req) {
+        ConcurrencyLimiter.Permit permit = req.attribute(PERMIT_ATTRIBUTE);
+        if (permit != null) {
+            permit.release();
+        }
+    }
+
+    /**
+     * Handles searches we are too busy to run.
+     */
+    private String handleOverloaded(Request req, Response res) {
+        res.type("text/plain; charset=utf-8");
+        return "We're getting more searches than we can keep up with. Please try again in a moment.";
+    }
+
+    private String handleApiOverloaded(Request req, Response res) throws IOException {
+        this.startJson(res).beginObject().name("error").value("Overloaded; retry later").endObject().flush();
+        return "";
+    }
+
+    /**
+     * Reports how busy the webapp is, and how long searches and indexing have been
+     * taking, in the Prometheus text format.
+     */
+    private String handleMetrics(Request req, Response res) {
+        res.type("text/plain; version=0.0.4; charset=utf-8");
+        return Metrics.REGISTRY.toPrometheusText();
+    }
+
+    /**
+     * Records how long the given search took in all, and logs it if it was slow.
+     */
+    private void finishSearch(QueryTrace trace) {
+        if (this.slowQueries == null) {
+            trace.finish();
+        } else {
+            this.slowQueries.offer(trace);
+        }
+    }
+
+    /**
+     * Reports the search limiter's state along with everything else in Metrics.REGISTRY.
+     */
+    private void registerLimiterMetrics() {
+        Metrics.REGISTRY.gauge("search_concurrency_limit",
+                "How many searches may run at once", this.searchLimiter::getLimit);
+        Metrics.REGISTRY.gauge("search_requests_in_flight",
+                "How many searches are running", this.searchLimiter::getInFlight);
+        Metrics.REGISTRY.gauge("search_requests_waiting",
+                "How many searches are waiting to start", this.searchLimiter::getWaiting);
+        Metrics.REGISTRY.counter("search_requests_rejected_total",
+                "How many searches were turned away because we were overloaded", this.searchLimiter::getRejected);
     }
 
     /**
@@ -145,8 +519,61 @@ public class Webapp {
         res.body(this.render("error.mustache", model));
     }
 
+    /**
+     * Renders the given template straight into the response, and returns the (empty)
+     * body Spark should add after it.
+     */
+    private String render(String templateName, Map<String, Object> params, Response res) throws IOException {
+        res.type("text/html; charset=utf-8");
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+                res.raw().getOutputStream(), StandardCharsets.UTF_8));
+        this.template(templateName).execute(out, params);
+        out.flush();
+        return "";
+    }
+
+    /**
+     * Responds to a search from the HTML front end we can't make sense of with a 400 and
+     * the given message.
+     */
+    private String badSearchRequest(Response res, String message) {
+        res.status(400);
+        res.type("text/plain; charset=utf-8");
+        return "Bad request: " + message;
+    }
+
+    /**
+     * Responds to an API request we can't make sense of with a 400 and the given message.
+     */
+    private String badApiRequest(Response res, String message) throws IOException {
+        res.status(400);
+        this.startJson(res).beginObject().name("error").value(message).endObject().flush();
+        return "";
+    }
+
+    /**
+     * Returns a JsonWriter writing straight into the response.
+     */
+    private JsonWriter startJson(Response res) throws IOException {
+        res.type("application/json; charset=utf-8");
+        return new JsonWriter(new BufferedWriter(new OutputStreamWriter(
+                res.raw().getOutputStream(), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Renders the given template into a string, for when we can't write to the response
+     * directly.
+     */
     private String render(String templateName, Map<String, Object> params) {
-        return new MustacheTemplateEngine(TEMPLATE_FILES).render(
-                new ModelAndView(params, templateName));
+        StringWriter out = new StringWriter();
+        this.template(templateName).execute(out, params);
+        return out.toString();
+    }
+
+    private Mustache template(String templateName) {
+        if (this.templates == null) {
+            return new DefaultMustacheFactory(new File(TEMPLATE_SOURCE_FILES)).compile(templateName);
+        }
+        return this.templates.compile(templateName);
     }
 }
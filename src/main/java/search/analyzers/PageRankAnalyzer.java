@@ -5,6 +5,8 @@ import datastructures.concrete.KVPair;
 import datastructures.concrete.dictionaries.ChainedHashDictionary;
 import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.ISet;
+import search.metrics.Metrics;
+import search.metrics.PageRankIterationEvent;
 import search.models.Webpage;
 
 import java.net.URI;
@@ -102,11 +104,23 @@ public class PageRankAnalyzer {
         //Step 2: Update the ranks w/ max iterations of limit, until the epsilon is met
         IDictionary<URI, Double> newRanks;
         for (int i = 0; i < limit; i++) {
+            PageRankIterationEvent event = new PageRankIterationEvent();
+            event.begin();
+
             //Set newRanks to (1-d)/N (to represent random surfers joining the graph)
             newRanks = updateRanks(graph, ranks, decay);
+            Metrics.PAGE_RANK_ITERATIONS.increment();
 
             //Step 3: Check to see if ranks converge | oldrank - newrank | > epsilon
-            if (convergenceCheckStep(ranks, newRanks, epsilon)) {
+            boolean converged = convergenceCheckStep(ranks, newRanks, epsilon);
+            event.end();
+            if (event.shouldCommit()) {
+                event.iteration = i + 1;
+                event.pages = graph.size();
+                event.converged = converged;
+                event.commit();
+            }
+            if (converged) {
                 return newRanks;
             }
             //Set old rank to this iterations result and iterate again
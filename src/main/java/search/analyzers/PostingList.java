@@ -0,0 +1,139 @@
+package search.analyzers;
+
+/**
+ * Represents the decoded postings for a single term: the ids of every document
+ * containing the term, along with the term's TF-IDF weight within that document.
+ *
+ * Postings are stored compressed (see 'encode' and 'decode') and are only expanded
+ * into this form when a query needs them. Instances are read-only once constructed,
+ * which means they can safely be shared across threads by the PostingsCache.
+ */
+public class PostingList {
+    // Approximate fixed overhead of this object plus its two array headers.
+    private static final int OBJECT_OVERHEAD_BYTES = 16 + 2 * 16;
+
+    private final int[] documentIds;
+    private final double[] weights;
+
+    /**
+     * Constructs a new posting list. Both arrays must be the same length, and
+     * the document ids must be sorted in ascending order.
+     */
+    public PostingList(int[] documentIds, double[] weights) {
+        if (documentIds.length != weights.length) {
+            throw new IllegalArgumentException("Document ids and weights must be the same length");
+        }
+        this.documentIds = documentIds;
+        this.weights = weights;
+    }
+
+    /**
+     * Returns the number of documents containing this term.
+     */
+    public int size() {
+        return this.documentIds.length;
+    }
+
+    /**
+     * Returns the id of the document at the given position in this list.
+     */
+    public int getDocumentId(int index) {
+        return this.documentIds[index];
+    }
+
+    /**
+     * Returns the TF-IDF weight of this term in the document at the given position.
+     */
+    public double getWeight(int index) {
+        return this.weights[index];
+    }
+
+    /**
+     * Returns the approximate number of bytes this decoded list occupies in memory.
+     */
+    public long sizeInBytes() {
+        return OBJECT_OVERHEAD_BYTES + (long) this.documentIds.length * (Integer.BYTES + Double.BYTES);
+    }
+
+    /**
+     * Compresses the given postings into a byte array. Document ids are stored as
+     * variable-length deltas from the previous id; weights are stored verbatim so
+     * decoding reproduces them bit-for-bit.
+     */
+    public static byte[] encode(int[] documentIds, double[] weights, int length) {
+        // Worst case: 5 bytes per varint, 8 per weight, plus up to 5 for the length prefix.
+        byte[] buffer = new byte[5 + length * (5 + Double.BYTES)];
+        int offset = writeVarInt(buffer, 0, length);
+
+        int previous = 0;
+        for (int i = 0; i < length; i++) {
+            offset = writeVarInt(buffer, offset, documentIds[i] - previous);
+            previous = documentIds[i];
+        }
+        for (int i = 0; i < length; i++) {
+            long bits = Double.doubleToRawLongBits(weights[i]);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[offset++] = (byte) (bits >>> shift);
+            }
+        }
+
+        byte[] out = new byte[offset];
+        System.arraycopy(buffer, 0, out, 0, offset);
+        return out;
+    }
+
+    /**
+     * Returns the number of documents in the posting list encoded in the given array,
+     * without decoding the rest of it.
+     */
+    public static int encodedSize(byte[] encoded) {
+        return readVarInt(encoded, new int[] {0});
+    }
+
+    /**
+     * Expands a byte array produced by 'encode' back into a posting list.
+     */
+    public static PostingList decode(byte[] encoded) {
+        int[] cursor = new int[] {0};
+        int length = readVarInt(encoded, cursor);
+
+        int[] documentIds = new int[length];
+        int previous = 0;
+        for (int i = 0; i < length; i++) {
+            previous += readVarInt(encoded, cursor);
+            documentIds[i] = previous;
+        }
+
+        double[] weights = new double[length];
+        int offset = cursor[0];
+        for (int i = 0; i < length; i++) {
+            long bits = 0L;
+            for (int j = 0; j < Double.BYTES; j++) {
+                bits = (bits << 8) | (encoded[offset++] & 0xFF);
+            }
+            weights[i] = Double.longBitsToDouble(bits);
+        }
+        return new PostingList(documentIds, weights);
+    }
+
+    private static int writeVarInt(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static int readVarInt(byte[] buffer, int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = buffer[cursor[0]++];
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while ((current & 0x80) != 0);
+        return value;
+    }
+}
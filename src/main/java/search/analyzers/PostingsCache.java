@@ -0,0 +1,224 @@
+package search.analyzers;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ConcurrentHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+import search.metrics.Metrics;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A cache of decoded posting lists, sized by a byte budget.
+ *
+ * Head terms (e.g. "seattle" in our wikipedia dataset) show up in a large fraction
+ * of queries, and decoding their postings again each time is wasted work. This
+ * cache keeps the decoded arrays around so those terms are served straight from memory.
+ *
+ * Reads never take a lock: looking up a cached term is a single (lock-free)
+ * ConcurrentHashDictionary read plus an atomic increment of that entry's hit counter.
+ * Only inserting a newly decoded list (and evicting to make room for it) is synchronized.
+ *
+ * When the cache is over budget, we evict entries with a low
+ * "frequency * decode cost / size" score first: cheap-to-rebuild, rarely-used and
+ * very large lists go before small, expensive, popular ones. Rather than scanning every
+ * entry for each victim, we evict the lowest-scoring of EVICTION_SAMPLE_SIZE randomly
+ * picked entries, so an insert costs the same however many terms are cached.
+ *
+ * So that terms which were popular a long time ago eventually age out, every frequency
+ * is halved once there have been as many inserts since the last halving as there are
+ * entries (and at least AGING_MIN_INSERTS), which spreads the cost of going through
+ * every entry over the inserts in between.
+ */
+public class PostingsCache {
+    public static final int EVICTION_SAMPLE_SIZE = 8;
+    public static final int AGING_MIN_INSERTS = 64;
+
+    private final long byteBudget;
+    private final IDictionary<String, Entry> entries;
+
+    // The cached terms, in no particular order, so we can pick random ones to evict.
+    // Each entry remembers its slot in here. Only touched while holding this object's lock.
+    private final IList<String> terms;
+    private final Random random;
+    private int insertsSinceAging;
+
+    private final AtomicLong bytesUsed;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * Constructs a new cache that holds at most (approximately) 'byteBudget'
+     * bytes of decoded postings.
+     */
+    public PostingsCache(long byteBudget) {
+        if (byteBudget < 0) {
+            throw new IllegalArgumentException("Byte budget cannot be negative");
+        }
+        this.byteBudget = byteBudget;
+        this.entries = new ConcurrentHashDictionary<>();
+        this.terms = new ArrayBackedList<>();
+        this.random = new Random();
+        this.insertsSinceAging = 0;
+        this.bytesUsed = new AtomicLong(0L);
+        this.hits = new AtomicLong(0L);
+        this.misses = new AtomicLong(0L);
+    }
+
+    /**
+     * Returns the decoded postings for the given term, using 'decoder' to build
+     * them if they are not already cached.
+     *
+     * The decoder may be invoked more then once for the same term if several
+     * threads miss at the same time; whichever result is inserted first wins.
+     */
+    public PostingList get(String term, Function<String, PostingList> decoder) {
+        Entry entry = this.entries.getOrDefault(term, null);
+        if (entry != null) {
+            entry.frequency.incrementAndGet();
+            this.hits.incrementAndGet();
+            Metrics.POSTINGS_CACHE_HITS.increment();
+            return entry.postings;
+        }
+
+        this.misses.incrementAndGet();
+        Metrics.POSTINGS_CACHE_MISSES.increment();
+        long start = System.nanoTime();
+        PostingList postings = decoder.apply(term);
+        long cost = Math.max(1L, System.nanoTime() - start);
+
+        if (postings.sizeInBytes() <= this.byteBudget) {
+            this.insert(term, new Entry(postings, cost));
+        }
+        return postings;
+    }
+
+    /**
+     * Returns the approximate number of bytes of postings currently cached.
+     */
+    public long getBytesUsed() {
+        return this.bytesUsed.get();
+    }
+
+    /**
+     * Returns the number of terms currently cached.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the number of lookups served from the cache so far.
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that had to decode their postings so far.
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    private synchronized void insert(String term, Entry entry) {
+        if (this.entries.containsKey(term)) {
+            return;
+        }
+        entry.slot = this.terms.size();
+        this.terms.add(term);
+        this.entries.put(term, entry);
+        this.bytesUsed.addAndGet(entry.postings.sizeInBytes());
+
+        while (this.bytesUsed.get() > this.byteBudget && this.entries.size() > 1) {
+            this.evict(this.pickVictim(term));
+        }
+
+        this.insertsSinceAging++;
+        if (this.insertsSinceAging >= Math.max(AGING_MIN_INSERTS, this.entries.size())) {
+            this.age();
+        }
+    }
+
+    /**
+     * Returns the lowest-value term (other than the one we just inserted) out of a random
+     * sample of the cached ones, or out of all of them if there are only a few.
+     *
+     * Precondition: must be called while holding this object's lock, with at least one
+     * other term cached.
+     */
+    private String pickVictim(String justInserted) {
+        int numTerms = this.terms.size();
+        boolean scanAll = numTerms <= EVICTION_SAMPLE_SIZE + 1;
+        int numPicks = scanAll ? numTerms : EVICTION_SAMPLE_SIZE;
+
+        String victim = null;
+        double victimScore = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < numPicks; i++) {
+            String candidate = this.terms.get(scanAll ? i : this.random.nextInt(numTerms));
+            if (candidate.equals(justInserted)) {
+                continue;
+            }
+            double score = this.entries.get(candidate).score();
+            if (score < victimScore) {
+                victim = candidate;
+                victimScore = score;
+            }
+        }
+        // Every sampled slot held the term we just inserted; just take its neighbour.
+        if (victim == null) {
+            int slot = this.entries.get(justInserted).slot;
+            victim = this.terms.get(slot == 0 ? 1 : slot - 1);
+        }
+        return victim;
+    }
+
+    /**
+     * Removes the given term, moving the last term in 'terms' into its slot.
+     *
+     * Precondition: must be called while holding this object's lock.
+     */
+    private void evict(String victim) {
+        Entry removed = this.entries.remove(victim);
+        this.bytesUsed.addAndGet(-removed.postings.sizeInBytes());
+
+        String last = this.terms.remove();
+        if (!last.equals(victim)) {
+            this.terms.set(removed.slot, last);
+            this.entries.get(last).slot = removed.slot;
+        }
+    }
+
+    /**
+     * Halves the frequency of every cached term.
+     *
+     * Precondition: must be called while holding this object's lock.
+     */
+    private void age() {
+        for (KVPair<String, Entry> pair : this.entries) {
+            pair.getValue().frequency.updateAndGet(frequency -> Math.max(1, frequency / 2));
+        }
+        this.insertsSinceAging = 0;
+    }
+
+    private static class Entry {
+        public final PostingList postings;
+        public final long decodeCost;
+        public final AtomicInteger frequency;
+        public int slot;
+
+        public Entry(PostingList postings, long decodeCost) {
+            this.postings = postings;
+            this.decodeCost = decodeCost;
+            this.frequency = new AtomicInteger(1);
+        }
+
+        public double score() {
+            return (double) this.frequency.get() * this.decodeCost / this.postings.sizeInBytes();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package search.analyzers;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.KVPair;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+
+import java.util.Arrays;
+
+/**
+ * Suggests the most popular completions of a prefix, for typeahead.
+ *
+ * The keys are stored in a trie packed into a handful of flat arrays. The nodes are
+ * numbered in breadth-first order, which puts every node's children next to each other,
+ * sorted by label. So a node only needs the index of its first child: its last child
+ * is just before the next node's first child.
+ *
+ * Every node also stores (the ids of) the best few keys below it, worked out when the
+ * trie is built. Answering a query is then one walk down the trie, doing a binary search
+ * of the children at each step, followed by copying out that node's list. It takes time
+ * proportional to the prefix's length, however many keys start with it.
+ *
+ * Instances are read-only once built, so they can be shared between threads.
+ */
+public class PrefixSuggester {
+    // The most completions we keep (and so can return) for any prefix.
+    public static final int MAX_SUGGESTIONS = 10;
+
+    // The keys, sorted; a key's id is its index here.
+    private final String[] keys;
+    private final long[] weights;
+
+    // For each node: the label on the edge leading into it, the index of its first child
+    // (with one extra entry, so 'firstChild[n + 1]' is always the end of n's children),
+    // and the id of the key ending there, or -1.
+    private final char[] labels;
+    private final int[] firstChild;
+    private final int[] keyIds;
+
+    // The best keys below node n are 'bestKeys[bestStart[n]]' up to (but not including)
+    // 'bestKeys[bestStart[n + 1]]', best first.
+    private final int[] bestStart;
+    private final int[] bestKeys;
+
+    /**
+     * Builds a suggester over the given keys, ranking completions by the given weights
+     * (highest first, with ties going to the alphabetically first key).
+     */
+    public PrefixSuggester(IDictionary<String, Long> weightedKeys) {
+        this.keys = new String[weightedKeys.size()];
+        int i = 0;
+        for (KVPair<String, Long> pair : weightedKeys) {
+            this.keys[i] = pair.getKey();
+            i++;
+        }
+        Arrays.sort(this.keys);
+        this.weights = new long[this.keys.length];
+        for (i = 0; i < this.keys.length; i++) {
+            this.weights[i] = weightedKeys.get(this.keys[i]);
+        }
+
+        // Every distinct prefix of every key (including the empty one) is a node.
+        int numNodes = 1;
+        for (i = 0; i < this.keys.length; i++) {
+            int shared = i == 0 ? 0 : commonPrefixLength(this.keys[i - 1], this.keys[i]);
+            numNodes += this.keys[i].length() - shared;
+        }
+        this.labels = new char[numNodes];
+        this.firstChild = new int[numNodes + 1];
+        this.keyIds = new int[numNodes];
+        this.buildTrie();
+
+        this.bestStart = new int[numNodes + 1];
+        this.bestKeys = this.buildBestKeys();
+    }
+
+    /**
+     * Returns the number of keys in this suggester.
+     */
+    public int size() {
+        return this.keys.length;
+    }
+
+    /**
+     * Returns the number of trie nodes in this suggester.
+     */
+    public int nodeCount() {
+        return this.labels.length;
+    }
+
+    /**
+     * Returns up to 'k' keys starting with the given prefix, best first. At most
+     * MAX_SUGGESTIONS are returned, however large 'k' is.
+     */
+    public IList<String> suggest(String prefix, int k) {
+        int node = this.find(prefix);
+        if (node < 0) {
+            return new ArrayBackedList<>(0);
+        }
+        int count = Math.min(k, this.bestStart[node + 1] - this.bestStart[node]);
+        IList<String> out = new ArrayBackedList<>(Math.max(count, 0));
+        for (int i = 0; i < count; i++) {
+            out.add(this.keys[this.bestKeys[this.bestStart[node] + i]]);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the node for the given prefix, or -1 if no key starts with it.
+     */
+    private int find(String prefix) {
+        int node = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            int lo = this.firstChild[node];
+            int hi = this.firstChild[node + 1] - 1;
+            node = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (this.labels[mid] < c) {
+                    lo = mid + 1;
+                } else if (this.labels[mid] > c) {
+                    hi = mid - 1;
+                } else {
+                    node = mid;
+                    break;
+                }
+            }
+            if (node < 0) {
+                return -1;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Fills in the node arrays. Each node stands for the (contiguous) range of sorted keys
+     * sharing its prefix; we visit them breadth-first, splitting each range up by the next
+     * character to get its children.
+     */
+    private void buildTrie() {
+        int numNodes = this.labels.length;
+        int[] rangeStart = new int[numNodes];
+        int[] rangeEnd = new int[numNodes];
+        int[] depth = new int[numNodes];
+        rangeStart[0] = 0;
+        rangeEnd[0] = this.keys.length;
+        depth[0] = 0;
+
+        int next = 1;
+        for (int node = 0; node < numNodes; node++) {
+            this.firstChild[node] = next;
+            this.keyIds[node] = -1;
+            int d = depth[node];
+            int i = rangeStart[node];
+            // Keys are distinct, so at most one (the first, being the shortest) ends here.
+            if (i < rangeEnd[node] && this.keys[i].length() == d) {
+                this.keyIds[node] = i;
+                i++;
+            }
+            while (i < rangeEnd[node]) {
+                char c = this.keys[i].charAt(d);
+                int j = i + 1;
+                while (j < rangeEnd[node] && this.keys[j].charAt(d) == c) {
+                    j++;
+                }
+                this.labels[next] = c;
+                rangeStart[next] = i;
+                rangeEnd[next] = j;
+                depth[next] = d + 1;
+                next++;
+                i = j;
+            }
+        }
+        this.firstChild[numNodes] = next;
+    }
+
+    /**
+     * Works out the best keys below every node, from the bottom up: a node's best keys
+     * are the best of its own key (if any) and its children's best keys.
+     */
+    private int[] buildBestKeys() {
+        int numNodes = this.labels.length;
+        int[][] best = new int[numNodes][];
+        int total = 0;
+        int[] merged = new int[MAX_SUGGESTIONS + 1];
+        for (int node = numNodes - 1; node >= 0; node--) {
+            int size = 0;
+            if (this.keyIds[node] >= 0) {
+                merged[size] = this.keyIds[node];
+                size++;
+            }
+            for (int child = this.firstChild[node]; child < this.firstChild[node + 1]; child++) {
+                for (int keyId : best[child]) {
+                    size = this.insert(merged, size, keyId);
+                }
+            }
+            best[node] = Arrays.copyOf(merged, size);
+            total += size;
+        }
+
+        int[] out = new int[total];
+        int offset = 0;
+        for (int node = 0; node < numNodes; node++) {
+            this.bestStart[node] = offset;
+            System.arraycopy(best[node], 0, out, offset, best[node].length);
+            offset += best[node].length;
+        }
+        this.bestStart[numNodes] = offset;
+        return out;
+    }
+
+    /**
+     * Inserts the given key into the sorted, best-first list in 'merged[0, size)', keeping
+     * at most MAX_SUGGESTIONS; returns the new size.
+     */
+    private int insert(int[] merged, int size, int keyId) {
+        int i = size;
+        while (i > 0 && this.isBetter(keyId, merged[i - 1])) {
+            merged[i] = merged[i - 1];
+            i--;
+        }
+        merged[i] = keyId;
+        return Math.min(size + 1, MAX_SUGGESTIONS);
+    }
+
+    private boolean isBetter(int keyId, int otherId) {
+        if (this.weights[keyId] != this.weights[otherId]) {
+            return this.weights[keyId] > this.weights[otherId];
+        }
+        return keyId < otherId;
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
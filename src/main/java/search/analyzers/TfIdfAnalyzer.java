@@ -7,6 +7,9 @@ import datastructures.concrete.dictionaries.ChainedHashDictionary;
 import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.IList;
 import datastructures.interfaces.ISet;
+import search.metrics.IndexBuiltEvent;
+import search.metrics.QueryTrace;
+import search.misc.Deadline;
 import search.models.Webpage;
 
 import java.net.URI;
@@ -18,6 +21,12 @@ import java.net.URI;
  * See the spec for more details.
  */
 public class TfIdfAnalyzer {
+    // The default number of bytes of decoded postings we keep cached.
+    public static final long DEFAULT_POSTINGS_CACHE_BYTES = 64L * 1024 * 1024;
+
+    // How many postings we go through between checks of a query's deadline.
+    private static final int DEADLINE_CHECK_INTERVAL = 4096;
+
     // This field must contain the IDF score for every single word in all
     // the documents.
     private IDictionary<String, Double> idfScores;
@@ -28,11 +37,44 @@ public class TfIdfAnalyzer {
     // We will use each webpage's page URI as a unique key.
     private IDictionary<URI, IDictionary<String, Double>> documentTfIdfVectors;
 
-    // Feel free to add extra fields and helper methods.
+    // Every document is assigned a dense integer id (its index in this array) so
+    // the postings below can refer to documents compactly.
+    private URI[] documentUris;
+
+    // The norm of each document's TF-IDF vector, indexed by document id.
+    private double[] documentNorms;
+
+    // The compressed postings for every word: which documents contain it, and with
+    // what weight. See PostingList for the encoding.
+    private IDictionary<String, byte[]> encodedPostings;
+
+    // Decoded postings for the terms we've looked up recently.
+    private PostingsCache postingsCache;
 
     public TfIdfAnalyzer(ISet<Webpage> webpages) {
+        this(webpages, DEFAULT_POSTINGS_CACHE_BYTES);
+    }
+
+    /**
+     * @param webpages            A set of all webpages we have parsed.
+     * @param postingsCacheBytes  The maximum number of bytes of decoded postings to keep cached.
+     */
+    public TfIdfAnalyzer(ISet<Webpage> webpages, long postingsCacheBytes) {
+        IndexBuiltEvent event = new IndexBuiltEvent();
+        event.begin();
         this.idfScores = this.computeIdfScores(webpages);
         this.documentTfIdfVectors = this.computeAllDocumentTfIdfVectors(webpages);
+        this.buildPostings();
+        this.postingsCache = new PostingsCache(postingsCacheBytes);
+        event.end();
+        if (event.shouldCommit()) {
+            event.documents = this.documentUris.length;
+            event.terms = this.encodedPostings.size();
+            for (KVPair<String, byte[]> pair : this.encodedPostings) {
+                event.postingsBytes += pair.getValue().length;
+            }
+            event.commit();
+        }
     }
 
     // Note: this method, strictly speaking, doesn't need to exist. However,
@@ -130,6 +172,181 @@ public class TfIdfAnalyzer {
         return (denominator == 0) ? 0.0 : numerator / denominator;
     }
 
+    /**
+     * Returns the cosine similarity between the TF-IDF vector for the given query and
+     * every document containing at least one of the query's words.
+     *
+     * This returns exactly the same scores as calling 'computeRelevance' once per document,
+     * but only visits the documents listed in the postings of each query word. Documents
+     * which contain none of the words (and so have a relevance of zero) are omitted.
+     */
+    public IDictionary<URI, Double> computeRelevances(IList<String> query) {
+        return this.computeRelevances(query, Deadline.NONE);
+    }
+
+    /**
+     * Like 'computeRelevances(query)', but stops going through postings once the given
+     * deadline passes. The rarest (and so most telling) query words are gone through
+     * first, so if the deadline is hit, the documents' relevances only leave out the
+     * commonest words, and documents only containing those are left out entirely. A word
+     * whose postings the deadline cuts short is left out for every document.
+     */
+    public IDictionary<URI, Double> computeRelevances(IList<String> query, Deadline deadline) {
+        return this.computeRelevances(query, deadline, new QueryTrace());
+    }
+
+    /**
+     * Like 'computeRelevances(query, deadline)', but also records the length of every
+     * posting list we go through in the given trace.
+     */
+    public IDictionary<URI, Double> computeRelevances(IList<String> query, Deadline deadline, QueryTrace trace) {
+        IDictionary<String, Double> queryVector = computeTfIdfScore(query);
+        double queryNorm = norm(queryVector);
+
+        double[] numerators = new double[this.documentUris.length];
+        boolean[] isCandidate = new boolean[this.documentUris.length];
+        double[] scratch = new double[0];
+        for (String word : this.rarestFirst(query)) {
+            if (deadline.check()) {
+                break;
+            }
+            double queryWordScore = queryVector.get(word);
+            PostingList postings = this.getPostings(word);
+            trace.addPostings(word, postings.size());
+
+            // Each word has to count for every document it is in or for none of them:
+            // stopping part of the way through its postings would favour whichever
+            // documents happen to have low ids. So we work out the word's scores in
+            // scratch space first and only add them in once the whole list is done.
+            if (scratch.length < postings.size()) {
+                scratch = new double[postings.size()];
+            }
+            if (!computeWordScores(postings, queryWordScore, scratch, deadline)) {
+                break;
+            }
+            for (int i = 0; i < postings.size(); i++) {
+                int documentId = postings.getDocumentId(i);
+                numerators[documentId] += scratch[i];
+                isCandidate[documentId] = true;
+            }
+        }
+
+        IDictionary<URI, Double> relevances = new ChainedHashDictionary<>();
+        for (int documentId = 0; documentId < this.documentUris.length; documentId++) {
+            if (isCandidate[documentId]) {
+                double denominator = this.documentNorms[documentId] * queryNorm;
+                double relevance = (denominator == 0) ? 0.0 : numerators[documentId] / denominator;
+                relevances.put(this.documentUris[documentId], relevance);
+            }
+        }
+        return relevances;
+    }
+
+    /**
+     * Stores the score each document in the given postings gets from the query word into
+     * the matching slot of 'out'. Returns false (leaving 'out' half-filled) if the deadline
+     * passes part of the way through.
+     */
+    private static boolean computeWordScores(
+            PostingList postings, double queryWordScore, double[] out, Deadline deadline) {
+        for (int i = 0; i < postings.size(); i++) {
+            if (i % DEADLINE_CHECK_INTERVAL == DEADLINE_CHECK_INTERVAL - 1 && deadline.check()) {
+                return false;
+            }
+            out[i] = postings.getWeight(i) * queryWordScore;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the query words which appear in some document, ordered from the one in the
+     * fewest documents to the one in the most. (Repeated words are kept.)
+     */
+    private String[] rarestFirst(IList<String> query) {
+        int size = 0;
+        String[] words = new String[query.size()];
+        for (String word : query) {
+            if (this.encodedPostings.containsKey(word)) {
+                words[size] = word;
+                size++;
+            }
+        }
+
+        // Queries are short, so a simple insertion sort on IDF (highest first) does fine.
+        String[] out = new String[size];
+        for (int i = 0; i < size; i++) {
+            double idf = this.idfScores.get(words[i]);
+            int j = i;
+            while (j > 0 && this.idfScores.get(out[j - 1]) < idf) {
+                out[j] = out[j - 1];
+                j--;
+            }
+            out[j] = words[i];
+        }
+        return out;
+    }
+
+    /**
+     * Returns every word in any document, with the number of documents it appears in.
+     */
+    public IDictionary<String, Long> getDocumentFrequencies() {
+        IDictionary<String, Long> out = new ChainedHashDictionary<>();
+        for (KVPair<String, byte[]> pair : this.encodedPostings) {
+            out.put(pair.getKey(), (long) PostingList.encodedSize(pair.getValue()));
+        }
+        return out;
+    }
+
+    /**
+     * Returns the decoded postings for the given word, or an empty list if no
+     * document contains it.
+     */
+    public PostingList getPostings(String word) {
+        if (!this.encodedPostings.containsKey(word)) {
+            return new PostingList(new int[0], new double[0]);
+        }
+        return this.postingsCache.get(word, term -> PostingList.decode(this.encodedPostings.get(term)));
+    }
+
+    /**
+     * Returns the cache holding our decoded postings.
+     */
+    public PostingsCache getPostingsCache() {
+        return this.postingsCache;
+    }
+
+    /**
+     * Inverts 'documentTfIdfVectors' into compressed per-word postings, and
+     * precomputes the norm of every document vector.
+     */
+    private void buildPostings() {
+        int numDocuments = this.documentTfIdfVectors.size();
+        this.documentUris = new URI[numDocuments];
+        this.documentNorms = new double[numDocuments];
+
+        IDictionary<String, PostingsBuilder> builders = new ChainedHashDictionary<>();
+        int documentId = 0;
+        for (KVPair<URI, IDictionary<String, Double>> document : this.documentTfIdfVectors) {
+            this.documentUris[documentId] = document.getKey();
+            this.documentNorms[documentId] = norm(document.getValue());
+            for (KVPair<String, Double> pair : document.getValue()) {
+                if (!builders.containsKey(pair.getKey())) {
+                    builders.put(pair.getKey(), new PostingsBuilder());
+                }
+                builders.get(pair.getKey()).add(documentId, pair.getValue());
+            }
+            documentId++;
+        }
+
+        this.encodedPostings = new ChainedHashDictionary<>();
+        for (KVPair<String, PostingsBuilder> pair : builders) {
+            PostingsBuilder builder = pair.getValue();
+            this.encodedPostings.put(
+                    pair.getKey(),
+                    PostingList.encode(builder.documentIds, builder.weights, builder.size));
+        }
+    }
+
     /**
      * Helper method that is used to help compute the TfIdf score
      * @param words - The list of words to compute the score for
@@ -162,4 +379,27 @@ public class TfIdfAnalyzer {
         }
         return Math.sqrt(output);
     }
+
+    /**
+     * Accumulates the postings for a single word while we are building the index.
+     */
+    private static class PostingsBuilder {
+        public int[] documentIds = new int[4];
+        public double[] weights = new double[4];
+        public int size = 0;
+
+        public void add(int documentId, double weight) {
+            if (this.size == this.documentIds.length) {
+                int[] newIds = new int[this.size * 2];
+                double[] newWeights = new double[this.size * 2];
+                System.arraycopy(this.documentIds, 0, newIds, 0, this.size);
+                System.arraycopy(this.weights, 0, newWeights, 0, this.size);
+                this.documentIds = newIds;
+                this.weights = newWeights;
+            }
+            this.documentIds[this.size] = documentId;
+            this.weights[this.size] = weight;
+            this.size++;
+        }
+    }
 }
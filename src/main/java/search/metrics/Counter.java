@@ -0,0 +1,47 @@
+package search.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count of something that only ever goes up (pages loaded, cache hits, and so on).
+ *
+ * Counting is lock-free, and cheap even when many threads count at once: each thread
+ * mostly adds to its own cell, and the cells are only summed when the count is read.
+ */
+public class Counter implements Metric {
+    private final String name;
+    private final String help;
+    private final LongAdder count;
+
+    public Counter(String name, String help) {
+        this.name = name;
+        this.help = help;
+        this.count = new LongAdder();
+    }
+
+    public void increment() {
+        this.count.increment();
+    }
+
+    public void add(long amount) {
+        this.count.add(amount);
+    }
+
+    /**
+     * Returns the count so far.
+     */
+    public long get() {
+        return this.count.sum();
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public void writeTo(StringBuilder out) {
+        MetricsRegistry.writeHeader(out, this.name, this.help, "counter");
+        out.append(this.name).append(' ').append(this.get()).append('\n');
+    }
+}
@@ -0,0 +1,38 @@
+package search.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A value that can go up and down (such as how many requests are in flight), read from
+ * wherever it is kept whenever the metrics are reported.
+ *
+ * A count kept elsewhere (which only goes up) can be reported the same way, as a counter.
+ */
+public class Gauge implements Metric {
+    private final String name;
+    private final String help;
+    private final String type;
+    private final LongSupplier value;
+
+    public Gauge(String name, String help, LongSupplier value) {
+        this(name, help, "gauge", value);
+    }
+
+    Gauge(String name, String help, String type, LongSupplier value) {
+        this.name = name;
+        this.help = help;
+        this.type = type;
+        this.value = value;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public void writeTo(StringBuilder out) {
+        MetricsRegistry.writeHeader(out, this.name, this.help, this.type);
+        out.append(this.name).append(' ').append(this.value.getAsLong()).append('\n');
+    }
+}
@@ -0,0 +1,162 @@
+package search.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long something took, many times over, and reports the distribution.
+ *
+ * Like HdrHistogram, this counts durations in log-linear buckets: each power of two is
+ * split into 16 equal sub-buckets, so every duration lands in a bucket less than 6.25%
+ * wider than it, whatever its magnitude (from nanoseconds up to minutes). Recording
+ * is a couple of bit operations and two lock-free increments, so it is cheap enough to
+ * do on every query, from any number of threads.
+ *
+ * Histograms are reported as Prometheus summaries: a few quantiles (each the upper end
+ * of the bucket it falls in), plus the count and total of everything recorded.
+ */
+public class Histogram implements Metric {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Durations of 2^40 ns (about 18 minutes) or more all land in one extra, last bucket.
+    private static final int MAX_EXPONENT = 40;
+    private static final int NUM_BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + 1;
+
+    private static final double[] QUANTILES = new double[] {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final String name;
+    private final String help;
+    private final AtomicLongArray buckets;
+    private final LongAdder totalNanos;
+
+    /**
+     * Creates a histogram of durations. Its name should end in "_seconds", since that is
+     * the unit we report them in.
+     */
+    public Histogram(String name, String help) {
+        this.name = name;
+        this.help = help;
+        this.buckets = new AtomicLongArray(NUM_BUCKETS);
+        this.totalNanos = new LongAdder();
+    }
+
+    /**
+     * Records a duration, in nanoseconds. Negative durations count as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.buckets.incrementAndGet(bucketOf(value));
+        this.totalNanos.add(value);
+    }
+
+    /**
+     * Records the time since 'startNanos' (a value of System.nanoTime()), and returns the
+     * current time, so consecutive phases can be timed one after another.
+     */
+    public long recordSince(long startNanos) {
+        long now = System.nanoTime();
+        this.record(now - startNanos);
+        return now;
+    }
+
+    /**
+     * Returns how many durations have been recorded.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            count += this.buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns (an upper bound within 6.25% of) the duration, in nanoseconds, which the
+     * given fraction of recorded durations are at most; or 0 if nothing was recorded.
+     */
+    public long getQuantile(double quantile) {
+        long[] counts = this.snapshot();
+        return quantileOf(counts, sum(counts), quantile);
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public void writeTo(StringBuilder out) {
+        // Recording carries on while we read, so these numbers may be a few recordings
+        // apart from each other; that's fine for monitoring.
+        long[] counts = this.snapshot();
+        long count = sum(counts);
+        MetricsRegistry.writeHeader(out, this.name, this.help, "summary");
+        for (double quantile : QUANTILES) {
+            out.append(this.name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(quantileOf(counts, count, quantile) / NANOS_PER_SECOND).append('\n');
+        }
+        out.append(this.name).append("_sum ").append(this.totalNanos.sum() / NANOS_PER_SECOND).append('\n');
+        out.append(this.name).append("_count ").append(count).append('\n');
+    }
+
+    private long[] snapshot() {
+        long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+        return counts;
+    }
+
+    private static long sum(long[] counts) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    private static long quantileOf(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValueIn(i);
+            }
+        }
+        return highestValueIn(counts.length - 1);
+    }
+
+    /**
+     * Returns the index of the bucket holding the given (non-negative) value.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return NUM_BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest value that lands in the given bucket.
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lowest = (SUB_BUCKETS + bucket % SUB_BUCKETS) * width;
+        return lowest + width - 1;
+    }
+}
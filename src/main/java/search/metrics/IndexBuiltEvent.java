@@ -0,0 +1,31 @@
+package search.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event covering building the TF-IDF index: the IDF scores,
+ * every page's TF-IDF vector, and the compressed postings.
+ */
+@Name("search.IndexBuilt")
+@Label("Index Built")
+@Category({"Search Engine", "Indexing"})
+@Description("Building the TF-IDF index over every page")
+@StackTrace(false)
+public class IndexBuiltEvent extends Event {
+    @Label("Documents")
+    public int documents;
+
+    @Label("Terms")
+    public int terms;
+
+    @Label("Postings Size")
+    @Description("The size of every posting list, compressed")
+    @DataAmount
+    public long postingsBytes;
+}
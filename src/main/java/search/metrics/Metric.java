@@ -0,0 +1,17 @@
+package search.metrics;
+
+/**
+ * Something we measure and report from '/metrics'.
+ */
+public interface Metric {
+    /**
+     * Returns this metric's name, which must be a valid Prometheus metric name.
+     */
+    String getName();
+
+    /**
+     * Appends this metric's current value(s), with its HELP and TYPE lines, to the given
+     * builder in the Prometheus text exposition format.
+     */
+    void writeTo(StringBuilder out);
+}
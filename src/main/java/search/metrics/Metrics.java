@@ -0,0 +1,45 @@
+package search.metrics;
+
+/**
+ * The metrics we keep about indexing and answering queries, all reported from '/metrics'.
+ * Other metrics (such as the Webapp's load-shedding gauges) are added to REGISTRY by
+ * whatever owns them.
+ */
+public final class Metrics {
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    // The phases of answering a query, in the order they happen.
+    public static final Histogram QUERY_PARSE = REGISTRY.histogram(
+            "search_query_parse_seconds", "Time spent tokenizing queries");
+    public static final Histogram CANDIDATE_GENERATION = REGISTRY.histogram(
+            "search_candidate_generation_seconds", "Time spent finding and TF-IDF scoring pages matching queries");
+    public static final Histogram SCORING = REGISTRY.histogram(
+            "search_scoring_seconds", "Time spent combining scores and keeping the best results");
+    public static final Histogram TOP_K = REGISTRY.histogram(
+            "search_top_k_seconds", "Time spent putting the best results in order");
+    public static final Histogram RENDERING = REGISTRY.histogram(
+            "search_rendering_seconds", "Time spent writing out results pages and API responses");
+    public static final Histogram QUERY = REGISTRY.histogram(
+            "search_query_seconds", "Time spent answering queries, from parsing to rendering");
+
+    public static final Counter SLOW_QUERIES = REGISTRY.counter(
+            "search_slow_queries_total", "Queries written to the slow query log");
+    public static final Counter SLOW_QUERIES_DROPPED = REGISTRY.counter(
+            "search_slow_queries_dropped_total", "Slow queries not logged because the log was falling behind");
+
+    public static final Counter PAGES_LOADED = REGISTRY.counter(
+            "search_pages_loaded_total", "Pages loaded for indexing");
+    public static final Counter PAGE_CACHE_HITS = REGISTRY.counter(
+            "search_page_cache_hits_total", "Pages loaded from their parsed cache file");
+    public static final Counter PAGE_CACHE_MISSES = REGISTRY.counter(
+            "search_page_cache_misses_total", "Pages which had to be parsed, having no up-to-date cache file");
+    public static final Counter POSTINGS_CACHE_HITS = REGISTRY.counter(
+            "search_postings_cache_hits_total", "Postings lookups answered from the decoded postings cache");
+    public static final Counter POSTINGS_CACHE_MISSES = REGISTRY.counter(
+            "search_postings_cache_misses_total", "Postings lookups which had to decode the postings");
+    public static final Counter PAGE_RANK_ITERATIONS = REGISTRY.counter(
+            "search_page_rank_iterations_total", "Page rank iterations run");
+
+    private Metrics() {
+    }
+}
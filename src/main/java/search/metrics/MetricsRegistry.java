@@ -0,0 +1,70 @@
+package search.metrics;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.interfaces.IList;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Holds a set of metrics, and reports them all in the Prometheus text exposition format.
+ *
+ * This class is thread-safe. Registering and reporting take a lock, but recording a
+ * measurement goes straight to the metric and never touches the registry.
+ */
+public class MetricsRegistry {
+    private final IList<Metric> metrics;
+
+    public MetricsRegistry() {
+        this.metrics = new ArrayBackedList<>();
+    }
+
+    /**
+     * Adds the given metric, replacing any metric already registered under its name
+     * (say, one belonging to an earlier SearchEngine), and returns it.
+     */
+    public synchronized <T extends Metric> T register(T metric) {
+        for (int i = 0; i < this.metrics.size(); i++) {
+            if (this.metrics.get(i).getName().equals(metric.getName())) {
+                this.metrics.set(i, metric);
+                return metric;
+            }
+        }
+        this.metrics.add(metric);
+        return metric;
+    }
+
+    public Counter counter(String name, String help) {
+        return this.register(new Counter(name, help));
+    }
+
+    public Histogram histogram(String name, String help) {
+        return this.register(new Histogram(name, help));
+    }
+
+    public Gauge gauge(String name, String help, LongSupplier value) {
+        return this.register(new Gauge(name, help, value));
+    }
+
+    /**
+     * Registers a count kept somewhere else, read from 'value' whenever we report it.
+     */
+    public Gauge counter(String name, String help, LongSupplier value) {
+        return this.register(new Gauge(name, help, "counter", value));
+    }
+
+    /**
+     * Returns every metric's current value(s), in the order they were registered.
+     */
+    public synchronized String toPrometheusText() {
+        StringBuilder out = new StringBuilder();
+        for (Metric metric : this.metrics) {
+            metric.writeTo(out);
+        }
+        return out.toString();
+    }
+
+    static void writeHeader(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+}
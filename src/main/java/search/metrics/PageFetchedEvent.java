@@ -0,0 +1,35 @@
+package search.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event covering the scraper fetching one page, from sending
+ * the request to having the whole response. Fetches finish on the HTTP client's
+ * threads, so that is the thread these events are recorded against.
+ */
+@Name("search.PageFetched")
+@Label("Page Fetched")
+@Category({"Search Engine", "Crawling"})
+@Description("Fetching a page while crawling")
+@StackTrace(false)
+public class PageFetchedEvent extends Event {
+    @Label("URI")
+    public String uri;
+
+    @Label("Status")
+    @Description("The HTTP status code, or -1 if the request failed")
+    public int status;
+
+    @Label("Body Length")
+    @Description("The length of the page, in characters (0 if there was no body)")
+    public int length;
+
+    @Label("Recrawl")
+    @Description("Whether this was checking a saved page for changes")
+    public boolean recrawl;
+}
@@ -0,0 +1,29 @@
+package search.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event covering loading (and, unless it was cached, parsing)
+ * one saved page for indexing.
+ */
+@Name("search.PageLoaded")
+@Label("Page Loaded")
+@Category({"Search Engine", "Indexing"})
+@Description("Loading a saved page for indexing")
+@StackTrace(false)
+public class PageLoadedEvent extends Event {
+    @Label("URI")
+    public String uri;
+
+    @Label("Source")
+    @Description("Where the page came from: \"cache\", \"file\" or \"store\"")
+    public String source;
+
+    @Label("Words")
+    public int words;
+}
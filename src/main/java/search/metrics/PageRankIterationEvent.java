@@ -0,0 +1,29 @@
+package search.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event covering one iteration of computing page ranks.
+ */
+@Name("search.PageRankIteration")
+@Label("Page Rank Iteration")
+@Category({"Search Engine", "Indexing"})
+@Description("One iteration of updating every page's rank")
+@StackTrace(false)
+public class PageRankIterationEvent extends Event {
+    @Label("Iteration")
+    @Description("Which iteration this was, counting from 1")
+    public int iteration;
+
+    @Label("Pages")
+    public int pages;
+
+    @Label("Converged")
+    @Description("Whether no rank changed by more than epsilon, so this was the last iteration")
+    public boolean converged;
+}
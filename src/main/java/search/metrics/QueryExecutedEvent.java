@@ -0,0 +1,45 @@
+package search.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event covering the SearchEngine ranking the results of one
+ * query, from going through the postings to putting the best results in order.
+ *
+ * Like our other events (see the "Search Engine" category in JDK Mission Control),
+ * this costs next to nothing unless a recording is running: start one with
+ * '-XX:StartFlightRecording=filename=search.jfr' or 'jcmd <pid> JFR.start'.
+ */
+@Name("search.QueryExecuted")
+@Label("Query Executed")
+@Category({"Search Engine", "Queries"})
+@Description("Ranking the results of a search query")
+@StackTrace(false)
+public class QueryExecutedEvent extends Event {
+    @Label("Query")
+    @Description("The query's words, after tokenizing")
+    public String query;
+
+    @Label("Scoring Mode")
+    public String mode;
+
+    @Label("Results Wanted")
+    public int k;
+
+    @Label("Candidates")
+    @Description("Pages containing at least one query word")
+    public int candidates;
+
+    @Label("Scored")
+    @Description("Candidates scored before finishing or running out of time")
+    public int scored;
+
+    @Label("Partial")
+    @Description("Whether the query ran out of time")
+    public boolean partial;
+}
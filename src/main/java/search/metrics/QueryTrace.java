@@ -0,0 +1,170 @@
+package search.metrics;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.KVPair;
+import datastructures.interfaces.IList;
+
+/**
+ * What happened while answering one query: how long each phase took, how many pages
+ * matched, and how long the postings we went through were. The Webapp creates one per
+ * search and hands it to the SearchEngine alongside the query's Deadline; afterwards,
+ * slow queries are written to the SlowQueryLog.
+ *
+ * Ending a phase also records its time in the matching histogram in Metrics, so every
+ * query shows up in '/metrics' whether or not it was slow.
+ *
+ * A trace belongs to a single query, and is not thread-safe.
+ */
+public class QueryTrace {
+    /**
+     * The phases of answering a query, in the order they happen.
+     */
+    public enum Phase {
+        PARSE("parse", Metrics.QUERY_PARSE),
+        CANDIDATE_GENERATION("candidates", Metrics.CANDIDATE_GENERATION),
+        SCORING("scoring", Metrics.SCORING),
+        TOP_K("top_k", Metrics.TOP_K),
+        RENDERING("render", Metrics.RENDERING);
+
+        private final String name;
+        private final Histogram histogram;
+
+        Phase(String name, Histogram histogram) {
+            this.name = name;
+            this.histogram = histogram;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+    }
+
+    private final String query;
+    private final long startMillis;
+    private final long startNanos;
+    private final long[] phaseNanos;
+    private final IList<KVPair<String, Integer>> postingsLengths;
+    private int candidates;
+    private int scored;
+    private boolean partial;
+    private long totalNanos;
+
+    /**
+     * Starts tracing a query made outside the Webapp (so with no query string to log).
+     */
+    public QueryTrace() {
+        this(null);
+    }
+
+    /**
+     * Starts tracing the given query, as typed by the user.
+     */
+    public QueryTrace(String query) {
+        this.query = query;
+        this.startMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+        this.phaseNanos = new long[Phase.values().length];
+        this.postingsLengths = new ArrayBackedList<>();
+        this.totalNanos = -1;
+    }
+
+    /**
+     * Returns System.nanoTime() as of when this trace started, to time the first phase from.
+     */
+    public long getStartNanos() {
+        return this.startNanos;
+    }
+
+    /**
+     * Records that the given phase ran from 'phaseStartNanos' (a value of System.nanoTime())
+     * until now, and returns the current time, so the next phase can be timed from it.
+     */
+    public long endPhase(Phase phase, long phaseStartNanos) {
+        long now = System.nanoTime();
+        long elapsed = now - phaseStartNanos;
+        this.phaseNanos[phase.ordinal()] += elapsed;
+        phase.histogram.record(elapsed);
+        return now;
+    }
+
+    /**
+     * Records that we went through the postings of the given word, which had the given
+     * number of entries.
+     */
+    public void addPostings(String word, int length) {
+        this.postingsLengths.add(new KVPair<>(word, length));
+    }
+
+    /**
+     * Records how many pages contained some query word, and how many of those we scored
+     * before finishing (or running out of time).
+     */
+    public void setCandidates(int candidates, int scored) {
+        this.candidates = candidates;
+        this.scored = scored;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
+    /**
+     * Marks the query as answered, records its total time, and returns that time in
+     * nanoseconds. Later calls return the same time.
+     */
+    public long finish() {
+        if (this.totalNanos < 0) {
+            this.totalNanos = System.nanoTime() - this.startNanos;
+            Metrics.QUERY.record(this.totalNanos);
+        }
+        return this.totalNanos;
+    }
+
+    /**
+     * Returns the query string, or null if we weren't given one.
+     */
+    public String getQuery() {
+        return this.query;
+    }
+
+    /**
+     * Returns when this trace started, in milliseconds since the epoch.
+     */
+    public long getStartMillis() {
+        return this.startMillis;
+    }
+
+    /**
+     * Returns how long the given phase took, in nanoseconds (0 if it hasn't run).
+     */
+    public long getPhaseNanos(Phase phase) {
+        return this.phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * Returns the total time taken, in nanoseconds, or -1 if 'finish' hasn't been called.
+     */
+    public long getTotalNanos() {
+        return this.totalNanos;
+    }
+
+    /**
+     * Returns each word whose postings we went through, rarest first, with its postings'
+     * length.
+     */
+    public IList<KVPair<String, Integer>> getPostingsLengths() {
+        return this.postingsLengths;
+    }
+
+    public int getCandidates() {
+        return this.candidates;
+    }
+
+    public int getScored() {
+        return this.scored;
+    }
+
+    public boolean isPartial() {
+        return this.partial;
+    }
+}
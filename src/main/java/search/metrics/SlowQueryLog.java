@@ -0,0 +1,234 @@
+package search.metrics;
+
+import datastructures.concrete.KVPair;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs every query which took longer than some threshold, with where the time went:
+ * one line per query, like
+ *
+ *   2026-01-01T12:00:00.000Z total_ms=312.512 parse_ms=0.021 candidates_ms=250.103
+ *   scoring_ms=50.200 top_k_ms=0.310 render_ms=11.504 candidates=48211 scored=48211
+ *   partial=false postings=york:50123,new:120934 query="new york"
+ *
+ * (all on one line). Postings are listed in the order we went through them, rarest first.
+ *
+ * Request threads only ever hand the query's trace to a bounded queue; a background
+ * thread formats and writes them out. If the queue is full (the disk is slow, or
+ * everything is suddenly slow), we drop the query rather than wait, and count it in
+ * '/metrics'.
+ *
+ * Once the log file grows past 'maxFileBytes', it is renamed to "<file>.1" (and an
+ * existing "<file>.1" to "<file>.2", and so on), keeping at most 'maxOldFiles' old logs.
+ */
+public class SlowQueryLog implements Closeable {
+    public static final long DEFAULT_MAX_FILE_BYTES = 16L * 1024 * 1024;
+    public static final int DEFAULT_MAX_OLD_FILES = 4;
+
+    // How many slow queries may be waiting to be written before we start dropping them.
+    private static final int QUEUE_CAPACITY = 1024;
+
+    // Tells the writer thread to stop once it has written everything before it.
+    private static final QueryTrace STOP = new QueryTrace();
+
+    private final Path file;
+    private final long thresholdNanos;
+    private final long maxFileBytes;
+    private final int maxOldFiles;
+    private final BlockingQueue<QueryTrace> pending;
+    private final Thread writer;
+
+    // Only touched by the writer thread.
+    private OutputStream out;
+    private long fileBytes;
+
+    /**
+     * Starts logging queries which take at least 'thresholdMillis' to the given file,
+     * rolling it over at the default size.
+     */
+    public SlowQueryLog(Path file, long thresholdMillis) {
+        this(file, thresholdMillis, DEFAULT_MAX_FILE_BYTES, DEFAULT_MAX_OLD_FILES);
+    }
+
+    public SlowQueryLog(Path file, long thresholdMillis, long maxFileBytes, int maxOldFiles) {
+        if (thresholdMillis < 0 || maxFileBytes <= 0 || maxOldFiles < 0) {
+            throw new IllegalArgumentException("Bad slow query log settings");
+        }
+        this.file = file;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.maxFileBytes = maxFileBytes;
+        this.maxOldFiles = maxOldFiles;
+        this.pending = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.writer = new Thread(this::writeAll, "slow-query-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Finishes the given trace, and queues it to be logged if the query was slow. Never
+     * blocks. Returns 'true' if the query will be logged.
+     */
+    public boolean offer(QueryTrace trace) {
+        if (trace.finish() < this.thresholdNanos) {
+            return false;
+        }
+        if (!this.pending.offer(trace)) {
+            Metrics.SLOW_QUERIES_DROPPED.increment();
+            return false;
+        }
+        Metrics.SLOW_QUERIES.increment();
+        return true;
+    }
+
+    /**
+     * Writes out every query queued so far, then stops the writer thread.
+     */
+    @Override
+    public void close() {
+        try {
+            this.pending.put(STOP);
+            this.writer.join();
+        } catch (InterruptedException ex) {
+            this.writer.interrupt();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeAll() {
+        try {
+            while (true) {
+                QueryTrace trace = this.pending.take();
+                if (trace == STOP) {
+                    break;
+                }
+                this.write(format(trace).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (InterruptedException ex) {
+            // We're being shut down; whatever is still queued is lost.
+        } finally {
+            this.closeFile();
+        }
+    }
+
+    private void write(byte[] line) {
+        try {
+            if (this.out != null && this.fileBytes > 0 && this.fileBytes + line.length > this.maxFileBytes) {
+                this.closeFile();
+                this.rollOver();
+            }
+            if (this.out == null) {
+                this.open();
+            }
+            this.out.write(line);
+            this.fileBytes += line.length;
+            if (this.pending.isEmpty()) {
+                this.out.flush();
+            }
+        } catch (IOException ex) {
+            // Try again (with a fresh file handle) on the next slow query.
+            System.err.println(String.format("Error writing slow query log '%s': %s", this.file, ex));
+            this.closeFile();
+        }
+    }
+
+    private void open() throws IOException {
+        Path parent = this.file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.fileBytes = Files.exists(this.file) ? Files.size(this.file) : 0;
+        this.out = new BufferedOutputStream(Files.newOutputStream(
+                this.file, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+    }
+
+    private void rollOver() throws IOException {
+        if (this.maxOldFiles == 0) {
+            Files.deleteIfExists(this.file);
+            return;
+        }
+        for (int i = this.maxOldFiles - 1; i >= 1; i--) {
+            Path older = this.oldFile(i);
+            if (Files.exists(older)) {
+                Files.move(older, this.oldFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(this.file, this.oldFile(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path oldFile(int generation) {
+        return this.file.resolveSibling(this.file.getFileName() + "." + generation);
+    }
+
+    private void closeFile() {
+        if (this.out == null) {
+            return;
+        }
+        try {
+            this.out.close();
+        } catch (IOException ex) {
+            System.err.println(String.format("Error closing slow query log '%s': %s", this.file, ex));
+        }
+        this.out = null;
+    }
+
+    /**
+     * Returns the log line for the given trace, including its trailing newline.
+     */
+    static String format(QueryTrace trace) {
+        StringBuilder line = new StringBuilder();
+        line.append(Instant.ofEpochMilli(trace.getStartMillis()));
+        appendMillis(line, "total", trace.getTotalNanos());
+        for (QueryTrace.Phase phase : QueryTrace.Phase.values()) {
+            appendMillis(line, phase.getName(), trace.getPhaseNanos(phase));
+        }
+        line.append(" candidates=").append(trace.getCandidates());
+        line.append(" scored=").append(trace.getScored());
+        line.append(" partial=").append(trace.isPartial());
+        line.append(" postings=");
+        String separator = "";
+        for (KVPair<String, Integer> postings : trace.getPostingsLengths()) {
+            line.append(separator).append(postings.getKey()).append(':').append(postings.getValue());
+            separator = ",";
+        }
+        line.append(" query=");
+        appendQuoted(line, trace.getQuery() == null ? "" : trace.getQuery());
+        return line.append('\n').toString();
+    }
+
+    private static void appendMillis(StringBuilder line, String name, long nanos) {
+        line.append(' ').append(name).append("_ms=").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+    }
+
+    /**
+     * Appends the given string in double quotes, escaping anything which would let it
+     * break out of them, or onto another line.
+     */
+    private static void appendQuoted(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20 || c == 0x7f || c == '\u2028' || c == '\u2029') {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,202 @@
+package search.misc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how many requests we work on at once, adjusting the limit to how fast they are
+ * being answered, so a burst of requests queues up (briefly) or is turned away instead
+ * of making every request slow.
+ *
+ * The limit follows the "gradient" approach used by TCP Vegas and Netflix's concurrency
+ * limits: we keep two moving averages of how long requests take, one over the last few
+ * dozen requests and one over the last several hundred. While the recent average is
+ * close to the long-term one, the CPU is keeping up and the limit creeps upward; when
+ * requests start taking longer than usual, they are queueing for the CPU somewhere, and
+ * the limit shrinks in proportion.
+ *
+ * A request that can't start at once waits for a permit, but only up to the queue time
+ * budget, and only if fewer requests are waiting than could be run at once. Otherwise
+ * it is rejected straight away, so the caller can fail fast.
+ *
+ * This class is thread-safe.
+ */
+public class ConcurrencyLimiter {
+    // Moving average windows, in requests.
+    private static final double SHORT_WINDOW = 20;
+    private static final double LONG_WINDOW = 500;
+
+    // How much slower than usual requests may get before we shrink the limit, and the
+    // most we shrink it by on any one request.
+    private static final double TOLERANCE = 1.5;
+    private static final double MIN_GRADIENT = 0.5;
+
+    // How quickly the limit moves toward the new value each request suggests.
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long queueTimeoutNanos;
+    private final LongSupplier clock;
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private long rejected;
+    private double shortLatency;
+    private double longLatency;
+
+    /**
+     * Creates a limiter starting at the given limit, which is kept between 'minLimit'
+     * and 'maxLimit', letting requests wait for up to 'queueTimeoutMillis' to start.
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long queueTimeoutMillis) {
+        this(initialLimit, minLimit, maxLimit, queueTimeoutMillis, System::nanoTime);
+    }
+
+    /**
+     * Like the other constructor, but measures request latencies with the given clock
+     * (in nanoseconds) instead of System.nanoTime.
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long queueTimeoutMillis,
+                              LongSupplier clock) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit || queueTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Need 1 <= minLimit <= initialLimit <= maxLimit, queue timeout >= 0");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+        this.clock = clock;
+        this.limit = initialLimit;
+        this.inFlight = 0;
+        this.waiting = 0;
+        this.rejected = 0;
+        this.shortLatency = 0;
+        this.longLatency = 0;
+    }
+
+    /**
+     * Returns a permit to start a request, waiting for one for up to the queue time budget;
+     * or null if the request should be rejected. Every permit returned must be released
+     * once the request is done.
+     */
+    public synchronized Permit tryAcquire() throws InterruptedException {
+        if (this.inFlight >= this.getLimit()) {
+            if (this.waiting >= this.getLimit() || this.queueTimeoutNanos == 0) {
+                this.rejected++;
+                return null;
+            }
+            long deadline = System.nanoTime() + this.queueTimeoutNanos;
+            this.waiting++;
+            try {
+                while (this.inFlight >= this.getLimit()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        this.rejected++;
+                        return null;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } finally {
+                this.waiting--;
+            }
+        }
+        this.inFlight++;
+        return new Permit(this.clock.getAsLong(), this.inFlight);
+    }
+
+    /**
+     * Returns how many requests may currently run at once.
+     */
+    public synchronized int getLimit() {
+        return (int) this.limit;
+    }
+
+    /**
+     * Returns how many requests are running right now.
+     */
+    public synchronized int getInFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * Returns how many requests are waiting to start right now.
+     */
+    public synchronized int getWaiting() {
+        return this.waiting;
+    }
+
+    /**
+     * Returns how many requests have been rejected so far.
+     */
+    public synchronized long getRejected() {
+        return this.rejected;
+    }
+
+    private synchronized void release(long latency, int inFlightAtStart) {
+        this.inFlight--;
+        this.update(latency, inFlightAtStart);
+        this.notifyAll();
+    }
+
+    private void update(long latency, int inFlightAtStart) {
+        if (this.longLatency == 0) {
+            this.shortLatency = latency;
+            this.longLatency = latency;
+            return;
+        }
+        this.shortLatency += (latency - this.shortLatency) * 2 / (SHORT_WINDOW + 1);
+        this.longLatency += (latency - this.longLatency) * 2 / (LONG_WINDOW + 1);
+
+        // After a long overload the long-term average is inflated too; let it recover
+        // quickly once requests are fast again, so we don't tolerate slowness for ages.
+        if (this.longLatency > 2 * this.shortLatency) {
+            this.longLatency *= 0.95;
+        }
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * this.longLatency / this.shortLatency));
+
+        // The square root of the limit leaves room for a few queued requests, which is
+        // what lets the limit grow when there's spare capacity.
+        double newLimit = this.limit * gradient + Math.sqrt(this.limit);
+
+        // If we weren't using most of the limit, fast requests don't tell us we could
+        // handle more, so only let it shrink.
+        if (inFlightAtStart * 2 < this.limit) {
+            newLimit = Math.min(newLimit, this.limit);
+        }
+
+        newLimit = this.limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, newLimit));
+    }
+
+    /**
+     * Permission to run a single request.
+     */
+    public final class Permit {
+        private final long start;
+        private final int inFlightAtStart;
+        private boolean released;
+
+        private Permit(long start, int inFlightAtStart) {
+            this.start = start;
+            this.inFlightAtStart = inFlightAtStart;
+            this.released = false;
+        }
+
+        /**
+         * Marks this request as done, letting another one start. Releasing a permit
+         * more than once does nothing.
+         */
+        public void release() {
+            ConcurrencyLimiter limiter = ConcurrencyLimiter.this;
+            long latency = limiter.clock.getAsLong() - this.start;
+            synchronized (limiter) {
+                if (!this.released) {
+                    this.released = true;
+                    limiter.release(latency, this.inFlightAtStart);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package search.misc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A point in time by which some piece of work (such as answering a query) should be
+ * done. Long-running loops call 'check' every so often and wrap up early once it
+ * returns true; afterwards 'wasHit' tells the caller its answer is incomplete.
+ *
+ * A deadline belongs to a single piece of work, and is not thread-safe.
+ */
+public class Deadline {
+    /**
+     * A deadline that never passes.
+     */
+    public static final Deadline NONE = new Deadline(Long.MAX_VALUE, null);
+
+    private final long budgetNanos;
+    private final LongSupplier clock;
+    private final long start;
+    private boolean hit;
+
+    /**
+     * Creates a deadline 'budgetNanos' after now, as told by the given clock (in
+     * nanoseconds), or one that never passes if the clock is null.
+     */
+    public Deadline(long budgetNanos, LongSupplier clock) {
+        this.budgetNanos = budgetNanos;
+        this.clock = clock;
+        this.start = clock == null ? 0 : clock.getAsLong();
+        this.hit = false;
+    }
+
+    /**
+     * Returns a deadline the given number of milliseconds from now.
+     */
+    public static Deadline after(long millis) {
+        return new Deadline(TimeUnit.MILLISECONDS.toNanos(millis), System::nanoTime);
+    }
+
+    /**
+     * Returns 'true' if the deadline has passed, in which case the caller should stop
+     * as soon as it can.
+     */
+    public boolean check() {
+        if (!this.hit && this.clock != null && this.clock.getAsLong() - this.start >= this.budgetNanos) {
+            this.hit = true;
+        }
+        return this.hit;
+    }
+
+    /**
+     * Returns 'true' if an earlier call to 'check' found the deadline had passed.
+     */
+    public boolean wasHit() {
+        return this.hit;
+    }
+}
@@ -0,0 +1,47 @@
+package search.misc;
+
+/**
+ * The 64-bit hashes we use where Java's 32-bit 'hashCode' is too weak: fingerprints of
+ * URIs in UrlSeenSet, and of words and shingles in NearDuplicateDetector.
+ */
+public class Hashing {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Returns the 64-bit FNV-1a hash of the given string's characters. This is cheap but
+     * poorly mixed in its low bits; pass it through 'mix' before relying on those.
+     */
+    public static long fnv1a(CharSequence value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the 64-bit FNV-1a hash of the first 'length' characters in 'buffer'.
+     */
+    public static long fnv1a(char[] buffer, int length) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < length; i++) {
+            hash ^= buffer[i];
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * MurmurHash3's 64-bit finalizer, so every output bit depends on every input bit.
+     */
+    public static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,147 @@
+package search.misc;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes JSON straight to a Writer as it is produced, one token at a time, so we never
+ * build the whole document (or a tree of maps describing it) in memory.
+ *
+ * The caller is responsible for producing a well-formed document: every 'beginObject'
+ * must be matched by an 'endObject', every value inside an object must be preceded by
+ * 'name', and so on. Commas and quoting are handled here.
+ */
+public class JsonWriter {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+
+    // Whether the next value or name follows an earlier one at the same level.
+    private boolean needsComma;
+
+    public JsonWriter(Writer out) {
+        this.out = out;
+        this.needsComma = false;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        this.separate();
+        this.out.write('{');
+        this.needsComma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        this.out.write('}');
+        this.needsComma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        this.separate();
+        this.out.write('[');
+        this.needsComma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        this.out.write(']');
+        this.needsComma = true;
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of the current object.
+     */
+    public JsonWriter name(String name) throws IOException {
+        this.separate();
+        this.writeString(name);
+        this.out.write(':');
+        this.needsComma = false;
+        return this;
+    }
+
+    /**
+     * Writes the given string, or null if it is null.
+     */
+    public JsonWriter value(String value) throws IOException {
+        this.separate();
+        if (value == null) {
+            this.out.write("null");
+        } else {
+            this.writeString(value);
+        }
+        this.needsComma = true;
+        return this;
+    }
+
+    /**
+     * Writes the given number, or null if it is NaN or infinite (which JSON can't represent).
+     */
+    public JsonWriter value(double value) throws IOException {
+        this.separate();
+        this.out.write(Double.isFinite(value) ? Double.toString(value) : "null");
+        this.needsComma = true;
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        this.separate();
+        this.out.write(Long.toString(value));
+        this.needsComma = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        this.separate();
+        this.out.write(value ? "true" : "false");
+        this.needsComma = true;
+        return this;
+    }
+
+    public void flush() throws IOException {
+        this.out.flush();
+    }
+
+    private void separate() throws IOException {
+        if (this.needsComma) {
+            this.out.write(',');
+        }
+    }
+
+    private static boolean needsEscape(char c) {
+        return c < ' ' || c == '"' || c == '\\' || c == '\u2028' || c == '\u2029';
+    }
+
+    private void writeString(String value) throws IOException {
+        this.out.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!needsEscape(c)) {
+                continue;
+            }
+            this.out.write(value, start, i - start);
+            start = i + 1;
+            if (c == '"' || c == '\\') {
+                this.out.write('\\');
+                this.out.write(c);
+            } else if (c == '\n') {
+                this.out.write("\\n");
+            } else if (c == '\r') {
+                this.out.write("\\r");
+            } else if (c == '\t') {
+                this.out.write("\\t");
+            } else {
+                // Other control characters, and the two line separators JavaScript
+                // doesn't allow in string literals.
+                this.out.write("\\u");
+                for (int shift = 12; shift >= 0; shift -= 4) {
+                    this.out.write(HEX_DIGITS[(c >> shift) & 0xF]);
+                }
+            }
+        }
+        this.out.write(value, start, value.length() - start);
+        this.out.write('"');
+    }
+}
@@ -0,0 +1,205 @@
+package search.misc;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+
+/**
+ * Finds pages whose text is almost the same as a page we have already seen: mirrors,
+ * printable versions, and copies that differ only in a timestamp or a few words.
+ *
+ * Each page is reduced to a 64-bit SimHash (Charikar) of its overlapping runs of
+ * SHINGLE_SIZE words. Unlike an ordinary hash, similar texts get fingerprints that
+ * differ in only a few bits, so we call two pages near-duplicates if their fingerprints
+ * differ in at most 'maxDistance' bits.
+ *
+ * To avoid comparing each new fingerprint against every old one, we split fingerprints
+ * into 'maxDistance + 1' bands. Two fingerprints that differ in at most 'maxDistance'
+ * bits must agree exactly on at least one band, so we only need to compare against
+ * fingerprints sharing a band, which we find with one hash lookup per band.
+ *
+ * Every method that touches the stored fingerprints synchronizes on this object.
+ */
+public class NearDuplicateDetector<K> {
+    public static final int DEFAULT_MAX_DISTANCE = 3;
+    public static final int SHINGLE_SIZE = 4;
+
+    // Pages with fewer shingles than this have too little text to judge, and are
+    // never treated as duplicates.
+    public static final int MIN_SHINGLES = 8;
+
+    // What 'fingerprint' returns for a page that is too short to fingerprint.
+    public static final long NO_FINGERPRINT = 0L;
+
+    private final int maxDistance;
+    private final int bandBits;
+    private final IList<IDictionary<Long, IList<Entry<K>>>> bands;
+    private int size;
+
+    public NearDuplicateDetector() {
+        this(DEFAULT_MAX_DISTANCE);
+    }
+
+    public NearDuplicateDetector(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > 7) {
+            throw new IllegalArgumentException("Maximum distance must be between 0 and 7");
+        }
+        this.maxDistance = maxDistance;
+        this.bandBits = Long.SIZE / (maxDistance + 1);
+        this.bands = new ArrayBackedList<>(maxDistance + 1);
+        for (int i = 0; i <= maxDistance; i++) {
+            this.bands.add(new ChainedHashDictionary<>());
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Returns the key of a previously added page within 'maxDistance' bits of the given
+     * fingerprint, or null if there is none. Does not add anything.
+     */
+    public synchronized K findDuplicate(long fingerprint) {
+        if (fingerprint == NO_FINGERPRINT) {
+            return null;
+        }
+        for (int band = 0; band < this.bands.size(); band++) {
+            IList<Entry<K>> bucket = this.bands.get(band).getOrDefault(this.bandOf(fingerprint, band), null);
+            if (bucket == null) {
+                continue;
+            }
+            for (Entry<K> entry : bucket) {
+                if (Long.bitCount(entry.fingerprint ^ fingerprint) <= this.maxDistance) {
+                    return entry.key;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Atomically checks for a near-duplicate of the given page and, if there is none,
+     * remembers the page under the given key. Returns the key of the near-duplicate,
+     * or null if the page was added (or was too short to fingerprint).
+     */
+    public synchronized K addIfUnique(K key, long fingerprint) {
+        if (fingerprint == NO_FINGERPRINT) {
+            return null;
+        }
+        K duplicate = this.findDuplicate(fingerprint);
+        if (duplicate != null) {
+            return duplicate;
+        }
+
+        Entry<K> entry = new Entry<>(key, fingerprint);
+        for (int band = 0; band < this.bands.size(); band++) {
+            IList<Entry<K>> bucket = this.bands.get(band)
+                    .computeIfAbsent(this.bandOf(fingerprint, band), value -> new ArrayBackedList<>(1));
+            bucket.add(entry);
+        }
+        this.size++;
+        return null;
+    }
+
+    /**
+     * Returns the number of pages added so far.
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    private long bandOf(long fingerprint, int band) {
+        int shift = band * this.bandBits;
+        // The last band also takes any bits left over when 64 does not divide evenly.
+        int bits = band == this.bands.size() - 1 ? Long.SIZE - shift : this.bandBits;
+        long mask = bits == Long.SIZE ? -1L : (1L << bits) - 1;
+        return (fingerprint >>> shift) & mask;
+    }
+
+    /**
+     * Returns the SimHash of the words in the given text (as split by WordTokenizer), or
+     * NO_FINGERPRINT if it has too few words.
+     */
+    public static long fingerprint(CharSequence text) {
+        SimHasher hasher = new SimHasher();
+        WordTokenizer.tokenize(text, hasher::addWord);
+        return hasher.finish();
+    }
+
+    /**
+     * Returns the SimHash of the given words, or NO_FINGERPRINT if there are too few.
+     */
+    public static long fingerprint(IList<String> words) {
+        SimHasher hasher = new SimHasher();
+        for (String word : words) {
+            hasher.addWord(word.toCharArray(), word.length());
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * Returns the number of bits in which the two fingerprints differ.
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static class Entry<K> {
+        public final K key;
+        public final long fingerprint;
+
+        public Entry(K key, long fingerprint) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Builds a SimHash one word at a time, hashing each word once and then combining the
+     * hashes of the last SHINGLE_SIZE words into the hash of each shingle.
+     */
+    private static class SimHasher {
+        private final long[] window;
+        private final int[] votes;
+        private int wordCount;
+        private int shingleCount;
+
+        public SimHasher() {
+            this.window = new long[SHINGLE_SIZE];
+            this.votes = new int[Long.SIZE];
+            this.wordCount = 0;
+            this.shingleCount = 0;
+        }
+
+        public void addWord(char[] buffer, int length) {
+            // FNV-1a alone is good enough here, since the shingle hash gets mixed below.
+            this.window[this.wordCount % SHINGLE_SIZE] = Hashing.fnv1a(buffer, length);
+            this.wordCount++;
+            if (this.wordCount < SHINGLE_SIZE) {
+                return;
+            }
+
+            long shingle = 0;
+            for (int i = this.wordCount - SHINGLE_SIZE; i < this.wordCount; i++) {
+                shingle = shingle * 31 + this.window[i % SHINGLE_SIZE];
+            }
+            shingle = Hashing.mix(shingle);
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                this.votes[bit] += ((shingle >>> bit) & 1L) == 0 ? -1 : 1;
+            }
+            this.shingleCount++;
+        }
+
+        public long finish() {
+            if (this.shingleCount < MIN_SHINGLES) {
+                return NO_FINGERPRINT;
+            }
+            long out = 0;
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                if (this.votes[bit] > 0) {
+                    out |= 1L << bit;
+                }
+            }
+            return out == NO_FINGERPRINT ? 1L : out;
+        }
+    }
+}
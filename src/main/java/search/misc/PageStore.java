@@ -0,0 +1,432 @@
+package search.misc;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.interfaces.IList;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An append-only store of crawled pages, packed into a few large compressed files
+ * instead of one small file per page.
+ *
+ * Pages are appended to numbered segments ("pages-00000.gz", "pages-00001.gz", ...),
+ * each holding up to about 'maxSegmentBytes'. Like a WARC.gz file, every page is its own
+ * gzip member, so a segment is a valid gzip file ('zcat' prints every page in it) and any
+ * one page can be decompressed on its own. Each page is stored exactly as Scraper used to
+ * write it to its own file: a "<!-- METADATA ... -->" header followed by the body.
+ *
+ * Next to each segment, an index ("pages-00000.idx") has one line per page: the offset and
+ * compressed length of its record, then its URI. A page is only part of the store once its
+ * index line has been written in full. If we crash in the middle of an append, opening the
+ * store again cuts off the half-written record and index line.
+ *
+ * A page found to be gone from the web (see 'appendRemoved') gets an index line with an
+ * empty record. Since no gzip member is empty, this cannot be confused with a real page.
+ *
+ * 'append' may be called from many threads at once: pages are compressed in the calling
+ * thread, and only the writes themselves synchronize on this object.
+ */
+public class PageStore implements Closeable {
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 256L * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "pages-";
+    private static final String SEGMENT_SUFFIX = ".gz";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * Receives each page read by 'forEach'. The contents are null if the page was
+     * marked removed (see 'appendRemoved').
+     */
+    @FunctionalInterface
+    public interface PageVisitor {
+        void visit(URI uri, byte[] contents) throws IOException;
+    }
+
+    /**
+     * Receives each record read by 'forEach', along with its contents (null if it marks a
+     * page removed).
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(Record record, byte[] contents) throws IOException;
+    }
+
+    /**
+     * Where one version of a page sits in the store, as read from its index line. A record
+     * never moves once written, so its segment and offset identify it for good.
+     */
+    public static class Record {
+        public final int segment;
+        public final long offset;
+        public final int length;
+        public final URI uri;
+
+        public Record(int segment, long offset, int length, URI uri) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.uri = uri;
+        }
+
+        /**
+         * Returns 'true' if this record marks its page as removed (see 'appendRemoved').
+         */
+        public boolean isRemoved() {
+            return this.length == 0;
+        }
+    }
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+
+    private int segmentNumber;
+    private FileChannel segment;
+    private FileChannel index;
+    private long segmentSize;
+    private long size;
+
+    public PageStore(Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    /**
+     * Opens the store in the given directory for appending, creating it if needed.
+     */
+    public PageStore(Path directory, long maxSegmentBytes) throws IOException {
+        if (maxSegmentBytes < 1) {
+            throw new IllegalArgumentException("Segments must be able to hold something");
+        }
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        Files.createDirectories(directory);
+
+        int last = lastSegmentNumber(directory);
+        this.size = 0;
+        for (int i = 0; i < last; i++) {
+            this.size += countLines(indexPath(directory, i));
+        }
+        this.open(Math.max(last, 0));
+    }
+
+    /**
+     * Returns 'true' if the given directory holds at least one segment.
+     */
+    public static boolean exists(Path directory) throws IOException {
+        return Files.isDirectory(directory) && lastSegmentNumber(directory) >= 0;
+    }
+
+    /**
+     * Appends the given page body, with the same metadata header Scraper has always
+     * written in front of it.
+     */
+    public void append(URI uri, String body) throws IOException {
+        String header = "<!-- METADATA\n" + "uri: " + uri + "\n" + "local: false\n" + "-->\n";
+        this.append(uri, (header + body).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends a page with the given contents, which must start with a metadata header.
+     */
+    public void append(URI uri, byte[] contents) throws IOException {
+        this.appendRecord(uri, compress(contents));
+    }
+
+    /**
+     * Records that the given page no longer exists, so readers can drop any version of it
+     * stored before.
+     */
+    public void appendRemoved(URI uri) throws IOException {
+        this.appendRecord(uri, new byte[0]);
+    }
+
+    private void appendRecord(URI uri, byte[] record) throws IOException {
+        String location = uri.toString();
+        if (location.indexOf('\n') >= 0 || location.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("URI cannot contain line breaks: " + location);
+        }
+
+        synchronized (this) {
+            if (this.segment == null) {
+                throw new IllegalStateException("Page store is closed");
+            }
+            if (this.segmentSize > 0 && this.segmentSize + record.length > this.maxSegmentBytes) {
+                this.closeSegment();
+                this.open(this.segmentNumber + 1);
+            }
+
+            writeFully(this.segment, ByteBuffer.wrap(record));
+            String line = this.segmentSize + "\t" + record.length + "\t" + location + "\n";
+            writeFully(this.index, ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+            this.segmentSize += record.length;
+            this.size++;
+        }
+    }
+
+    /**
+     * Returns the number of records in this store: one for every version of a page
+     * appended, and one for every removal.
+     */
+    public synchronized long size() {
+        return this.size;
+    }
+
+    /**
+     * Makes sure every page appended so far is on disk.
+     */
+    public synchronized void flush() throws IOException {
+        if (this.segment != null) {
+            this.segment.force(false);
+            this.index.force(false);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.segment != null) {
+            this.flush();
+            this.closeSegment();
+        }
+    }
+
+    /**
+     * Reads every page in the store in the given directory, in the order they were appended.
+     * Each segment is read from start to end in one pass.
+     */
+    public static void forEach(Path directory, PageVisitor visitor) throws IOException {
+        forEach(directory, record -> true, (record, contents) -> visitor.visit(record.uri, contents));
+    }
+
+    /**
+     * Like 'forEach(directory, visitor)', but only reads (and decompresses) the records
+     * 'wanted' accepts. The rest are skipped over without being passed to the visitor.
+     */
+    public static void forEach(Path directory, Predicate<Record> wanted, RecordVisitor visitor) throws IOException {
+        int last = lastSegmentNumber(directory);
+        for (int i = 0; i <= last; i++) {
+            Path segmentPath = segmentPath(directory, i);
+            if (!Files.exists(segmentPath) || !Files.exists(indexPath(directory, i))) {
+                continue;
+            }
+
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(segmentPath), 1 << 16)) {
+                long position = 0;
+                for (Record record : readIndex(directory, i)) {
+                    if (!wanted.test(record)) {
+                        continue;
+                    }
+                    skipFully(in, record.offset - position);
+                    byte[] bytes = new byte[record.length];
+                    if (in.readNBytes(bytes, 0, record.length) != record.length) {
+                        // The segment shrank while we were reading it.
+                        throw new EOFException("Unexpected end of segment");
+                    }
+                    position = record.offset + record.length;
+                    visitor.visit(record, record.isRemoved() ? null : decompress(bytes));
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the URI of every page in the store in the given directory to the given
+     * consumer. Only reads the indexes (and the sizes of the segments), so this is far
+     * cheaper than 'forEach', but it stops at the same records 'forEach' does: exactly the
+     * pages 'forEach' would visit are passed on, in the same order.
+     */
+    public static void forEachUri(Path directory, Consumer<URI> visitor) throws IOException {
+        forEachRecord(directory, record -> visitor.accept(record.uri));
+    }
+
+    /**
+     * Like 'forEachUri', but passes on where each record is stored as well as its URI.
+     */
+    public static void forEachRecord(Path directory, Consumer<Record> visitor) throws IOException {
+        int last = lastSegmentNumber(directory);
+        for (int i = 0; i <= last; i++) {
+            if (!Files.exists(segmentPath(directory, i)) || !Files.exists(indexPath(directory, i))) {
+                continue;
+            }
+            for (Record record : readIndex(directory, i)) {
+                visitor.accept(record);
+            }
+        }
+    }
+
+    /**
+     * Returns the path of a file kept next to the given segment, named like it but with
+     * the given suffix (e.g. for a cache of what was parsed out of the segment's pages).
+     */
+    public static Path companionPath(Path directory, int segment, String suffix) {
+        return directory.resolve(String.format("%s%05d%s", SEGMENT_PREFIX, segment, suffix));
+    }
+
+    /**
+     * Returns the records listed in the given segment's index, up to (but not including)
+     * the first one which never fully reached the disk: if the machine crashed before the
+     * end of a record was written, and nobody has opened the store for appending (which
+     * cleans this up) since, we stop there.
+     */
+    private static IList<Record> readIndex(Path directory, int segment) throws IOException {
+        long segmentBytes = Files.size(segmentPath(directory, segment));
+        byte[] indexBytes = Files.readAllBytes(indexPath(directory, segment));
+        IList<Record> out = new ArrayBackedList<>();
+        int lineStart = 0;
+        for (int j = 0; j < indexBytes.length; j++) {
+            if (indexBytes[j] != '\n') {
+                continue;
+            }
+            String[] parts = new String(indexBytes, lineStart, j - lineStart, StandardCharsets.UTF_8)
+                    .split("\t", 3);
+            lineStart = j + 1;
+
+            Record record = new Record(
+                    segment, Long.parseLong(parts[0]), Integer.parseInt(parts[1]), URI.create(parts[2]));
+            if (record.offset + record.length > segmentBytes) {
+                break;
+            }
+            out.add(record);
+        }
+        return out;
+    }
+
+    /**
+     * Opens the given segment for appending, first cutting off anything after the last
+     * record with a complete index line.
+     */
+    private void open(int number) throws IOException {
+        Path segmentPath = segmentPath(this.directory, number);
+        Path indexPath = indexPath(this.directory, number);
+
+        long validIndexBytes = 0;
+        long validSegmentBytes = 0;
+        long pages = 0;
+        if (Files.exists(indexPath)) {
+            long segmentBytes = Files.exists(segmentPath) ? Files.size(segmentPath) : 0;
+            byte[] indexBytes = Files.readAllBytes(indexPath);
+            int lineStart = 0;
+            for (int j = 0; j < indexBytes.length; j++) {
+                if (indexBytes[j] != '\n') {
+                    continue;
+                }
+                String[] parts = new String(indexBytes, lineStart, j - lineStart, StandardCharsets.UTF_8)
+                        .split("\t", 3);
+                long end = parts.length == 3 ? Long.parseLong(parts[0]) + Long.parseLong(parts[1]) : -1;
+                if (end < 0 || end > segmentBytes) {
+                    break;
+                }
+                lineStart = j + 1;
+                validIndexBytes = lineStart;
+                validSegmentBytes = end;
+                pages++;
+            }
+        }
+
+        this.segmentNumber = number;
+        this.segment = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.segment.truncate(validSegmentBytes);
+        this.index.truncate(validIndexBytes);
+        this.segment.position(validSegmentBytes);
+        this.index.position(validIndexBytes);
+        this.segmentSize = validSegmentBytes;
+        this.size += pages;
+    }
+
+    private void closeSegment() throws IOException {
+        try {
+            this.segment.close();
+        } finally {
+            this.index.close();
+            this.segment = null;
+            this.index = null;
+        }
+    }
+
+    private static int lastSegmentNumber(Path directory) throws IOException {
+        int last = -1;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    String number = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                    try {
+                        last = Math.max(last, Integer.parseInt(number));
+                    } catch (NumberFormatException ex) {
+                        // Not one of ours: ignore it.
+                    }
+                }
+            }
+        }
+        return last;
+    }
+
+    private static Path segmentPath(Path directory, int number) {
+        return companionPath(directory, number, SEGMENT_SUFFIX);
+    }
+
+    private static Path indexPath(Path directory, int number) {
+        return companionPath(directory, number, INDEX_SUFFIX);
+    }
+
+    private static long countLines(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long count = 0;
+        for (byte b : Files.readAllBytes(file)) {
+            if (b == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static byte[] compress(byte[] contents) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(contents.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 1 << 13)) {
+            gzip.write(contents);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] record) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(record), 1 << 13)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void skipFully(InputStream in, long bytes) throws IOException {
+        long remaining = bytes;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                throw new EOFException("Unexpected end of segment");
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package search.misc;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Resolves links against the page they appear on and puts them in the canonical form
+ * we use for every URI we store or compare, in a single scan of each link and without
+ * going through java.net.URI (which reports every malformed link by throwing).
+ *
+ * Only http and https URIs have a canonical form. In it:
+ *
+ * - the scheme and host are lower case, there is no user info, and the port is left
+ *   out if it is the scheme's default
+ * - the path has no "." or ".." segments, and is "/" rather than empty
+ * - there is no fragment, and no empty query
+ * - percent-escapes use upper-case hex digits, escaped unreserved characters (letters,
+ *   digits, and "-._~") are decoded, and every character that may not appear as-is
+ *   (spaces, quotes, non-ASCII characters, a '%' not starting an escape, and so on) is
+ *   percent-encoded as UTF-8
+ *
+ * So the output is always a valid URI, and two links to the same page come out the same
+ * even if one has an upper-case host or a "#section" on the end.
+ *
+ * Links are cleaned up the way browsers do first: leading and trailing whitespace, and
+ * any tabs and line breaks, are removed.
+ */
+public class UriCanonicalizer {
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    // Characters allowed as-is (besides unreserved characters) in paths and queries.
+    private static final String PATH_CHARACTERS = "!$&'()*+,;=:@/";
+    private static final String QUERY_CHARACTERS = PATH_CHARACTERS + "?";
+
+    private final String baseScheme;
+    private final String baseAuthority;
+    private final String basePath;
+    private final String baseQuery;
+
+    /**
+     * Prepares to resolve links found on the page with the given URI. If it is not an
+     * http or https URI, only absolute links can be resolved.
+     */
+    public UriCanonicalizer(URI base) {
+        Parts parts = parse(clean(base.toString()), null);
+        this.baseScheme = parts == null ? null : parts.scheme;
+        this.baseAuthority = parts == null ? null : parts.authority;
+        this.basePath = parts == null ? null : parts.path;
+        this.baseQuery = parts == null ? null : parts.query;
+    }
+
+    /**
+     * Returns the canonical form of the given link, resolved against this page, or null
+     * if it is not an http or https link or is too broken to make sense of.
+     */
+    public String resolve(String link) {
+        Parts parts = parse(clean(link), this);
+        return parts == null ? null : parts.toString();
+    }
+
+    /**
+     * Returns the canonical form of the given absolute URI, or null if it is not an http
+     * or https URI or is too broken to make sense of.
+     */
+    public static String canonicalize(String uri) {
+        Parts parts = parse(clean(uri), null);
+        return parts == null ? null : parts.toString();
+    }
+
+    /**
+     * Removes leading and trailing whitespace and control characters, and any tabs and
+     * line breaks in between.
+     */
+    private static String clean(String link) {
+        int start = 0;
+        int end = link.length();
+        while (start < end && link.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && link.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        String out = link.substring(start, end);
+        if (out.indexOf('\t') < 0 && out.indexOf('\n') < 0 && out.indexOf('\r') < 0) {
+            return out;
+        }
+        StringBuilder builder = new StringBuilder(out.length());
+        for (int i = 0; i < out.length(); i++) {
+            char c = out.charAt(i);
+            if (c != '\t' && c != '\n' && c != '\r') {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Splits the given (cleaned) link into canonical parts, resolving it against 'base'
+     * if it is relative. Returns null if it has no canonical form.
+     */
+    private static Parts parse(String link, UriCanonicalizer base) {
+        int fragment = link.indexOf('#');
+        String rest = fragment >= 0 ? link.substring(0, fragment) : link;
+
+        String scheme = null;
+        int colon = schemeEnd(rest);
+        if (colon > 0) {
+            scheme = rest.substring(0, colon).toLowerCase();
+            if (!scheme.equals("http") && !scheme.equals("https")) {
+                return null;
+            }
+            rest = rest.substring(colon + 1);
+        }
+
+        if (rest.startsWith("//")) {
+            if (scheme == null) {
+                if (base == null || base.baseScheme == null) {
+                    return null;
+                }
+                scheme = base.baseScheme;
+            }
+            int authorityEnd = indexOfAny(rest, 2, "/?");
+            String authority = canonicalAuthority(rest.substring(2, authorityEnd), scheme);
+            if (authority == null) {
+                return null;
+            }
+            return withPathAndQuery(scheme, authority, rest.substring(authorityEnd), "");
+        }
+        if (scheme != null || base == null || base.baseScheme == null) {
+            // Every http(s) URI has an authority, and a relative link needs a base.
+            return null;
+        }
+
+        if (rest.isEmpty()) {
+            return new Parts(base.baseScheme, base.baseAuthority, base.basePath, base.baseQuery);
+        } else if (rest.charAt(0) == '?') {
+            return withPathAndQuery(base.baseScheme, base.baseAuthority, base.basePath + rest, "");
+        } else if (rest.charAt(0) == '/') {
+            return withPathAndQuery(base.baseScheme, base.baseAuthority, rest, "");
+        } else {
+            // Relative to the base path's "directory", which always ends in '/'.
+            String directory = base.basePath.substring(0, base.basePath.lastIndexOf('/') + 1);
+            return withPathAndQuery(base.baseScheme, base.baseAuthority, rest, directory);
+        }
+    }
+
+    /**
+     * Builds the parts of a URI from its scheme, authority, and the rest of the link
+     * ('prefix' + 'pathAndQuery'), where 'prefix' is already canonical.
+     */
+    private static Parts withPathAndQuery(String scheme, String authority, String pathAndQuery, String prefix) {
+        int question = pathAndQuery.indexOf('?');
+        String rawPath = question >= 0 ? pathAndQuery.substring(0, question) : pathAndQuery;
+        String query = null;
+        if (question >= 0 && question < pathAndQuery.length() - 1) {
+            query = percentNormalize(pathAndQuery, question + 1, pathAndQuery.length(), QUERY_CHARACTERS);
+        }
+
+        String path = prefix + percentNormalize(rawPath, 0, rawPath.length(), PATH_CHARACTERS);
+        if (path.isEmpty() || path.charAt(0) != '/') {
+            path = "/" + path;
+        }
+        return new Parts(scheme, authority, removeDotSegments(path), query);
+    }
+
+    /**
+     * Returns the index of the ':' ending the link's scheme, or -1 if it has none.
+     */
+    private static int schemeEnd(String link) {
+        if (link.isEmpty() || !isAsciiLetter(link.charAt(0))) {
+            return -1;
+        }
+        for (int i = 1; i < link.length(); i++) {
+            char c = link.charAt(i);
+            if (c == ':') {
+                return i;
+            } else if (!isAsciiLetter(c) && !isDigit(c) && c != '+' && c != '-' && c != '.') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns "host" or "host:port" for the given raw authority, or null if it is not valid.
+     */
+    private static String canonicalAuthority(String authority, String scheme) {
+        String hostAndPort = authority.substring(authority.lastIndexOf('@') + 1);
+        int portStart = hostAndPort.lastIndexOf(':');
+        if (portStart >= 0 && hostAndPort.indexOf(']', portStart) >= 0) {
+            // That colon is inside an IPv6 address.
+            portStart = -1;
+        }
+        String host = (portStart >= 0 ? hostAndPort.substring(0, portStart) : hostAndPort).toLowerCase();
+        if (!isValidHost(host)) {
+            return null;
+        }
+        if (portStart < 0 || portStart == hostAndPort.length() - 1) {
+            return host;
+        }
+
+        int port = 0;
+        for (int i = portStart + 1; i < hostAndPort.length(); i++) {
+            char c = hostAndPort.charAt(i);
+            if (!isDigit(c) || port > 65535) {
+                return null;
+            }
+            port = port * 10 + (c - '0');
+        }
+        if (port > 65535) {
+            return null;
+        }
+        boolean isDefault = (port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"));
+        return isDefault ? host : host + ":" + port;
+    }
+
+    private static boolean isValidHost(String host) {
+        if (host.isEmpty()) {
+            return false;
+        }
+        if (host.charAt(0) == '[') {
+            for (int i = 1; i < host.length() - 1; i++) {
+                char c = host.charAt(i);
+                if (!isDigit(c) && !(c >= 'a' && c <= 'f') && c != ':' && c != '.') {
+                    return false;
+                }
+            }
+            return host.length() > 2 && host.charAt(host.length() - 1) == ']';
+        }
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (!isAsciiLetter(c) && !isDigit(c) && c != '-' && c != '.' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the given range of 'raw' with its percent-escapes normalized and every
+     * character that is neither unreserved nor in 'allowed' percent-encoded.
+     */
+    private static String percentNormalize(String raw, int start, int end, String allowed) {
+        // Most links are already canonical, in which case we can return them as they are.
+        int i = start;
+        while (i < end) {
+            char c = raw.charAt(i);
+            if (c == '%' || !(isUnreserved(c) || allowed.indexOf(c) >= 0)) {
+                break;
+            }
+            i++;
+        }
+        if (i == end) {
+            return raw.substring(start, end);
+        }
+
+        StringBuilder out = new StringBuilder(end - start + 16);
+        out.append(raw, start, i);
+        while (i < end) {
+            char c = raw.charAt(i);
+            if (c == '%') {
+                int high = i + 2 < end ? hexValue(raw.charAt(i + 1)) : -1;
+                int low = high >= 0 ? hexValue(raw.charAt(i + 2)) : -1;
+                if (low < 0) {
+                    out.append("%25");
+                } else if (isUnreserved((char) (high * 16 + low))) {
+                    out.append((char) (high * 16 + low));
+                    i += 2;
+                } else {
+                    out.append('%').append(HEX_DIGITS[high]).append(HEX_DIGITS[low]);
+                    i += 2;
+                }
+            } else if (isUnreserved(c) || allowed.indexOf(c) >= 0) {
+                out.append(c);
+            } else if (c < 0x80) {
+                appendEscaped(out, c);
+            } else {
+                // Encode the whole code point (a surrogate pair, if need be) as UTF-8.
+                int length = Character.isHighSurrogate(c) && i + 1 < end
+                        && Character.isLowSurrogate(raw.charAt(i + 1)) ? 2 : 1;
+                for (byte b : raw.substring(i, i + length).getBytes(StandardCharsets.UTF_8)) {
+                    appendEscaped(out, b & 0xFF);
+                }
+                i += length - 1;
+            }
+            i++;
+        }
+        return out.toString();
+    }
+
+    /**
+     * Removes "." and ".." segments from the given path, which starts with '/', as
+     * described in RFC 3986 (section 5.2.4).
+     */
+    private static String removeDotSegments(String path) {
+        if (!path.contains("/.")) {
+            return path;
+        }
+        StringBuilder out = new StringBuilder(path.length());
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start + 1);
+            if (end < 0) {
+                end = path.length();
+            }
+            // The segment is path[start + 1, end), and path[start] is its '/'.
+            int length = end - start - 1;
+            boolean isDot = length == 1 && path.charAt(start + 1) == '.';
+            boolean isDotDot = length == 2 && path.charAt(start + 1) == '.' && path.charAt(start + 2) == '.';
+            if (isDotDot) {
+                out.setLength(Math.max(out.lastIndexOf("/"), 0));
+            }
+            if (!isDot && !isDotDot) {
+                out.append(path, start, end);
+            } else if (end == path.length()) {
+                out.append('/');
+            }
+            start = end;
+        }
+        return out.length() == 0 ? "/" : out.toString();
+    }
+
+    private static void appendEscaped(StringBuilder out, int b) {
+        out.append('%').append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+    }
+
+    private static int hexValue(char c) {
+        if (isDigit(c)) {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static int indexOfAny(String s, int from, String characters) {
+        for (int i = from; i < s.length(); i++) {
+            if (characters.indexOf(s.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return s.length();
+    }
+
+    private static boolean isUnreserved(char c) {
+        return isAsciiLetter(c) || isDigit(c) || "-._~".indexOf(c) >= 0;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static class Parts {
+        public final String scheme;
+        public final String authority;
+        public final String path;
+
+        // Null if there is no query.
+        public final String query;
+
+        public Parts(String scheme, String authority, String path, String query) {
+            this.scheme = scheme;
+            this.authority = authority;
+            this.path = path;
+            this.query = query;
+        }
+
+        @Override
+        public String toString() {
+            int length = this.scheme.length() + this.authority.length() + this.path.length() + 4
+                    + (this.query == null ? 0 : this.query.length());
+            StringBuilder out = new StringBuilder(length);
+            out.append(this.scheme).append("://").append(this.authority).append(this.path);
+            if (this.query != null) {
+                out.append('?').append(this.query);
+            }
+            return out.toString();
+        }
+    }
+}
@@ -1,47 +1,46 @@
 package search.misc;
 
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.ChainedHashSet;
 import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.util.Optional;
 
 public class WebUtils {
+    /**
+     * Returns every distinct http(s) link on the given page, resolved against 'rootUri'
+     * and in canonical form (see UriCanonicalizer), in the order they first appear.
+     * Links that cannot be made sense of are silently skipped.
+     */
     public static IList<URI> extractLinks(URI rootUri, Document doc) {
-        IList<URI> out = new DoubleLinkedList<>();
-        Elements links = doc.select("a[href]");
-        for (Element link : links) {
-            String rawLink = link.attr("href");
-
-            try {
-                URI extractedLink = new URI(rawLink);
-                Optional<URI> normalizedUri = WebUtils
-                        .normalize(rootUri.resolve(extractedLink));
-                normalizedUri.ifPresent(out::add);
-            } catch (URISyntaxException ex) {
-                System.out.println("Malformed link: " + rawLink);
+        UriCanonicalizer canonicalizer = new UriCanonicalizer(rootUri);
+        Elements anchors = doc.getElementsByTag("a");
+        IList<URI> out = new ArrayBackedList<>(anchors.size());
+        ISet<String> seen = new ChainedHashSet<>();
+        for (Element anchor : anchors) {
+            if (!anchor.hasAttr("href")) {
+                continue;
+            }
+            String link = canonicalizer.resolve(anchor.attr("href"));
+            if (link != null && !seen.contains(link)) {
+                seen.add(link);
+                out.add(URI.create(link));
             }
-
         }
         return out;
     }
 
+    /**
+     * Returns the canonical form of the given URI (see UriCanonicalizer), or nothing if
+     * it is not an http(s) URI.
+     */
     public static Optional<URI> normalize(URI uri) {
-        try {
-            return Optional.of(new URI(
-                    uri.getScheme(),
-                    uri.getUserInfo(),
-                    uri.getHost(),
-                    uri.getPort(),
-                    uri.getPath(),
-                    uri.getQuery(),
-                    null).normalize());
-        } catch (URISyntaxException ex) {
-            return Optional.empty();
-        }
+        String canonical = UriCanonicalizer.canonicalize(uri.toString());
+        return canonical == null ? Optional.empty() : Optional.of(URI.create(canonical));
     }
 }
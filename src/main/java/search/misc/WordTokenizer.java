@@ -1,17 +1,142 @@
 package search.misc;
 
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.ArrayBackedList;
 import datastructures.interfaces.IList;
 
+import java.util.Locale;
+
+/**
+ * Splits text into lower-cased words.
+ *
+ * A word is any maximal run of characters not containing ASCII whitespace
+ * (space, \t, \n, \u000B, \f, \r), lower-cased, with all ASCII punctuation removed.
+ * Words that end up empty are dropped.
+ *
+ * This runs over every page body at index time and every query, so the tokenizer
+ * makes a single pass over the input and reuses one character buffer for every
+ * word rather than allocating intermediate strings or compiling regexes.
+ */
 public class WordTokenizer {
+    private static final int INITIAL_BUFFER_SIZE = 64;
+
+    // Code points that String.toLowerCase() treats specially (see 'tokenize').
+    private static final int CAPITAL_I_WITH_DOT = 0x0130;
+    private static final int CAPITAL_SIGMA = 0x03A3;
+
+    /**
+     * Receives each word found by 'tokenize'.
+     *
+     * The buffer is reused for the next word, so implementations must copy out
+     * anything they want to keep (or look the word up without copying it).
+     */
+    @FunctionalInterface
+    public interface TokenConsumer {
+        void accept(char[] buffer, int length);
+    }
+
+    /**
+     * Returns a list of every word in the given input, in order.
+     */
     public static IList<String> extract(String input) {
-        IList<String> out = new DoubleLinkedList<>();
-        for (String word : input.toLowerCase().split("\\s+")) {
-            word = word.replaceAll("\\p{Punct}", "");
-            if (!word.isEmpty()) {
-                out.add(word);
+        ArrayBackedList<String> out = new ArrayBackedList<>();
+        tokenize(input, (buffer, length) -> out.add(new String(buffer, 0, length)));
+        out.trimToSize();
+        return out;
+    }
+
+    /**
+     * Passes every word in the given input, in order, to the given consumer.
+     */
+    public static void tokenize(CharSequence input, TokenConsumer consumer) {
+        boolean localeSensitive = isLocaleSensitive(Locale.getDefault());
+        char[] buffer = new char[INITIAL_BUFFER_SIZE];
+        int length = input.length();
+
+        int i = 0;
+        while (i < length) {
+            while (i < length && isWhitespace(input.charAt(i))) {
+                i++;
+            }
+            int start = i;
+
+            int size = 0;
+            boolean needsSlowPath = localeSensitive;
+            while (i < length && !isWhitespace(input.charAt(i))) {
+                char c = input.charAt(i);
+                if (c < 0x80) {
+                    // Fast path: plain ASCII.
+                    if (!isPunctuation(c)) {
+                        if (size == buffer.length) {
+                            buffer = grow(buffer, size + 1);
+                        }
+                        buffer[size++] = (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+                    }
+                    i++;
+                } else {
+                    int codePoint = Character.codePointAt(input, i);
+                    if (codePoint == CAPITAL_I_WITH_DOT || codePoint == CAPITAL_SIGMA) {
+                        // These lower-case to multiple characters or depend on their
+                        // neighbours, so we defer to String.toLowerCase() for this word.
+                        needsSlowPath = true;
+                    }
+                    int lower = Character.toLowerCase(codePoint);
+                    if (size + 2 > buffer.length) {
+                        buffer = grow(buffer, size + 2);
+                    }
+                    size += Character.toChars(lower, buffer, size);
+                    i += Character.charCount(codePoint);
+                }
+            }
+
+            if (needsSlowPath && i > start) {
+                String lower = input.subSequence(start, i).toString().toLowerCase();
+                size = 0;
+                for (int j = 0; j < lower.length(); j++) {
+                    char c = lower.charAt(j);
+                    if (!isPunctuation(c)) {
+                        if (size == buffer.length) {
+                            buffer = grow(buffer, size + 1);
+                        }
+                        buffer[size++] = c;
+                    }
+                }
+            }
+
+            if (size > 0) {
+                consumer.accept(buffer, size);
             }
         }
+    }
+
+    /**
+     * Returns 'true' if the given character matches the regex '\s' (and so separates words).
+     */
+    public static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Returns 'true' if the given character matches the regex '\p{Punct}'.
+     */
+    private static boolean isPunctuation(char c) {
+        return (c >= '!' && c <= '/')
+                || (c >= ':' && c <= '@')
+                || (c >= '[' && c <= '`')
+                || (c >= '{' && c <= '~');
+    }
+
+    /**
+     * Returns 'true' if lower-casing in the given locale differs from the
+     * locale-independent rules for plain ASCII letters.
+     */
+    private static boolean isLocaleSensitive(Locale locale) {
+        String language = locale.getLanguage();
+        return language.equals("tr") || language.equals("az") || language.equals("lt");
+    }
+
+    private static char[] grow(char[] buffer, int minCapacity) {
+        char[] out = new char[Math.max(minCapacity, buffer.length * 2)];
+        System.arraycopy(buffer, 0, out, 0, buffer.length);
         return out;
     }
 }
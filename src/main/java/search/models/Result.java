@@ -9,10 +9,21 @@ import java.net.URI;
 public class Result implements Comparable<Result> {
     private WebpageSummary webpageSummary;
     private double score;
+    private double tfIdf;
+    private double pageRank;
 
     public Result(WebpageSummary summary, double score) {
+        this(summary, score, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Creates a result which also remembers the scores its final score was made from.
+     */
+    public Result(WebpageSummary summary, double score, double tfIdf, double pageRank) {
         this.webpageSummary = summary;
         this.score = score;
+        this.tfIdf = tfIdf;
+        this.pageRank = pageRank;
     }
 
     /**
@@ -29,6 +40,20 @@ public class Result implements Comparable<Result> {
         return this.score;
     }
 
+    /**
+     * Returns the TF-IDF relevance of this webpage to the query, or NaN if unknown.
+     */
+    public double getTfIdf() {
+        return this.tfIdf;
+    }
+
+    /**
+     * Returns the page rank of this webpage, or NaN if unknown.
+     */
+    public double getPageRank() {
+        return this.pageRank;
+    }
+
     /**
      * Returns this webpage's title
      */
@@ -44,15 +69,21 @@ public class Result implements Comparable<Result> {
     }
 
     /**
-     * Compares to Result objects by their score.
+     * Compares to Result objects by their score, breaking ties by URI so results are
+     * always ranked in the same order (which SearchCursor relies on).
      *
      * If the this result has a lower score then the other one, returns a negative number.
-     * If the this result has the same score as this one, returns 0.
+     * If the this result has the same score as this one, returns a negative number if its
+     * URI comes after the other one's, and so on.
      * If the this result has a higher score then the other one, returns a positive number.
      */
     @Override
     public int compareTo(Result other) {
-        return Double.compare(this.score, other.score);
+        int cmp = Double.compare(this.score, other.score);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return other.getUri().toString().compareTo(this.getUri().toString());
     }
 
     @Override
@@ -0,0 +1,31 @@
+package search.models;
+
+import datastructures.interfaces.IList;
+
+/**
+ * A page of search results, best first.
+ */
+public class ResultPage {
+    private final IList<Result> results;
+    private final boolean partial;
+
+    public ResultPage(IList<Result> results, boolean partial) {
+        this.results = results;
+        this.partial = partial;
+    }
+
+    /**
+     * Returns the results on this page.
+     */
+    public IList<Result> getResults() {
+        return this.results;
+    }
+
+    /**
+     * Returns 'true' if the query ran out of time before every matching page was
+     * scored, so these are only the best results found in the time we had.
+     */
+    public boolean isPartial() {
+        return this.partial;
+    }
+}
@@ -0,0 +1,48 @@
+package search.models;
+
+/**
+ * The ways SearchEngine can rank the pages matching a query.
+ */
+public enum ScoringMode {
+    /**
+     * TF-IDF relevance scaled by the square root of the page rank (the default).
+     */
+    COMBINED("combined"),
+
+    /**
+     * TF-IDF relevance alone.
+     */
+    TF_IDF("tfidf"),
+
+    /**
+     * Page rank alone, among pages containing at least one query word.
+     */
+    PAGE_RANK("pagerank");
+
+    private final String name;
+
+    ScoringMode(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name used for this mode in query strings and API responses.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the mode with the given name.
+     *
+     * @throws IllegalArgumentException  if there is no such mode
+     */
+    public static ScoringMode fromName(String name) {
+        for (ScoringMode mode : ScoringMode.values()) {
+            if (mode.name.equals(name)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown scoring mode: " + name);
+    }
+}
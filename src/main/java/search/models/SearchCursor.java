@@ -0,0 +1,71 @@
+package search.models;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Marks a place in a ranked list of results, so the next page can be found by skipping
+ * everything ranked at or above it instead of recomputing (and discarding) every
+ * earlier page. Results are ranked by score, then by URI (see Result.compareTo), so
+ * this is the score and URI of the last result on the previous page.
+ *
+ * Cursors are handed to clients as opaque, URL-safe strings (see 'encode').
+ */
+public class SearchCursor {
+    private final double score;
+    private final String uri;
+
+    public SearchCursor(double score, URI uri) {
+        this(score, uri.toString());
+    }
+
+    private SearchCursor(double score, String uri) {
+        this.score = score;
+        this.uri = uri;
+    }
+
+    /**
+     * Returns the cursor just after the given result.
+     */
+    public static SearchCursor after(Result result) {
+        return new SearchCursor(result.getScore(), result.getUri());
+    }
+
+    /**
+     * Returns 'true' if the given result is ranked below this cursor, and so belongs on
+     * a later page.
+     */
+    public boolean precedes(Result result) {
+        int cmp = Double.compare(result.getScore(), this.score);
+        return cmp < 0 || (cmp == 0 && result.getUri().toString().compareTo(this.uri) > 0);
+    }
+
+    /**
+     * Returns this cursor as a URL-safe string 'decode' turns back into it.
+     */
+    public String encode() {
+        String raw = Long.toHexString(Double.doubleToLongBits(this.score)) + " " + this.uri;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the cursor 'encode' turned into the given string.
+     *
+     * @throws IllegalArgumentException  if the string is not an encoded cursor
+     */
+    public static SearchCursor decode(String encoded) {
+        // (Base64 decoding reports bad input with an IllegalArgumentException too.)
+        String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+        int space = raw.indexOf(' ');
+        if (space <= 0) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        try {
+            double score = Double.longBitsToDouble(Long.parseUnsignedLong(raw.substring(0, space), 16));
+            return new SearchCursor(score, raw.substring(space + 1));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Malformed cursor", ex);
+        }
+    }
+}
@@ -2,27 +2,31 @@ package search.models;
 
 import com.chimbori.crux.articles.Article;
 import com.chimbori.crux.articles.ArticleExtractor;
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.ArrayBackedList;
 import datastructures.concrete.dictionaries.ChainedHashDictionary;
 import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.IList;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import search.misc.UnbufferedReader;
+import search.metrics.Metrics;
+import search.metrics.PageLoadedEvent;
 import search.misc.WebUtils;
 import search.misc.WordTokenizer;
 import search.misc.exceptions.DataExtractionException;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PushbackInputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.StringTokenizer;
 
 /**
@@ -33,6 +37,11 @@ import java.util.StringTokenizer;
 public class Webpage {
     private static final int MAX_DESCRIPTION_LEN = 200;
 
+    // The first line of every cache file (including the ones SearchEngine keeps next to
+    // a PageStore). Caches without it were written before links were canonicalized by
+    // UriCanonicalizer, so they are rebuilt from the original page.
+    public static final String CACHE_VERSION = "webpage-cache 2";
+
     // This field is the 'unique key' for the webpage:
     // every Webpage object is guaranteed to have a unique URI.
     private URI pageUri;
@@ -101,43 +110,70 @@ public class Webpage {
     // Note: You can safely ignore all the methods below this point.
 
     public static Webpage load(URI localUri) {
+        PageLoadedEvent event = new PageLoadedEvent();
+        event.begin();
         URI cacheURI = Webpage.getCacheURI(localUri);
         File cacheFile = new File(cacheURI);
         if (cacheFile.exists()) {
-            return Webpage.loadFromCache(cacheFile);
-        } else {
-            Webpage out = Webpage.loadOriginal(localUri);
-            Webpage.saveToCache(out, cacheFile);
-            return out;
+            Webpage cached = Webpage.loadFromCache(cacheFile);
+            if (cached != null) {
+                Metrics.PAGE_CACHE_HITS.increment();
+                Webpage.commit(event, cached, "cache");
+                return cached;
+            }
         }
+        Metrics.PAGE_CACHE_MISSES.increment();
+        Webpage out = Webpage.loadOriginal(localUri);
+        Webpage.saveToCache(out, cacheFile);
+        Webpage.commit(event, out, "file");
+        return out;
     }
 
-    public static Webpage loadOriginal(URI localUri) {
-        // Extract some core data
-        try (PushbackInputStream stream = Webpage.openLocalStream(localUri)) {
-            IDictionary<String, String> metadata = Webpage.extractMetadata(stream);
-            Document document = Webpage.extractHtml(stream, metadata);
-
-            // Save canonical fields
-            URI pageUri = Webpage.createUri(metadata.get("uri"));
-
-            // Populate cache fields
-            IList<URI> links = WebUtils.extractLinks(pageUri, document);
-            IList<String> words = WordTokenizer.extract(document.body().text());
+    private static void commit(PageLoadedEvent event, Webpage page, String source) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.uri = page.getUri().toString();
+            event.source = source;
+            event.words = page.getWords().size();
+            event.commit();
+        }
+    }
 
-            Article article = Webpage.extractReadableArticle(pageUri, document);
-            String title = Webpage.extractTitle(article, pageUri);
-            String blurb = Webpage.extractBlurb(article);
+    public static Webpage loadOriginal(URI localUri) {
+        return Webpage.parse(Webpage.readLocalFile(localUri));
+    }
 
-            return new Webpage(pageUri, links, words, title, blurb);
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
-        }
+    /**
+     * Parses a page saved by the scraper: a "<!-- METADATA ... -->" header, then the HTML.
+     */
+    public static Webpage parse(byte[] contents) {
+        // Extract some core data
+        IDictionary<String, String> metadata = new ChainedHashDictionary<>();
+        int bodyStart = Webpage.extractMetadata(contents, metadata);
+        Document document = Webpage.extractHtml(contents, bodyStart, metadata);
+
+        // Save canonical fields. The scraper only saves canonical URIs nowadays, but pages
+        // saved before it did must still match the (canonical) links pointing at them.
+        URI savedUri = Webpage.createUri(metadata.get("uri"));
+        URI pageUri = WebUtils.normalize(savedUri).orElse(savedUri);
+
+        // Populate cache fields
+        IList<URI> links = WebUtils.extractLinks(pageUri, document);
+        IList<String> words = WordTokenizer.extract(document.body().text());
+
+        // Note: Crux cleans up the document in-place while extracting the article,
+        // so this must happen after we've pulled out the links and words above.
+        Article article = Webpage.extractReadableArticle(pageUri, document);
+        String title = Webpage.extractTitle(article, pageUri);
+        String blurb = Webpage.extractBlurb(article);
+
+        return new Webpage(pageUri, links, words, title, blurb);
     }
 
     private static void saveToCache(Webpage page, File cache) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(cache))) {
             WebpageSummary summary = page.getSummary();
+            writer.write(CACHE_VERSION + "\n");
 
             // Line 1: page URI
             writer.write(page.pageUri.toString() + "\n");
@@ -167,6 +203,10 @@ public class Webpage {
 
     private static Webpage loadFromCache(File cache) {
         try (BufferedReader reader = new BufferedReader(new FileReader(cache))) {
+            if (!CACHE_VERSION.equals(reader.readLine())) {
+                return null;
+            }
+
             // Line 1: Page URI
             URI pageUri = URI.create(reader.readLine().trim());
 
@@ -177,17 +217,19 @@ public class Webpage {
             String blurb = reader.readLine().trim();
 
             // Line 4: words
-            IList<String> words = new DoubleLinkedList<>();
+            ArrayBackedList<String> words = new ArrayBackedList<>();
             StringTokenizer tokenizer = new StringTokenizer(reader.readLine().trim(), " ");
             while (tokenizer.hasMoreTokens()) {
                 words.add(tokenizer.nextToken());
             }
+            words.trimToSize();
 
             // Rest of lines: links
-            IList<URI> links = new DoubleLinkedList<>();
+            ArrayBackedList<URI> links = new ArrayBackedList<>();
             for (String line = reader.readLine(); line != null; line = reader.readLine()) {
                 links.add(URI.create(line));
             }
+            links.trimToSize();
 
             return new Webpage(pageUri, links, words, title, blurb);
         } catch (IOException ex) {
@@ -201,49 +243,86 @@ public class Webpage {
         return URI.create(piece + ".cache");
     }
 
-    private static PushbackInputStream openLocalStream(URI localUri) {
+    /**
+     * Reads the entire local file into memory in one go. Pages are small, so this is
+     * far cheaper than pulling the metadata header through an unbuffered stream
+     * one byte (and one system call) at a time.
+     */
+    private static byte[] readLocalFile(URI localUri) {
         try {
-            return new PushbackInputStream(localUri.toURL().openStream());
+            return Files.readAllBytes(Paths.get(localUri));
         } catch (IOException ex) {
             String msg = String.format("Could not open local file file '%s'", localUri);
             throw new DataExtractionException(msg, ex);
         }
     }
 
-    private static IDictionary<String, String> extractMetadata(PushbackInputStream stream) {
-        try {
-            UnbufferedReader reader = new UnbufferedReader(stream);
-            String line = reader.readLine();
-            if (!line.equals("<!-- METADATA")) {
-                throw new DataExtractionException("Local webpage does not start with metadata header");
-            }
+    /**
+     * Parses the "<!-- METADATA ... -->" header at the start of the given file
+     * contents into 'output', and returns the offset where the HTML body begins.
+     */
+    private static int extractMetadata(byte[] contents, IDictionary<String, String> output) {
+        int[] cursor = new int[] {0};
+        String line = Webpage.readLine(contents, cursor);
+        if (line == null || !line.equals("<!-- METADATA")) {
+            throw new DataExtractionException("Local webpage does not start with metadata header");
+        }
 
-            IDictionary<String, String> output = new ChainedHashDictionary<>();
-            while (!line.equals("-->")) {
-                line = reader.readLine();
+        line = Webpage.readLine(contents, cursor);
+        while (line != null && !line.equals("-->")) {
+            String[] parts = line.split(": ", 2);
+            output.put(parts[0], parts[1]);
+            line = Webpage.readLine(contents, cursor);
+        }
+        if (line == null) {
+            throw new DataExtractionException("Local webpage metadata header is never closed");
+        }
+        return cursor[0];
+    }
 
-                if (!line.equals("-->")) {
-                    String[] parts = line.split(": ", 2);
-                    output.put(parts[0], parts[1]);
-                }
-            }
-            return output;
-        } catch (IOException ex) {
-            throw new DataExtractionException("Error when trying to extract metadata", ex);
+    /**
+     * Returns the line starting at 'cursor[0]', decoded as UTF-8, and advances the
+     * cursor past the line terminator ('\r', '\n', or "\r\n"). Returns null at the
+     * end of the contents.
+     */
+    private static String readLine(byte[] contents, int[] cursor) {
+        int start = cursor[0];
+        if (start >= contents.length) {
+            return null;
+        }
+
+        int end = start;
+        while (end < contents.length && contents[end] != '\r' && contents[end] != '\n') {
+            end++;
+        }
+
+        int next = end;
+        if (next < contents.length && contents[next] == '\r') {
+            next++;
+        }
+        if (next < contents.length && contents[next] == '\n') {
+            next++;
         }
+        cursor[0] = next;
+        return new String(contents, start, end - start, StandardCharsets.UTF_8);
     }
 
-    private static Document extractHtml(InputStream stream, IDictionary<String, String> metadata) {
+    private static Document extractHtml(byte[] contents, int bodyStart, IDictionary<String, String> metadata) {
+        // Jsoup decodes the body straight out of 'contents' into its own character buffer,
+        // without first copying the bytes or building an intermediate String.
+        InputStream body = new ByteArrayInputStream(contents, bodyStart, contents.length - bodyStart);
         try {
-            return Jsoup.parse(stream, null, metadata.get("uri"));
+            return Jsoup.parse(body, null, metadata.get("uri"));
         } catch (IOException ex) {
             throw new DataExtractionException("Could not extract HTML from document");
         }
     }
 
     private static Article extractReadableArticle(URI pageUri, Document document) {
+        // We hand Crux the document we've already parsed: serializing it back to
+        // HTML just so Crux can parse it again would double the cost of loading a page.
         return ArticleExtractor
-                .with(pageUri.toString(), document.html())
+                .with(pageUri.toString(), document)
                 .extractMetadata()
                 .extractContent()
                 .article();
@@ -1,6 +1,5 @@
 package search.scraper;
 
-import com.google.re2j.Pattern;
 import datastructures.concrete.ChainedHashSet;
 import datastructures.interfaces.ISet;
 import org.apache.http.entity.ContentType;
@@ -18,8 +17,16 @@ public class Constants {
         return whitelist;
     }
 
-    public static UriMatchRule fileExtensionBlacklist() {
-        String[] blacklist = new String[]{
+    public static FileExtensionRule fileExtensionBlacklist() {
+        return new FileExtensionRule(fileExtensions());
+    }
+
+    /**
+     * Returns the extensions of files we never want to download: documents, media,
+     * archives, and other things we cannot index.
+     */
+    public static String[] fileExtensions() {
+        return new String[]{
                 ".doc", ".docx", ".log", ".odt", ".rtf", ".tex", ".txt", ".wpd", ".wps", ".csv", ".dat",
                 ".pps", ".ppt", ".pptx", ".tar", ".xml", ".aif", ".m3u", ".m4a", ".mid", ".mp3", ".mpa",
                 ".wav", ".avi", ".flv", ".m4v", ".mov", ".mp4", ".mpg", ".swf", ".vob", ".bmp", ".gif",
@@ -28,17 +35,5 @@ public class Constants {
                 ".otf", ".ttf", ".dll", ".ico", ".7z", ".gz", ".pkg", ".rar", ".rpm", ".tar.gz", ".zip",
                 ".zipx", ".bin", ".iso", ".msi", ".part", ".torrent", ".xml"
         };
-        StringBuilder out = new StringBuilder();
-        String sep = "";
-        for (String extension : blacklist) {
-            out.append(sep);
-            sep = "|";
-
-            out.append("/.*" + extension);
-            out.append(sep);
-            out.append("/.*" + extension.toUpperCase());
-        }
-
-        return new UriMatchRule(null, Pattern.compile(out.toString()));
     }
 }
@@ -0,0 +1,393 @@
+package search.scraper;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.ArrayHeap;
+import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.IPriorityQueue;
+import datastructures.interfaces.ISet;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Every URI the scraper has discovered but not yet fetched, kept mostly on disk so a
+ * long crawl neither grows without bound in memory nor loses its place when restarted.
+ *
+ * New URIs go into an in-memory buffer and are appended to a journal file. Once the
+ * buffer holds 'maxInMemory' URIs, it is written out in sorted order as a new segment
+ * file. 'poll' merges the buffer with every segment, so URIs always come back out
+ * ordered by distance, then host (see PendingUri).
+ *
+ * A checkpoint records how far we have read into each segment, every URI handed out by
+ * 'poll' but not yet reported 'complete', and the buffer; the journal is then emptied.
+ * Opening the same directory again restores the last checkpoint and replays the journal,
+ * so nothing discovered before a crash is lost.
+ *
+ * Every method synchronizes on this object.
+ */
+public class CrawlFrontier implements Closeable {
+    public static final int DEFAULT_MAX_IN_MEMORY = 10000;
+
+    private static final String CHECKPOINT_FILE = "checkpoint.txt";
+    private static final String JOURNAL_FILE = "journal.txt";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".txt";
+
+    private final Path directory;
+    private final int maxInMemory;
+
+    private IPriorityQueue<PendingUri> buffer;
+
+    // Every segment referenced by the current checkpoint, and the subset of them that
+    // still have URIs left to read (ordered by their next URI).
+    private IList<SegmentCursor> allSegments;
+    private IPriorityQueue<SegmentCursor> openSegments;
+    private int nextSegmentId;
+
+    // URIs returned by 'poll' that have not yet been passed to 'complete'.
+    private IDictionary<URI, PendingUri> outstanding;
+
+    private Writer journal;
+
+    /**
+     * Opens (or creates) the frontier stored in the given directory.
+     *
+     * URIs that were handed out by 'poll' but not completed before the frontier was last
+     * checkpointed are handed out again, so callers should expect (and skip) the odd URI
+     * they have already dealt with.
+     */
+    public CrawlFrontier(Path directory, int maxInMemory) throws IOException {
+        if (maxInMemory < 1) {
+            throw new IllegalArgumentException("Frontier must be able to hold at least one URI in memory");
+        }
+        Files.createDirectories(directory);
+
+        this.directory = directory;
+        this.maxInMemory = maxInMemory;
+        this.buffer = new ArrayHeap<>();
+        this.allSegments = new ArrayBackedList<>();
+        this.openSegments = new ArrayHeap<>();
+        this.nextSegmentId = 0;
+        this.outstanding = new ChainedHashDictionary<>();
+
+        this.load();
+        this.journal = Files.newBufferedWriter(
+                this.directory.resolve(JOURNAL_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (this.buffer.size() >= this.maxInMemory) {
+            this.spill();
+        }
+    }
+
+    /**
+     * Adds the given URI to the frontier. Callers are responsible for not adding the same
+     * URI twice. The URI is not guaranteed to survive a crash until 'flush' is called.
+     */
+    public synchronized void add(PendingUri pending) throws IOException {
+        this.buffer.insert(pending);
+        this.journal.write(format(pending));
+        if (this.buffer.size() >= this.maxInMemory) {
+            this.spill();
+        }
+    }
+
+    /**
+     * Makes sure every URI added so far will survive a crash.
+     */
+    public synchronized void flush() throws IOException {
+        this.journal.flush();
+    }
+
+    /**
+     * Removes and returns the next URI to fetch, or returns null if the frontier is empty.
+     * The URI is still saved by checkpoints until it is passed to 'complete'.
+     */
+    public synchronized PendingUri poll() {
+        PendingUri next;
+        if (!this.buffer.isEmpty() && (this.openSegments.isEmpty()
+                || this.buffer.peekMin().compareTo(this.openSegments.peekMin().current) <= 0)) {
+            next = this.buffer.removeMin();
+        } else if (!this.openSegments.isEmpty()) {
+            SegmentCursor cursor = this.openSegments.removeMin();
+            next = cursor.current;
+            try {
+                cursor.advance();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Unable to read " + cursor.path, ex);
+            }
+            if (!cursor.isExhausted()) {
+                this.openSegments.insert(cursor);
+            }
+        } else {
+            return null;
+        }
+        this.outstanding.put(next.uri, next);
+        return next;
+    }
+
+    /**
+     * Reports that a URI returned by 'poll' has been dealt with and need not be restored
+     * after a restart.
+     */
+    public synchronized void complete(PendingUri pending) {
+        if (this.outstanding.containsKey(pending.uri)) {
+            this.outstanding.remove(pending.uri);
+        }
+    }
+
+    /**
+     * Returns 'true' if 'poll' has nothing left to return.
+     */
+    public synchronized boolean isEmpty() {
+        return this.buffer.isEmpty() && this.openSegments.isEmpty();
+    }
+
+    /**
+     * Saves the current state of the frontier so that re-opening it resumes from here.
+     */
+    public synchronized void checkpoint() throws IOException {
+        this.journal.flush();
+
+        IList<SegmentCursor> live = new ArrayBackedList<>();
+        IList<String> lines = new ArrayBackedList<>();
+        for (SegmentCursor cursor : this.allSegments) {
+            if (cursor.isExhausted()) {
+                continue;
+            }
+            live.add(cursor);
+            lines.add("segment\t" + cursor.path.getFileName() + "\t" + cursor.offset + "\n");
+        }
+        for (KVPair<URI, PendingUri> pair : this.outstanding) {
+            lines.add("pending\t" + format(pair.getValue()));
+        }
+
+        // Heaps can't be iterated, so empty the buffer out and put it back.
+        IList<PendingUri> buffered = new ArrayBackedList<>(this.buffer.size());
+        while (!this.buffer.isEmpty()) {
+            buffered.add(this.buffer.removeMin());
+        }
+        for (PendingUri pending : buffered) {
+            lines.add("pending\t" + format(pending));
+            this.buffer.insert(pending);
+        }
+
+        Path checkpoint = this.directory.resolve(CHECKPOINT_FILE);
+        Path temp = this.directory.resolve(CHECKPOINT_FILE + ".tmp");
+        writeDurably(temp, lines);
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // Everything the journal recorded is covered by the checkpoint now.
+        this.journal.close();
+        this.journal = Files.newBufferedWriter(this.directory.resolve(JOURNAL_FILE), StandardCharsets.UTF_8);
+
+        for (SegmentCursor cursor : this.allSegments) {
+            if (cursor.isExhausted()) {
+                Files.deleteIfExists(cursor.path);
+            }
+        }
+        this.allSegments = live;
+    }
+
+    /**
+     * Checkpoints the frontier and releases its files.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.checkpoint();
+        this.journal.close();
+        for (SegmentCursor cursor : this.allSegments) {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Writes the whole buffer out as a new, sorted segment.
+     */
+    private void spill() throws IOException {
+        Path path = this.directory.resolve(SEGMENT_PREFIX + this.nextSegmentId + SEGMENT_SUFFIX);
+        this.nextSegmentId++;
+
+        IList<String> lines = new ArrayBackedList<>(this.buffer.size());
+        while (!this.buffer.isEmpty()) {
+            lines.add(format(this.buffer.removeMin()));
+        }
+        writeDurably(path, lines);
+
+        SegmentCursor cursor = new SegmentCursor(path, 0);
+        this.allSegments.add(cursor);
+        if (!cursor.isExhausted()) {
+            this.openSegments.insert(cursor);
+        }
+
+        // The journal still holds everything we just spilled; the checkpoint makes it redundant.
+        this.checkpoint();
+    }
+
+    private void load() throws IOException {
+        ISet<String> liveSegments = new ChainedHashSet<>();
+        ISet<URI> restored = new ChainedHashSet<>();
+
+        Path checkpoint = this.directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint)) {
+            for (String line : Files.readAllLines(checkpoint, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t", 3);
+                if (parts.length == 3 && parts[0].equals("segment")) {
+                    Path path = this.directory.resolve(parts[1]);
+                    liveSegments.add(parts[1]);
+
+                    SegmentCursor cursor = new SegmentCursor(path, Long.parseLong(parts[2]));
+                    this.allSegments.add(cursor);
+                    if (!cursor.isExhausted()) {
+                        this.openSegments.insert(cursor);
+                    }
+                } else if (parts.length == 3 && parts[0].equals("pending")) {
+                    PendingUri pending = parse(parts[1] + "\t" + parts[2]);
+                    if (pending == null) {
+                        throw new IOException("Corrupt checkpoint line: " + line);
+                    }
+                    this.restore(pending, restored);
+                } else {
+                    throw new IOException("Corrupt checkpoint line: " + line);
+                }
+            }
+        }
+
+        // Segments spilled after the last checkpoint are incomplete, but their URIs are
+        // still in the journal, so we can just drop them.
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String id = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                this.nextSegmentId = Math.max(this.nextSegmentId, Integer.parseInt(id) + 1);
+                if (!liveSegments.contains(name)) {
+                    Files.delete(file);
+                }
+            }
+        }
+
+        Path journalPath = this.directory.resolve(JOURNAL_FILE);
+        if (Files.exists(journalPath)) {
+            for (String line : Files.readAllLines(journalPath, StandardCharsets.UTF_8)) {
+                PendingUri pending = parse(line);
+                if (pending == null) {
+                    // A torn write from a crash; nothing after it was flushed.
+                    break;
+                }
+                this.restore(pending, restored);
+            }
+        }
+    }
+
+    /**
+     * Puts a URI from the checkpoint or journal back in the buffer. The two can overlap
+     * if we crashed partway through a checkpoint, so we skip URIs already restored.
+     */
+    private void restore(PendingUri pending, ISet<URI> restored) {
+        if (!restored.contains(pending.uri)) {
+            restored.add(pending.uri);
+            this.buffer.insert(pending);
+        }
+    }
+
+    private static void writeDurably(Path path, IList<String> lines) throws IOException {
+        try (FileOutputStream stream = new FileOutputStream(path.toFile());
+             Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                writer.write(line);
+            }
+            writer.flush();
+            stream.getFD().sync();
+        }
+    }
+
+    private static String format(PendingUri pending) {
+        return pending.distance + "\t" + pending.uri + "\n";
+    }
+
+    /**
+     * Parses a line written by 'format' (minus the newline), or returns null if the
+     * line is malformed.
+     */
+    private static PendingUri parse(String line) {
+        int tab = line.indexOf('\t');
+        if (tab == -1) {
+            return null;
+        }
+        try {
+            return new PendingUri(Integer.parseInt(line.substring(0, tab)), new URI(line.substring(tab + 1)));
+        } catch (NumberFormatException | URISyntaxException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads one segment file in order, remembering how many lines have been consumed.
+     */
+    private static class SegmentCursor implements Comparable<SegmentCursor> {
+        public final Path path;
+        public long offset;
+        public PendingUri current;
+        private BufferedReader reader;
+
+        public SegmentCursor(Path path, long offset) throws IOException {
+            this.path = path;
+            this.reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+            for (long i = 0; i < offset; i++) {
+                this.reader.readLine();
+            }
+            this.offset = offset;
+            this.current = this.read();
+        }
+
+        public boolean isExhausted() {
+            return this.current == null;
+        }
+
+        public void advance() throws IOException {
+            this.offset++;
+            this.current = this.read();
+        }
+
+        public void close() throws IOException {
+            if (this.reader != null) {
+                this.reader.close();
+                this.reader = null;
+            }
+        }
+
+        private PendingUri read() throws IOException {
+            String line = this.reader.readLine();
+            if (line == null) {
+                this.close();
+                return null;
+            }
+            PendingUri out = parse(line);
+            if (out == null) {
+                throw new IOException("Corrupt line in " + this.path + ": " + line);
+            }
+            return out;
+        }
+
+        public int compareTo(SegmentCursor other) {
+            return this.current.compareTo(other.current);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package search.scraper;
+
+import org.apache.http.HttpStatus;
+
+/**
+ * The result of a (possibly conditional) page request.
+ */
+public class FetchResponse {
+    public final int status;
+
+    // Null unless the status was 2xx and the page is a content type we index.
+    public final String body;
+
+    // The validators sent with this response; never null, but possibly empty.
+    public final Validators validators;
+
+    public FetchResponse(int status, String body, Validators validators) {
+        this.status = status;
+        this.body = body;
+        this.validators = validators;
+    }
+
+    /**
+     * Returns 'true' if the server told us the page has not changed since we got the
+     * validators we sent it.
+     */
+    public boolean isNotModified() {
+        return this.status == HttpStatus.SC_NOT_MODIFIED;
+    }
+
+    /**
+     * Returns 'true' if the request succeeded (a 2xx status).
+     */
+    public boolean isSuccess() {
+        return this.status >= 200 && this.status < 300;
+    }
+
+    /**
+     * Returns 'true' if the server told us the page no longer exists ("404 Not Found" or
+     * "410 Gone").
+     */
+    public boolean isGone() {
+        return this.status == HttpStatus.SC_NOT_FOUND || this.status == HttpStatus.SC_GONE;
+    }
+}
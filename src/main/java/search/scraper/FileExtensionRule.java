@@ -0,0 +1,78 @@
+package search.scraper;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.interfaces.ISet;
+
+import java.net.URI;
+
+/**
+ * Disallows URIs whose path ends in one of a set of file extensions, ignoring case.
+ *
+ * Only the last segment of the path is looked at, and only the part after one of its
+ * last few dots: "/files/report.PDF" and "/a/b.tar.gz" have extensions "pdf" and
+ * "tar.gz" (and "gz"), while "/wiki/Maps", "/v1.2/index" and "/files.zip/list" have
+ * none we care about. Checking a URI is a scan back from the end of its path plus
+ * at most one hash lookup per dot in a multi-part extension.
+ *
+ * Instances are immutable, and so are safe to share between threads.
+ */
+public class FileExtensionRule implements UriMatchRule {
+    private final ISet<String> extensions;
+
+    // The most dots in any one extension, counting the leading one: 2 for ".tar.gz".
+    private final int maxParts;
+
+    /**
+     * Constructs a rule disallowing the given extensions, each written with or without
+     * its leading dot (".tar.gz" or "tar.gz").
+     */
+    public FileExtensionRule(String... extensions) {
+        this.extensions = new ChainedHashSet<>();
+        int parts = 1;
+        for (String extension : extensions) {
+            String normalized = extension.startsWith(".") ? extension.substring(1) : extension;
+            if (normalized.isEmpty()) {
+                throw new IllegalArgumentException("Extensions cannot be empty");
+            }
+            normalized = normalized.toLowerCase();
+            this.extensions.add(normalized);
+            parts = Math.max(parts, 1 + countDots(normalized));
+        }
+        this.maxParts = parts;
+    }
+
+    @Override
+    public boolean matches(URI uri) {
+        String path = uri.getRawPath();
+        return path == null || !this.hasBlacklistedExtension(path);
+    }
+
+    /**
+     * Returns 'true' if the last segment of the given path ends with one of our extensions.
+     */
+    public boolean hasBlacklistedExtension(String path) {
+        int dotsSeen = 0;
+        for (int i = path.length() - 1; i >= 0 && dotsSeen < this.maxParts; i--) {
+            char c = path.charAt(i);
+            if (c == '/') {
+                return false;
+            } else if (c == '.') {
+                dotsSeen++;
+                if (i < path.length() - 1 && this.extensions.contains(path.substring(i + 1).toLowerCase())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int countDots(String extension) {
+        int count = 0;
+        for (int i = 0; i < extension.length(); i++) {
+            if (extension.charAt(i) == '.') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
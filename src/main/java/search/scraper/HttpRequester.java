@@ -1,34 +1,53 @@
 package search.scraper;
 
-import datastructures.concrete.dictionaries.ChainedHashDictionary;
-import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.ISet;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.entity.ContentType;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
 import java.net.URI;
-import java.net.URISyntaxException;
-
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches pages over HTTP. Callers first ask 'isAllowed' whether a URI may be fetched
+ * (its extension is not blacklisted, and the host's robots.txt allows it), then 'fetch'
+ * it, conditionally if they have validators from an earlier fetch.
+ *
+ * Requests are non-blocking: both methods return immediately, and responses are read
+ * by the async client's I/O threads, which complete the returned futures. Connections
+ * are pooled per host and kept alive between requests, so a crawl mostly pays the TCP
+ * (and TLS) handshake once per host instead of once per page.
+ *
+ * This class is safe to share between threads. It does NOT enforce any delay between
+ * requests itself: the caller (see PolitenessScheduler) is responsible for spacing out
+ * requests to the same host by at least 'getDelayMilliseconds()', and for bounding how
+ * many requests are in flight at once (see Scraper).
+ */
 public class HttpRequester implements AutoCloseable {
     public static final String DEFAULT_USER_AGENT = "Cse373Crawler (contact mlee42@cs.washington.edu)";
     public static final long DEFAULT_DELAY = 1000; // 1 second
 
+    // We only ever make one request to a host at a time, so these just need to
+    // comfortably exceed the number of requests the scraper keeps in flight.
+    private static final int MAX_CONNECTIONS = 128;
+    private static final int MAX_CONNECTIONS_PER_HOST = 2;
+
     private final String userAgent;
     private final long delayMilliseconds;
 
     // Internal state
-    private long lastRequestTimestamp;
-    private CloseableHttpClient client;
+    private CloseableHttpAsyncClient client;
 
-    private UriMatchRule defaultMatchRule;
-    private IDictionary<String, UriMatchRule> matchPattern;
+    private FileExtensionRule defaultMatchRule;
+    private RobotsCache robotsCache;
     private ISet<String> allowableContentTypes;
 
     public HttpRequester() {
@@ -45,11 +64,10 @@ public class HttpRequester implements AutoCloseable {
 
         this.userAgent = userAgent;
         this.delayMilliseconds = delayMilliseconds;
-        this.lastRequestTimestamp = 0L;
-        this.matchPattern = new ChainedHashDictionary<>();
+        this.robotsCache = new RobotsCache();
 
         // HTTP config
-        this.client = HttpClients.custom()
+        this.client = HttpAsyncClients.custom()
                 .setUserAgent(userAgent)
                 .setDefaultRequestConfig(RequestConfig
                         .copy(RequestConfig.DEFAULT)
@@ -57,80 +75,130 @@ public class HttpRequester implements AutoCloseable {
                         .setConnectTimeout(5000)
                         .setSocketTimeout(5000)
                         .build())
+                .setMaxConnTotal(MAX_CONNECTIONS)
+                .setMaxConnPerRoute(MAX_CONNECTIONS_PER_HOST)
                 .build();
+        this.client.start();
         this.allowableContentTypes = Constants.contentTypeWhitelist();
         this.defaultMatchRule = Constants.fileExtensionBlacklist();
     }
 
-    public String makeRequest(URI uri) throws IOException, URISyntaxException {
-        if (this.isBlacklistedUri(uri)) {
-            System.out.println("Is blacklisted uri: " + uri);
-            return null;
-        } else {
-            System.out.println("Is ok uri: " + uri);
-        }
-        this.respectDelay();
-        return this.rawHttpRequest(uri);
+    /**
+     * Returns the minimum time callers must leave between two requests to the same host.
+     */
+    public long getDelayMilliseconds() {
+        return this.delayMilliseconds;
     }
 
-    private void respectDelay() {
-        long current = System.currentTimeMillis();
-
-        long timeElapsed = current - this.lastRequestTimestamp;
-        long timeLeft = this.delayMilliseconds - timeElapsed;
+    /**
+     * Starts fetching the given URI, WITHOUT checking 'isAllowed' first: callers must.
+     *
+     * If 'validators' is not empty, the request is conditional: a server that supports it
+     * will answer "304 Not Modified", with no body, if the page has not changed since we
+     * got those validators. Only a 2xx response comes with a body: for any other status,
+     * the body is an error page and not the page we asked for, so we leave it null. The
+     * future completes exceptionally if the request fails.
+     */
+    public CompletableFuture<FetchResponse> fetch(URI uri, Validators validators) {
+        HttpGet request = new HttpGet(uri);
+        if (validators.etag != null) {
+            request.setHeader("If-None-Match", validators.etag);
+        }
+        if (validators.lastModified != null) {
+            request.setHeader("If-Modified-Since", validators.lastModified);
+        }
+        return this.execute(request, response -> {
+            int status = response.getStatusLine().getStatusCode();
+            Validators received = new Validators(
+                    headerValue(response, "ETag"), headerValue(response, "Last-Modified"));
+            if (status < 200 || status >= 300) {
+                return new FetchResponse(status, null, received);
+            }
+            return new FetchResponse(status, this.readBody(uri, response), received);
+        });
+    }
 
-        if (timeLeft > 0) {
-            try {
-                Thread.sleep(timeLeft);
-            } catch (InterruptedException ex) {
-                throw new RuntimeException(ex);
+    /**
+     * Fetches the robots.txt of the given URI's host. As RFC 9309 asks, a missing file
+     * (any 4xx status) means everything is allowed. Any other failure completes the
+     * future exceptionally, so we skip the host's pages until a later fetch succeeds.
+     */
+    private CompletableFuture<RobotsRules> fetchRobots(URI uri) {
+        URI robotsUri = uri.resolve("/robots.txt");
+        return this.execute(new HttpGet(robotsUri), response -> {
+            int status = response.getStatusLine().getStatusCode();
+            if (status >= 400 && status < 500) {
+                return RobotsRules.ALLOW_ALL;
+            } else if (status < 200 || status >= 300) {
+                throw new IOException("Got status " + status + " for " + robotsUri);
             }
-        }
-        this.lastRequestTimestamp = System.currentTimeMillis();
+            String robotsContents = this.readBody(robotsUri, response);
+            if (robotsContents == null) {
+                return RobotsRules.ALLOW_ALL;
+            }
+            return new RobotsTxt(this.userAgent, robotsContents).getRules();
+        });
     }
 
-    private String rawHttpRequest(URI uri) throws IOException, URISyntaxException {
-        HttpGet request = new HttpGet(uri);
-        try (CloseableHttpResponse response = this.client.execute(request)) {
-            HttpEntity entity = response.getEntity();
-            if (entity == null) {
-                throw new IOException("Response had no entity");
+    private <T> CompletableFuture<T> execute(HttpGet request, ResponseReader<T> reader) {
+        CompletableFuture<T> out = new CompletableFuture<>();
+        this.client.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    out.complete(reader.read(response));
+                } catch (IOException | RuntimeException ex) {
+                    out.completeExceptionally(ex);
+                }
             }
 
-            ContentType contentType = ContentType.get(entity);
-            if (!this.allowableContentTypes.contains(contentType.getMimeType())) {
-                System.out.println("Unknown content type for " + uri + ": " + contentType);
-                System.out.println(this.allowableContentTypes);
-                return null;
+            @Override
+            public void failed(Exception ex) {
+                out.completeExceptionally(ex);
             }
 
-            return EntityUtils.toString(entity, "UTF-8");
-        }
+            @Override
+            public void cancelled() {
+                out.cancel(false);
+            }
+        });
+        return out;
     }
 
-    private boolean isBlacklistedUri(URI uri) {
-        String host = uri.getHost();
-        if (!this.defaultMatchRule.matches(uri)) {
-            return false;
+    private static String headerValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+
+    private String readBody(URI uri, HttpResponse response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            throw new IOException("Response had no entity");
         }
-        if (!this.matchPattern.containsKey(host)) {
-            String robotsContents;
-            try {
-                robotsContents = this.rawHttpRequest(uri.resolve("/robots.txt"));
-            } catch (IOException | URISyntaxException ex) {
-                throw new RuntimeException(ex);
-            }
-            UriMatchRule newRule;
-            if (robotsContents == null) {
-                newRule = new UriMatchRule(null, null);
-            } else {
-                newRule = new RobotsTxt(this.userAgent, robotsContents).getMatchRule();
-            }
-            this.matchPattern.put(host, newRule);
+
+        ContentType contentType = ContentType.get(entity);
+        if (!this.allowableContentTypes.contains(contentType.getMimeType())) {
+            System.out.println("Unknown content type for " + uri + ": " + contentType);
+            System.out.println(this.allowableContentTypes);
+            return null;
         }
-        return !this.matchPattern.get(host).matches(uri);
+
+        return EntityUtils.toString(entity, "UTF-8");
     }
 
+    /**
+     * Returns whether we may fetch the given URI: it must not have a blacklisted file
+     * extension, and the host's robots.txt must allow it. Fetches the robots.txt first if
+     * we do not have an up-to-date copy. The future completes exceptionally if we could
+     * not get the host's robots.txt.
+     */
+    public CompletableFuture<Boolean> isAllowed(URI uri) {
+        if (!this.defaultMatchRule.matches(uri)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return this.robotsCache.get(uri.getHost(), host -> this.fetchRobots(uri))
+                .thenApply(rules -> rules.matches(uri));
+    }
 
     public void close() throws IOException {
         if (this.client != null) {
@@ -138,4 +206,8 @@ public class HttpRequester implements AutoCloseable {
             this.client = null;
         }
     }
+
+    private interface ResponseReader<T> {
+        T read(HttpResponse response) throws IOException;
+    }
 }
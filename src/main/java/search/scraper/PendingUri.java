@@ -0,0 +1,37 @@
+package search.scraper;
+
+import java.net.URI;
+
+/**
+ * A URI waiting to be fetched, along with how many links away from a seed it was found.
+ *
+ * URIs are ordered by distance, then host, then the full URI, which is the order the
+ * crawl frontier keeps them in on disk.
+ */
+public class PendingUri implements Comparable<PendingUri> {
+    public final int distance;
+    public final URI uri;
+
+    public PendingUri(int distance, URI uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException();
+        }
+        this.distance = distance;
+        this.uri = uri;
+    }
+
+    public int compareTo(PendingUri other) {
+        int result = Integer.compare(this.distance, other.distance);
+        if (result == 0) {
+            result = hostOf(this.uri).compareTo(hostOf(other.uri));
+        }
+        if (result == 0) {
+            result = this.uri.toString().compareTo(other.uri.toString());
+        }
+        return result;
+    }
+
+    private static String hostOf(URI uri) {
+        return uri.getHost() == null ? "" : uri.getHost();
+    }
+}
@@ -0,0 +1,195 @@
+package search.scraper;
+
+import datastructures.concrete.ArrayHeap;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IPriorityQueue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which URI each fetch worker should request next.
+ *
+ * Every host gets its own queue of pending URIs (closest to a seed first) and a
+ * next-allowed-fetch time. A host is handed to at most one worker at a time, and
+ * once that worker reports back via 'complete' the host may not be fetched from
+ * again until 'delayMilliseconds' have passed. Different hosts have no effect on
+ * each other, so a crawl over many hosts runs as many fetches in parallel as there
+ * are workers while each individual host still sees one request per delay.
+ *
+ * URIs are pulled from a CrawlFrontier as needed, so only a bounded "head" of roughly
+ * 'headSize' URIs is held here at once. If every host in the head is busy or waiting out
+ * its delay, we pull up to a few times more to find a host we can fetch from.
+ *
+ * Every method synchronizes on this object. Scheduling work is tiny compared to a
+ * network round trip, so a single lock is not a bottleneck here.
+ */
+public class PolitenessScheduler {
+    public static final int DEFAULT_HEAD_SIZE = 1000;
+
+    // How far past 'headSize' we may go looking for a host that is ready right now.
+    private static final int MAX_HEAD_SIZE_FACTOR = 4;
+
+    private final CrawlFrontier frontier;
+    private final int headSize;
+    private final long delayNanos;
+
+    // Every host we have ever queued a URI for. We keep hosts around after their
+    // queue drains so the delay is still respected if new URIs for them show up.
+    private final IDictionary<String, HostQueue> hosts;
+
+    // Hosts that have pending URIs and are not currently being fetched from,
+    // ordered by the time they may next be fetched from.
+    private final IPriorityQueue<HostQueue> readyHosts;
+
+    private int pendingCount;
+    private int inFlightCount;
+    private boolean shutdown;
+
+    public PolitenessScheduler(CrawlFrontier frontier, long delayMilliseconds, int headSize) {
+        if (delayMilliseconds < 0) {
+            throw new IllegalArgumentException("Delay cannot be negative");
+        }
+        if (headSize < 1) {
+            throw new IllegalArgumentException("Head size must be positive");
+        }
+        this.frontier = frontier;
+        this.headSize = headSize;
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMilliseconds);
+        this.hosts = new ChainedHashDictionary<>();
+        this.readyHosts = new ArrayHeap<>();
+        this.pendingCount = 0;
+        this.inFlightCount = 0;
+        this.shutdown = false;
+    }
+
+    /**
+     * Queues the given URI to be fetched once its host is next available.
+     */
+    private void add(PendingUri pending) {
+        String host = pending.uri.getHost();
+        HostQueue queue = this.hosts.computeIfAbsent(host, HostQueue::new);
+        queue.uris.insert(pending);
+        this.pendingCount++;
+
+        if (!queue.scheduled) {
+            queue.scheduled = true;
+            this.readyHosts.insert(queue);
+        }
+    }
+
+    /**
+     * Blocks until some host may be fetched from, then returns that host's next URI.
+     * The caller MUST call 'complete' with the returned URI once it is done with it.
+     *
+     * Returns null once the crawl is over: either 'shutdown' was called, or there is
+     * nothing left to fetch and no worker is still fetching (and so nothing more can
+     * be discovered).
+     */
+    public synchronized PendingUri next() throws InterruptedException {
+        while (!this.shutdown) {
+            this.refill();
+            if (!this.readyHosts.isEmpty()) {
+                HostQueue queue = this.readyHosts.peekMin();
+                long waitNanos = queue.nextFetchTime - System.nanoTime();
+                if (waitNanos <= 0) {
+                    this.readyHosts.removeMin();
+                    this.pendingCount--;
+                    this.inFlightCount++;
+                    return queue.uris.removeMin();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+            } else if (this.inFlightCount == 0) {
+                // The frontier is empty too, or 'refill' would have found something.
+                return null;
+            } else {
+                this.wait();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reports that the worker is done with a URI returned by 'next', starting the
+     * delay before its host may be fetched from again.
+     */
+    public void complete(PendingUri pending) {
+        this.complete(pending, true);
+    }
+
+    /**
+     * Reports that the worker is done with a URI returned by 'next'. If 'requested' is
+     * false, the worker skipped the URI without contacting its host, so the host may be
+     * fetched from again as soon as it otherwise could have been.
+     */
+    public synchronized void complete(PendingUri pending, boolean requested) {
+        HostQueue queue = this.hosts.get(pending.uri.getHost());
+        if (requested) {
+            queue.nextFetchTime = System.nanoTime() + this.delayNanos;
+        }
+        this.inFlightCount--;
+        this.frontier.complete(pending);
+
+        if (queue.uris.isEmpty()) {
+            queue.scheduled = false;
+        } else {
+            this.readyHosts.insert(queue);
+        }
+        this.notifyAll();
+    }
+
+    /**
+     * Pulls URIs from the frontier until the head is full enough.
+     */
+    private void refill() {
+        while (this.pendingCount < this.headSize
+                || (this.pendingCount < MAX_HEAD_SIZE_FACTOR * this.headSize && !this.hasReadyHost())) {
+            PendingUri pending = this.frontier.poll();
+            if (pending == null) {
+                return;
+            }
+            this.add(pending);
+        }
+    }
+
+    private boolean hasReadyHost() {
+        return !this.readyHosts.isEmpty() && this.readyHosts.peekMin().nextFetchTime - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Makes every current and future call to 'next' return null.
+     */
+    public synchronized void shutdown() {
+        this.shutdown = true;
+        this.notifyAll();
+    }
+
+    /**
+     * Returns the number of URIs pulled from the frontier and still waiting to be handed out.
+     */
+    public synchronized int size() {
+        return this.pendingCount;
+    }
+
+    private static class HostQueue implements Comparable<HostQueue> {
+        public final String host;
+        public final IPriorityQueue<PendingUri> uris;
+
+        // Only changed while this queue is not in 'readyHosts', so the heap order stays valid.
+        public long nextFetchTime;
+
+        // 'true' while this host is either in 'readyHosts' or being fetched from.
+        public boolean scheduled;
+
+        public HostQueue(String host) {
+            this.host = host;
+            this.uris = new ArrayHeap<>();
+            this.nextFetchTime = System.nanoTime();
+            this.scheduled = false;
+        }
+
+        public int compareTo(HostQueue other) {
+            return Long.compare(this.nextFetchTime - other.nextFetchTime, 0L);
+        }
+    }
+}
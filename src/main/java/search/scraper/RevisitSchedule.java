@@ -0,0 +1,369 @@
+package search.scraper;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+import misc.Searcher;
+import search.misc.NearDuplicateDetector;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when each page we have fetched should next be checked for changes, and keeps
+ * what we need to check it cheaply: the validators its server sent (see Validators), and
+ * its SimHash, for servers that ignore conditional requests.
+ *
+ * We treat each page as changing at random at some steady rate. For every page we count
+ * how often we checked it, how many of those checks found it changed, and how long we
+ * waited between checks in total, and estimate its rate from those using Cho and
+ * Garcia-Molina's estimator, which allows for changes we missed because the page changed
+ * more than once between two checks. The page is next due after the estimated time
+ * between its changes, so a page that changes daily gets checked about daily, and one
+ * that never changes drifts out to 'maxInterval'. An interval may at most double from one
+ * check to the next, so a single unchanged check is not taken as proof the page is
+ * static, and the counts are halved every HISTORY_LIMIT checks so the estimate follows a
+ * page whose rate changes.
+ *
+ * Every update is appended to a log file, and when the log is read back the last line
+ * for each URI wins; a page that is gone for good (see 'remove') ends with a line that
+ * just says so. Opening the log rewrites it without the superseded lines once they
+ * make up most of it. A line torn by a crash is skipped, which at worst means that page
+ * is checked again sooner than it had to be.
+ *
+ * Every method synchronizes on this object.
+ */
+public class RevisitSchedule implements Closeable {
+    public static final long DEFAULT_INITIAL_INTERVAL = TimeUnit.DAYS.toMillis(1);
+    public static final long DEFAULT_MIN_INTERVAL = TimeUnit.HOURS.toMillis(1);
+    public static final long DEFAULT_MAX_INTERVAL = TimeUnit.DAYS.toMillis(60);
+
+    private static final int HISTORY_LIMIT = 32;
+    private static final int FIELDS = 9;
+    private static final String REMOVED = "removed";
+
+    // The last visit time of a page added by 'addUnchecked'.
+    private static final long NEVER = 0L;
+
+    private final Path file;
+    private final long initialInterval;
+    private final long minInterval;
+    private final long maxInterval;
+    private final IDictionary<URI, Entry> entries;
+    private Writer log;
+    private long logLines;
+
+    public RevisitSchedule(Path file) throws IOException {
+        this(file, DEFAULT_INITIAL_INTERVAL, DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL);
+    }
+
+    /**
+     * Opens the schedule stored in the given file, creating it if it does not exist.
+     *
+     * @param initialInterval  how long after a page is first fetched we check it again
+     * @param minInterval      the shortest time we ever leave between two checks of a page
+     * @param maxInterval      the longest time we ever leave between two checks of a page
+     */
+    public RevisitSchedule(Path file, long initialInterval, long minInterval, long maxInterval) throws IOException {
+        if (minInterval < 1 || initialInterval < minInterval || maxInterval < initialInterval) {
+            throw new IllegalArgumentException("Intervals must satisfy 0 < min <= initial <= max");
+        }
+        this.file = file;
+        this.initialInterval = initialInterval;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.entries = new ChainedHashDictionary<>();
+        this.logLines = 0;
+
+        if (Files.exists(file)) {
+            this.load();
+            if (this.logLines > 2L * this.entries.size()) {
+                this.compact();
+            }
+        }
+        this.log = Files.newBufferedWriter(
+                file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Returns the validators we last got for the given page, or Validators.NONE if we
+     * have none.
+     */
+    public synchronized Validators getValidators(URI uri) {
+        Entry entry = this.entries.getOrDefault(uri, null);
+        return entry == null ? Validators.NONE : entry.validators;
+    }
+
+    /**
+     * Returns how long after its last check the given page is due to be checked again,
+     * or -1 if it is not in the schedule.
+     */
+    public synchronized long getInterval(URI uri) {
+        Entry entry = this.entries.getOrDefault(uri, null);
+        return entry == null ? -1 : entry.interval;
+    }
+
+    /**
+     * Adds a page we have no validators or SimHash for (because it was fetched before we
+     * kept a schedule), due to be checked right away. Does nothing if the page is already
+     * in the schedule.
+     */
+    public synchronized void addUnchecked(URI uri) throws IOException {
+        if (!this.entries.containsKey(uri)) {
+            Entry entry = new Entry(
+                    Validators.NONE, NearDuplicateDetector.NO_FINGERPRINT, NEVER, this.initialInterval);
+            this.entries.put(uri, entry);
+            this.write(uri, entry);
+        }
+    }
+
+    /**
+     * Records that we downloaded the given page at time 'now'.
+     *
+     * Returns 'true' if the page is new to the schedule, or if its text changed since we
+     * last downloaded it: that is, its SimHash moved by more bits than NearDuplicateDetector
+     * would allow for a copy, so a new timestamp or hit counter does not count as a change.
+     */
+    public synchronized boolean recordFetch(URI uri, Validators validators, long fingerprint, long now)
+            throws IOException {
+        Entry entry = this.entries.getOrDefault(uri, null);
+        if (entry == null || entry.lastVisit == NEVER) {
+            // We have nothing to compare against, so this only gives us a starting point.
+            entry = new Entry(validators, fingerprint, now, this.initialInterval);
+            this.entries.put(uri, entry);
+            this.write(uri, entry);
+            return true;
+        }
+
+        boolean changed;
+        long none = NearDuplicateDetector.NO_FINGERPRINT;
+        if (entry.fingerprint == none || fingerprint == none) {
+            // Too little text to compare similarity, so anything but the same result is a change.
+            changed = entry.fingerprint != fingerprint;
+        } else {
+            changed = NearDuplicateDetector.distance(entry.fingerprint, fingerprint)
+                    > NearDuplicateDetector.DEFAULT_MAX_DISTANCE;
+        }
+        entry.fingerprint = fingerprint;
+        this.update(uri, entry, validators, changed, now);
+        return changed;
+    }
+
+    /**
+     * Records that at time 'now' the server told us the given page has not changed.
+     */
+    public synchronized void recordNotModified(URI uri, Validators validators, long now) throws IOException {
+        Entry entry = this.entries.getOrDefault(uri, null);
+        if (entry != null) {
+            this.update(uri, entry, validators, false, now);
+        }
+    }
+
+    /**
+     * Drops the given page from the schedule, so it is never checked again. Does nothing
+     * if the page is not in the schedule.
+     */
+    public synchronized void remove(URI uri) throws IOException {
+        if (this.log == null) {
+            throw new IllegalStateException("Revisit schedule is closed");
+        }
+        if (this.entries.containsKey(uri)) {
+            this.entries.remove(uri);
+            this.log.write(uri + "\t" + REMOVED + "\n");
+            this.logLines++;
+        }
+    }
+
+    /**
+     * Returns up to 'limit' pages due to be checked by time 'dueBy', most overdue first.
+     */
+    public synchronized IList<URI> due(long dueBy, int limit) {
+        IList<DuePage> candidates = new ArrayBackedList<>();
+        for (KVPair<URI, Entry> pair : this.entries) {
+            long nextVisit = pair.getValue().lastVisit + pair.getValue().interval;
+            if (nextVisit <= dueBy) {
+                candidates.add(new DuePage(pair.getKey(), nextVisit));
+            }
+        }
+
+        // 'topKSort' returns the most overdue pages last.
+        IList<DuePage> mostOverdue = Searcher.topKSort(limit, candidates);
+        IList<URI> out = new ArrayBackedList<>(mostOverdue.size());
+        for (int i = mostOverdue.size() - 1; i >= 0; i--) {
+            out.add(mostOverdue.get(i).uri);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the number of pages in the schedule.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Makes sure every update recorded so far has been written to the log.
+     */
+    public synchronized void flush() throws IOException {
+        if (this.log != null) {
+            this.log.flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.log != null) {
+            this.log.close();
+            this.log = null;
+        }
+    }
+
+    private void update(URI uri, Entry entry, Validators validators, boolean changed, long now)
+            throws IOException {
+        entry.checks++;
+        if (changed) {
+            entry.changes++;
+        }
+        entry.observed += Math.max(now - entry.lastVisit, 0);
+        if (entry.checks >= HISTORY_LIMIT) {
+            entry.checks /= 2;
+            entry.changes /= 2;
+            entry.observed /= 2;
+        }
+
+        // Cho and Garcia-Molina's estimate of how often the page changes, given that
+        // 'changes' of 'checks' checks an average of 'observed / checks' apart saw a change.
+        double meanGap = Math.max(entry.observed, 1) / (double) entry.checks;
+        double rate = -Math.log((entry.checks - entry.changes + 0.5) / (entry.checks + 0.5)) / meanGap;
+        double estimate = rate > 0 ? 1 / rate : Double.POSITIVE_INFINITY;
+        long interval = (long) Math.min(estimate, 2.0 * entry.interval);
+        entry.interval = Math.max(this.minInterval, Math.min(this.maxInterval, interval));
+        entry.lastVisit = now;
+
+        // Servers need not repeat the validators on a "304 Not Modified".
+        if (!validators.isEmpty()) {
+            entry.validators = validators;
+        }
+        this.write(uri, entry);
+    }
+
+    private void write(URI uri, Entry entry) throws IOException {
+        if (this.log == null) {
+            throw new IllegalStateException("Revisit schedule is closed");
+        }
+        this.log.write(format(uri, entry));
+        this.logLines++;
+    }
+
+    private void load() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(this.file, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                this.logLines++;
+                String[] parts = line.split("\t", -1);
+                try {
+                    if (parts.length == 2 && parts[1].equals(REMOVED)) {
+                        URI uri = URI.create(parts[0]);
+                        if (this.entries.containsKey(uri)) {
+                            this.entries.remove(uri);
+                        }
+                    } else if (parts.length == FIELDS) {
+                        Entry entry = new Entry(
+                                new Validators(emptyToNull(parts[7]), emptyToNull(parts[8])),
+                                Long.parseUnsignedLong(parts[6], 16),
+                                Long.parseLong(parts[1]),
+                                Long.parseLong(parts[2]));
+                        entry.checks = Integer.parseInt(parts[3]);
+                        entry.changes = Integer.parseInt(parts[4]);
+                        entry.observed = Long.parseLong(parts[5]);
+                        this.entries.put(URI.create(parts[0]), entry);
+                    }
+                } catch (IllegalArgumentException ex) {
+                    // A line torn by a crash: skip it.
+                }
+            }
+        }
+    }
+
+    /**
+     * Rewrites the log with one line per page.
+     */
+    private void compact() throws IOException {
+        Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (KVPair<URI, Entry> pair : this.entries) {
+                writer.write(format(pair.getKey(), pair.getValue()));
+            }
+        }
+        Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.logLines = this.entries.size();
+    }
+
+    private static String format(URI uri, Entry entry) {
+        return uri + "\t" + entry.lastVisit + "\t" + entry.interval + "\t" + entry.checks + "\t" + entry.changes
+                + "\t" + entry.observed + "\t" + String.format("%016x", entry.fingerprint)
+                + "\t" + sanitize(entry.validators.etag) + "\t" + sanitize(entry.validators.lastModified) + "\n";
+    }
+
+    private static String sanitize(String header) {
+        // Neither header may legally contain these, but a broken server could still send them.
+        if (header == null || header.indexOf('\t') >= 0 || header.indexOf('\n') >= 0 || header.indexOf('\r') >= 0) {
+            return "";
+        }
+        return header;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static class Entry {
+        public Validators validators;
+        public long fingerprint;
+        public long lastVisit;
+        public long interval;
+
+        // What we have observed so far (see 'update').
+        public int checks;
+        public int changes;
+        public long observed;
+
+        public Entry(Validators validators, long fingerprint, long lastVisit, long interval) {
+            this.validators = validators;
+            this.fingerprint = fingerprint;
+            this.lastVisit = lastVisit;
+            this.interval = interval;
+            this.checks = 0;
+            this.changes = 0;
+            this.observed = 0;
+        }
+    }
+
+    private static class DuePage implements Comparable<DuePage> {
+        public final URI uri;
+        public final long nextVisit;
+
+        public DuePage(URI uri, long nextVisit) {
+            this.uri = uri;
+            this.nextVisit = nextVisit;
+        }
+
+        @Override
+        public int compareTo(DuePage other) {
+            // The longer overdue, the "bigger".
+            int result = Long.compare(other.nextVisit, this.nextVisit);
+            return result != 0 ? result : other.uri.toString().compareTo(this.uri.toString());
+        }
+    }
+}
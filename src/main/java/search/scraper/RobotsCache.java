@@ -0,0 +1,102 @@
+package search.scraper;
+
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Remembers the robots.txt rules of each host we crawl, for a limited time and for a
+ * limited number of hosts.
+ *
+ * Rules are refetched once they are older than the time-to-live (RFC 9309 asks crawlers
+ * not to trust a copy for more than a day), or if fetching them last time failed. Once
+ * more than 'maxHosts' hosts are cached, the least recently used host is forgotten;
+ * finding it takes a scan over every host, but that only happens when we meet a host
+ * we have not seen in a while.
+ *
+ * Every method synchronizes on this object. The rules themselves are fetched outside
+ * the lock: the cache stores the future, so concurrent lookups for the same host share
+ * a single fetch.
+ */
+public class RobotsCache {
+    public static final long DEFAULT_TTL_MILLISECONDS = TimeUnit.HOURS.toMillis(24);
+    public static final int DEFAULT_MAX_HOSTS = 10000;
+
+    private final long ttlNanos;
+    private final int maxHosts;
+    private final IDictionary<String, Entry> entries;
+
+    public RobotsCache() {
+        this(DEFAULT_TTL_MILLISECONDS, DEFAULT_MAX_HOSTS);
+    }
+
+    public RobotsCache(long ttlMilliseconds, int maxHosts) {
+        if (ttlMilliseconds <= 0) {
+            throw new IllegalArgumentException("Time-to-live must be positive");
+        }
+        if (maxHosts < 1) {
+            throw new IllegalArgumentException("Must be able to cache at least one host");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMilliseconds);
+        this.maxHosts = maxHosts;
+        this.entries = new ChainedHashDictionary<>();
+    }
+
+    /**
+     * Returns the rules for the given host, calling 'fetch' to get them if they are not
+     * cached, have expired, or failed to load last time.
+     */
+    public synchronized CompletableFuture<RobotsRules> get(
+            String host, Function<String, CompletableFuture<RobotsRules>> fetch) {
+        long now = System.nanoTime();
+        Entry entry = this.entries.getOrDefault(host, null);
+        if (entry == null || now - entry.expiresAt >= 0 || entry.rules.isCompletedExceptionally()) {
+            entry = new Entry(fetch.apply(host), now + this.ttlNanos);
+            this.entries.put(host, entry);
+            if (this.entries.size() > this.maxHosts) {
+                this.evictLeastRecentlyUsed(host);
+            }
+        }
+        entry.lastUsed = now;
+        return entry.rules;
+    }
+
+    /**
+     * Returns the number of hosts currently cached.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    private void evictLeastRecentlyUsed(String except) {
+        String oldestHost = null;
+        long oldestTime = 0;
+        for (KVPair<String, Entry> pair : this.entries) {
+            if (pair.getKey().equals(except)) {
+                continue;
+            }
+            if (oldestHost == null || pair.getValue().lastUsed - oldestTime < 0) {
+                oldestHost = pair.getKey();
+                oldestTime = pair.getValue().lastUsed;
+            }
+        }
+        if (oldestHost != null) {
+            this.entries.remove(oldestHost);
+        }
+    }
+
+    private static class Entry {
+        public final CompletableFuture<RobotsRules> rules;
+        public final long expiresAt;
+        public long lastUsed;
+
+        public Entry(CompletableFuture<RobotsRules> rules, long expiresAt) {
+            this.rules = rules;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
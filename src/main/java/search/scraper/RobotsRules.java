@@ -0,0 +1,278 @@
+package search.scraper;
+
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The Allow and Disallow rules from one group of a robots.txt file, compiled into a
+ * trie so that checking a URI takes time proportional to the length of its path, no
+ * matter how many rules there are.
+ *
+ * Rules are matched the way RFC 9309 (and the major search engines) describe:
+ *
+ * - A rule matches every path it is a prefix of.
+ * - A '*' in a rule matches any sequence of characters, including none.
+ * - A '$' at the end of a rule means the path must end there.
+ * - When several rules match, the longest one wins. If an Allow and a Disallow rule
+ *   are equally long, the Allow rule wins. If no rule matches, the path is allowed.
+ *
+ * Rules and paths are compared in their percent-encoded form, with the hex digits of
+ * every escape upper-cased, so "/caf%c3%a9", "/caf%C3%A9" and the same path written with
+ * an unescaped accented character all match each other.
+ *
+ * Instances are immutable, and so are safe to share between threads.
+ */
+public class RobotsRules implements UriMatchRule {
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(new DoubleLinkedList<>(), new DoubleLinkedList<>());
+
+    private static final byte NONE = 0;
+    private static final byte DISALLOW = 1;
+    private static final byte ALLOW = 2;
+
+    private final Node root;
+
+    public RobotsRules(IList<String> allowed, IList<String> disallowed) {
+        this.root = new Node(0, false);
+        for (String rule : disallowed) {
+            this.insert(rule, DISALLOW);
+        }
+        for (String rule : allowed) {
+            this.insert(rule, ALLOW);
+        }
+    }
+
+    @Override
+    public boolean matches(URI uri) {
+        String path = uri.getRawPath();
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        }
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+        return this.isAllowed(path);
+    }
+
+    /**
+     * Returns 'true' if these rules allow fetching the given path (which may include a
+     * query string).
+     */
+    public boolean isAllowed(String path) {
+        if (path.equals("/robots.txt")) {
+            return true;
+        }
+        String normalized = normalize(path);
+
+        // Every trie node some prefix of a rule has matched up to the current character.
+        StateSet current = new StateSet();
+        StateSet next = new StateSet();
+        current.add(this.root);
+
+        int bestLength = -1;
+        byte bestVerdict = ALLOW;
+        for (int i = 0; i <= normalized.length() && current.size > 0; i++) {
+            boolean atEnd = i == normalized.length();
+            next.size = 0;
+            for (int j = 0; j < current.size; j++) {
+                Node node = current.nodes[j];
+
+                // Anything ending here matches, as does anything ending here with '$' if the path does too.
+                if (node.verdict != NONE && isBetter(node.depth, node.verdict, bestLength, bestVerdict)) {
+                    bestLength = node.depth;
+                    bestVerdict = node.verdict;
+                }
+                if (atEnd && node.anchoredVerdict != NONE
+                        && isBetter(node.depth + 1, node.anchoredVerdict, bestLength, bestVerdict)) {
+                    bestLength = node.depth + 1;
+                    bestVerdict = node.anchoredVerdict;
+                }
+
+                if (!atEnd) {
+                    Node child = node.child(normalized.charAt(i));
+                    if (child != null) {
+                        next.add(child);
+                    }
+                    if (node.isWildcard) {
+                        next.add(node);
+                    }
+                }
+            }
+
+            StateSet temp = current;
+            current = next;
+            next = temp;
+        }
+        return bestVerdict == ALLOW;
+    }
+
+    private static boolean isBetter(int length, byte verdict, int bestLength, byte bestVerdict) {
+        return length > bestLength || (length == bestLength && verdict == ALLOW && bestVerdict != ALLOW);
+    }
+
+    /**
+     * Adds the given rule to the trie.
+     */
+    private void insert(String rule, byte verdict) {
+        boolean anchored = rule.endsWith("$");
+        String body = normalize(anchored ? rule.substring(0, rule.length() - 1) : rule);
+
+        Node node = this.root;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '*') {
+                if (node.isWildcard) {
+                    // "**" means the same as "*".
+                    continue;
+                }
+                if (node.wildcard == null) {
+                    node.wildcard = new Node(node.depth + 1, true);
+                }
+                node = node.wildcard;
+            } else {
+                Node child = node.child(c);
+                if (child == null) {
+                    child = node.addChild(c);
+                }
+                node = child;
+            }
+        }
+
+        // The same rule listed as both Allow and Disallow is allowed.
+        if (anchored) {
+            node.anchoredVerdict = (byte) Math.max(node.anchoredVerdict, verdict);
+        } else {
+            node.verdict = (byte) Math.max(node.verdict, verdict);
+        }
+    }
+
+    /**
+     * Percent-encodes every character that is not printable ASCII, and upper-cases the
+     * hex digits of every existing escape.
+     */
+    private static String normalize(String path) {
+        boolean clean = true;
+        for (int i = 0; i < path.length() && clean; i++) {
+            char c = path.charAt(i);
+            clean = c > ' ' && c < 0x7F && (c != '%' || isUpperCaseEscape(path, i));
+        }
+        if (clean) {
+            return path;
+        }
+
+        StringBuilder out = new StringBuilder(path.length() + 16);
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '%' && i + 2 < path.length() && isHexDigit(path.charAt(i + 1)) && isHexDigit(path.charAt(i + 2))) {
+                out.append('%');
+                out.append(Character.toUpperCase(path.charAt(i + 1)));
+                out.append(Character.toUpperCase(path.charAt(i + 2)));
+                i += 2;
+            } else if (c > ' ' && c < 0x7F) {
+                out.append(c);
+            } else {
+                int end = Character.isHighSurrogate(c) && i + 1 < path.length() ? i + 2 : i + 1;
+                for (byte b : path.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                    out.append('%');
+                    out.append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)));
+                    out.append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+                }
+                i = end - 1;
+            }
+        }
+        return out.toString();
+    }
+
+    private static boolean isUpperCaseEscape(String path, int i) {
+        if (i + 2 >= path.length()) {
+            return true;
+        }
+        char a = path.charAt(i + 1);
+        char b = path.charAt(i + 2);
+        return !isHexDigit(a) || !isHexDigit(b) || (Character.toUpperCase(a) == a && Character.toUpperCase(b) == b);
+    }
+
+    private static boolean isHexDigit(char c) {
+        return c < 0x80 && Character.digit(c, 16) >= 0;
+    }
+
+    /**
+     * A small set of trie nodes, in insertion order. Only a handful of nodes are ever
+     * active at once unless a file has many wildcard rules, so a linear scan is fine.
+     */
+    private static class StateSet {
+        public Node[] nodes = new Node[8];
+        public int size = 0;
+
+        /**
+         * Adds the given node, along with every node reachable from it by matching '*'
+         * against nothing.
+         */
+        public void add(Node node) {
+            for (; node != null; node = node.wildcard) {
+                for (int i = 0; i < this.size; i++) {
+                    if (this.nodes[i] == node) {
+                        return;
+                    }
+                }
+                if (this.size == this.nodes.length) {
+                    Node[] newNodes = new Node[2 * this.size];
+                    System.arraycopy(this.nodes, 0, newNodes, 0, this.size);
+                    this.nodes = newNodes;
+                }
+                this.nodes[this.size] = node;
+                this.size++;
+            }
+        }
+    }
+
+    private static class Node {
+        // How many rule characters lead to this node (counting a run of '*' as one); this is
+        // the length of a rule ending here.
+        public final int depth;
+
+        // 'true' if this node is reached by a '*', and so may match any number of characters.
+        public final boolean isWildcard;
+
+        public char[] labels;
+        public Node[] children;
+        public Node wildcard;
+
+        public byte verdict;
+        public byte anchoredVerdict;
+
+        public Node(int depth, boolean isWildcard) {
+            this.depth = depth;
+            this.isWildcard = isWildcard;
+            this.labels = new char[0];
+            this.children = new Node[0];
+            this.wildcard = null;
+            this.verdict = NONE;
+            this.anchoredVerdict = NONE;
+        }
+
+        public Node child(char c) {
+            for (int i = 0; i < this.labels.length; i++) {
+                if (this.labels[i] == c) {
+                    return this.children[i];
+                }
+            }
+            return null;
+        }
+
+        public Node addChild(char c) {
+            int size = this.labels.length;
+            char[] newLabels = new char[size + 1];
+            Node[] newChildren = new Node[size + 1];
+            System.arraycopy(this.labels, 0, newLabels, 0, size);
+            System.arraycopy(this.children, 0, newChildren, 0, size);
+            newLabels[size] = c;
+            newChildren[size] = new Node(this.depth + 1, false);
+            this.labels = newLabels;
+            this.children = newChildren;
+            return newChildren[size];
+        }
+    }
+}
@@ -1,18 +1,33 @@
 package search.scraper;
 
-import com.google.re2j.Pattern;
 import datastructures.concrete.DoubleLinkedList;
 import datastructures.interfaces.IList;
 
+/**
+ * Parses a robots.txt file and picks out the rules that apply to our crawler.
+ *
+ * The file is a series of groups, each starting with one or more User-agent lines and
+ * followed by Allow and Disallow rules. If any group names our product token (the part of
+ * our user agent before the first '/' or space, compared case-insensitively), we obey every
+ * such group and ignore the rest. Otherwise, we obey every group for '*'. Rules outside
+ * any group and directives we do not know are ignored.
+ */
 public class RobotsTxt {
     private IList<String> allowed;
     private IList<String> disallowed;
 
     public RobotsTxt(String userAgent, String text) {
-        this.allowed = new DoubleLinkedList<>();
-        this.disallowed = new DoubleLinkedList<>();
+        String ourToken = productToken(userAgent);
 
-        Pattern currentUserAgent = Pattern.compile(".*");
+        IList<String> ourAllowed = new DoubleLinkedList<>();
+        IList<String> ourDisallowed = new DoubleLinkedList<>();
+        IList<String> defaultAllowed = new DoubleLinkedList<>();
+        IList<String> defaultDisallowed = new DoubleLinkedList<>();
+        boolean foundOurGroup = false;
+
+        boolean inUserAgentLines = false;
+        boolean groupIsOurs = false;
+        boolean groupIsDefault = false;
 
         for (String rawLine : text.split("\n")) {
             String line = this.clean(rawLine);
@@ -21,15 +36,35 @@ public class RobotsTxt {
             }
 
             String[] parts = this.extractParts(line);
-            String directive = parts[0];
+            String directive = parts[0].toLowerCase();
             String data = parts[1];
 
-            if (directive.equals("User-agent")) {
-                currentUserAgent = this.handleUserAgent(data);
-            } else if (this.agentIsOk(currentUserAgent, userAgent)){
-                this.handleDirectives(directive, data);
+            if (directive.equals("user-agent")) {
+                // A User-agent line right after some rules starts a new group.
+                if (!inUserAgentLines) {
+                    groupIsOurs = false;
+                    groupIsDefault = false;
+                    inUserAgentLines = true;
+                }
+                if (data.equals("*")) {
+                    groupIsDefault = true;
+                } else if (productToken(data).equals(ourToken)) {
+                    groupIsOurs = true;
+                    foundOurGroup = true;
+                }
+            } else {
+                inUserAgentLines = false;
+                if (groupIsOurs) {
+                    this.handleDirectives(directive, data, ourAllowed, ourDisallowed);
+                }
+                if (groupIsDefault) {
+                    this.handleDirectives(directive, data, defaultAllowed, defaultDisallowed);
+                }
             }
         }
+
+        this.allowed = foundOurGroup ? ourAllowed : defaultAllowed;
+        this.disallowed = foundOurGroup ? ourDisallowed : defaultDisallowed;
     }
 
     public IList<String> getAllowed() {
@@ -40,24 +75,23 @@ public class RobotsTxt {
         return this.disallowed;
     }
 
-    public UriMatchRule getMatchRule() {
-        return new UriMatchRule(
-                this.coalesce(this.allowed),
-                this.coalesce(this.disallowed));
+    /**
+     * Returns the rules that apply to us, compiled for fast matching.
+     */
+    public RobotsRules getRules() {
+        return new RobotsRules(this.allowed, this.disallowed);
     }
 
-    private Pattern coalesce(IList<String> patterns) {
-        if (patterns == null) {
-            return null;
-        }
-        StringBuilder out = new StringBuilder();
-        String separator = "";
-        for (String pattern : patterns) {
-            out.append(separator);
-            out.append(Pattern.quote(pattern));
-            separator = "|";
+    private static String productToken(String userAgent) {
+        String token = userAgent.trim();
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '/' || Character.isWhitespace(c)) {
+                token = token.substring(0, i);
+                break;
+            }
         }
-        return Pattern.compile(out.toString());
+        return token.toLowerCase();
     }
 
     private String clean(String line) {
@@ -73,25 +107,17 @@ public class RobotsTxt {
         return new String[] {out[0].trim(), out[1].trim()};
     }
 
-    private boolean agentIsOk(Pattern currentUserAgent, String userAgent) {
-        return currentUserAgent.matches(userAgent);
-    }
-
-    private Pattern handleUserAgent(String data) {
-        return Pattern.compile(data.replace("*", ".*"));
-    }
-
-    private void handleDirectives(String directive, String data) {
+    private void handleDirectives(String directive, String data,
+                                  IList<String> allowRules, IList<String> disallowRules) {
+        // An empty rule matches nothing.
         if (data.isEmpty()) {
             return;
-        } else if (directive.equals("Ignore")) {
-            return;
         }
 
-        if (directive.equals("Disallow")) {
-            this.disallowed.add(data.replace("*", ".*"));
-        } else if (directive.equals("Allow")) {
-            this.allowed.add(data.replace("*", ".*"));
+        if (directive.equals("disallow")) {
+            disallowRules.add(data);
+        } else if (directive.equals("allow")) {
+            allowRules.add(data);
         }
     }
 }
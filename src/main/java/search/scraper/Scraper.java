@@ -1,11 +1,13 @@
 package search.scraper;
 
-import datastructures.concrete.ArrayHeap;
+import datastructures.concrete.ArrayBackedList;
 import datastructures.concrete.ChainedHashSet;
-import datastructures.interfaces.IPriorityQueue;
+import datastructures.interfaces.IList;
 import datastructures.interfaces.ISet;
+import search.metrics.PageFetchedEvent;
+import search.misc.NearDuplicateDetector;
+import search.misc.PageStore;
 import search.misc.WebUtils;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
@@ -16,24 +18,90 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.net.URISyntaxException;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+/**
+ * Crawls outward from a set of seed URIs, saving every page it fetches to a PageStore
+ * in the output folder.
+ *
+ * A crawl is a two-stage pipeline. A single dispatcher thread asks the PolitenessScheduler
+ * for the next URI that is safe to fetch and starts a non-blocking request for it, so
+ * many hosts are fetched at once without a thread waiting on each round trip. Finished
+ * responses are handed to a pool of workers that save the page and queue its links.
+ *
+ * At most 'maxInFlight' pages may be between those two points (being fetched, or
+ * fetched and waiting for a worker) at any time. If saving and parsing fall behind,
+ * the dispatcher stops starting new requests until they catch up.
+ *
+ * Pages whose text is nearly the same as a page we already saved (see
+ * NearDuplicateDetector) are not saved, and their links are not followed: on a mirror,
+ * they mostly lead to more copies.
+ *
+ * Every page saved is also added to a RevisitSchedule, which 'recrawl' uses to check
+ * saved pages for changes, mostly with conditional requests the server can answer with
+ * a bodiless "304 Not Modified". Only a 2xx response can count as a new version; a
+ * page that answers "404 Not Found" or "410 Gone" is marked removed instead.
+ */
 public class Scraper {
+    public static final int DEFAULT_NUM_WORKERS = 4;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+    // How many pages we save between checkpoints of the frontier.
+    private static final int CHECKPOINT_INTERVAL = 100;
+
     private Path outputPath;
-    private IPriorityQueue<PendingUri> pendingUris;
+    private IList<PendingUri> seeds;
     private ISet<String> domainWhitelist;
-    private ISet<URI> alreadyEncountered;
     private HttpRequester requester;
+    private int numWorkers;
+    private int maxInFlight;
+    private Consumer<URI> queuedHook;
 
-    public Scraper(Path outputPath) {
+    // Only set while 'run' is running.
+    private UrlSeenSet alreadyEncountered;
+    private UrlSeenSet alreadyFetched;
+    private CrawlFrontier frontier;
+    private PolitenessScheduler scheduler;
+    private NearDuplicateDetector<URI> duplicates;
+    private PrintWriter fingerprintWriter;
+    private PageStore pageStore;
+    private RevisitSchedule revisits;
+    private boolean recrawling;
+
+    /**
+     * The caller owns 'requester' and is responsible for closing it once the crawl is done.
+     */
+    public Scraper(Path outputPath, HttpRequester requester) {
+        this(outputPath, requester, DEFAULT_NUM_WORKERS, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param numWorkers   the number of threads parsing and saving fetched pages
+     * @param maxInFlight  the most pages that may be fetched but not yet saved at once
+     */
+    public Scraper(Path outputPath, HttpRequester requester, int numWorkers, int maxInFlight) {
+        if (numWorkers < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Need at least one worker and one request in flight");
+        }
         this.outputPath = outputPath;
-        this.pendingUris = new ArrayHeap<>();
+        this.seeds = new ArrayBackedList<>();
         this.domainWhitelist = new ChainedHashSet<>();
-        this.requester = new HttpRequester();
-        this.alreadyEncountered = new ChainedHashSet<>();
+        this.requester = requester;
+        this.numWorkers = numWorkers;
+        this.maxInFlight = maxInFlight;
+        this.queuedHook = uri -> { };
     }
 
     public Scraper addSeedUri(URI uri) {
@@ -41,7 +109,7 @@ public class Scraper {
         if (!normalizedUri.isPresent()) {
             throw new IllegalArgumentException("URI is malformed: " + uri);
         }
-        this.pendingUris.insert(new PendingUri(0, normalizedUri.get()));
+        this.seeds.add(new PendingUri(0, normalizedUri.get()));
         return this;
     }
 
@@ -50,70 +118,441 @@ public class Scraper {
         return this;
     }
 
-    public void run(int limit) throws IOException, URISyntaxException {
+    /**
+     * Runs 'hook' on every newly discovered URI once it is safely in the frontier, just
+     * before it is marked as seen. This is the point a crash is most likely to lose work,
+     * so tests use it to stop the crawl (or the whole process) there.
+     */
+    public Scraper onQueued(Consumer<URI> hook) {
+        this.queuedHook = hook;
+        return this;
+    }
+
+    /**
+     * Fetches and saves pages until 'limit' pages have been saved or there is nothing
+     * left to fetch. Blocks until every page has been saved. Pages are appended to the
+     * PageStore in the output folder, and their URIs to "list.sav".
+     *
+     * The crawl frontier is kept in a "frontier" folder inside the output folder, along
+     * with fingerprint sets of every URI discovered ("seen.idx") and fetched ("fetched.idx"),
+     * the SimHash of every page saved ("simhash.sav"), and the revisit schedule
+     * ("revisits.sav"). If an earlier run left those behind (whether it finished or
+     * crashed), this run picks up where it left off; seeds that were already discovered
+     * are not added again.
+     */
+    public void run(int limit) throws IOException {
+        this.crawl(limit, false, 0);
+    }
+
+    /**
+     * Checks saved pages for changes, most overdue first (see RevisitSchedule), until
+     * 'limit' pages have been checked or no page is due by now. Blocks until every check
+     * is done.
+     */
+    public void recrawl(int limit) throws IOException {
+        this.recrawl(limit, System.currentTimeMillis());
+    }
+
+    /**
+     * Checks saved pages due for a check by time 'dueBy' (in milliseconds since the epoch)
+     * for changes, most overdue first, until 'limit' pages have been checked.
+     *
+     * Each request sends the validators the server gave us last time, so an unchanged page
+     * usually costs a "304 Not Modified" with no body. If the server sends the page anyway,
+     * we compare SimHashes instead. A page that did change has its new version appended to
+     * the PageStore (SearchEngine only loads the newest version of each page), and any of
+     * its links we have not seen before are added to the frontier for the next 'run'.
+     */
+    public void recrawl(int limit, long dueBy) throws IOException {
+        this.crawl(limit, true, dueBy);
+    }
+
+    private void crawl(int limit, boolean recrawl, long dueBy) throws IOException {
         File outputFile = this.outputPath.toFile();
         if (!outputFile.exists() && !outputFile.mkdirs()) {
             throw new IOException("Unable to make folder " + this.outputPath);
         }
 
         File saveFile = this.outputPath.resolve("list.sav").toFile();
-        this.loadAlreadyEncountered(saveFile);
-        try (PrintWriter saveWriter = this.makePrintWriter(saveFile, true)) {
-            int limitCount = 0;
-            while (limitCount < limit && !this.pendingUris.isEmpty()) {
-                // Handle page
-                PendingUri pending = this.pendingUris.removeMin();
-                URI uri = pending.uri;
-                this.alreadyEncountered.add(uri);
+        if (saveFile.exists() && !saveFile.isFile()) {
+            throw new IOException("list.sav is not a file?");
+        }
+        Path fetchedFile = this.outputPath.resolve("fetched.idx");
+        boolean needsImport = saveFile.exists() && !fetchedFile.toFile().exists();
+        Path revisitsFile = this.outputPath.resolve("revisits.sav");
+        boolean needsSchedule = saveFile.exists() && !revisitsFile.toFile().exists();
+        File fingerprintFile = this.outputPath.resolve("simhash.sav").toFile();
+        this.duplicates = new NearDuplicateDetector<>();
+        if (fingerprintFile.exists()) {
+            this.loadFingerprints(fingerprintFile);
+        }
 
-                // Skip invalid pages
-                if (!this.domainWhitelist.contains(uri.getHost())) {
-                    System.out.println(String.format("Skipping '%s'; host not in whitelist", uri));
-                    continue;
-                }
+        // Most URIs we check against 'alreadyFetched' were never fetched, which is
+        // exactly the case a Bloom filter answers cheaply.
+        try (UrlSeenSet alreadyEncountered = new UrlSeenSet(this.outputPath.resolve("seen.idx"), false);
+             UrlSeenSet alreadyFetched = new UrlSeenSet(fetchedFile, true);
+             CrawlFrontier frontier = new CrawlFrontier(
+                     this.outputPath.resolve("frontier"), CrawlFrontier.DEFAULT_MAX_IN_MEMORY);
+             RevisitSchedule revisits = new RevisitSchedule(revisitsFile);
+             PageStore pageStore = new PageStore(this.outputPath);
+             PrintWriter saveWriter = this.makePrintWriter(saveFile, true);
+             PrintWriter fingerprintWriter = this.makePrintWriter(fingerprintFile, true)) {
+            this.pageStore = pageStore;
+            this.revisits = revisits;
+            this.recrawling = recrawl;
+            this.fingerprintWriter = fingerprintWriter;
+            this.alreadyEncountered = alreadyEncountered;
+            this.alreadyFetched = alreadyFetched;
+            this.frontier = frontier;
+            if (needsImport) {
+                this.importSaveFile(saveFile);
+            }
+            if (needsSchedule) {
+                this.importSaveFileToSchedule(saveFile);
+            }
 
-                String body = this.requester.makeRequest(pending.uri);
-                if (body == null) {
-                    System.out.println(String.format("Unable to fetch content from '%s'", uri));
-                    continue;
+            if (recrawl) {
+                // The pages to check get a frontier of their own, so newly discovered
+                // links can go into the main one without being fetched by this crawl.
+                try (CrawlFrontier due = this.makeRecrawlFrontier(revisits.due(dueBy, limit))) {
+                    this.scheduler = new PolitenessScheduler(
+                            due, this.requester.getDelayMilliseconds(), PolitenessScheduler.DEFAULT_HEAD_SIZE);
+                    this.runPipeline(limit, saveWriter);
                 }
+                deleteRecursively(this.outputPath.resolve("recrawl"));
+                return;
+            }
+
+            this.scheduler = new PolitenessScheduler(
+                    frontier, this.requester.getDelayMilliseconds(), PolitenessScheduler.DEFAULT_HEAD_SIZE);
+            this.enqueue(this.seeds);
+            this.runPipeline(limit, saveWriter);
+        }
+    }
+
+    /**
+     * Runs the fetch pipeline until the scheduler runs out of URIs or is shut down.
+     */
+    private void runPipeline(int limit, PrintWriter saveWriter) {
+        AtomicInteger limitCount = new AtomicInteger(0);
+        Semaphore inFlight = new Semaphore(this.maxInFlight);
 
-                // Save loaded page
-                limitCount += 1;
-                this.saveHtml(uri, body);
-                saveWriter.print(uri.toString() + "\n");
+        // Every page in this queue holds an in-flight permit, so (counting the
+        // end-of-crawl markers) it can never fill up.
+        BlockingQueue<FetchedPage> fetched = new ArrayBlockingQueue<>(this.maxInFlight + this.numWorkers);
 
-                // Add children (if applicable)
-                Document document = Jsoup.parse(body);
-                for (URI link : WebUtils.extractLinks(uri, document)) {
-                    Optional<URI> normalizedUri = WebUtils.normalize(link);
+        Thread[] workers = new Thread[this.numWorkers];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(
+                    () -> this.work(fetched, inFlight, limit, limitCount, saveWriter),
+                    "scraper-worker-" + i);
+            workers[i].start();
+        }
+
+        try {
+            this.dispatch(fetched, inFlight);
+
+            // Wait for everything still in flight to be saved, then stop the workers.
+            inFlight.acquire(this.maxInFlight);
+            for (int i = 0; i < workers.length; i++) {
+                fetched.add(FetchedPage.END_OF_CRAWL);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException ex) {
+            this.scheduler.shutdown();
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts a request for every URI the scheduler hands out, until the crawl is over.
+     */
+    private void dispatch(BlockingQueue<FetchedPage> fetched, Semaphore inFlight) throws InterruptedException {
+        while (true) {
+            inFlight.acquire();
+            PendingUri pending = this.scheduler.next();
+            if (pending == null) {
+                inFlight.release();
+                return;
+            }
+
+            // Only possible if we crashed after saving this page but before checkpointing.
+            if (!this.recrawling && this.alreadyFetched.contains(pending.uri)) {
+                this.scheduler.complete(pending, false);
+                inFlight.release();
+                continue;
+            }
+
+            // Skip invalid pages (links are filtered as they are queued, but seeds are not)
+            if (!this.domainWhitelist.contains(pending.uri.getHost())) {
+                System.out.println(String.format("Skipping '%s'; host not in whitelist", pending.uri));
+                this.scheduler.complete(pending, false);
+                inFlight.release();
+                continue;
+            }
 
-                    if (normalizedUri.isPresent() && !this.alreadyEncountered.contains(link)) {
-                        this.pendingUris.insert(new PendingUri(pending.distance + 1, normalizedUri.get()));
+            // Checking robots.txt first means a disallowed URI does not use up its host's delay.
+            Validators validators = this.recrawling ? this.revisits.getValidators(pending.uri) : Validators.NONE;
+            CompletableFuture<FetchedPage> request;
+            try {
+                request = this.requester.isAllowed(pending.uri).thenCompose(isAllowed -> {
+                    if (!isAllowed) {
+                        return CompletableFuture.completedFuture(FetchedPage.disallowed(pending));
                     }
-                }
+                    return this.fetch(pending.uri, validators)
+                            .thenApply(response -> new FetchedPage(pending, response, null));
+                });
+            } catch (RuntimeException ex) {
+                request = CompletableFuture.failedFuture(ex);
+            }
+            request.whenComplete((page, error) -> {
+                fetched.add(error == null ? page : new FetchedPage(pending, null, error));
+            });
+        }
+    }
+
+    /**
+     * Fetches the given URI, recording a PageFetchedEvent once the response (or error)
+     * comes back.
+     */
+    private CompletableFuture<FetchResponse> fetch(URI uri, Validators validators) {
+        PageFetchedEvent event = new PageFetchedEvent();
+        event.begin();
+        return this.requester.fetch(uri, validators).whenComplete((response, error) -> {
+            event.end();
+            if (event.shouldCommit()) {
+                event.uri = uri.toString();
+                event.status = response == null ? -1 : response.status;
+                event.length = response == null || response.body == null ? 0 : response.body.length();
+                event.recrawl = this.recrawling;
+                event.commit();
+            }
+        });
+    }
 
-                // Log
-                System.out.println(String.format("Fetched %s", uri));
+    /**
+     * The loop each worker thread runs: saves fetched pages and queues their links.
+     */
+    private void work(BlockingQueue<FetchedPage> fetched, Semaphore inFlight,
+                      int limit, AtomicInteger limitCount, PrintWriter saveWriter) {
+        while (true) {
+            FetchedPage page;
+            try {
+                page = fetched.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            if (page == FetchedPage.END_OF_CRAWL) {
+                return;
+            }
+
+            try {
+                this.process(page, limit, limitCount, saveWriter);
+            } catch (IOException | RuntimeException ex) {
+                System.out.println(String.format("Error saving '%s': %s", page.pending.uri, ex));
+            } finally {
+                // Only now can the scheduler be sure this page will not add more URIs.
+                this.scheduler.complete(page.pending, page.requested);
+                inFlight.release();
             }
         }
     }
 
-    private void saveHtml(URI uri, String body) throws IOException {
-        String hex = DigestUtils.md5Hex(uri.toString());
-        Path saveDomainPath = this.outputPath.resolve(uri.getHost());
-        Path savePath = saveDomainPath.resolve(hex + ".html");
+    private void process(FetchedPage page, int limit, AtomicInteger limitCount, PrintWriter saveWriter)
+            throws IOException {
+        URI uri = page.pending.uri;
+        if (page.error != null) {
+            Throwable cause = page.error instanceof CompletionException ? page.error.getCause() : page.error;
+            System.out.println(String.format("Error fetching '%s': %s", uri, cause));
+            return;
+        }
+        if (!page.requested) {
+            System.out.println(String.format("Skipping '%s'; file type blacklisted or disallowed by robots.txt", uri));
+            return;
+        }
+        if (this.recrawling) {
+            this.revisit(page, limit, limitCount);
+            return;
+        }
+        if (page.response.body == null) {
+            System.out.println(String.format(
+                    "Unable to fetch content from '%s' (status %d)", uri, page.response.status));
+            return;
+        }
 
-        if (!saveDomainPath.toFile().exists() && !saveDomainPath.toFile().mkdirs()) {
-            throw new IOException("Unable to make folder " + saveDomainPath);
+        Document document = Jsoup.parse(page.response.body);
+        long fingerprint = NearDuplicateDetector.fingerprint(document.body().text());
+
+        // Only look for now: this page can't be anything's original until it is saved. (It
+        // can match itself if we saved it, then crashed before recording it as fetched.)
+        URI original = this.duplicates.findDuplicate(fingerprint);
+        if (original != null && !original.equals(uri)) {
+            this.alreadyFetched.add(uri);
+            System.out.println(String.format("Skipping '%s'; near-duplicate of '%s'", uri, original));
+            return;
+        }
+
+        // Pages still in flight when we hit the limit go back into the frontier for next time.
+        int count = limitCount.incrementAndGet();
+        if (count > limit) {
+            this.frontier.add(page.pending);
+            return;
+        }
+        this.pageStore.append(uri, page.response.body);
+
+        // A worker saving a near-copy at the same moment may have beaten us to it, in which
+        // case both copies are kept, but only the first is registered as the original.
+        boolean registered = this.duplicates.addIfUnique(uri, fingerprint) == null;
+        this.enqueueLinks(page.pending, document);
+
+        // The children must be safely in the frontier before we record this page as done,
+        // or a crash in between would lose them.
+        this.frontier.flush();
+        this.alreadyFetched.add(uri);
+        this.revisits.recordFetch(uri, page.response.validators, fingerprint, System.currentTimeMillis());
+        if (registered && fingerprint != NearDuplicateDetector.NO_FINGERPRINT) {
+            synchronized (this.fingerprintWriter) {
+                this.fingerprintWriter.printf("%016x\t%s\n", fingerprint, uri);
+                this.fingerprintWriter.flush();
+            }
+        }
+        synchronized (saveWriter) {
+            saveWriter.print(uri.toString() + "\n");
+            saveWriter.flush();
+        }
+        if (count == limit) {
+            this.scheduler.shutdown();
+        }
+        if (count % CHECKPOINT_INTERVAL == 0) {
+            this.checkpoint();
+        }
+
+        // Log
+        System.out.println(String.format("Fetched %s", uri));
+    }
+
+    /**
+     * Records what a check made by 'recrawl' found and, if the page changed, saves the new
+     * version and queues its links. A page the server says is gone (404 or 410) is marked
+     * removed in the store and dropped from the schedule.
+     */
+    private void revisit(FetchedPage page, int limit, AtomicInteger limitCount) throws IOException {
+        URI uri = page.pending.uri;
+
+        // Checks still in flight when we hit the limit stay due, so the next recrawl makes them.
+        int count = limitCount.incrementAndGet();
+        if (count > limit) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        FetchResponse response = page.response;
+        if (response.isNotModified()) {
+            this.revisits.recordNotModified(uri, response.validators, now);
+            System.out.println(String.format("Not modified %s", uri));
+        } else if (response.isGone()) {
+            // Readers drop the page once the store says it is gone, so we stop checking it.
+            this.pageStore.appendRemoved(uri);
+            this.revisits.remove(uri);
+            System.out.println(String.format("Removed %s (status %d)", uri, response.status));
+        } else if (!response.isSuccess() || response.body == null) {
+            // A failed check tells us nothing about the page, so it stays due as it was.
+            System.out.println(String.format("Unable to fetch content from '%s' (status %d)", uri, response.status));
+        } else {
+            Document document = Jsoup.parse(response.body);
+            long fingerprint = NearDuplicateDetector.fingerprint(document.body().text());
+            if (this.revisits.recordFetch(uri, response.validators, fingerprint, now)) {
+                this.pageStore.append(uri, response.body);
+                this.enqueueLinks(page.pending, document);
+                this.frontier.flush();
+                System.out.println(String.format("Updated %s", uri));
+            } else {
+                System.out.println(String.format("Unchanged %s", uri));
+            }
+        }
+
+        if (count == limit) {
+            this.scheduler.shutdown();
+        }
+        if (count % CHECKPOINT_INTERVAL == 0) {
+            this.checkpoint();
         }
+    }
+
+    private void checkpoint() throws IOException {
+        this.pageStore.flush();
+        this.revisits.flush();
+        this.frontier.checkpoint();
+    }
 
-        try (PrintWriter writer = this.makePrintWriter(savePath.toFile(), false)) {
-            writer.print("<!-- METADATA\n");
-            writer.printf("uri: %s\n", uri.toString());
-            writer.print("local: false\n");
-            writer.print("-->\n");
-            writer.print(body);
+    private void enqueueLinks(PendingUri parent, Document document) throws IOException {
+        // Links come back already canonical, so they need no further normalizing.
+        IList<PendingUri> links = new ArrayBackedList<>();
+        for (URI link : WebUtils.extractLinks(parent.uri, document)) {
+            if (this.domainWhitelist.contains(link.getHost())) {
+                links.add(new PendingUri(parent.distance + 1, link));
+            }
+        }
+        this.enqueue(links);
+    }
+
+    /**
+     * Adds every given URI we have not seen before to the frontier, and marks it seen.
+     *
+     * The frontier's journal is flushed before any seen mark is written, so a crash in
+     * between leaves a URI queued but not marked (at worst it is queued again later, and
+     * skipped when fetched twice), never marked but lost. Holding the seen set's lock
+     * throughout means two workers can never queue the same page twice.
+     */
+    private void enqueue(IList<PendingUri> candidates) throws IOException {
+        synchronized (this.alreadyEncountered) {
+            IList<PendingUri> added = new ArrayBackedList<>();
+            ISet<URI> addedUris = new ChainedHashSet<>();
+            for (PendingUri pending : candidates) {
+                if (!this.alreadyEncountered.contains(pending.uri) && !addedUris.contains(pending.uri)) {
+                    this.frontier.add(pending);
+                    added.add(pending);
+                    addedUris.add(pending.uri);
+                }
+            }
+            if (added.isEmpty()) {
+                return;
+            }
+            this.frontier.flush();
+            for (PendingUri pending : added) {
+                this.queuedHook.accept(pending.uri);
+                this.alreadyEncountered.add(pending.uri);
+            }
+        }
+    }
+
+    /**
+     * Makes a fresh frontier holding the given URIs, for 'recrawl' to fetch from. The
+     * schedule is what records our progress, so we always start this one from scratch.
+     */
+    private CrawlFrontier makeRecrawlFrontier(IList<URI> due) throws IOException {
+        Path directory = this.outputPath.resolve("recrawl");
+        deleteRecursively(directory);
+        CrawlFrontier out = new CrawlFrontier(directory, CrawlFrontier.DEFAULT_MAX_IN_MEMORY);
+        for (URI uri : due) {
+            out.add(new PendingUri(0, uri));
+        }
+        return out;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
         }
     }
 
@@ -121,36 +560,75 @@ public class Scraper {
         return new PrintWriter(new BufferedWriter(new FileWriter(file, append)));
     }
 
-    private void loadAlreadyEncountered(File saveFile) throws IOException {
-        if (saveFile.exists() && !saveFile.isFile()) {
-            throw new IOException("list.sav is not a file?");
+    /**
+     * Remembers the SimHash of every page saved by earlier runs, so we do not save
+     * near-duplicates of them either. A line torn by a crash is skipped, or at worst
+     * remembered under a truncated URI, which only affects log messages.
+     */
+    private void loadFingerprints(File fingerprintFile) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(fingerprintFile))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] parts = line.split("\t", 2);
+                if (parts.length == 2 && parts[0].length() == 16) {
+                    this.duplicates.addIfUnique(URI.create(parts[1]), Long.parseUnsignedLong(parts[0], 16));
+                }
+            }
         }
+    }
 
-        if (saveFile.exists()) {
-            try (BufferedReader reader = new BufferedReader(new FileReader(saveFile))) {
-                String line = reader.readLine();
-                while (line != null) {
-                    this.alreadyEncountered.add(URI.create(line.trim()));
-                    line = reader.readLine();
+    /**
+     * Marks every page listed in list.sav as fetched. Only needed once, for output
+     * folders crawled before we kept fingerprint sets.
+     */
+    private void importSaveFile(File saveFile) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(saveFile))) {
+            String line = reader.readLine();
+            while (line != null) {
+                URI uri = URI.create(line.trim());
+                this.alreadyFetched.add(uri);
+                this.alreadyEncountered.add(uri);
+                line = reader.readLine();
+            }
+        }
+    }
+
+    /**
+     * Adds every page listed in list.sav to the revisit schedule, due right away. Only
+     * needed once, for output folders crawled before we kept a schedule.
+     */
+    private void importSaveFileToSchedule(File saveFile) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(saveFile))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.trim().isEmpty()) {
+                    this.revisits.addUnchecked(URI.create(line.trim()));
                 }
             }
         }
     }
 
-    private static class PendingUri implements Comparable<PendingUri> {
-        public final int distance;
-        public final URI uri;
+    private static class FetchedPage {
+        public static final FetchedPage END_OF_CRAWL = new FetchedPage(null, null, null);
 
-        public PendingUri(int distance, URI uri) {
-            if (uri == null) {
-                throw new IllegalArgumentException();
-            }
-            this.distance = distance;
-            this.uri = uri;
+        public final PendingUri pending;
+        public final FetchResponse response;
+        public final Throwable error;
+
+        // 'false' if we skipped this page without contacting its host.
+        public final boolean requested;
+
+        public FetchedPage(PendingUri pending, FetchResponse response, Throwable error) {
+            this(pending, response, error, true);
+        }
+
+        private FetchedPage(PendingUri pending, FetchResponse response, Throwable error, boolean requested) {
+            this.pending = pending;
+            this.response = response;
+            this.error = error;
+            this.requested = requested;
         }
 
-        public int compareTo(PendingUri other) {
-            return Integer.compare(this.distance, other.distance);
+        public static FetchedPage disallowed(PendingUri pending) {
+            return new FetchedPage(pending, null, null, false);
         }
     }
 }
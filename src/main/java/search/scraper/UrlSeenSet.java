@@ -0,0 +1,300 @@
+package search.scraper;
+
+import search.misc.Hashing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A set of URIs that only remembers a 64-bit fingerprint of each one.
+ *
+ * Fingerprints live in an open-addressed (linear probing) table of longs, so each URI
+ * costs between about 11 and 21 bytes depending on how full the table is, instead of
+ * the hundreds a URI object and its hash set entry take. With 64-bit fingerprints,
+ * the chance of two different URIs colliding stays below one in a million up to
+ * several million URIs; a collision just means we skip one page.
+ *
+ * The table can be backed by a memory-mapped file. Opening an existing file maps it
+ * and is ready immediately, with no parsing. Every insert goes straight into the
+ * mapping, so the set survives the process crashing (though not necessarily the
+ * machine crashing between calls to 'flush').
+ *
+ * Optionally, a Bloom filter in front of the table answers most 'contains' checks for
+ * URIs we have never seen without touching the table. That is only worth its memory
+ * (about one byte per table slot) when the table is larger than RAM, because otherwise
+ * a table lookup is just as cheap.
+ *
+ * Every method except 'contains' (with a Bloom filter) synchronizes on this object.
+ */
+public class UrlSeenSet implements Closeable {
+    private static final long MAGIC = 0x55524C5345454E31L; // "URLSEEN1"
+    private static final int HEADER_BYTES = 2 * Long.BYTES;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    // MappedByteBuffers are limited to 2GB.
+    private static final int MAX_CAPACITY = 1 << 27;
+
+    private static final int BLOOM_BITS_PER_SLOT = 8;
+    private static final int BLOOM_HASHES = 7;
+
+    // Marks an empty slot; the (astronomically unlikely) fingerprint 0 is stored as 1 instead.
+    private static final long EMPTY = 0L;
+
+    private final Path file;
+    private final boolean useBloomFilter;
+
+    private ByteBuffer buffer;
+    private LongBuffer slots;
+    private int capacity;
+    private long size;
+    private volatile AtomicLongArray bloomFilter;
+
+    /**
+     * Constructs an empty set held entirely in memory.
+     */
+    public UrlSeenSet() {
+        this.file = null;
+        this.useBloomFilter = false;
+        this.buffer = ByteBuffer.allocate(HEADER_BYTES + INITIAL_CAPACITY * Long.BYTES);
+        this.initialize(this.buffer, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Opens the set stored in the given file, creating it if it does not exist.
+     */
+    public UrlSeenSet(Path file, boolean useBloomFilter) throws IOException {
+        this.file = file;
+        this.useBloomFilter = useBloomFilter;
+        if (Files.exists(file)) {
+            this.buffer = map(file, Files.size(file));
+            if (this.buffer.getLong(0) != MAGIC) {
+                throw new IOException(file + " is not a URL-seen file");
+            }
+            this.capacity = (int) ((Files.size(file) - HEADER_BYTES) / Long.BYTES);
+            this.slots = this.slotsOf(this.buffer);
+            this.size = this.buffer.getLong(Long.BYTES);
+        } else {
+            Path temp = temporaryFileFor(file);
+            ByteBuffer created = map(temp, HEADER_BYTES + (long) INITIAL_CAPACITY * Long.BYTES);
+            this.initialize(created, INITIAL_CAPACITY);
+            ((MappedByteBuffer) created).force();
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            this.buffer = created;
+        }
+        if (useBloomFilter) {
+            this.bloomFilter = this.buildBloomFilter();
+        }
+    }
+
+    /**
+     * Returns 'true' if the given URI (or, very rarely, one with the same fingerprint)
+     * has been added to this set.
+     */
+    public boolean contains(URI uri) {
+        long fingerprint = fingerprint(uri.toString());
+        AtomicLongArray bloom = this.bloomFilter;
+        if (bloom != null && !mightContain(bloom, fingerprint)) {
+            return false;
+        }
+        synchronized (this) {
+            return this.slots.get(this.findSlot(fingerprint)) != EMPTY;
+        }
+    }
+
+    /**
+     * Adds the given URI to the set.
+     */
+    public void add(URI uri) {
+        this.addIfAbsent(uri);
+    }
+
+    /**
+     * Atomically adds the given URI to the set. Returns 'true' if this call added it,
+     * and 'false' if it (or a URI with the same fingerprint) was already present.
+     */
+    public synchronized boolean addIfAbsent(URI uri) {
+        long fingerprint = fingerprint(uri.toString());
+        int slot = this.findSlot(fingerprint);
+        if (this.slots.get(slot) != EMPTY) {
+            return false;
+        }
+
+        this.slots.put(slot, fingerprint);
+        this.size++;
+        this.buffer.putLong(Long.BYTES, this.size);
+        if (this.bloomFilter != null) {
+            addToBloomFilter(this.bloomFilter, fingerprint);
+        }
+        if (this.size > MAX_LOAD_FACTOR * this.capacity) {
+            try {
+                this.grow();
+            } catch (IOException ex) {
+                throw new RuntimeException("Unable to grow " + this.file, ex);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of URIs in this set.
+     */
+    public synchronized long size() {
+        return this.size;
+    }
+
+    /**
+     * Makes sure every URI added so far is written to disk. Does nothing for
+     * in-memory sets.
+     */
+    public synchronized void flush() {
+        if (this.buffer instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) this.buffer).force();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.flush();
+    }
+
+    /**
+     * Returns a well-mixed 64-bit hash of the given string: FNV-1a over its characters,
+     * followed by MurmurHash3's finalizer so every bit depends on every input bit.
+     */
+    public static long fingerprint(String value) {
+        long hash = Hashing.mix(Hashing.fnv1a(value));
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    /**
+     * Returns the slot holding the given fingerprint, or the empty slot where it would go.
+     */
+    private int findSlot(long fingerprint) {
+        int mask = this.capacity - 1;
+        int slot = (int) fingerprint & mask;
+        while (true) {
+            long current = this.slots.get(slot);
+            if (current == EMPTY || current == fingerprint) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void grow() throws IOException {
+        int newCapacity = this.capacity * 2;
+        if (newCapacity > MAX_CAPACITY) {
+            throw new IllegalStateException("URL-seen set is full");
+        }
+
+        ByteBuffer newBuffer;
+        Path temp = null;
+        if (this.file == null) {
+            newBuffer = ByteBuffer.allocate(HEADER_BYTES + newCapacity * Long.BYTES);
+        } else {
+            temp = temporaryFileFor(this.file);
+            newBuffer = map(temp, HEADER_BYTES + (long) newCapacity * Long.BYTES);
+        }
+
+        LongBuffer oldSlots = this.slots;
+        int oldCapacity = this.capacity;
+        long oldSize = this.size;
+        this.initialize(newBuffer, newCapacity);
+        for (int i = 0; i < oldCapacity; i++) {
+            long fingerprint = oldSlots.get(i);
+            if (fingerprint != EMPTY) {
+                this.slots.put(this.findSlot(fingerprint), fingerprint);
+            }
+        }
+        this.size = oldSize;
+        newBuffer.putLong(Long.BYTES, this.size);
+
+        if (temp != null) {
+            ((MappedByteBuffer) newBuffer).force();
+            Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        this.buffer = newBuffer;
+        if (this.useBloomFilter) {
+            this.bloomFilter = this.buildBloomFilter();
+        }
+    }
+
+    private void initialize(ByteBuffer target, int newCapacity) {
+        target.putLong(0, MAGIC);
+        target.putLong(Long.BYTES, 0L);
+        this.capacity = newCapacity;
+        this.slots = this.slotsOf(target);
+        this.size = 0;
+    }
+
+    private LongBuffer slotsOf(ByteBuffer target) {
+        ByteBuffer view = target.duplicate();
+        view.position(HEADER_BYTES);
+        return view.slice().asLongBuffer();
+    }
+
+    private AtomicLongArray buildBloomFilter() {
+        AtomicLongArray bloom = new AtomicLongArray(this.capacity * BLOOM_BITS_PER_SLOT / Long.SIZE);
+        for (int i = 0; i < this.capacity; i++) {
+            long fingerprint = this.slots.get(i);
+            if (fingerprint != EMPTY) {
+                addToBloomFilter(bloom, fingerprint);
+            }
+        }
+        return bloom;
+    }
+
+    private static void addToBloomFilter(AtomicLongArray bloom, long fingerprint) {
+        long bits = (long) bloom.length() * Long.SIZE;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = bloomBit(fingerprint, i, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            bloom.getAndUpdate(word, current -> current | mask);
+        }
+    }
+
+    private static boolean mightContain(AtomicLongArray bloom, long fingerprint) {
+        long bits = (long) bloom.length() * Long.SIZE;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = bloomBit(fingerprint, i, bits);
+            if ((bloom.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the i-th bit position for the given fingerprint, using the two halves of
+     * the fingerprint as a pair of independent hashes (Kirsch and Mitzenmacher).
+     */
+    private static long bloomBit(long fingerprint, int i, long bits) {
+        long combined = (fingerprint >>> 32) + i * (fingerprint & 0xFFFFFFFFL);
+        return Long.remainderUnsigned(combined, bits);
+    }
+
+    private static ByteBuffer map(Path path, long bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+    }
+
+    private static Path temporaryFileFor(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        return temp;
+    }
+}
@@ -0,0 +1,27 @@
+package search.scraper;
+
+/**
+ * What a server told us identifies the version of a page we fetched: its ETag and
+ * Last-Modified headers. Sending them back on the next request (a "conditional GET")
+ * lets the server answer "304 Not Modified" instead of sending the page again.
+ *
+ * Either field is null if the server did not send that header.
+ */
+public class Validators {
+    public static final Validators NONE = new Validators(null, null);
+
+    public final String etag;
+    public final String lastModified;
+
+    public Validators(String etag, String lastModified) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Returns 'true' if we have nothing to make a request conditional on.
+     */
+    public boolean isEmpty() {
+        return this.etag == null && this.lastModified == null;
+    }
+}
@@ -0,0 +1,212 @@
+package datastructures;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import misc.exceptions.EmptyContainerException;
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class TestArrayBackedList extends BaseTest {
+    protected IList<String> makeBasicList() {
+        IList<String> list = new ArrayBackedList<>();
+
+        list.add("a");
+        list.add("b");
+        list.add("c");
+
+        return list;
+    }
+
+    protected <T> void assertListMatches(T[] expected, IList<T> actual) {
+        assertEquals(expected.length, actual.size());
+        assertEquals(expected.length == 0, actual.isEmpty());
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("Item at index " + i + " does not match", expected[i], actual.get(i));
+        }
+
+        Iterator<T> iter = actual.iterator();
+        for (T item : expected) {
+            assertTrue(iter.hasNext());
+            assertEquals(item, iter.next());
+        }
+        assertFalse(iter.hasNext());
+    }
+
+    @Test(timeout=SECOND)
+    public void testAddAndGetBasic() {
+        this.assertListMatches(new String[] {"a", "b", "c"}, this.makeBasicList());
+    }
+
+    @Test(timeout=SECOND)
+    public void testAddGrowsFromZeroCapacity() {
+        IList<Integer> list = new ArrayBackedList<>(0);
+        for (int i = 0; i < 100; i++) {
+            list.add(i);
+        }
+        assertEquals(100, list.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, list.get(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRemoveFromEnd() {
+        IList<String> list = this.makeBasicList();
+        assertEquals("c", list.remove());
+        assertEquals("b", list.remove());
+        this.assertListMatches(new String[] {"a"}, list);
+        assertEquals("a", list.remove());
+        this.assertListMatches(new String[] {}, list);
+
+        try {
+            list.remove();
+            fail("Expected EmptyContainerException");
+        } catch (EmptyContainerException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testGetAndSetOutOfBoundsThrowsException() {
+        IList<String> list = this.makeBasicList();
+        for (int index : new int[] {-1, 3, 100}) {
+            try {
+                list.get(index);
+                fail("Expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException ex) {
+                // All ok -- expected result
+            }
+            try {
+                list.set(index, "x");
+                fail("Expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException ex) {
+                // All ok -- expected result
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSetElements() {
+        IList<String> list = this.makeBasicList();
+        list.set(0, "x");
+        list.set(2, "z");
+        this.assertListMatches(new String[] {"x", "b", "z"}, list);
+    }
+
+    @Test(timeout=SECOND)
+    public void testInsertAndDelete() {
+        IList<String> list = this.makeBasicList();
+        list.insert(0, "start");
+        list.insert(2, "middle");
+        list.insert(list.size(), "end");
+        this.assertListMatches(new String[] {"start", "a", "middle", "b", "c", "end"}, list);
+
+        assertEquals("middle", list.delete(2));
+        assertEquals("start", list.delete(0));
+        assertEquals("end", list.delete(list.size() - 1));
+        this.assertListMatches(new String[] {"a", "b", "c"}, list);
+
+        try {
+            list.insert(4, "x");
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ex) {
+            // All ok -- expected result
+        }
+        try {
+            list.delete(3);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testIndexOfAndContainsWithNulls() {
+        IList<String> list = this.makeBasicList();
+        list.add(null);
+        list.add("a");
+
+        assertEquals(0, list.indexOf("a"));
+        assertEquals(3, list.indexOf(null));
+        assertEquals(-1, list.indexOf("q"));
+        assertTrue(list.contains(null));
+        assertTrue(list.contains(new String("c")));
+        assertFalse(list.contains("q"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testAddAllAndTrimToSize() {
+        ArrayBackedList<String> list = new ArrayBackedList<>(100);
+        list.addAll(this.makeBasicList());
+
+        IList<String> linked = new DoubleLinkedList<>();
+        linked.add("d");
+        linked.add("e");
+        list.addAll(linked);
+
+        list.trimToSize();
+        this.assertListMatches(new String[] {"a", "b", "c", "d", "e"}, list);
+
+        list.add("f");
+        this.assertListMatches(new String[] {"a", "b", "c", "d", "e", "f"}, list);
+
+        ArrayBackedList<String> empty = new ArrayBackedList<>();
+        empty.trimToSize();
+        empty.add("x");
+        this.assertListMatches(new String[] {"x"}, empty);
+    }
+
+    @Test(timeout=SECOND)
+    public void testIteratorOnEmptyList() {
+        Iterator<String> iter = new ArrayBackedList<String>().iterator();
+        assertFalse(iter.hasNext());
+        try {
+            iter.next();
+            fail("Expected NoSuchElementException");
+        } catch (NoSuchElementException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testIteratorDetectsModification() {
+        IList<String> list = this.makeBasicList();
+        Iterator<String> iter = list.iterator();
+        iter.next();
+        list.add("d");
+        try {
+            iter.next();
+            fail("Expected ConcurrentModificationException");
+        } catch (ConcurrentModificationException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=2 * SECOND)
+    public void testManyOperationsAreEfficient() {
+        IList<Integer> list = new ArrayBackedList<>();
+        int cap = 2000000;
+        for (int i = 0; i < cap; i++) {
+            list.add(i);
+        }
+        long sum = 0;
+        for (int i = 0; i < cap; i += 7) {
+            sum += list.get(i);
+        }
+        assertTrue(sum > 0);
+        for (int i = 0; i < cap; i++) {
+            list.remove();
+        }
+        assertTrue(list.isEmpty());
+    }
+}
@@ -0,0 +1,75 @@
+package datastructures;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.ConcurrentHashSet;
+import datastructures.interfaces.ISet;
+import misc.BaseTest;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestConcurrentHashSet extends BaseTest {
+    private static final int NUM_THREADS = 8;
+
+    @Test(timeout=SECOND)
+    public void testBasicOperations() {
+        ISet<String> set = new ConcurrentHashSet<>();
+        set.add("a");
+        set.add("b");
+        set.add("a");
+        set.add(null);
+
+        assertEquals(3, set.size());
+        assertTrue(set.contains("a"));
+        assertTrue(set.contains(null));
+        assertFalse(set.contains("c"));
+
+        set.remove("a");
+        assertFalse(set.contains("a"));
+        try {
+            set.remove("a");
+            fail("Expected NoSuchElementException");
+        } catch (NoSuchElementException ex) {
+            // All ok -- expected result
+        }
+
+        int count = 0;
+        for (String item : set) {
+            assertTrue(item == null || item.equals("b"));
+            count++;
+        }
+        assertEquals(2, count);
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testExactlyOneThreadWinsEachAdd() throws InterruptedException {
+        int numItems = 50000;
+        ConcurrentHashSet<Integer> set = new ConcurrentHashSet<>();
+        AtomicInteger wins = new AtomicInteger(0);
+
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            threads[i] = new Thread(() -> {
+                for (int item = 0; item < numItems; item++) {
+                    if (set.addIfAbsent(item)) {
+                        wins.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(numItems, wins.get());
+        assertEquals(numItems, set.size());
+        for (int item = 0; item < numItems; item++) {
+            assertTrue(set.contains(item));
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package datastructures.dictionaries;
+
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ConcurrentHashDictionary;
+import datastructures.interfaces.IDictionary;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs every TestDictionary test against ConcurrentHashDictionary, then hammers it
+ * from many threads at once.
+ */
+public class TestConcurrentHashDictionary extends TestDictionary {
+    private static final int NUM_THREADS = 8;
+
+    protected <K, V> IDictionary<K, V> newDictionary() {
+        return new ConcurrentHashDictionary<>();
+    }
+
+    @FunctionalInterface
+    private interface Worker {
+        void run(int threadId) throws Exception;
+    }
+
+    /**
+     * Runs the given worker on NUM_THREADS threads, all released at the same moment,
+     * and rethrows the first failure any of them hit.
+     */
+    private void runConcurrently(Worker worker) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            int threadId = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    worker.run(threadId);
+                } catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("A worker thread failed", failure.get());
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testAtomicOperationsSingleThreaded() {
+        IDictionary<String, Integer> dict = this.newDictionary();
+
+        assertNull(dict.putIfAbsent("a", 1));
+        assertEquals(1, dict.putIfAbsent("a", 2));
+        assertEquals(1, dict.get("a"));
+
+        assertEquals(5, dict.computeIfAbsent("b", key -> 5));
+        assertEquals(5, dict.computeIfAbsent("b", key -> 6));
+        assertNull(dict.computeIfAbsent("c", key -> null));
+        assertFalse(dict.containsKey("c"));
+
+        assertEquals(3, dict.merge("a", 2, Integer::sum));
+        assertEquals(7, dict.merge("d", 7, Integer::sum));
+        assertNull(dict.merge("d", 7, (a, b) -> null));
+        assertFalse(dict.containsKey("d"));
+
+        assertEquals(2, dict.size());
+        assertEquals(-1, dict.getOrDefault("missing", -1));
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testConcurrentPutsOfDisjointKeys() throws InterruptedException {
+        int perThread = 50000;
+        IDictionary<Integer, Integer> dict = this.newDictionary();
+
+        this.runConcurrently(threadId -> {
+            for (int i = 0; i < perThread; i++) {
+                int key = threadId * perThread + i;
+                dict.put(key, -key);
+            }
+        });
+
+        assertEquals(NUM_THREADS * perThread, dict.size());
+        for (int key = 0; key < NUM_THREADS * perThread; key++) {
+            assertEquals(-key, dict.get(key));
+        }
+        int count = 0;
+        for (KVPair<Integer, Integer> pair : dict) {
+            assertEquals(-pair.getKey(), pair.getValue());
+            count++;
+        }
+        assertEquals(NUM_THREADS * perThread, count);
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testConcurrentMergeCountsEveryIncrement() throws InterruptedException {
+        int numKeys = 100;
+        int perThread = 20000;
+        IDictionary<Integer, Integer> dict = this.newDictionary();
+
+        this.runConcurrently(threadId -> {
+            for (int i = 0; i < perThread; i++) {
+                dict.merge(i % numKeys, 1, Integer::sum);
+            }
+        });
+
+        assertEquals(numKeys, dict.size());
+        for (int key = 0; key < numKeys; key++) {
+            assertEquals(NUM_THREADS * perThread / numKeys, dict.get(key));
+        }
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testComputeIfAbsentRunsOncePerKey() throws InterruptedException {
+        int numKeys = 10000;
+        AtomicInteger calls = new AtomicInteger(0);
+        IDictionary<Integer, Integer> dict = this.newDictionary();
+
+        this.runConcurrently(threadId -> {
+            for (int i = 0; i < numKeys; i++) {
+                int value = dict.computeIfAbsent(i, key -> {
+                    calls.incrementAndGet();
+                    return key * 2;
+                });
+                assertEquals(i * 2, value);
+            }
+        });
+
+        assertEquals(numKeys, calls.get());
+        assertEquals(numKeys, dict.size());
+    }
+
+    @Test(timeout=15 * SECOND)
+    public void testReadersSeeConsistentValuesDuringWritesAndRemoves() throws InterruptedException {
+        int numKeys = 20000;
+        IDictionary<Integer, Integer> dict = this.newDictionary();
+        for (int i = 0; i < numKeys; i += 2) {
+            dict.put(i, i);
+        }
+
+        this.runConcurrently(threadId -> {
+            if (threadId % 2 == 0) {
+                // Writers: add the odd keys, then remove them again.
+                for (int i = 1 + threadId; i < numKeys; i += NUM_THREADS) {
+                    dict.put(i, i);
+                }
+                for (int i = 1 + threadId; i < numKeys; i += NUM_THREADS) {
+                    dict.remove(i);
+                }
+            } else {
+                // Readers: the even keys must always be visible, with the right value.
+                for (int round = 0; round < 5; round++) {
+                    for (int i = 0; i < numKeys; i += 2) {
+                        assertTrue(dict.containsKey(i));
+                        assertEquals(i, dict.get(i));
+                    }
+                    for (KVPair<Integer, Integer> pair : dict) {
+                        assertEquals(pair.getKey(), pair.getValue());
+                    }
+                }
+            }
+        });
+
+        assertEquals(numKeys / 2, dict.size());
+        for (int i = 1; i < numKeys; i += 2) {
+            assertFalse(dict.containsKey(i));
+        }
+    }
+}
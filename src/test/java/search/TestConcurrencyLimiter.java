@@ -0,0 +1,124 @@
+package search;
+
+import datastructures.concrete.ArrayBackedList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.junit.Test;
+import search.misc.ConcurrencyLimiter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestConcurrencyLimiter extends BaseTest {
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Runs 'rounds' rounds of requests, each starting as many requests as the limit lets
+     * through and finishing them all 'latency' nanoseconds later.
+     */
+    private static void runRounds(ConcurrencyLimiter limiter, AtomicLong clock, int rounds, long latency)
+            throws InterruptedException {
+        for (int round = 0; round < rounds; round++) {
+            IList<ConcurrencyLimiter.Permit> permits = new ArrayBackedList<>();
+            int limit = limiter.getLimit();
+            for (int i = 0; i < limit; i++) {
+                permits.add(limiter.tryAcquire());
+            }
+            clock.addAndGet(latency);
+            for (ConcurrencyLimiter.Permit permit : permits) {
+                permit.release();
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testLimitGrowsWhileLatencyIsSteady() throws InterruptedException {
+        AtomicLong clock = new AtomicLong();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 64, 0, clock::get);
+        runRounds(limiter, clock, 30, 10 * MILLI);
+        assertEquals(64, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test(timeout=SECOND)
+    public void testLimitShrinksWhenLatencyRises() throws InterruptedException {
+        AtomicLong clock = new AtomicLong();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(32, 2, 64, 0, clock::get);
+        runRounds(limiter, clock, 20, 10 * MILLI);
+        int before = limiter.getLimit();
+        runRounds(limiter, clock, 5, 100 * MILLI);
+        assertTrue("Limit went from " + before + " to " + limiter.getLimit(), limiter.getLimit() < before / 2);
+
+        runRounds(limiter, clock, 40, 100 * MILLI);
+        assertTrue(limiter.getLimit() >= 2);
+    }
+
+    @Test(timeout=SECOND)
+    public void testLimitDoesNotGrowWhenUnderused() throws InterruptedException {
+        AtomicLong clock = new AtomicLong();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 1, 64, 0, clock::get);
+        for (int i = 0; i < 100; i++) {
+            ConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+            clock.addAndGet(MILLI);
+            permit.release();
+        }
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test(timeout=SECOND)
+    public void testRejectsWhenFull() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 2, 0);
+        ConcurrencyLimiter.Permit first = limiter.tryAcquire();
+        ConcurrencyLimiter.Permit second = limiter.tryAcquire();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(limiter.tryAcquire());
+        assertEquals(1L, limiter.getRejected());
+
+        first.release();
+        first.release();
+        assertEquals(1, limiter.getInFlight());
+        assertNotNull(limiter.tryAcquire());
+        assertNull(limiter.tryAcquire());
+        assertEquals(2L, limiter.getRejected());
+    }
+
+    @Test(timeout=SECOND)
+    public void testWaitsUpToQueueTimeout() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 100);
+        ConcurrencyLimiter.Permit held = limiter.tryAcquire();
+
+        long start = System.nanoTime();
+        assertNull(limiter.tryAcquire());
+        assertTrue(System.nanoTime() - start >= 100 * MILLI);
+        assertEquals(1L, limiter.getRejected());
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException ex) {
+                // Releasing early is fine too.
+            }
+            held.release();
+        });
+        releaser.start();
+        assertNotNull(limiter.tryAcquire());
+        releaser.join();
+        assertEquals(0, limiter.getWaiting());
+    }
+
+    @Test(timeout=SECOND)
+    public void testRejectsBadLimits() {
+        try {
+            new ConcurrencyLimiter(1, 2, 4, 0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // Do nothing: this is ok
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package search;
+
+import misc.BaseTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import search.scraper.CrawlFrontier;
+import search.scraper.PendingUri;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestCrawlFrontier extends BaseTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("frontier-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static PendingUri entry(int distance, String host, int page) {
+        return new PendingUri(distance, URI.create("http://" + host + "/page/" + page));
+    }
+
+    private int countSegments() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return (int) files.filter(path -> path.getFileName().toString().startsWith("segment-")).count();
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testEmpty() throws IOException {
+        try (CrawlFrontier frontier = new CrawlFrontier(this.directory, 10)) {
+            assertTrue(frontier.isEmpty());
+            assertNull(frontier.poll());
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testPollsInOrderAcrossSpills() throws IOException {
+        Random random = new Random(12);
+        try (CrawlFrontier frontier = new CrawlFrontier(this.directory, 50)) {
+            for (int i = 0; i < 1000; i++) {
+                frontier.add(entry(random.nextInt(5), "host" + random.nextInt(10) + ".com", i));
+
+                // Interleave some polls with the adds, like a real crawl does.
+                if (i % 7 == 0) {
+                    frontier.complete(frontier.poll());
+                }
+            }
+            assertTrue(this.countSegments() > 1);
+
+            // Everything after the last interleaved poll must come out in order.
+            PendingUri previous = frontier.poll();
+            int count = 1 + (1000 + 6) / 7;
+            while (!frontier.isEmpty()) {
+                PendingUri current = frontier.poll();
+                assertTrue(previous + " before " + current, previous.compareTo(current) <= 0);
+                previous = current;
+                count++;
+            }
+            assertEquals(1000, count);
+            assertNull(frontier.poll());
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testResumesFromCheckpoint() throws IOException {
+        try (CrawlFrontier frontier = new CrawlFrontier(this.directory, 20)) {
+            for (int i = 0; i < 100; i++) {
+                frontier.add(entry(i % 3, "example.com", i));
+            }
+            // Ten done, five handed out but not finished.
+            for (int i = 0; i < 10; i++) {
+                frontier.complete(frontier.poll());
+            }
+            for (int i = 0; i < 5; i++) {
+                frontier.poll();
+            }
+        }
+
+        try (CrawlFrontier frontier = new CrawlFrontier(this.directory, 20)) {
+            int count = 0;
+            while (!frontier.isEmpty()) {
+                frontier.complete(frontier.poll());
+                count++;
+            }
+            assertEquals(90, count);
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testReplaysJournalAfterCrash() throws IOException {
+        CrawlFrontier crashed = new CrawlFrontier(this.directory, 1000);
+        for (int i = 0; i < 10; i++) {
+            crashed.add(entry(1, "example.com", i));
+        }
+        crashed.checkpoint();
+        PendingUri inFlight = crashed.poll();
+        for (int i = 10; i < 20; i++) {
+            crashed.add(entry(1, "example.com", i));
+        }
+        crashed.flush();
+        // ...and we never close 'crashed'.
+
+        try (CrawlFrontier frontier = new CrawlFrontier(this.directory, 1000)) {
+            int count = 0;
+            boolean sawInFlight = false;
+            while (!frontier.isEmpty()) {
+                PendingUri next = frontier.poll();
+                sawInFlight |= next.uri.equals(inFlight.uri);
+                count++;
+            }
+            assertEquals(20, count);
+            assertTrue(sawInFlight);
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testDropsSegmentsWrittenAfterLastCheckpoint() throws IOException {
+        CrawlFrontier crashed = new CrawlFrontier(this.directory, 1000);
+        for (int i = 0; i < 10; i++) {
+            crashed.add(entry(1, "example.com", i));
+        }
+        crashed.flush();
+
+        // A half-written spill: not referenced by any checkpoint.
+        Files.write(this.directory.resolve("segment-7.txt"), "1\thttp://example.com/page/0\n1\thttp://exa".getBytes());
+
+        try (CrawlFrontier frontier = new CrawlFrontier(this.directory, 1000)) {
+            assertFalse(Files.exists(this.directory.resolve("segment-7.txt")));
+            int count = 0;
+            while (!frontier.isEmpty()) {
+                frontier.poll();
+                count++;
+            }
+            assertEquals(10, count);
+        }
+    }
+}
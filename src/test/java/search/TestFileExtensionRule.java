@@ -0,0 +1,79 @@
+package search;
+
+import misc.BaseTest;
+import org.junit.Test;
+import search.scraper.Constants;
+import search.scraper.FileExtensionRule;
+
+import java.net.URI;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestFileExtensionRule extends BaseTest {
+    private static boolean allows(FileExtensionRule rule, String uri) {
+        return rule.matches(URI.create(uri));
+    }
+
+    @Test(timeout=SECOND)
+    public void testBlocksListedExtensions() {
+        FileExtensionRule rule = new FileExtensionRule(".pdf", "jpg");
+        assertFalse(allows(rule, "http://example.com/files/report.pdf"));
+        assertFalse(allows(rule, "http://example.com/photo.jpg?size=large"));
+        assertTrue(allows(rule, "http://example.com/files/report.html"));
+        assertTrue(allows(rule, "http://example.com/"));
+        assertTrue(allows(rule, "http://example.com"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testIgnoresCase() {
+        FileExtensionRule rule = new FileExtensionRule(".PnG");
+        assertFalse(allows(rule, "http://example.com/a.png"));
+        assertFalse(allows(rule, "http://example.com/a.PNG"));
+        assertFalse(allows(rule, "http://example.com/a.Png"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testOnlyLooksAtLastSegment() {
+        FileExtensionRule rule = new FileExtensionRule(".zip", ".ps", ".js");
+        assertTrue(allows(rule, "http://example.com/files.zip/list"));
+        assertTrue(allows(rule, "http://example.com/wiki/Maps"));
+        assertTrue(allows(rule, "http://example.com/wiki/Ajs"));
+        assertTrue(allows(rule, "http://example.com/script.json"));
+        assertTrue(allows(rule, "http://example.com/zip"));
+        assertTrue(allows(rule, "http://example.com/archive."));
+        assertFalse(allows(rule, "http://example.com/static/app.min.js"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testMultiPartExtensions() {
+        FileExtensionRule rule = new FileExtensionRule(".tar.gz", ".tar.bz2");
+        assertFalse(allows(rule, "http://example.com/release-1.0.tar.gz"));
+        assertFalse(allows(rule, "http://example.com/release.TAR.BZ2"));
+        assertTrue(allows(rule, "http://example.com/release.gz"));
+        assertTrue(allows(rule, "http://example.com/release.tar"));
+        assertTrue(allows(rule, "http://example.com/release.tar.xz"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testDefaultBlacklist() {
+        FileExtensionRule rule = Constants.fileExtensionBlacklist();
+        assertFalse(allows(rule, "https://upload.wikimedia.org/wikipedia/commons/a/a9/Example.JPG"));
+        assertFalse(allows(rule, "https://en.wikipedia.org/w/load.php.css"));
+        assertFalse(allows(rule, "https://example.com/dump.tar.gz"));
+        assertTrue(allows(rule, "https://en.wikipedia.org/wiki/Seattle"));
+        assertTrue(allows(rule, "https://en.wikipedia.org/wiki/Version_1.2"));
+        assertTrue(allows(rule, "https://en.wikipedia.org/w/index.php?title=Seattle.pdf"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testRejectsEmptyExtension() {
+        try {
+            new FileExtensionRule(".pdf", ".");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // Do nothing: this is ok
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package search;
+
+import misc.BaseTest;
+import org.junit.Test;
+import search.misc.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class TestJsonWriter extends BaseTest {
+    @Test(timeout=SECOND)
+    public void testNestedValues() throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject();
+        json.name("a").value(1L);
+        json.name("b").beginArray().value("x").value(true).beginObject().endObject().beginArray().endArray();
+        json.endArray();
+        json.name("c").value(0.5);
+        json.name("d").value((String) null);
+        json.endObject();
+        assertEquals("{\"a\":1,\"b\":[\"x\",true,{},[]],\"c\":0.5,\"d\":null}", out.toString());
+    }
+
+    @Test(timeout=SECOND)
+    public void testEscapesStrings() throws IOException {
+        StringWriter out = new StringWriter();
+        new JsonWriter(out).value("a\"b\\c\nd\te\u0001f\u2028 caf\u00e9");
+        assertEquals("\"a\\\"b\\\\c\\nd\\te\\u0001f\\u2028 caf\u00e9\"", out.toString());
+    }
+
+    @Test(timeout=SECOND)
+    public void testNonFiniteNumbersAreNull() throws IOException {
+        StringWriter out = new StringWriter();
+        new JsonWriter(out).beginArray().value(Double.NaN).value(Double.POSITIVE_INFINITY).value(-2.0).endArray();
+        assertEquals("[null,null,-2.0]", out.toString());
+    }
+}
@@ -0,0 +1,99 @@
+package search;
+
+import misc.BaseTest;
+import org.junit.Test;
+import search.metrics.Counter;
+import search.metrics.Histogram;
+import search.metrics.MetricsRegistry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+
+public class TestMetrics extends BaseTest {
+    @Test(timeout=SECOND)
+    public void testHistogramQuantilesAreCloseUpperBounds() {
+        Histogram histogram = new Histogram("test_seconds", "Test");
+        assertEquals(0L, histogram.getQuantile(0.5));
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(1000L, histogram.getCount());
+
+        long[] expected = new long[] {500_000, 900_000, 990_000, 1_000_000};
+        double[] quantiles = new double[] {0.5, 0.9, 0.99, 1.0};
+        for (int i = 0; i < quantiles.length; i++) {
+            long actual = histogram.getQuantile(quantiles[i]);
+            assertTrue(quantiles[i] + " was " + actual, actual >= expected[i]);
+            assertTrue(quantiles[i] + " was " + actual, actual <= expected[i] * 1.0625);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testHistogramSmallAndHugeValues() {
+        Histogram histogram = new Histogram("test_seconds", "Test");
+        for (long i = 0; i < 16; i++) {
+            histogram.record(i);
+        }
+        assertEquals(7L, histogram.getQuantile(0.5));
+        assertEquals(15L, histogram.getQuantile(1.0));
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(18L, histogram.getCount());
+        assertEquals(0L, histogram.getQuantile(0.0));
+        assertTrue(histogram.getQuantile(1.0) >= 1L << 40);
+    }
+
+    @Test(timeout=SECOND)
+    public void testRecordsFromManyThreads() throws InterruptedException {
+        Histogram histogram = new Histogram("test_seconds", "Test");
+        Counter counter = new Counter("test_total", "Test");
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    histogram.record(j);
+                    counter.increment();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000L, histogram.getCount());
+        assertEquals(40000L, counter.get());
+    }
+
+    @Test(timeout=SECOND)
+    public void testPrometheusText() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("pages_total", "Pages seen");
+        AtomicLong value = new AtomicLong(3);
+        registry.gauge("in_flight", "Requests running", value::get);
+        Histogram histogram = registry.histogram("latency_seconds", "Latency");
+        counter.add(2);
+        histogram.record(1_500_000_000L);
+
+        String text = registry.toPrometheusText();
+        assertTrue(text, text.startsWith(
+                "# HELP pages_total Pages seen\n"
+                + "# TYPE pages_total counter\n"
+                + "pages_total 2\n"
+                + "# HELP in_flight Requests running\n"
+                + "# TYPE in_flight gauge\n"
+                + "in_flight 3\n"
+                + "# HELP latency_seconds Latency\n"
+                + "# TYPE latency_seconds summary\n"
+                + "latency_seconds{quantile=\"0.5\"} 1.5"));
+        assertTrue(text, text.contains("latency_seconds_sum 1.5\nlatency_seconds_count 1\n"));
+
+        // Registering a metric under a name that is taken replaces the old one.
+        registry.counter("pages_total", "Pages seen");
+        value.set(4);
+        text = registry.toPrometheusText();
+        assertTrue(text, text.startsWith("# HELP pages_total Pages seen\n# TYPE pages_total counter\npages_total 0\n"));
+        assertTrue(text, text.contains("in_flight 4\n"));
+    }
+}
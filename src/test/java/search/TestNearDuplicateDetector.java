@@ -0,0 +1,109 @@
+package search;
+
+import misc.BaseTest;
+import org.junit.Test;
+import search.misc.NearDuplicateDetector;
+import search.misc.WordTokenizer;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestNearDuplicateDetector extends BaseTest {
+    private static String makeArticle(long seed, int numWords) {
+        Random rand = new Random(seed);
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < numWords; i++) {
+            out.append("word").append(rand.nextInt(5000)).append(' ');
+        }
+        return out.toString();
+    }
+
+    @Test(timeout=SECOND)
+    public void testIdenticalTextIsDuplicate() {
+        NearDuplicateDetector<String> detector = new NearDuplicateDetector<>();
+        String article = makeArticle(1, 500);
+        assertNull(detector.addIfUnique("a", NearDuplicateDetector.fingerprint(article)));
+        assertEquals("a", detector.addIfUnique("b", NearDuplicateDetector.fingerprint(article)));
+        assertEquals(1, detector.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testSmallEditIsDuplicate() {
+        String article = makeArticle(2, 1000);
+        String edited = "Last edited 12 March. " + article.replace("word17 ", "changed ") + " Retrieved today.";
+        long original = NearDuplicateDetector.fingerprint(article);
+        long copy = NearDuplicateDetector.fingerprint(edited);
+        assertTrue(NearDuplicateDetector.distance(original, copy) <= NearDuplicateDetector.DEFAULT_MAX_DISTANCE);
+
+        NearDuplicateDetector<String> detector = new NearDuplicateDetector<>();
+        detector.addIfUnique("original", original);
+        assertEquals("original", detector.findDuplicate(copy));
+    }
+
+    @Test(timeout=SECOND)
+    public void testDifferentTextIsNotDuplicate() {
+        NearDuplicateDetector<Integer> detector = new NearDuplicateDetector<>();
+        for (int i = 0; i < 200; i++) {
+            assertNull(detector.addIfUnique(i, NearDuplicateDetector.fingerprint(makeArticle(100 + i, 300))));
+        }
+        assertEquals(200, detector.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testShortTextIsNeverDuplicate() {
+        NearDuplicateDetector<String> detector = new NearDuplicateDetector<>();
+        assertEquals(NearDuplicateDetector.NO_FINGERPRINT, NearDuplicateDetector.fingerprint("page 1 next"));
+        assertEquals(NearDuplicateDetector.NO_FINGERPRINT, NearDuplicateDetector.fingerprint(""));
+        assertNull(detector.addIfUnique("a", NearDuplicateDetector.fingerprint("page 1 next")));
+        assertNull(detector.addIfUnique("b", NearDuplicateDetector.fingerprint("page 1 next")));
+        assertEquals(0, detector.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testTextAndWordsAgree() {
+        String text = "The Space Needle, in Seattle, was built for the 1962 World's Fair; "
+                + "it is 605 feet tall and was the tallest structure west of the Mississippi.";
+        long fromText = NearDuplicateDetector.fingerprint(text);
+        assertNotEquals(NearDuplicateDetector.NO_FINGERPRINT, fromText);
+        assertEquals(fromText, NearDuplicateDetector.fingerprint(WordTokenizer.extract(text)));
+    }
+
+    @Test(timeout=SECOND)
+    public void testFindsEveryFingerprintWithinDistance() {
+        Random rand = new Random(3);
+        for (int maxDistance = 0; maxDistance <= 7; maxDistance++) {
+            NearDuplicateDetector<Long> detector = new NearDuplicateDetector<>(maxDistance);
+            long fingerprint = rand.nextLong() | 1;
+            detector.addIfUnique(fingerprint, fingerprint);
+
+            for (int trial = 0; trial < 100; trial++) {
+                long nearby = fingerprint;
+                long farAway = fingerprint;
+                while (Long.bitCount(nearby ^ fingerprint) < maxDistance) {
+                    nearby ^= 1L << rand.nextInt(64);
+                }
+                while (Long.bitCount(farAway ^ fingerprint) <= maxDistance) {
+                    farAway ^= 1L << rand.nextInt(64);
+                }
+                assertEquals((Long) fingerprint, detector.findDuplicate(nearby));
+                assertNull(detector.findDuplicate(farAway));
+            }
+        }
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testManyFingerprints() {
+        Random rand = new Random(4);
+        NearDuplicateDetector<Integer> detector = new NearDuplicateDetector<>();
+        for (int i = 0; i < 100000; i++) {
+            long fingerprint = rand.nextLong();
+            if (fingerprint != NearDuplicateDetector.NO_FINGERPRINT) {
+                assertNull(detector.addIfUnique(i, fingerprint));
+            }
+        }
+        assertEquals(100000, detector.size());
+    }
+}
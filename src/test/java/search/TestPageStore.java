@@ -0,0 +1,290 @@
+package search;
+
+import datastructures.interfaces.ISet;
+import misc.BaseTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import search.misc.PageStore;
+import search.models.Webpage;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestPageStore extends BaseTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("page-store-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static URI pageUri(int i) {
+        return URI.create("http://example.com/page/" + i);
+    }
+
+    private static String pageBody(int i) {
+        return "<html><head><title>Page " + i + "</title></head><body><p>Body of page " + i
+                + "</p><a href=\"/page/" + (i + 1) + "\">next</a></body></html>";
+    }
+
+    private List<String> readAll() throws IOException {
+        List<String> out = new ArrayList<>();
+        PageStore.forEach(this.directory, (uri, contents) -> {
+            out.add(uri + " " + new String(contents, StandardCharsets.UTF_8));
+        });
+        return out;
+    }
+
+    private Path segment(int number) {
+        return this.directory.resolve(String.format("pages-%05d.gz", number));
+    }
+
+    private Path index(int number) {
+        return this.directory.resolve(String.format("pages-%05d.idx", number));
+    }
+
+    @Test(timeout=SECOND)
+    public void testRoundTrip() throws IOException {
+        assertFalse(PageStore.exists(this.directory));
+        try (PageStore store = new PageStore(this.directory)) {
+            for (int i = 0; i < 20; i++) {
+                store.append(pageUri(i), pageBody(i));
+            }
+            assertEquals(20L, store.size());
+        }
+        assertTrue(PageStore.exists(this.directory));
+
+        List<String> pages = this.readAll();
+        assertEquals(20, pages.size());
+        for (int i = 0; i < 20; i++) {
+            String expected = pageUri(i) + " <!-- METADATA\nuri: " + pageUri(i) + "\nlocal: false\n-->\n" + pageBody(i);
+            assertEquals(expected, pages.get(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testReopenAppends() throws IOException {
+        try (PageStore store = new PageStore(this.directory)) {
+            store.append(pageUri(0), pageBody(0));
+            store.append(pageUri(1), pageBody(1));
+        }
+        try (PageStore store = new PageStore(this.directory)) {
+            assertEquals(2L, store.size());
+            store.append(pageUri(2), pageBody(2));
+            assertEquals(3L, store.size());
+        }
+
+        List<URI> uris = new ArrayList<>();
+        PageStore.forEachUri(this.directory, uris::add);
+        assertEquals(3, uris.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(pageUri(i), uris.get(i));
+        }
+        assertEquals(3, this.readAll().size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testRollsOverToNewSegments() throws IOException {
+        try (PageStore store = new PageStore(this.directory, 500)) {
+            for (int i = 0; i < 30; i++) {
+                store.append(pageUri(i), pageBody(i));
+            }
+        }
+        assertTrue(Files.exists(this.segment(1)));
+        assertTrue(Files.size(this.segment(0)) <= 500);
+
+        try (PageStore store = new PageStore(this.directory, 500)) {
+            assertEquals(30L, store.size());
+            store.append(pageUri(30), pageBody(30));
+        }
+        List<String> pages = this.readAll();
+        assertEquals(31, pages.size());
+        for (int i = 0; i < 31; i++) {
+            assertTrue(pages.get(i).startsWith(pageUri(i) + " "));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRecoversFromTornAppend() throws IOException {
+        try (PageStore store = new PageStore(this.directory)) {
+            store.append(pageUri(0), pageBody(0));
+            store.append(pageUri(1), pageBody(1));
+        }
+        long segmentSize = Files.size(this.segment(0));
+
+        // Simulate a crash part way through a third append: half a record, and an index
+        // line that points past the end of the segment and is missing its newline.
+        Files.write(this.segment(0), new byte[] {0x1f, (byte) 0x8b, 8}, StandardOpenOption.APPEND);
+        Files.write(this.index(0), (segmentSize + "\t400\thttp://exa").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        assertEquals(2, this.readAll().size());
+
+        try (PageStore store = new PageStore(this.directory)) {
+            assertEquals(2L, store.size());
+            assertEquals(segmentSize, Files.size(this.segment(0)));
+            store.append(pageUri(2), pageBody(2));
+        }
+        List<String> pages = this.readAll();
+        assertEquals(3, pages.size());
+        assertTrue(pages.get(2).startsWith(pageUri(2) + " "));
+    }
+
+    @Test(timeout=SECOND)
+    public void testRecoversFromLostRecord() throws IOException {
+        try (PageStore store = new PageStore(this.directory)) {
+            store.append(pageUri(0), pageBody(0));
+            store.append(pageUri(1), pageBody(1));
+        }
+
+        // The index line reached the disk, but the end of its record did not.
+        try (FileChannel channel = FileChannel.open(this.segment(0), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        assertEquals(1, this.readAll().size());
+
+        try (PageStore store = new PageStore(this.directory)) {
+            assertEquals(1L, store.size());
+            store.append(pageUri(2), pageBody(2));
+        }
+        List<String> pages = this.readAll();
+        assertEquals(2, pages.size());
+        assertTrue(pages.get(1).startsWith(pageUri(2) + " "));
+    }
+
+    @Test(timeout=SECOND)
+    public void testSearchEngineFallsBackToLastReadableVersion() throws IOException {
+        try (PageStore store = new PageStore(this.directory)) {
+            store.append(pageUri(0), "<html><body><p>original text</p></body></html>");
+            store.append(pageUri(1), pageBody(1));
+            store.append(pageUri(0), "<html><body><p>rewritten text</p></body></html>");
+        }
+
+        // The index line for the newest version of page 0 reached the disk, but the end of
+        // its record did not.
+        try (FileChannel channel = FileChannel.open(this.segment(0), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        List<URI> uris = new ArrayList<>();
+        PageStore.forEachUri(this.directory, uris::add);
+        assertEquals(2, uris.size());
+
+        ISet<Webpage> pages = SearchEngine.collectWebpages(this.directory);
+        assertEquals(2, pages.size());
+        for (Webpage page : pages) {
+            if (page.getUri().equals(pageUri(0))) {
+                assertTrue(page.getWords().contains("original"));
+                assertFalse(page.getWords().contains("rewritten"));
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSearchEngineCachesParsedStoredPages() throws IOException {
+        try (PageStore store = new PageStore(this.directory)) {
+            for (int i = 0; i < 3; i++) {
+                store.append(pageUri(i), "<html><body><p>original text " + i + "</p></body></html>");
+            }
+        }
+        assertEquals(3, SearchEngine.collectWebpages(this.directory).size());
+        assertTrue(Files.exists(this.directory.resolve("pages-00000.parsed")));
+
+        // Scribble over every record: the next start must not need to read them again.
+        byte[] garbage = new byte[(int) Files.size(this.segment(0))];
+        Files.write(this.segment(0), garbage);
+        try (PageStore store = new PageStore(this.directory)) {
+            store.append(pageUri(1), "<html><body><p>rewritten text</p></body></html>");
+        }
+
+        ISet<Webpage> pages = SearchEngine.collectWebpages(this.directory);
+        assertEquals(3, pages.size());
+        for (Webpage page : pages) {
+            boolean isRewritten = page.getUri().equals(pageUri(1));
+            assertEquals(!isRewritten, page.getWords().contains("original"));
+            assertEquals(isRewritten, page.getWords().contains("rewritten"));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSearchEngineSkipsFilesAlreadyStored() throws IOException {
+        try (PageStore store = new PageStore(this.directory)) {
+            store.append(pageUri(0), "<html><body><p>stored text</p></body></html>");
+        }
+        for (int i = 0; i < 2; i++) {
+            String contents = "<!-- METADATA\nuri: " + pageUri(i) + "\nlocal: false\n-->\n"
+                    + "<html><body><p>file text</p></body></html>";
+            Files.write(this.directory.resolve("page" + i + ".html"), contents.getBytes(StandardCharsets.UTF_8));
+        }
+
+        ISet<Webpage> pages = SearchEngine.collectWebpages(this.directory);
+        assertEquals(2, pages.size());
+        for (Webpage page : pages) {
+            assertEquals(page.getUri().equals(pageUri(0)), page.getWords().contains("stored"));
+        }
+        assertFalse(Files.exists(this.directory.resolve("page0.cache")));
+        assertTrue(Files.exists(this.directory.resolve("page1.cache")));
+    }
+
+    @Test(timeout=SECOND)
+    public void testRemovedPagesReadBackAsNull() throws IOException {
+        try (PageStore store = new PageStore(this.directory)) {
+            store.append(pageUri(0), pageBody(0));
+            store.appendRemoved(pageUri(0));
+            store.append(pageUri(1), pageBody(1));
+            assertEquals(3L, store.size());
+        }
+        try (PageStore store = new PageStore(this.directory)) {
+            assertEquals(3L, store.size());
+        }
+
+        List<String> pages = new ArrayList<>();
+        PageStore.forEach(this.directory, (uri, contents) -> {
+            pages.add(uri + (contents == null ? " removed" : " " + contents.length));
+        });
+        assertEquals(3, pages.size());
+        assertTrue(pages.get(0).startsWith(pageUri(0) + " ") && !pages.get(0).endsWith("removed"));
+        assertEquals(pageUri(0) + " removed", pages.get(1));
+        assertTrue(pages.get(2).startsWith(pageUri(1) + " ") && !pages.get(2).endsWith("removed"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testConvertsHtmlFiles() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            String contents = "<!-- METADATA\nuri: " + pageUri(i) + "\nlocal: false\n-->\n" + pageBody(i);
+            Files.write(this.directory.resolve("page" + i + ".html"), contents.getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(this.directory.resolve("page0.cache"), new byte[] {1, 2, 3});
+        Files.write(this.directory.resolve("noheader.html"), "<html></html>".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(5L, ConvertPages.convert(this.directory, false));
+        assertEquals(0L, ConvertPages.convert(this.directory, true));
+        assertFalse(Files.exists(this.directory.resolve("page0.html")));
+        assertFalse(Files.exists(this.directory.resolve("page0.cache")));
+        assertTrue(Files.exists(this.directory.resolve("noheader.html")));
+
+        List<URI> uris = new ArrayList<>();
+        PageStore.forEachUri(this.directory, uris::add);
+        assertEquals(5, uris.size());
+        assertTrue(uris.contains(pageUri(3)));
+    }
+}
@@ -0,0 +1,100 @@
+package search;
+
+import misc.BaseTest;
+import org.junit.Test;
+import search.analyzers.PostingList;
+import search.analyzers.PostingsCache;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestPostingsCache extends BaseTest {
+    private PostingList makePostings(int size) {
+        int[] ids = new int[size];
+        double[] weights = new double[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = i * 3;
+            weights[i] = i / 7.0;
+        }
+        return new PostingList(ids, weights);
+    }
+
+    @Test(timeout=SECOND)
+    public void testEncodeDecodeRoundTrip() {
+        int[] ids = new int[] {0, 1, 127, 128, 300, 70000, 2000000};
+        double[] weights = new double[] {0.0, -0.0, 0.1, 1e-300, 12345.678, Math.PI, Double.MIN_VALUE};
+
+        PostingList decoded = PostingList.decode(PostingList.encode(ids, weights, ids.length));
+        assertEquals(ids.length, decoded.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], decoded.getDocumentId(i));
+            assertEquals(Double.doubleToRawLongBits(weights[i]), Double.doubleToRawLongBits(decoded.getWeight(i)));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testHitsAreServedFromCache() {
+        PostingsCache cache = new PostingsCache(1024 * 1024);
+        PostingList first = cache.get("seattle", term -> this.makePostings(10));
+        PostingList second = cache.get("seattle", term -> this.makePostings(10));
+
+        assertSame(first, second);
+        assertEquals(1L, cache.getHits());
+        assertEquals(1L, cache.getMisses());
+        assertEquals(first.sizeInBytes(), cache.getBytesUsed());
+    }
+
+    @Test(timeout=SECOND)
+    public void testStaysWithinBudget() {
+        long budget = this.makePostings(100).sizeInBytes() * 5;
+        PostingsCache cache = new PostingsCache(budget);
+        for (int i = 0; i < 50; i++) {
+            cache.get("term" + i, term -> this.makePostings(100));
+            assertTrue(cache.getBytesUsed() <= budget);
+        }
+        assertEquals(5, cache.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testEvictsInfrequentTermsFirst() {
+        long budget = this.makePostings(100).sizeInBytes() * 2;
+        PostingsCache cache = new PostingsCache(budget);
+
+        cache.get("hot", term -> this.makePostings(100));
+        for (int i = 0; i < 20; i++) {
+            cache.get("hot", term -> this.makePostings(100));
+        }
+        cache.get("cold", term -> this.makePostings(100));
+        cache.get("new", term -> this.makePostings(100));
+
+        long hitsBefore = cache.getHits();
+        cache.get("hot", term -> this.makePostings(100));
+        assertEquals(hitsBefore + 1, cache.getHits());
+    }
+
+    @Test(timeout=SECOND)
+    public void testSampledEvictionKeepsHotTerm() {
+        // Enough terms that victims come from a random sample rather than a full scan,
+        // and enough inserts that frequencies get aged many times along the way.
+        long budget = this.makePostings(10).sizeInBytes() * 100;
+        PostingsCache cache = new PostingsCache(budget);
+        for (int i = 0; i < 5000; i++) {
+            cache.get("hot", term -> this.makePostings(10));
+            cache.get("term" + i, term -> this.makePostings(10));
+            assertTrue(cache.getBytesUsed() <= budget);
+        }
+        assertEquals(100, cache.size());
+
+        long hitsBefore = cache.getHits();
+        cache.get("hot", term -> this.makePostings(10));
+        assertEquals(hitsBefore + 1, cache.getHits());
+    }
+
+    @Test(timeout=SECOND)
+    public void testOversizedListsAreNotCached() {
+        PostingsCache cache = new PostingsCache(16);
+        cache.get("huge", term -> this.makePostings(1000));
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.getBytesUsed());
+    }
+}
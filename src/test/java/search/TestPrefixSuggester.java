@@ -0,0 +1,102 @@
+package search;
+
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.junit.Test;
+import search.analyzers.PrefixSuggester;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+public class TestPrefixSuggester extends BaseTest {
+    private static IDictionary<String, Long> weights(Object... keysAndWeights) {
+        IDictionary<String, Long> out = new ChainedHashDictionary<>();
+        for (int i = 0; i < keysAndWeights.length; i += 2) {
+            out.put((String) keysAndWeights[i], ((Integer) keysAndWeights[i + 1]).longValue());
+        }
+        return out;
+    }
+
+    private static void assertListEquals(String[] expected, IList<String> actual) {
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual.get(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testBasicCompletions() {
+        PrefixSuggester suggester = new PrefixSuggester(weights(
+                "dog", 5, "do", 9, "door", 7, "doge", 1, "cat", 3, "dot", 7, "a", 2));
+        assertEquals(7, suggester.size());
+        assertListEquals(new String[] {"do", "door", "dot", "dog", "doge"}, suggester.suggest("d", 10));
+        assertListEquals(new String[] {"do", "door"}, suggester.suggest("do", 2));
+        assertListEquals(new String[] {"dog", "doge"}, suggester.suggest("dog", 10));
+        assertListEquals(new String[] {"do", "door", "dot", "dog", "cat", "a", "doge"}, suggester.suggest("", 10));
+        assertListEquals(new String[0], suggester.suggest("dox", 10));
+        assertListEquals(new String[0], suggester.suggest("doges", 10));
+        assertListEquals(new String[0], suggester.suggest("d", 0));
+    }
+
+    @Test(timeout=SECOND)
+    public void testEmpty() {
+        PrefixSuggester suggester = new PrefixSuggester(weights());
+        assertEquals(1, suggester.nodeCount());
+        assertEquals(0, suggester.suggest("", 5).size());
+        assertEquals(0, suggester.suggest("a", 5).size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testNodeCountIsDistinctPrefixes() {
+        // "", a, ab, abc, abd, b
+        assertEquals(6, new PrefixSuggester(weights("abc", 1, "abd", 1, "a", 1, "b", 1)).nodeCount());
+    }
+
+    @Test(timeout=SECOND)
+    public void testMatchesBruteForce() {
+        Random rand = new Random(12);
+        IDictionary<String, Long> keys = new ChainedHashDictionary<>();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder key = new StringBuilder();
+            int length = 1 + rand.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                key.append((char) ('a' + rand.nextInt(4)));
+            }
+            keys.put(key.toString(), (long) rand.nextInt(50));
+        }
+        PrefixSuggester suggester = new PrefixSuggester(keys);
+
+        String[] prefixes = new String[] {"", "a", "b", "ab", "cd", "dda", "abca", "aaaaaa", "bcdab"};
+        for (String prefix : prefixes) {
+            IList<String> actual = suggester.suggest(prefix, PrefixSuggester.MAX_SUGGESTIONS);
+            String previous = null;
+            int matching = 0;
+            for (String key : actual) {
+                assertTrue(key.startsWith(prefix));
+                if (previous != null) {
+                    long previousWeight = keys.get(previous);
+                    assertTrue(previousWeight > keys.get(key)
+                            || (previousWeight == keys.get(key) && previous.compareTo(key) < 0));
+                }
+                previous = key;
+            }
+            // Nothing left out is better than the worst suggestion.
+            for (KVPair<String, Long> pair : keys) {
+                if (!pair.getKey().startsWith(prefix)) {
+                    continue;
+                }
+                matching++;
+                if (actual.size() == PrefixSuggester.MAX_SUGGESTIONS && !actual.contains(pair.getKey())) {
+                    long weight = pair.getValue();
+                    long worst = keys.get(previous);
+                    assertTrue(weight < worst || (weight == worst && pair.getKey().compareTo(previous) > 0));
+                }
+            }
+            assertEquals(Math.min(matching, PrefixSuggester.MAX_SUGGESTIONS), actual.size());
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package search;
+
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import search.scraper.RevisitSchedule;
+import search.scraper.Validators;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestRevisitSchedule extends BaseTest {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long START = 1_500_000_000_000L;
+
+    private Path directory;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("revisit-schedule-test");
+        this.file = this.directory.resolve("revisits.sav");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.file);
+        Files.deleteIfExists(this.directory.resolve("revisits.sav.tmp"));
+        Files.delete(this.directory);
+    }
+
+    private static URI pageUri(int i) {
+        return URI.create("http://example.com/page/" + i);
+    }
+
+    private static long fingerprintOf(long seed) {
+        // Random fingerprints are, in effect, completely different pages.
+        return new Random(seed).nextLong() | 1;
+    }
+
+    @Test(timeout=SECOND)
+    public void testNewPageIsDueAfterInitialInterval() throws IOException {
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file)) {
+            assertTrue(schedule.recordFetch(pageUri(1), Validators.NONE, fingerprintOf(1), START));
+            assertEquals(RevisitSchedule.DEFAULT_INITIAL_INTERVAL, schedule.getInterval(pageUri(1)));
+            assertEquals(-1L, schedule.getInterval(pageUri(2)));
+
+            assertEquals(0, schedule.due(START + DAY - 1, 10).size());
+            assertEquals(1, schedule.due(START + DAY, 10).size());
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testUnchangedPageBacksOffGradually() throws IOException {
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file, DAY, HOUR, 30 * DAY)) {
+            URI uri = pageUri(1);
+            long now = START;
+            schedule.recordFetch(uri, new Validators("\"v1\"", null), fingerprintOf(1), now);
+
+            long previous = DAY;
+            for (int i = 0; i < 10; i++) {
+                now += previous;
+                schedule.recordNotModified(uri, Validators.NONE, now);
+                long interval = schedule.getInterval(uri);
+                assertTrue(interval > previous || interval == 30 * DAY);
+                assertTrue(interval <= 2 * previous);
+                previous = interval;
+            }
+            assertEquals(30 * DAY, previous);
+
+            // A 304 without validators keeps the ones we had.
+            assertEquals("\"v1\"", schedule.getValidators(uri).etag);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testChangingPageIsCheckedOften() throws IOException {
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file, DAY, HOUR, 30 * DAY)) {
+            URI uri = pageUri(1);
+            long now = START;
+            schedule.recordFetch(uri, Validators.NONE, fingerprintOf(0), now);
+            for (int i = 1; i <= 20; i++) {
+                now += schedule.getInterval(uri);
+                assertTrue(schedule.recordFetch(uri, Validators.NONE, fingerprintOf(i), now));
+            }
+            long interval = schedule.getInterval(uri);
+            assertTrue("Interval was " + interval, interval < 2 * HOUR);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testPageChangingEveryOtherCheck() throws IOException {
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file, DAY, HOUR, 30 * DAY)) {
+            URI uri = pageUri(1);
+            long now = START;
+            long fingerprint = fingerprintOf(0);
+            schedule.recordFetch(uri, Validators.NONE, fingerprint, now);
+            for (int i = 1; i <= 20; i++) {
+                now += DAY;
+                if (i % 2 == 0) {
+                    fingerprint = fingerprintOf(i);
+                }
+                schedule.recordFetch(uri, Validators.NONE, fingerprint, now);
+            }
+
+            // About one change per two days, allowing for the ones we may have missed.
+            long interval = schedule.getInterval(uri);
+            assertTrue("Interval was " + interval, interval > DAY && interval < 2 * DAY);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSmallEditIsNotAChange() throws IOException {
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file)) {
+            long fingerprint = fingerprintOf(1);
+            schedule.recordFetch(pageUri(1), Validators.NONE, fingerprint, START);
+            assertFalse(schedule.recordFetch(pageUri(1), Validators.NONE, fingerprint ^ 0b110, START + DAY));
+            assertTrue(schedule.recordFetch(pageUri(1), Validators.NONE, ~fingerprint, START + 2 * DAY));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testDueReturnsMostOverdueFirst() throws IOException {
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file)) {
+            for (int i = 0; i < 10; i++) {
+                schedule.recordFetch(pageUri(i), Validators.NONE, fingerprintOf(i), START + i * HOUR);
+            }
+            IList<URI> due = schedule.due(START + DAY + 5 * HOUR, 3);
+            assertEquals(3, due.size());
+            assertEquals(pageUri(0), due.get(0));
+            assertEquals(pageUri(1), due.get(1));
+            assertEquals(pageUri(2), due.get(2));
+            assertEquals(6, schedule.due(START + DAY + 5 * HOUR, 100).size());
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testPersistsAcrossReopen() throws IOException {
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file)) {
+            schedule.recordFetch(pageUri(1), new Validators("\"abc\"", "Tue, 15 Nov 1994 12:45:26 GMT"),
+                    fingerprintOf(1), START);
+            schedule.recordFetch(pageUri(2), Validators.NONE, fingerprintOf(2), START);
+            schedule.recordNotModified(pageUri(1), Validators.NONE, START + DAY);
+        }
+        long interval = -1;
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file)) {
+            assertEquals(2, schedule.size());
+            Validators validators = schedule.getValidators(pageUri(1));
+            assertEquals("\"abc\"", validators.etag);
+            assertEquals("Tue, 15 Nov 1994 12:45:26 GMT", validators.lastModified);
+            assertNull(schedule.getValidators(pageUri(2)).etag);
+            assertTrue(schedule.getInterval(pageUri(1)) > DAY);
+
+            // Unchanged since last time, so not a change.
+            assertFalse(schedule.recordFetch(pageUri(2), Validators.NONE, fingerprintOf(2), START + DAY));
+            schedule.recordNotModified(pageUri(1), Validators.NONE, START + 3 * DAY);
+            interval = schedule.getInterval(pageUri(1));
+        }
+
+        // Most of the log's lines are now superseded, so reopening compacts it.
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file)) {
+            assertEquals(2, Files.readAllLines(this.file).size());
+            assertEquals(interval, schedule.getInterval(pageUri(1)));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSkipsTornLine() throws IOException {
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file)) {
+            schedule.recordFetch(pageUri(1), Validators.NONE, fingerprintOf(1), START);
+        }
+        Files.write(this.file, (pageUri(2) + "\t15000000").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file)) {
+            assertEquals(1, schedule.size());
+            assertEquals(-1L, schedule.getInterval(pageUri(2)));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRemovedPageStaysRemoved() throws IOException {
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file)) {
+            schedule.recordFetch(pageUri(1), Validators.NONE, fingerprintOf(1), START);
+            schedule.recordFetch(pageUri(2), Validators.NONE, fingerprintOf(2), START);
+            schedule.remove(pageUri(1));
+            schedule.remove(pageUri(3));
+            assertEquals(1, schedule.size());
+            assertEquals(-1L, schedule.getInterval(pageUri(1)));
+        }
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file)) {
+            assertEquals(1, schedule.size());
+            assertEquals(-1L, schedule.getInterval(pageUri(1)));
+            assertEquals(1, schedule.due(START + DAY, 10).size());
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testUncheckedPageIsDueAtOnce() throws IOException {
+        try (RevisitSchedule schedule = new RevisitSchedule(this.file)) {
+            schedule.addUnchecked(pageUri(1));
+            assertEquals(1, schedule.due(START, 10).size());
+
+            // The first check only sets a baseline.
+            assertTrue(schedule.recordFetch(pageUri(1), Validators.NONE, fingerprintOf(1), START));
+            assertEquals(RevisitSchedule.DEFAULT_INITIAL_INTERVAL, schedule.getInterval(pageUri(1)));
+
+            schedule.addUnchecked(pageUri(1));
+            assertEquals(0, schedule.due(START, 10).size());
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRejectsBadIntervals() throws IOException {
+        try {
+            new RevisitSchedule(this.file, HOUR, DAY, 30 * DAY);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // Do nothing: this is ok
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package search;
+
+import misc.BaseTest;
+import org.junit.Test;
+import search.scraper.RobotsCache;
+import search.scraper.RobotsRules;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestRobotsCache extends BaseTest {
+    private final AtomicInteger fetches = new AtomicInteger(0);
+
+    private Function<String, CompletableFuture<RobotsRules>> fetcher() {
+        return host -> {
+            this.fetches.incrementAndGet();
+            return CompletableFuture.completedFuture(RobotsRules.ALLOW_ALL);
+        };
+    }
+
+    @Test(timeout=SECOND)
+    public void testFetchesOncePerHost() {
+        RobotsCache cache = new RobotsCache();
+        CompletableFuture<RobotsRules> first = cache.get("a.com", this.fetcher());
+        assertSame(first, cache.get("a.com", this.fetcher()));
+        cache.get("b.com", this.fetcher());
+        assertEquals(2, this.fetches.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testRefetchesAfterExpiry() throws InterruptedException {
+        RobotsCache cache = new RobotsCache(50, 100);
+        cache.get("a.com", this.fetcher());
+        cache.get("a.com", this.fetcher());
+        assertEquals(1, this.fetches.get());
+
+        Thread.sleep(100);
+        cache.get("a.com", this.fetcher());
+        assertEquals(2, this.fetches.get());
+    }
+
+    @Test(timeout=SECOND)
+    public void testRefetchesAfterFailure() {
+        RobotsCache cache = new RobotsCache();
+        CompletableFuture<RobotsRules> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("Server error"));
+        cache.get("a.com", host -> failed);
+
+        CompletableFuture<RobotsRules> retried = cache.get("a.com", this.fetcher());
+        assertEquals(1, this.fetches.get());
+        assertSame(RobotsRules.ALLOW_ALL, retried.join());
+    }
+
+    @Test(timeout=SECOND)
+    public void testEvictsLeastRecentlyUsedHost() throws InterruptedException {
+        RobotsCache cache = new RobotsCache(RobotsCache.DEFAULT_TTL_MILLISECONDS, 3);
+        cache.get("a.com", this.fetcher());
+        Thread.sleep(1);
+        cache.get("b.com", this.fetcher());
+        Thread.sleep(1);
+        cache.get("c.com", this.fetcher());
+        Thread.sleep(1);
+
+        // Touch a.com so b.com becomes the oldest.
+        cache.get("a.com", this.fetcher());
+        Thread.sleep(1);
+        cache.get("d.com", this.fetcher());
+        assertEquals(3, cache.size());
+        assertEquals(4, this.fetches.get());
+
+        cache.get("a.com", this.fetcher());
+        cache.get("c.com", this.fetcher());
+        cache.get("d.com", this.fetcher());
+        assertEquals(4, this.fetches.get());
+
+        cache.get("b.com", this.fetcher());
+        assertEquals(5, this.fetches.get());
+        assertTrue(cache.size() <= 3);
+    }
+}
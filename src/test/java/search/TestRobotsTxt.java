@@ -0,0 +1,167 @@
+package search;
+
+import misc.BaseTest;
+import org.junit.Test;
+import search.scraper.RobotsRules;
+import search.scraper.RobotsTxt;
+
+import java.net.URI;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestRobotsTxt extends BaseTest {
+    private static final String USER_AGENT = "Cse373Crawler (contact someone@example.com)";
+
+    private static RobotsRules rules(String... lines) {
+        return new RobotsTxt(USER_AGENT, String.join("\n", lines)).getRules();
+    }
+
+    @Test(timeout=SECOND)
+    public void testDisallowIsPrefixMatch() {
+        RobotsRules rules = rules("User-agent: *", "Disallow: /private");
+        assertFalse(rules.isAllowed("/private"));
+        assertFalse(rules.isAllowed("/private/page.html"));
+        assertFalse(rules.isAllowed("/privateer"));
+        assertTrue(rules.isAllowed("/"));
+        assertTrue(rules.isAllowed("/public/private"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testAllowsEverythingWithoutRules() {
+        assertTrue(rules("User-agent: *", "Disallow:").isAllowed("/anything"));
+        assertTrue(rules("").isAllowed("/anything"));
+
+        // Only Allow rules used to make every path disallowed.
+        assertTrue(rules("User-agent: *", "Allow: /public").isAllowed("/anything"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testLongestMatchWins() {
+        RobotsRules rules = rules(
+                "User-agent: *",
+                "Disallow: /wiki/",
+                "Allow: /wiki/Main",
+                "Disallow: /wiki/Main_Page/edit");
+        assertFalse(rules.isAllowed("/wiki/Other"));
+        assertTrue(rules.isAllowed("/wiki/Main_Page"));
+        assertFalse(rules.isAllowed("/wiki/Main_Page/edit"));
+
+        // Order in the file does not matter.
+        RobotsRules reversed = rules("User-agent: *", "Allow: /wiki/Main", "Disallow: /wiki/");
+        assertTrue(reversed.isAllowed("/wiki/Main_Page"));
+        assertFalse(reversed.isAllowed("/wiki/Other"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testAllowWinsTies() {
+        RobotsRules rules = rules("User-agent: *", "Disallow: /page", "Allow: /page");
+        assertTrue(rules.isAllowed("/page"));
+
+        RobotsRules wildcards = rules("User-agent: *", "Disallow: /*.html", "Allow: /a*html");
+        assertTrue(wildcards.isAllowed("/ab.html"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testWildcards() {
+        RobotsRules rules = rules("User-agent: *", "Disallow: /*/edit", "Disallow: /search*q=");
+        assertFalse(rules.isAllowed("/wiki/edit"));
+        assertFalse(rules.isAllowed("/wiki/Some/Deep/edit/more"));
+        assertFalse(rules.isAllowed("/search?q=hello"));
+        assertFalse(rules.isAllowed("/searching/now?lang=en&q=hello"));
+        assertTrue(rules.isAllowed("/edit"));
+        assertTrue(rules.isAllowed("/search?lang=en"));
+
+        // Repeated '*' mean the same as one.
+        assertFalse(rules("User-agent: *", "Disallow: /a**b").isAllowed("/a-to-b"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testEndAnchor() {
+        RobotsRules rules = rules("User-agent: *", "Disallow: /*.pdf$", "Disallow: /exact$");
+        assertFalse(rules.isAllowed("/files/report.pdf"));
+        assertTrue(rules.isAllowed("/files/report.pdf?download=1"));
+        assertTrue(rules.isAllowed("/files/report.pdf.html"));
+        assertFalse(rules.isAllowed("/exact"));
+        assertTrue(rules.isAllowed("/exact/"));
+
+        // The anchor counts towards the rule's length.
+        RobotsRules anchored = rules("User-agent: *", "Disallow: /page$", "Allow: /page");
+        assertFalse(anchored.isAllowed("/page"));
+        assertTrue(anchored.isAllowed("/page2"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testRobotsTxtIsAlwaysAllowed() {
+        assertTrue(rules("User-agent: *", "Disallow: /").isAllowed("/robots.txt"));
+        assertFalse(rules("User-agent: *", "Disallow: /").isAllowed("/index.html"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testMatchesUriPathAndQuery() {
+        RobotsRules rules = rules("User-agent: *", "Disallow: /w/index.php?title=Special");
+        assertFalse(rules.matches(URI.create("https://en.wikipedia.org/w/index.php?title=Special:Random")));
+        assertTrue(rules.matches(URI.create("https://en.wikipedia.org/w/index.php?title=Cat")));
+        assertTrue(rules.matches(URI.create("https://en.wikipedia.org")));
+    }
+
+    @Test(timeout=SECOND)
+    public void testPercentEncoding() {
+        RobotsRules rules = rules("User-agent: *", "Disallow: /caf\u00e9", "Disallow: /a%2fb");
+        assertFalse(rules.isAllowed("/caf%C3%A9/menu"));
+        assertFalse(rules.isAllowed("/caf%c3%a9"));
+        assertFalse(rules.matches(URI.create("http://example.com/caf%C3%A9")));
+        assertFalse(rules.isAllowed("/a%2Fb"));
+        assertTrue(rules.isAllowed("/cafe"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testPicksOurGroupOverDefault() {
+        RobotsRules rules = rules(
+                "User-agent: *",
+                "Disallow: /",
+                "",
+                "User-agent: OtherBot",
+                "User-agent: cse373crawler/2.0",
+                "Disallow: /secret # comment",
+                "",
+                "User-agent: OtherBot",
+                "Disallow: /other");
+        assertTrue(rules.isAllowed("/page"));
+        assertTrue(rules.isAllowed("/other"));
+        assertFalse(rules.isAllowed("/secret"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testFallsBackToDefaultGroup() {
+        RobotsTxt robots = new RobotsTxt(USER_AGENT, String.join("\n",
+                "Disallow: /before-any-group",
+                "User-agent: OtherBot",
+                "Disallow: /",
+                "user-agent: *",
+                "disallow: /tmp",
+                "ALLOW: /tmp/ok",
+                "Sitemap: http://example.com/sitemap.xml"));
+        assertEquals(1, robots.getDisallowed().size());
+        assertEquals(1, robots.getAllowed().size());
+
+        RobotsRules rules = robots.getRules();
+        assertTrue(rules.isAllowed("/before-any-group"));
+        assertFalse(rules.isAllowed("/tmp/x"));
+        assertTrue(rules.isAllowed("/tmp/ok/x"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testManyRules() {
+        StringBuilder text = new StringBuilder("User-agent: *\n");
+        for (int i = 0; i < 10000; i++) {
+            text.append("Disallow: /section").append(i).append("/*.php$\n");
+        }
+        RobotsRules rules = new RobotsTxt(USER_AGENT, text.toString()).getRules();
+        for (int i = 0; i < 100000; i++) {
+            int section = i % 20000;
+            boolean expected = section >= 10000;
+            assertEquals(expected, rules.isAllowed("/section" + section + "/index.php"));
+        }
+    }
+}
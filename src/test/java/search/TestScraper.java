@@ -0,0 +1,471 @@
+package search;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import misc.BaseTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import search.misc.PageStore;
+import search.scraper.HttpRequester;
+import search.scraper.RevisitSchedule;
+import search.scraper.Scraper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the scraper against a stub HTTP server on this machine. The server is reachable
+ * as both "localhost" and "127.0.0.1", which the scraper treats as two different hosts.
+ */
+public class TestScraper extends BaseTest {
+    private static final long DELAY = 500;
+    private static final int CRASH_EXIT_CODE = 3;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private Path outputPath;
+    private HttpRequester requester;
+
+    // Used by the in-flight test to make every response take a while.
+    private volatile long responseDelayMillis = 0;
+
+    // Extra time "/copy/N" pages take (twice as long from 127.0.0.3), so other pages can be
+    // saved before them.
+    private volatile long copyDelayMillis = 0;
+    private final AtomicInteger activeRequests = new AtomicInteger(0);
+    private final AtomicInteger maxActiveRequests = new AtomicInteger(0);
+
+    // How many "304 Not Modified" responses the server has sent, and how many times "/news" has changed.
+    private final AtomicInteger notModifiedCount = new AtomicInteger(0);
+    private final AtomicInteger newsVersion = new AtomicInteger(0);
+
+    // The status "/fresh/2" answers with; anything but 200 gets an error page instead.
+    private volatile int freshTwoStatus = 200;
+
+    // Every page request the server has seen, in order, as {host, path, arrival time in nanos}.
+    private final List<Object[]> requests = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(0), 0);
+        this.server.createContext("/", this::handle);
+        this.serverThreads = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.serverThreads);
+        this.server.start();
+        this.outputPath = Files.createTempDirectory("scraper-test");
+        this.requester = new HttpRequester(HttpRequester.DEFAULT_USER_AGENT, DELAY);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.requester.close();
+        this.server.stop(0);
+        this.serverThreads.shutdownNow();
+        try (Stream<Path> files = Files.walk(this.outputPath)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Serves a small site: "/page/N" links to "/page/N+1" up to "/page/3", and every page
+     * also links to the same page on the other host name, to a host outside the whitelist,
+     * and to a page robots.txt disallows.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String host = exchange.getRequestHeaders().getFirst("Host").split(":")[0];
+        String path = exchange.getRequestURI().getPath();
+        synchronized (this.requests) {
+            this.requests.add(new Object[] {host, path, System.nanoTime()});
+        }
+        int active = this.activeRequests.incrementAndGet();
+        this.maxActiveRequests.accumulateAndGet(active, Math::max);
+        try {
+            Thread.sleep(this.responseDelayMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        String body;
+        String contentType;
+        int status = 200;
+        if (path.equals("/robots.txt")) {
+            contentType = "text/plain";
+            body = "User-agent: *\nDisallow: /private\n";
+        } else if (path.startsWith("/page/")) {
+            int n = Integer.parseInt(path.substring("/page/".length()));
+            String otherHost = host.equals("localhost") ? "127.0.0.1" : "localhost";
+            contentType = "text/html";
+            body = "<html><body><p>page " + n + "</p>"
+                    + (n < 3 ? "<a href=\"/page/" + (n + 1) + "\">next</a>" : "")
+                    + "<a href=\"" + this.url(otherHost, path) + "\">mirror</a>"
+                    + "<a href=\"http://example.com/\">elsewhere</a>"
+                    + "<a href=\"/private/" + n + "\">private</a>"
+                    + "</body></html>";
+        } else if (path.startsWith("/copy/")) {
+            // The same long article at every "/copy/N", each linking to the next.
+            int n = Integer.parseInt(path.substring("/copy/".length()));
+            try {
+                Thread.sleep(host.equals("127.0.0.3") ? 2 * this.copyDelayMillis : this.copyDelayMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            contentType = "text/html";
+            StringBuilder article = new StringBuilder("<html><body><p>");
+            for (int i = 0; i < 200; i++) {
+                article.append("sentence ").append(i).append(" of the copied article. ");
+            }
+            body = article + "</p><a href=\"/copy/" + (n + 1) + "\">next</a></body></html>";
+        } else if (path.startsWith("/fresh/")) {
+            // Never changes, and supports conditional requests. Links to "/fresh/N+1" up
+            // to "/fresh/2", and to "/news".
+            int n = Integer.parseInt(path.substring("/fresh/".length()));
+            if (n == 2 && this.freshTwoStatus != 200) {
+                this.activeRequests.decrementAndGet();
+                byte[] bytes = "<html><body>something went wrong</body></html>".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(this.freshTwoStatus, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+                return;
+            }
+            String etag = "\"fresh-" + n + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                this.notModifiedCount.incrementAndGet();
+                this.activeRequests.decrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            contentType = "text/html";
+            body = "<html><body><p>fresh page " + n + "</p>"
+                    + (n < 2 ? "<a href=\"/fresh/" + (n + 1) + "\">next</a>" : "")
+                    + "<a href=\"/news\">news</a></body></html>";
+        } else if (path.equals("/news")) {
+            // Entirely different text on every request, without validators. From the
+            // second version on, it also links to "/fresh/3".
+            int version = this.newsVersion.getAndIncrement();
+            Random rand = new Random(version);
+            StringBuilder article = new StringBuilder("<html><body><p>");
+            for (int i = 0; i < 100; i++) {
+                article.append("story").append(rand.nextInt(10000)).append(' ');
+            }
+            contentType = "text/html";
+            body = article + "</p>" + (version > 0 ? "<a href=\"/fresh/3\">new</a>" : "") + "</body></html>";
+        } else {
+            status = 404;
+            contentType = "text/html";
+            body = "<html><body>not found</body></html>";
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        this.activeRequests.decrementAndGet();
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String url(String host, String path) {
+        return "http://" + host + ":" + this.server.getAddress().getPort() + path;
+    }
+
+    private Scraper makeScraper() {
+        Scraper scraper = new Scraper(this.outputPath, this.requester, 2, 8);
+        scraper.addDomainToWhitelist("localhost");
+        scraper.addDomainToWhitelist("127.0.0.1");
+        return scraper;
+    }
+
+    private int countSavedPages() throws IOException {
+        AtomicInteger count = new AtomicInteger(0);
+        if (PageStore.exists(this.outputPath)) {
+            PageStore.forEachUri(this.outputPath, uri -> count.incrementAndGet());
+        }
+        return count.get();
+    }
+
+    /**
+     * Run in a separate JVM by 'testRestartAfterCrashWhileQueueingLosesNothing': crawls
+     * from the seed 'args[1]' into the folder 'args[0]', and kills the whole process the
+     * moment "/page/2" has been queued but not yet marked as seen.
+     */
+    public static class CrashingCrawl {
+        public static void main(String[] args) throws IOException {
+            HttpRequester requester = new HttpRequester(HttpRequester.DEFAULT_USER_AGENT, DELAY);
+            Scraper scraper = new Scraper(Paths.get(args[0]), requester, 2, 8);
+            scraper.addDomainToWhitelist("localhost");
+            scraper.addDomainToWhitelist("127.0.0.1");
+            scraper.addSeedUri(URI.create(args[1]));
+            scraper.onQueued(uri -> {
+                if (uri.getPath().equals("/page/2")) {
+                    Runtime.getRuntime().halt(CRASH_EXIT_CODE);
+                }
+            });
+            scraper.run(100);
+            requester.close();
+        }
+    }
+
+    private int countRequests(String host, String path) {
+        int count = 0;
+        synchronized (this.requests) {
+            for (Object[] request : this.requests) {
+                if (request[0].equals(host) && request[1].equals(path)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private List<Long> pageRequestTimes(String host) {
+        List<Long> out = new ArrayList<>();
+        synchronized (this.requests) {
+            for (Object[] request : this.requests) {
+                if (request[0].equals(host) && !request[1].equals("/robots.txt")) {
+                    out.add((Long) request[2]);
+                }
+            }
+        }
+        return out;
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testFetchesEveryAllowedPage() throws IOException {
+        Scraper scraper = this.makeScraper();
+        scraper.addSeedUri(URI.create(this.url("localhost", "/page/1")));
+        scraper.run(100);
+
+        // Three pages on each host, each fetched exactly once.
+        assertEquals(6, this.countSavedPages());
+        assertEquals(3, this.pageRequestTimes("localhost").size());
+        assertEquals(3, this.pageRequestTimes("127.0.0.1").size());
+
+        List<String> saved = Files.readAllLines(this.outputPath.resolve("list.sav"));
+        assertEquals(6, saved.size());
+
+        synchronized (this.requests) {
+            for (Object[] request : this.requests) {
+                assertFalse(((String) request[1]).startsWith("/private"));
+            }
+        }
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testRespectsPerHostDelayWhileFetchingHostsInParallel() throws IOException {
+        Scraper scraper = this.makeScraper();
+        scraper.addSeedUri(URI.create(this.url("localhost", "/page/1")));
+        scraper.addSeedUri(URI.create(this.url("127.0.0.1", "/page/1")));
+
+        long start = System.nanoTime();
+        scraper.run(100);
+        long elapsed = System.nanoTime() - start;
+
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(DELAY);
+        for (String host : new String[] {"localhost", "127.0.0.1"}) {
+            List<Long> times = this.pageRequestTimes(host);
+            assertEquals(3, times.size());
+            for (int i = 1; i < times.size(); i++) {
+                long gap = times.get(i) - times.get(i - 1);
+                assertTrue("Requests to " + host + " too close together: " + gap, gap >= delayNanos);
+            }
+        }
+
+        // Fetching both hosts one after the other would need at least 5 delays.
+        assertTrue("Hosts were not fetched in parallel", elapsed < 5 * delayNanos);
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testSkipsNearDuplicates() throws IOException {
+        Scraper scraper = this.makeScraper();
+        scraper.addSeedUri(URI.create(this.url("localhost", "/copy/1")));
+        scraper.run(100);
+
+        // "/copy/2" is a copy of "/copy/1", so it is not saved and its link is not followed.
+        assertEquals(1, this.countSavedPages());
+        assertEquals(2, this.pageRequestTimes("localhost").size());
+        assertEquals(1, Files.readAllLines(this.outputPath.resolve("simhash.sav")).size());
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testStopsAtLimit() throws IOException {
+        Scraper scraper = this.makeScraper();
+        scraper.addSeedUri(URI.create(this.url("localhost", "/page/1")));
+        scraper.run(2);
+
+        assertEquals(2, this.countSavedPages());
+        assertEquals(2, Files.readAllLines(this.outputPath.resolve("list.sav")).size());
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testPagesPastTheLimitDoNotClaimTheirFingerprint() throws IOException {
+        this.copyDelayMillis = 300;
+        Scraper first = new Scraper(this.outputPath, this.requester, 2, 8);
+        for (String host : new String[] {"localhost", "127.0.0.2", "127.0.0.3"}) {
+            first.addDomainToWhitelist(host);
+        }
+        first.addSeedUri(URI.create(this.url("localhost", "/page/3")));
+        first.addSeedUri(URI.create(this.url("127.0.0.2", "/copy/1")));
+        first.addSeedUri(URI.create(this.url("127.0.0.3", "/copy/1")));
+        first.run(1);
+
+        // "/page/3" used up the limit, so both copies were put back for next time; neither
+        // was saved, so neither makes the other a duplicate yet.
+        assertEquals(1, this.countSavedPages());
+        assertEquals(0, Files.readAllLines(this.outputPath.resolve("simhash.sav")).size());
+
+        Scraper second = new Scraper(this.outputPath, this.requester, 2, 8);
+        for (String host : new String[] {"localhost", "127.0.0.2", "127.0.0.3"}) {
+            second.addDomainToWhitelist(host);
+        }
+        second.run(100);
+        assertEquals(2, this.countRequests("127.0.0.2", "/copy/1"));
+        assertEquals(2, this.countRequests("127.0.0.3", "/copy/1"));
+        assertEquals(2, this.countSavedPages());
+        assertEquals(1, Files.readAllLines(this.outputPath.resolve("simhash.sav")).size());
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testBoundsRequestsInFlight() throws IOException {
+        this.responseDelayMillis = 100;
+
+        // Every 127.x.x.x address reaches the server, so each of these is a separate host.
+        Scraper scraper = new Scraper(this.outputPath, this.requester, 2, 3);
+        for (int i = 1; i <= 8; i++) {
+            String host = "127.0.0." + i;
+            scraper.addDomainToWhitelist(host);
+            scraper.addSeedUri(URI.create(this.url(host, "/page/3")));
+        }
+        scraper.run(100);
+
+        assertEquals(8, this.countSavedPages());
+        assertTrue("Too many requests in flight: " + this.maxActiveRequests.get(), this.maxActiveRequests.get() <= 3);
+        assertTrue("Requests were not made concurrently", this.maxActiveRequests.get() > 1);
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testResumesWhereItLeftOff() throws IOException {
+        Scraper first = this.makeScraper();
+        first.addSeedUri(URI.create(this.url("localhost", "/page/1")));
+        first.run(2);
+        assertEquals(2, this.countSavedPages());
+
+        Scraper second = this.makeScraper();
+        second.addSeedUri(URI.create(this.url("localhost", "/page/1")));
+        second.run(100);
+
+        // Everything is fetched by the end, and nothing is fetched twice.
+        assertEquals(6, this.countSavedPages());
+        assertEquals(3, this.pageRequestTimes("localhost").size());
+        assertEquals(3, this.pageRequestTimes("127.0.0.1").size());
+        assertEquals(6, Files.readAllLines(this.outputPath.resolve("list.sav")).size());
+    }
+
+    @Test(timeout=20 * SECOND)
+    public void testRestartAfterCrashWhileQueueingLosesNothing() throws IOException, InterruptedException {
+        Process crawl = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                CrashingCrawl.class.getName(),
+                this.outputPath.toString(),
+                this.url("localhost", "/page/1"))
+                .inheritIO()
+                .start();
+        assertEquals(CRASH_EXIT_CODE, crawl.waitFor());
+
+        Scraper scraper = this.makeScraper();
+        scraper.addSeedUri(URI.create(this.url("localhost", "/page/1")));
+        scraper.run(100);
+
+        // "/page/2" (and so everything after it) survived the crash in the frontier.
+        Set<URI> saved = new HashSet<>();
+        PageStore.forEachUri(this.outputPath, saved::add);
+        assertTrue(saved.contains(URI.create(this.url("localhost", "/page/2"))));
+        assertTrue(saved.contains(URI.create(this.url("127.0.0.1", "/page/3"))));
+        assertEquals(6, saved.size());
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testRecrawlUsesConditionalRequests() throws IOException {
+        Scraper first = this.makeScraper();
+        first.addSeedUri(URI.create(this.url("localhost", "/fresh/1")));
+        first.run(100);
+        assertEquals(3, this.countSavedPages());
+        assertEquals(3, this.pageRequestTimes("localhost").size());
+
+        // Nothing is due yet.
+        this.makeScraper().recrawl(100);
+        assertEquals(3, this.pageRequestTimes("localhost").size());
+
+        // The unchanged pages cost a 304 each; only the news page is saved again, and the
+        // link it gained is queued for the next crawl rather than fetched now.
+        this.makeScraper().recrawl(100, Long.MAX_VALUE);
+        assertEquals(6, this.pageRequestTimes("localhost").size());
+        assertEquals(2, this.notModifiedCount.get());
+        assertEquals(4, this.countSavedPages());
+        assertEquals(2, this.newsVersion.get());
+
+        this.makeScraper().run(100);
+        assertEquals(7, this.pageRequestTimes("localhost").size());
+        assertEquals(5, this.countSavedPages());
+        assertFalse(Files.exists(this.outputPath.resolve("recrawl")));
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testRecrawlOnlyStoresSuccessfulResponses() throws IOException {
+        Scraper first = this.makeScraper();
+        first.addSeedUri(URI.create(this.url("localhost", "/fresh/1")));
+        first.run(100);
+        assertEquals(3, this.countSavedPages());
+
+        // An error page is not a new version: only the news page is saved again, and the
+        // failed page stays due.
+        this.freshTwoStatus = 503;
+        this.makeScraper().recrawl(100, Long.MAX_VALUE);
+        assertEquals(4, this.countSavedPages());
+        try (RevisitSchedule schedule = new RevisitSchedule(this.outputPath.resolve("revisits.sav"))) {
+            assertEquals(3, schedule.size());
+        }
+
+        // Once the page is gone, the store says so, and it is never checked again.
+        this.freshTwoStatus = 410;
+        this.makeScraper().recrawl(100, Long.MAX_VALUE);
+        List<String> records = new ArrayList<>();
+        PageStore.forEach(this.outputPath, (uri, contents) -> {
+            records.add(uri.getPath() + (contents == null ? " removed" : ""));
+        });
+        assertEquals(6, records.size());
+        assertTrue(records.contains("/fresh/2 removed"));
+        try (RevisitSchedule schedule = new RevisitSchedule(this.outputPath.resolve("revisits.sav"))) {
+            assertEquals(2, schedule.size());
+        }
+
+        this.makeScraper().recrawl(100, Long.MAX_VALUE);
+        assertEquals(3, this.countRequests("localhost", "/fresh/2"));
+    }
+}
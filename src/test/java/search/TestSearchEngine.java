@@ -0,0 +1,288 @@
+package search;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import misc.BaseTest;
+import org.junit.Test;
+import search.metrics.QueryTrace;
+import search.misc.Deadline;
+import search.models.Result;
+import search.models.ResultPage;
+import search.models.ScoringMode;
+import search.models.SearchCursor;
+import search.models.Webpage;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestSearchEngine extends BaseTest {
+    private static final int NUM_PAGES = 30;
+
+    private static URI pageUri(int i) {
+        return URI.create("http://example.com/page-" + i);
+    }
+
+    /**
+     * Makes pages where every page but the first mentions "dog" a few times among
+     * otherwise unique words (so none are near-duplicates of each other, and no two have
+     * the same score), and every page links to page 0, so page 0 has by far the highest
+     * page rank.
+     */
+    private static SearchEngine makeEngine() {
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        for (int i = 0; i < NUM_PAGES; i++) {
+            IList<String> words = new DoubleLinkedList<>();
+            for (int j = 0; i > 0 && j < 1 + i % 5; j++) {
+                words.add("dog");
+            }
+            for (int j = 0; j < 40 + i; j++) {
+                words.add("word" + i + "x" + j);
+            }
+            words.add("common");
+            IList<URI> links = new DoubleLinkedList<>();
+            links.add(pageUri(i == 0 ? 1 : 0));
+            pages.add(new Webpage(pageUri(i), links, words, "Page " + i, "Blurb " + i));
+        }
+        return new SearchEngine(pages);
+    }
+
+    /**
+     * Makes 'count' pages which all have exactly the same score for "tie".
+     */
+    private static SearchEngine makeTiedEngine(int count) {
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        for (int i = 0; i < count; i++) {
+            IList<String> words = new DoubleLinkedList<>();
+            words.add("tie");
+            for (int j = 0; j < 40; j++) {
+                words.add("word" + i + "x" + j);
+            }
+            IList<URI> links = new DoubleLinkedList<>();
+            links.add(pageUri((i + 1) % count));
+            pages.add(new Webpage(pageUri(i), links, words, "Page " + i, "Blurb " + i));
+        }
+        return new SearchEngine(pages);
+    }
+
+    private static IList<String> query(String... words) {
+        IList<String> out = new DoubleLinkedList<>();
+        for (String word : words) {
+            out.add(word);
+        }
+        return out;
+    }
+
+    @Test(timeout=SECOND)
+    public void testOffsetPagesThroughResults() {
+        SearchEngine engine = makeEngine();
+        IList<Result> all = engine.getResults(query("dog"), 0, 100, ScoringMode.TF_IDF);
+        assertEquals(NUM_PAGES - 1, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getScore() >= all.get(i).getScore());
+        }
+
+        IList<Result> page = engine.getResults(query("dog"), 10, 5, ScoringMode.TF_IDF);
+        assertEquals(5, page.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(all.get(10 + i).getUri(), page.get(i).getUri());
+        }
+
+        assertEquals(4, engine.getResults(query("dog"), 25, 10, ScoringMode.TF_IDF).size());
+        assertEquals(0, engine.getResults(query("dog"), 100, 10, ScoringMode.TF_IDF).size());
+        assertEquals(0, engine.getResults(query("dog"), 0, 0, ScoringMode.TF_IDF).size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testScoringModes() {
+        SearchEngine engine = makeEngine();
+        Result byPageRank = engine.getResults(query("common"), 0, 1, ScoringMode.PAGE_RANK).get(0);
+        assertEquals(pageUri(0), byPageRank.getUri());
+        assertEquals(byPageRank.getPageRank(), byPageRank.getScore(), 0.0);
+
+        for (Result result : engine.getResults(query("dog", "common"), 0, 10, ScoringMode.COMBINED)) {
+            assertEquals(result.getTfIdf() * Math.sqrt(result.getPageRank()), result.getScore(), 1e-12);
+            assertEquals(engine.computeScore(query("dog", "common"), result.getUri()), result.getScore(), 1e-12);
+        }
+
+        IList<Result> defaults = engine.getTopKResults(query("dog"), 3);
+        IList<Result> combined = engine.getResults(query("dog"), 0, 3, ScoringMode.COMBINED);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(combined.get(i), defaults.get(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testLinksToDroppedCopiesCountForKeptCopy() {
+        // Page 0 has a printable copy, and every other page links only to that copy.
+        URI copyUri = URI.create("http://example.com/page-0-print");
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        for (int i = 0; i < 10; i++) {
+            IList<String> words = new DoubleLinkedList<>();
+            for (int j = 0; j < 40; j++) {
+                words.add("word" + i + "x" + j);
+            }
+            words.add("common");
+            IList<URI> links = new DoubleLinkedList<>();
+            links.add(i == 0 ? pageUri(1) : copyUri);
+            pages.add(new Webpage(pageUri(i), links, words, "Page " + i, "Blurb " + i));
+            if (i == 0) {
+                pages.add(new Webpage(copyUri, new DoubleLinkedList<>(), words, "Page 0", "Blurb 0"));
+            }
+        }
+        SearchEngine engine = new SearchEngine(pages);
+
+        IList<Result> results = engine.getResults(query("common"), 0, 100, ScoringMode.PAGE_RANK);
+        assertEquals(10, results.size());
+        assertEquals(pageUri(0), results.get(0).getUri());
+    }
+
+    @Test(timeout=SECOND)
+    public void testCursorPagesThroughResults() {
+        SearchEngine engine = makeEngine();
+        IList<Result> all = engine.getResults(query("dog", "common"), 0, 100, ScoringMode.COMBINED);
+        assertEquals(NUM_PAGES, all.size());
+
+        int seen = 0;
+        SearchCursor cursor = null;
+        while (true) {
+            IList<Result> page = engine.getResultsAfter(query("dog", "common"), cursor, 7, ScoringMode.COMBINED);
+            for (Result result : page) {
+                assertEquals(all.get(seen), result);
+                seen++;
+            }
+            if (page.size() < 7) {
+                break;
+            }
+            cursor = SearchCursor.decode(SearchCursor.after(page.get(page.size() - 1)).encode());
+        }
+        assertEquals(NUM_PAGES, seen);
+    }
+
+    @Test(timeout=SECOND)
+    public void testTiesAreRankedByUri() {
+        SearchEngine engine = makeTiedEngine(12);
+        IList<Result> all = engine.getResults(query("tie"), 0, 100, ScoringMode.TF_IDF);
+        assertEquals(12, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertEquals(all.get(0).getScore(), all.get(i).getScore(), 0.0);
+            assertTrue(all.get(i - 1).getUri().toString().compareTo(all.get(i).getUri().toString()) < 0);
+        }
+
+        SearchCursor cursor = SearchCursor.after(all.get(4));
+        IList<Result> second = engine.getResultsAfter(query("tie"), cursor, 5, ScoringMode.TF_IDF);
+        IList<Result> byOffset = engine.getResults(query("tie"), 5, 5, ScoringMode.TF_IDF);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(all.get(5 + i), second.get(i));
+            assertEquals(all.get(5 + i), byOffset.get(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testCapsPageSizeAndOffset() {
+        SearchEngine engine = makeTiedEngine(SearchEngine.MAX_RESULTS_PER_PAGE + 20);
+        assertEquals(SearchEngine.MAX_RESULTS_PER_PAGE, engine.getTopKResults(query("tie"), 1000000).size());
+        assertEquals(SearchEngine.MAX_RESULTS_PER_PAGE,
+                engine.getResultsAfter(query("tie"), null, Integer.MAX_VALUE, ScoringMode.COMBINED).size());
+        try {
+            engine.getResults(query("tie"), SearchEngine.MAX_OFFSET + 1, 10, ScoringMode.COMBINED);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // Do nothing: this is ok
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRejectsMalformedCursor() {
+        String[] cursors = new String[] {"", "not base64!", "bm9zcGFjZQ", "eHl6IGh0dHA6Ly9leGFtcGxlLmNvbS8"};
+        for (String cursor : cursors) {
+            try {
+                SearchCursor.decode(cursor);
+                fail("Expected IllegalArgumentException for " + cursor);
+            } catch (IllegalArgumentException ex) {
+                // Do nothing: this is ok
+            }
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testGenerousDeadlineGivesFullResults() {
+        SearchEngine engine = makeEngine();
+        ResultPage page = engine.getResults(query("dog", "common"), 0, 10, ScoringMode.COMBINED, Deadline.after(60000));
+        assertFalse(page.isPartial());
+        IList<Result> expected = engine.getResults(query("dog", "common"), 0, 10, ScoringMode.COMBINED);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(expected.get(i), page.getResults().get(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testExpiredDeadlineGivesPartialResults() {
+        SearchEngine engine = makeEngine();
+        ResultPage page = engine.getResults(query("dog"), 0, 10, ScoringMode.COMBINED, new Deadline(0, () -> 0L));
+        assertTrue(page.isPartial());
+        assertEquals(0, page.getResults().size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testDeadlineKeepsRarestWords() {
+        SearchEngine engine = makeEngine();
+
+        // Each look at this clock moves it on by one, so the deadline passes after the
+        // first query word has been gone through: that should be "dog", the rarer one.
+        AtomicLong clock = new AtomicLong();
+        Deadline deadline = new Deadline(2, clock::incrementAndGet);
+        ResultPage page = engine.getResultsAfter(query("common", "dog"), null, 100, ScoringMode.TF_IDF, deadline);
+        assertTrue(page.isPartial());
+        assertEquals(NUM_PAGES - 1, page.getResults().size());
+        for (Result result : page.getResults()) {
+            assertFalse(result.getUri().equals(pageUri(0)));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testTraceRecordsWorkDone() {
+        QueryTrace trace = new QueryTrace("common dog");
+        makeEngine().getResults(query("common", "dog"), 0, 5, ScoringMode.COMBINED, Deadline.NONE, trace);
+        assertEquals(NUM_PAGES, trace.getCandidates());
+        assertEquals(NUM_PAGES, trace.getScored());
+
+        // The rarer word's postings are gone through first.
+        assertEquals(2, trace.getPostingsLengths().size());
+        assertEquals("dog", trace.getPostingsLengths().get(0).getKey());
+        assertEquals(NUM_PAGES - 1, (int) trace.getPostingsLengths().get(0).getValue());
+        assertEquals("common", trace.getPostingsLengths().get(1).getKey());
+        assertEquals(NUM_PAGES, (int) trace.getPostingsLengths().get(1).getValue());
+        assertTrue(trace.getPhaseNanos(QueryTrace.Phase.CANDIDATE_GENERATION) > 0);
+    }
+
+    @Test(timeout=SECOND)
+    public void testSuggestCompletesLastWord() {
+        SearchEngine engine = makeEngine();
+        IList<String> suggestions = engine.suggest("Big Dog, co", 5);
+        assertEquals(1, suggestions.size());
+        assertEquals("big dog common", suggestions.get(0));
+
+        // "dog" is on more pages than any "word..." is.
+        assertEquals("dog", engine.suggest("d", 1).get(0));
+        assertEquals(5, engine.suggest("wor", 5).size());
+        assertEquals(0, engine.suggest("dog ", 5).size());
+        assertEquals(0, engine.suggest("", 5).size());
+        assertEquals(0, engine.suggest("xyz", 5).size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testRejectsNegativeOffset() {
+        try {
+            makeEngine().getResults(query("dog"), -1, 10, ScoringMode.COMBINED);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // Do nothing: this is ok
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package search;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.ISet;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import misc.BaseTest;
+import org.junit.Test;
+import search.models.ScoringMode;
+import search.models.Webpage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestSearchEvents extends BaseTest {
+    private static SearchEngine makeEngine() {
+        ISet<Webpage> pages = new ChainedHashSet<>();
+        for (int i = 0; i < 10; i++) {
+            IList<String> words = new DoubleLinkedList<>();
+            for (int j = 0; j < 20 + i; j++) {
+                words.add("word" + i + "x" + j);
+            }
+            words.add(i % 2 == 0 ? "even" : "odd");
+            IList<URI> links = new DoubleLinkedList<>();
+            links.add(URI.create("http://example.com/page-" + (i + 1) % 10));
+            pages.add(new Webpage(URI.create("http://example.com/page-" + i), links, words, "Page", "Blurb"));
+        }
+        return new SearchEngine(pages);
+    }
+
+    private static List<RecordedEvent> eventsNamed(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> out = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                out.add(event);
+            }
+        }
+        return out;
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testRecordsIndexingAndQueryEvents() throws IOException {
+        Path file = Files.createTempFile("search-events", ".jfr");
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("search.IndexBuilt");
+            recording.enable("search.PageRankIteration");
+            recording.enable("search.QueryExecuted");
+            recording.start();
+
+            SearchEngine engine = makeEngine();
+            IList<String> query = new DoubleLinkedList<>();
+            query.add("even");
+            engine.getResults(query, 0, 3, ScoringMode.TF_IDF);
+
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+
+        List<RecordedEvent> indexes = eventsNamed(events, "search.IndexBuilt");
+        assertEquals(1, indexes.size());
+        assertEquals(10, indexes.get(0).getInt("documents"));
+        // Each page's unique words (20 + i of them), plus "even" and "odd".
+        assertEquals(20 * 10 + 45 + 2, indexes.get(0).getInt("terms"));
+        assertTrue(indexes.get(0).getLong("postingsBytes") > 0);
+
+        List<RecordedEvent> iterations = eventsNamed(events, "search.PageRankIteration");
+        assertFalse(iterations.isEmpty());
+        assertEquals(1, iterations.get(0).getInt("iteration"));
+        assertEquals(10, iterations.get(0).getInt("pages"));
+
+        List<RecordedEvent> queries = eventsNamed(events, "search.QueryExecuted");
+        assertEquals(1, queries.size());
+        RecordedEvent executed = queries.get(0);
+        assertEquals("even", executed.getString("query"));
+        assertEquals("tfidf", executed.getString("mode"));
+        assertEquals(3, executed.getInt("k"));
+        assertEquals(5, executed.getInt("candidates"));
+        assertEquals(5, executed.getInt("scored"));
+        assertFalse(executed.getBoolean("partial"));
+    }
+}
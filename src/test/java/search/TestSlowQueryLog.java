@@ -0,0 +1,96 @@
+package search;
+
+import misc.BaseTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import search.metrics.QueryTrace;
+import search.metrics.SlowQueryLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestSlowQueryLog extends BaseTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("slow-query-log-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static QueryTrace makeTrace(String query) {
+        QueryTrace trace = new QueryTrace(query);
+        trace.endPhase(QueryTrace.Phase.PARSE, trace.getStartNanos());
+        trace.addPostings("york", 2);
+        trace.addPostings("new", 5);
+        trace.setCandidates(7, 6);
+        trace.setPartial(true);
+        return trace;
+    }
+
+    private List<String> readLines(String name) throws IOException {
+        return Files.readAllLines(this.directory.resolve(name), StandardCharsets.UTF_8);
+    }
+
+    @Test(timeout=SECOND)
+    public void testLogsSlowQueriesWithTheirBreakdown() throws IOException {
+        Path file = this.directory.resolve("logs").resolve("slow.log");
+        SlowQueryLog log = new SlowQueryLog(file, 0);
+        assertTrue(log.offer(makeTrace("new \"york\"\n")));
+        log.close();
+
+        List<String> lines = this.readLines("logs/slow.log");
+        assertEquals(1, lines.size());
+        String line = lines.get(0);
+        for (String expected : new String[] {
+                " total_ms=", " parse_ms=", " candidates_ms=", " scoring_ms=", " top_k_ms=", " render_ms=",
+                " candidates=7 scored=6 partial=true postings=york:2,new:5 ",
+                " query=\"new \\\"york\\\"\\u000a\""}) {
+            assertTrue(line, line.contains(expected));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSkipsFastQueries() throws IOException {
+        Path file = this.directory.resolve("slow.log");
+        SlowQueryLog log = new SlowQueryLog(file, 60000);
+        QueryTrace trace = makeTrace("dog");
+        assertFalse(log.offer(trace));
+        assertTrue(trace.getTotalNanos() >= 0);
+        log.close();
+        assertFalse(Files.exists(file));
+    }
+
+    @Test(timeout=SECOND)
+    public void testRollsOverFullFiles() throws IOException {
+        Path file = this.directory.resolve("slow.log");
+        SlowQueryLog log = new SlowQueryLog(file, 0, 1, 2);
+        for (int i = 0; i < 5; i++) {
+            log.offer(makeTrace("query " + i));
+        }
+        log.close();
+
+        // Every line fills a file, so we are left with the last three queries.
+        assertTrue(this.readLines("slow.log").get(0).endsWith("query=\"query 4\""));
+        assertTrue(this.readLines("slow.log.1").get(0).endsWith("query=\"query 3\""));
+        assertTrue(this.readLines("slow.log.2").get(0).endsWith("query=\"query 2\""));
+        assertEquals(1, this.readLines("slow.log").size());
+        assertFalse(Files.exists(this.directory.resolve("slow.log.3")));
+    }
+}
@@ -10,9 +10,13 @@ import datastructures.interfaces.ISet;
 import misc.BaseTest;
 import org.junit.Test;
 import search.analyzers.TfIdfAnalyzer;
+import search.misc.Deadline;
 import search.models.Webpage;
 
 import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
 
 public class TestTfIdfAnalyzer extends BaseTest {
     // We say two floating point numbers are equal if they're within
@@ -136,4 +140,77 @@ public class TestTfIdfAnalyzer extends BaseTest {
                 DELTA);
     }
 
+    @Test(timeout=SECOND)
+    public void testPostingsMatchPerDocumentRelevance() {
+        TfIdfAnalyzer analyzer = this.makeExampleAnalyzer();
+
+        IList<String> query = strToIList("the dog and the cat cat");
+        IDictionary<URI, Double> relevances = analyzer.computeRelevances(query);
+
+        assertEquals(3, relevances.size());
+        for (KVPair<URI, Double> pair : relevances) {
+            assertEquals(
+                    analyzer.computeRelevance(query, pair.getKey()),
+                    pair.getValue(),
+                    0.0);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testPostingsOmitUnrelatedDocuments() {
+        TfIdfAnalyzer analyzer = this.makeExampleAnalyzer();
+
+        IDictionary<URI, Double> relevances = analyzer.computeRelevances(strToIList("mouse unknownword"));
+        assertEquals(1, relevances.size());
+        assertEquals(
+                0.5,
+                relevances.get(URI.create("http://example.com/fake-page-a.html")),
+                DELTA);
+
+        assertEquals(0, analyzer.computeRelevances(strToIList("unknownword")).size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testPostingsAreCached() {
+        TfIdfAnalyzer analyzer = this.makeExampleAnalyzer();
+
+        analyzer.computeRelevances(strToIList("dog"));
+        analyzer.computeRelevances(strToIList("dog"));
+
+        assertEquals(1L, analyzer.getPostingsCache().getMisses());
+        assertEquals(1L, analyzer.getPostingsCache().getHits());
+    }
+
+    @Test(timeout=SECOND)
+    public void testDeadlineInsidePostingsDropsWholeWord() {
+        // Every page has "common", and every tenth one also has "rare", so "common" has
+        // more postings than get gone through between two deadline checks.
+        ISet<Webpage> documents = new ChainedHashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            documents.add(new Webpage(
+                    URI.create("http://example.com/page-" + i + ".html"),
+                    new DoubleLinkedList<>(),
+                    strToIList(i % 10 == 0 ? "common rare" : "common filler"),
+                    "Title " + i,
+                    "Blurb " + i));
+        }
+        TfIdfAnalyzer analyzer = new TfIdfAnalyzer(documents);
+
+        // The clock ticks once per check: before "rare", before "common", and then
+        // part of the way through the postings of "common", where it runs out.
+        AtomicLong clock = new AtomicLong();
+        Deadline deadline = new Deadline(3, clock::incrementAndGet);
+        IDictionary<URI, Double> relevances = analyzer.computeRelevances(strToIList("common rare"), deadline);
+
+        assertTrue(deadline.wasHit());
+        assertEquals(500, relevances.size());
+
+        // Stopping right before "common" instead must give exactly the same scores.
+        AtomicLong otherClock = new AtomicLong();
+        IDictionary<URI, Double> rareOnly = analyzer.computeRelevances(
+                strToIList("common rare"), new Deadline(2, otherClock::incrementAndGet));
+        for (KVPair<URI, Double> pair : relevances) {
+            assertEquals(rareOnly.get(pair.getKey()), pair.getValue(), 0.0);
+        }
+    }
 }
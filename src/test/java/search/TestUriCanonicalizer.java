@@ -0,0 +1,97 @@
+package search;
+
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.jsoup.Jsoup;
+import org.junit.Test;
+import search.misc.UriCanonicalizer;
+import search.misc.WebUtils;
+
+import java.net.URI;
+
+import static org.junit.Assert.assertNull;
+
+public class TestUriCanonicalizer extends BaseTest {
+    private static final URI PAGE = URI.create("https://en.wikipedia.org/wiki/Dog/Breeds?lang=en");
+
+    private static String resolve(String link) {
+        return new UriCanonicalizer(PAGE).resolve(link);
+    }
+
+    @Test(timeout=SECOND)
+    public void testResolvesRelativeLinks() {
+        assertEquals("https://en.wikipedia.org/wiki/Dog/Cat", resolve("Cat"));
+        assertEquals("https://en.wikipedia.org/wiki/Cat", resolve("../Cat"));
+        assertEquals("https://en.wikipedia.org/Cat", resolve("../../../../Cat"));
+        assertEquals("https://en.wikipedia.org/wiki/Cat", resolve("/wiki/./x/../Cat"));
+        assertEquals("https://en.wikipedia.org/wiki/Dog/Breeds?q=1", resolve("?q=1"));
+        assertEquals("https://en.wikipedia.org/wiki/Dog/Breeds?lang=en", resolve(""));
+        assertEquals("https://en.wikipedia.org/wiki/Dog/Breeds?lang=en", resolve("#History"));
+        assertEquals("https://commons.wikimedia.org/wiki/Dog", resolve("//commons.wikimedia.org/wiki/Dog"));
+        assertEquals("http://example.com/", resolve("http://example.com"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testNormalizesCaseAndPort() {
+        assertEquals("http://example.com/A/b", resolve("HTTP://User@Example.COM:80/A/b"));
+        assertEquals("https://example.com:8443/", resolve("https://example.com:8443"));
+        assertEquals("https://example.com/", resolve("https://example.com:443/"));
+        assertNull(resolve("http://example.com:80a/"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testDropsFragmentAndEmptyQuery() {
+        assertEquals("http://example.com/a", resolve("http://example.com/a?#top"));
+        assertEquals("http://example.com/a?x=1", resolve("http://example.com/a?x=1#top"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testNormalizesPercentEncoding() {
+        assertEquals("http://example.com/a~b/%2F%3F", resolve("http://example.com/a%7eb/%2f%3f"));
+        assertEquals("http://example.com/a%20b%25z", resolve("http://example.com/a b%z"));
+        assertEquals("http://example.com/Caf%C3%A9?q=%22x%22?", resolve("http://example.com/Caf\u00e9?q=\"x\"?"));
+        assertEquals("http://example.com/a%5Bb%5D", resolve("http://example.com/a[b]"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testCleansWhitespace() {
+        assertEquals("https://en.wikipedia.org/wiki/Cat", resolve("  \t/wiki/\nCat\r\n "));
+    }
+
+    @Test(timeout=SECOND)
+    public void testRejectsOtherSchemes() {
+        assertNull(resolve("mailto:someone@example.com"));
+        assertNull(resolve("javascript:void(0)"));
+        assertNull(resolve("ftp://example.com/file"));
+        assertNull(resolve("http://exa mple.com/"));
+        assertNull(UriCanonicalizer.canonicalize("/wiki/Cat"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testCanonicalFormIsStable() {
+        String[] links = new String[] {
+            "HTTP://Example.com:80/a/./b/../c?%7e=1#x", "https://en.wikipedia.org/wiki/Caf\u00e9", "?q=a b",
+        };
+        for (String link : links) {
+            String canonical = resolve(link);
+            assertEquals(canonical, UriCanonicalizer.canonicalize(canonical));
+            assertEquals(canonical, URI.create(canonical).toString());
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testExtractLinksSkipsDuplicatesAndJunk() {
+        String html = "<html><body>"
+                + "<a href='/wiki/Cat'>Cat</a>"
+                + "<a href='/wiki/Cat#Diet'>Cat diet</a>"
+                + "<a href='HTTPS://EN.wikipedia.org/wiki/Cat'>Cat again</a>"
+                + "<a href='mailto:someone@example.com'>Mail</a>"
+                + "<a>No link</a>"
+                + "<a href='../Wolf'>Wolf</a>"
+                + "</body></html>";
+        IList<URI> links = WebUtils.extractLinks(PAGE, Jsoup.parse(html));
+        assertEquals(2, links.size());
+        assertEquals(URI.create("https://en.wikipedia.org/wiki/Cat"), links.get(0));
+        assertEquals(URI.create("https://en.wikipedia.org/wiki/Wolf"), links.get(1));
+    }
+}
@@ -0,0 +1,116 @@
+package search;
+
+import misc.BaseTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import search.scraper.UrlSeenSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestUrlSeenSet extends BaseTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("seen-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static URI uri(int i) {
+        return URI.create("https://en.wikipedia.org/wiki/Page_" + i);
+    }
+
+    private void assertContainsExactly(UrlSeenSet set, int count) {
+        assertEquals(count, (int) set.size());
+        for (int i = 0; i < count; i++) {
+            assertTrue(set.contains(uri(i)));
+        }
+        for (int i = count; i < 2 * count; i++) {
+            assertFalse(set.contains(uri(i)));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testAddAndContains() {
+        UrlSeenSet set = new UrlSeenSet();
+        assertFalse(set.contains(uri(1)));
+        assertTrue(set.addIfAbsent(uri(1)));
+        assertFalse(set.addIfAbsent(uri(1)));
+        assertTrue(set.contains(uri(1)));
+        assertFalse(set.contains(uri(2)));
+        assertEquals(1, (int) set.size());
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testGrowsInMemory() {
+        UrlSeenSet set = new UrlSeenSet();
+        for (int i = 0; i < 200000; i++) {
+            set.add(uri(i));
+        }
+        this.assertContainsExactly(set, 200000);
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testPersistsAcrossReopen() throws IOException {
+        Path file = this.directory.resolve("seen.idx");
+        try (UrlSeenSet set = new UrlSeenSet(file, false)) {
+            for (int i = 0; i < 100000; i++) {
+                set.add(uri(i));
+            }
+        }
+        try (UrlSeenSet set = new UrlSeenSet(file, false)) {
+            this.assertContainsExactly(set, 100000);
+            assertTrue(set.addIfAbsent(uri(100000)));
+        }
+        try (UrlSeenSet set = new UrlSeenSet(file, true)) {
+            this.assertContainsExactly(set, 100001);
+        }
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testBloomFilterAgreesWithTable() throws IOException {
+        try (UrlSeenSet set = new UrlSeenSet(this.directory.resolve("seen.idx"), true)) {
+            for (int i = 0; i < 100000; i++) {
+                assertTrue(set.addIfAbsent(uri(i)));
+            }
+            this.assertContainsExactly(set, 100000);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testRejectsOtherFiles() throws IOException {
+        Path file = this.directory.resolve("not-seen.idx");
+        Files.write(file, new byte[1024]);
+        try {
+            new UrlSeenSet(file, false);
+            fail("Expected IOException");
+        } catch (IOException ex) {
+            // Do nothing: this is ok
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testFingerprint() {
+        assertEquals(UrlSeenSet.fingerprint("http://a.com/"), UrlSeenSet.fingerprint("http://a.com/"));
+        assertNotEquals(UrlSeenSet.fingerprint("http://a.com/"), UrlSeenSet.fingerprint("http://a.com"));
+        assertNotEquals(0L, UrlSeenSet.fingerprint(""));
+    }
+}
@@ -0,0 +1,82 @@
+package search;
+
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.junit.Test;
+import search.misc.WordTokenizer;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.Assert.assertFalse;
+
+public class TestWordTokenizer extends BaseTest {
+    /**
+     * The original regex-based tokenizer; the single-pass one must produce exactly the same words.
+     */
+    private IList<String> referenceExtract(String input) {
+        IList<String> out = new DoubleLinkedList<>();
+        for (String word : input.toLowerCase().split("\\s+")) {
+            word = word.replaceAll("\\p{Punct}", "");
+            if (!word.isEmpty()) {
+                out.add(word);
+            }
+        }
+        return out;
+    }
+
+    private void assertMatchesReference(String input) {
+        IList<String> expected = this.referenceExtract(input);
+        IList<String> actual = WordTokenizer.extract(input);
+
+        assertEquals("Wrong number of words for '" + input + "'", expected.size(), actual.size());
+        Iterator<String> actualIter = actual.iterator();
+        for (String word : expected) {
+            assertEquals("Wrong word for '" + input + "'", word, actualIter.next());
+        }
+        assertFalse(actualIter.hasNext());
+    }
+
+    @Test(timeout=SECOND)
+    public void testBasicSentence() {
+        IList<String> words = WordTokenizer.extract("The quick, brown fox -- jumped!");
+        assertEquals(5, words.size());
+        assertEquals("the", words.get(0));
+        assertEquals("quick", words.get(1));
+        assertEquals("brown", words.get(2));
+        assertEquals("fox", words.get(3));
+        assertEquals("jumped", words.get(4));
+    }
+
+    @Test(timeout=SECOND)
+    public void testEdgeCases() {
+        this.assertMatchesReference("");
+        this.assertMatchesReference("   ");
+        this.assertMatchesReference("  leading and trailing  ");
+        this.assertMatchesReference("tabs\tnew\nlines\r\nform\ffeed\u000Bvtab");
+        this.assertMatchesReference("don't re-use e-mail addresses like foo@bar.com!");
+        this.assertMatchesReference("!!! ... ??? a.b.c");
+        this.assertMatchesReference("non\u00A0breaking space");
+        this.assertMatchesReference("Caf\u00C9 \u00DCBER Stra\u00DFe");
+        this.assertMatchesReference("\u0130STANBUL \u0130");
+        this.assertMatchesReference("\u039F\u0394\u03A5\u03A3\u03A3\u0395\u03A5\u03A3 \u03A3 \u03A3.");
+        this.assertMatchesReference("\uD801\uDC00\uD801\uDC01 deseret");
+        this.assertMatchesReference("lone \uD800 surrogate");
+        this.assertMatchesReference("averyveryveryveryveryveryveryveryveryveryveryveryveryveryveryveryverylongword");
+    }
+
+    @Test(timeout=5 * SECOND)
+    public void testRandomInputsMatchReference() {
+        String alphabet = "aBcDeZz09 \t\n\r.,!?'\"-_@#()[]{}\u00E9\u00C9\u0130\u03A3\u00A0\u4E2D";
+        Random rand = new Random(373);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder builder = new StringBuilder();
+            int length = rand.nextInt(60);
+            for (int j = 0; j < length; j++) {
+                builder.append(alphabet.charAt(rand.nextInt(alphabet.length())));
+            }
+            this.assertMatchesReference(builder.toString());
+        }
+    }
+}